@@ -0,0 +1,120 @@
+package io.github.leeyxq.promsql.benchmark;
+
+import io.github.leeyxq.promsql.PromHelper;
+import io.github.leeyxq.promsql.PromHelper.PromSqlBuilder;
+import io.github.leeyxq.promsql.ast.Expr;
+import io.github.leeyxq.promsql.parser.PromParser;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * PromQL解析吞吐量基准，语料为随机生成的告警规则风格表达式，得分为每微秒解析的表达式数
+ *
+ * @author lixiangqian
+ * @since 2026/10/18 13:00
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PromParserBenchmark {
+    private static final int CORPUS_SIZE = 20000;
+    private static final String[] METRICS = {"http_requests_total", "node_cpu_seconds_total", "container_memory_working_set_bytes",
+            "http_request_duration_seconds_bucket", "kube_pod_status_ready", "job:http_requests:rate5m"};
+    private static final String[] LABELS = {"job", "instance", "namespace", "pod", "code", "method", "cluster", "tenant"};
+    private static final String[] AGGS = {"sum", "max", "min", "avg", "count"};
+    private static final String[] RANGE_FNS = {"rate", "irate", "increase", "avg_over_time", "max_over_time"};
+    private static final String[] DURATIONS = {"1m", "5m", "10m", "1h", "1d"};
+
+    private String[] corpus;
+
+    @Setup
+    public void setup() {
+        Random random = new Random(42);
+        corpus = new String[CORPUS_SIZE];
+        for (int i = 0; i < CORPUS_SIZE; i++) {
+            corpus[i] = generate(random, i);
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(CORPUS_SIZE)
+    public void parseCorpus(Blackhole blackhole) {
+        for (String promSql : corpus) {
+            blackhole.consume(PromParser.parse(promSql));
+        }
+    }
+
+    /**
+     * 解析后重新打印，衡量规范化一条规则的完整开销
+     */
+    @Benchmark
+    @OperationsPerInvocation(CORPUS_SIZE)
+    public void parseAndPrintCorpus(Blackhole blackhole) {
+        for (String promSql : corpus) {
+            Expr expr = PromParser.parse(promSql);
+            blackhole.consume(expr.toString());
+        }
+    }
+
+    private static String generate(Random random, int i) {
+        PromSqlBuilder builder = PromHelper.sqlBuilder().metric(pick(random, METRICS));
+        int labelCount = random.nextInt(5);
+        for (int j = 0; j < labelCount; j++) {
+            String label = pick(random, LABELS);
+            switch (random.nextInt(4)) {
+                case 0:
+                    builder.eq(label, "value-" + random.nextInt(1000));
+                    break;
+                case 1:
+                    builder.notEq(label, "value-" + random.nextInt(1000));
+                    break;
+                case 2:
+                    builder.regex(label, "prefix-.*|value-" + random.nextInt(100));
+                    break;
+                default:
+                    builder.notRegex(label, ".*-canary");
+            }
+        }
+        if (random.nextBoolean()) {
+            builder.fn(pick(random, RANGE_FNS), pick(random, DURATIONS));
+        }
+        if (random.nextInt(4) == 0) {
+            builder.offset(pick(random, DURATIONS));
+        }
+        if (random.nextBoolean()) {
+            builder.agg(pick(random, AGGS), random.nextBoolean(), pick(random, LABELS), pick(random, LABELS));
+        }
+        String promSql = builder.build();
+        //部分表达式带阈值比较或二元运算，贴近告警规则
+        switch (i % 4) {
+            case 0:
+                return promSql + " > " + random.nextInt(100);
+            case 1:
+                return promSql + " / on(instance) group_left(job) " + pick(random, METRICS);
+            case 2:
+                return "histogram_quantile(0.99, sum by (le) (rate(" + METRICS[3] + "{job=\"api\"}[5m]))) > 0.5";
+            default:
+                return promSql;
+        }
+    }
+
+    private static String pick(Random random, String[] values) {
+        return values[random.nextInt(values.length)];
+    }
+}
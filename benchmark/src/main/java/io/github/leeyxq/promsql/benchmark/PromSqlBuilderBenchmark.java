@@ -0,0 +1,140 @@
+package io.github.leeyxq.promsql.benchmark;
+
+import io.github.leeyxq.promsql.PromHelper;
+import io.github.leeyxq.promsql.PromHelper.PromSqlBuilder;
+import io.github.leeyxq.promsql.PromTemplate;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * PromSqlBuilder生成性能基准，覆盖PromHelperTest中的典型查询形态
+ *
+ * @author lixiangqian
+ * @since 2026/10/18 10:20
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PromSqlBuilderBenchmark {
+    private static final int LABEL_COUNT = 16;
+
+    /**
+     * label值放在state中，避免被JIT常量折叠
+     */
+    private String user;
+    private String cluster;
+    private String[] labelNames;
+    private String[] labelValues;
+    private PromSqlBuilder deepBuilder;
+    private PromTemplate deepTemplate;
+
+    @Setup
+    public void setup() {
+        user = "24";
+        cluster = "Test01";
+        labelNames = new String[LABEL_COUNT];
+        labelValues = new String[LABEL_COUNT];
+        for (int i = 0; i < LABEL_COUNT; i++) {
+            labelNames[i] = "label_" + i;
+            labelValues[i] = "value-" + i;
+        }
+        deepBuilder = deepNestingBuilder();
+        deepTemplate = PromHelper.sqlBuilder()
+                .metric("cpu_used")
+                .eq("user", PromHelper.param("user"))
+                .eq("cluster", PromHelper.param("cluster"))
+                .rate("5m")
+                .offset("1h")
+                .fn("avg_over_time", "10m")
+                .sum("type")
+                .topk(5)
+                .abs()
+                .compile();
+    }
+
+    /**
+     * http_requests_total{job=~".*server"}
+     */
+    @Benchmark
+    public String singleMetric() {
+        return PromHelper.sqlBuilder()
+                .metric("http_requests_total")
+                .regex("job", ".*server")
+                .build();
+    }
+
+    /**
+     * sum by(__name__)({__name__=~"cpu_total|cpu_allocated|cpu_used", user="24", cluster="Test01"})
+     */
+    @Benchmark
+    public String multiMetric() {
+        return PromHelper.sqlBuilder()
+                .metric("cpu_total", "cpu_allocated", "cpu_used")
+                .eq("user", user)
+                .eq("cluster", cluster)
+                .sum("__name__")
+                .build();
+    }
+
+    /**
+     * abs(topk(5, sum by(type)(avg_over_time(rate(cpu_used{user="24", cluster="Test01"}[5m] offset 1h)))))
+     */
+    @Benchmark
+    public String deepNesting() {
+        return deepNestingBuilder().build();
+    }
+
+    /**
+     * 仅渲染，不包含构造builder的开销
+     */
+    @Benchmark
+    public String deepNestingRenderOnly() {
+        return deepBuilder.build();
+    }
+
+    /**
+     * 预编译模板仅绑定label值，对比deepNesting
+     */
+    @Benchmark
+    public String deepNestingTemplate() {
+        return deepTemplate.render(user, cluster);
+    }
+
+    /**
+     * instance_cpu_time_ns{label_0="value-0", ..., label_15="value-15"}
+     */
+    @Benchmark
+    public String manyLabels() {
+        PromSqlBuilder builder = PromHelper.sqlBuilder().metric("instance_cpu_time_ns");
+        for (int i = 0; i < LABEL_COUNT; i++) {
+            builder.eq(labelNames[i], labelValues[i]);
+        }
+        return builder.build();
+    }
+
+    private PromSqlBuilder deepNestingBuilder() {
+        return PromHelper.sqlBuilder()
+                .metric("cpu_used")
+                .eq("user", user)
+                .eq("cluster", cluster)
+                .rate("5m")
+                .offset("1h")
+                .fn("avg_over_time", "10m")
+                .sum("type")
+                .topk(5)
+                .abs();
+    }
+}
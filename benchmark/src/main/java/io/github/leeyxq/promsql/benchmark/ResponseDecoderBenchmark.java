@@ -0,0 +1,87 @@
+package io.github.leeyxq.promsql.benchmark;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.github.leeyxq.promsql.client.PromResponseDecoder;
+import io.github.leeyxq.promsql.client.QueryResult;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * query_range响应解析基准：流式解析到基本类型数组 vs 通用JSON树/Map解析
+ *
+ * @author lixiangqian
+ * @since 2026/10/18 16:00
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ResponseDecoderBenchmark {
+    @Param({"200"})
+    private int seriesCount;
+    @Param({"240"})
+    private int samplesPerSeries;
+
+    private byte[] json;
+    private PromResponseDecoder decoder;
+    private ObjectMapper mapper;
+
+    @Setup
+    public void setup() {
+        Random random = new Random(42);
+        StringBuilder sb = new StringBuilder(seriesCount * samplesPerSeries * 32);
+        sb.append("{\"status\":\"success\",\"data\":{\"resultType\":\"matrix\",\"result\":[");
+        for (int i = 0; i < seriesCount; i++) {
+            if (i > 0) {
+                sb.append(',');
+            }
+            sb.append("{\"metric\":{\"__name__\":\"http_requests_total\",\"instance\":\"10.0.").append(i / 256).append('.').append(i % 256)
+                    .append(":9090\",\"job\":\"api-server\",\"namespace\":\"prod\"},\"values\":[");
+            for (int j = 0; j < samplesPerSeries; j++) {
+                if (j > 0) {
+                    sb.append(',');
+                }
+                sb.append('[').append(1690000000 + j * 15).append(",\"").append(Math.round(random.nextDouble() * 1e6) / 1e3).append("\"]");
+            }
+            sb.append("]}");
+        }
+        sb.append("]}}");
+        json = sb.toString().getBytes(StandardCharsets.UTF_8);
+        decoder = new PromResponseDecoder();
+        mapper = new ObjectMapper();
+    }
+
+    @Benchmark
+    public QueryResult streamingDecoder() throws IOException {
+        return decoder.decode(new ByteArrayInputStream(json), samplesPerSeries);
+    }
+
+    @Benchmark
+    public JsonNode jacksonTree() throws IOException {
+        return mapper.readTree(new ByteArrayInputStream(json));
+    }
+
+    @Benchmark
+    public Map<?, ?> jacksonMap() throws IOException {
+        return mapper.readValue(new ByteArrayInputStream(json), Map.class);
+    }
+}
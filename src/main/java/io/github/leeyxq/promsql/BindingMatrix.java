@@ -0,0 +1,124 @@
+package io.github.leeyxq.promsql;
+
+import io.github.leeyxq.promsql.util.Asserts;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 模板参数的取值矩阵，即各参数取值的笛卡尔积，如cluster × tenant × service，配合{@link PromTemplate#renderAll(BindingMatrix, QuerySink)}批量生成查询
+ * <pre>{@code
+ * BindingMatrix matrix = BindingMatrix.builder()
+ *         .dimension("cluster", clusters)
+ *         .dimension("tenant", tenants)
+ *         .fixed("window", "5m")
+ *         .build();
+ * }</pre>
+ * 组合按下标访问，不展开为列表；最后一个维度变化最快。实例不可变，线程安全。
+ *
+ * @author lixiangqian
+ * @since 2026/10/19 00:30
+ */
+public final class BindingMatrix {
+    private final String[] names;
+    private final String[][] values;
+    private final long size;
+
+    private BindingMatrix(Builder builder) {
+        this.names = builder.dimensions.keySet().toArray(new String[0]);
+        this.values = builder.dimensions.values().toArray(new String[0][]);
+        long total = 1;
+        for (String[] dimension : values) {
+            total = Math.multiplyExact(total, dimension.length);
+        }
+        this.size = total;
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * 组合总数
+     */
+    public long size() {
+        return size;
+    }
+
+    public List<String> getNames() {
+        return Collections.unmodifiableList(Arrays.asList(names));
+    }
+
+    int dimensions() {
+        return names.length;
+    }
+
+    String name(int dimension) {
+        return names[dimension];
+    }
+
+    String[] values(int dimension) {
+        return values[dimension];
+    }
+
+    /**
+     * 第index个组合中各维度的取值下标
+     */
+    void digits(long index, int[] digits) {
+        for (int d = names.length - 1; d >= 0; d--) {
+            digits[d] = (int) (index % values[d].length);
+            index /= values[d].length;
+        }
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder("BindingMatrix{");
+        for (int d = 0; d < names.length; d++) {
+            sb.append(d > 0 ? " × " : "").append(names[d]).append('[').append(values[d].length).append(']');
+        }
+        return sb.append(", size=").append(size).append('}').toString();
+    }
+
+    public static final class Builder {
+        private final Map<String, String[]> dimensions = new LinkedHashMap<>();
+
+        private Builder() {
+        }
+
+        /**
+         * 增加一个维度
+         *
+         * @param name   参数名，与{@link PromHelper#param(String)}一致
+         * @param values 取值，不能为空，null元素不允许
+         */
+        public Builder dimension(String name, Collection<?> values) {
+            Asserts.notBlank(name, "name must not be empty");
+            Asserts.isTrue(values != null && !values.isEmpty(), "values of " + name + " must not be empty");
+            Asserts.isTrue(!dimensions.containsKey(name), "duplicate dimension: " + name);
+            List<String> strs = new ArrayList<>(values.size());
+            for (Object value : values) {
+                Asserts.notNull(value, "values of " + name + " must not contain null");
+                strs.add(value.toString());
+            }
+            dimensions.put(name, strs.toArray(new String[0]));
+            return this;
+        }
+
+        /**
+         * 所有组合共用的参数值
+         */
+        public Builder fixed(String name, Object value) {
+            return dimension(name, Collections.singletonList(value));
+        }
+
+        public BindingMatrix build() {
+            return new BindingMatrix(this);
+        }
+    }
+}
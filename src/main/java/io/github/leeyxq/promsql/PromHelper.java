@@ -1,12 +1,36 @@
 package io.github.leeyxq.promsql;
 
+import io.github.leeyxq.promsql.ast.AggregateExpr;
+import io.github.leeyxq.promsql.ast.BinaryExpr;
+import io.github.leeyxq.promsql.ast.BinaryOp;
+import io.github.leeyxq.promsql.ast.Call;
+import io.github.leeyxq.promsql.ast.Expr;
+import io.github.leeyxq.promsql.ast.ExprFingerprint;
+import io.github.leeyxq.promsql.ast.ExprNormalizer;
+import io.github.leeyxq.promsql.ast.ExprRewriter;
+import io.github.leeyxq.promsql.ast.LabelMatcher;
+import io.github.leeyxq.promsql.ast.MatchOp;
+import io.github.leeyxq.promsql.ast.MatcherOptimizer;
+import io.github.leeyxq.promsql.ast.MatrixSelector;
+import io.github.leeyxq.promsql.ast.NumberLiteral;
+import io.github.leeyxq.promsql.ast.PromPrinter;
+import io.github.leeyxq.promsql.ast.RawSuffixExpr;
+import io.github.leeyxq.promsql.ast.StringLiteral;
+import io.github.leeyxq.promsql.ast.SubqueryExpr;
+import io.github.leeyxq.promsql.ast.VectorMatching;
+import io.github.leeyxq.promsql.ast.VectorSelector;
+import io.github.leeyxq.promsql.metrics.PromSqlMetrics;
+import io.github.leeyxq.promsql.parser.PromParser;
+import io.github.leeyxq.promsql.rule.RecordingRuleGenerator;
+import io.github.leeyxq.promsql.rule.RecordingRules;
 import io.github.leeyxq.promsql.util.Asserts;
 
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
-import java.util.Optional;
-import java.util.stream.Collectors;
+import java.util.TreeSet;
 
 import io.github.leeyxq.promsql.util.StrUtil;
 import lombok.AllArgsConstructor;
@@ -24,17 +48,53 @@ import lombok.extern.slf4j.Slf4j;
 @Slf4j
 @UtilityClass
 public class PromHelper {
+    /**
+     * 时间区间占位符，需自行替换，不是{@link PromSqlBuilder#compile()}的模板参数
+     */
     public static final String DURATION = "${duration}";
+    /**
+     * 区间查询的step，由{@link io.github.leeyxq.promsql.client.QueryRange}在生成请求时替换，类似Grafana的$__interval
+     */
+    public static final String INTERVAL = PromTemplate.PARAM_PREFIX + "__interval}";
+    /**
+     * rate、increase等函数的时间窗口，由{@link io.github.leeyxq.promsql.client.QueryRange}按step和采集间隔替换，类似Grafana的$__rate_interval，
+     * 如rate(PromHelper.RATE_INTERVAL)
+     */
+    public static final String RATE_INTERVAL = PromTemplate.PARAM_PREFIX + "__rate_interval}";
+    /**
+     * 区间查询的时间跨度，由{@link io.github.leeyxq.promsql.client.QueryRange}在生成请求时替换，类似Grafana的$__range
+     */
+    public static final String RANGE = PromTemplate.PARAM_PREFIX + "__range}";
 
     /**
      * 获取一个PromSqlBuilder实例
      *
      * @return PromSqlBuilder实例
      */
-    PromSqlBuilder sqlBuilder() {
+    public PromSqlBuilder sqlBuilder() {
         return new PromSqlBuilder();
     }
 
+    /**
+     * 获取模板参数占位符，可用于label值、时间区间、offset、topk/bottomk参数，配合{@link PromSqlBuilder#compile()}使用
+     *
+     * @param name 参数名，如tenant
+     * @return 参数占位符，如${:tenant}
+     */
+    public String param(String name) {
+        return PromTemplate.param(name);
+    }
+
+    /**
+     * 解析已有的PromQL为表达式树，如Grafana面板、告警规则中的查询
+     *
+     * @param promSql 查询文本
+     * @return 表达式树
+     */
+    public Expr parse(String promSql) {
+        return PromParser.parse(promSql);
+    }
+
     public static final class PromSqlBuilder {
         /*
         <aggr-op> [without|by (<label list>)] ([parameter,] <vector expression>)
@@ -54,6 +114,18 @@ public class PromHelper {
         quantile (calculate φ-quantile (0 ≤ φ ≤ 1) over dimensions)
         */
         private final List<BaseOp> opCaches = new ArrayList<>();
+        /**
+         * 是否输出规范化后的查询
+         */
+        private boolean normalize;
+        /**
+         * 是否输出label条件优化后的查询
+         */
+        private boolean optimize;
+        /**
+         * 预计算规则，构建时把相同的子表达式改写为预计算序列
+         */
+        private RecordingRules recordingRules;
 
         private PromSqlBuilder() {
         }
@@ -64,12 +136,74 @@ public class PromHelper {
             return this;
         }
 
+        /**
+         * offset修饰，紧跟在{@link #subquery(String, String)}之后时作用于该子查询，否则作用于指标选择器
+         *
+         * @param offset 时间偏移，如5m、-1w
+         * @return PromSqlBuilder
+         */
         public PromSqlBuilder offset(final String offset) {
             Asserts.notBlank(offset, "offset must not be empty");
-            opCaches.add(new OffsetOp(offset));
+            SubqueryOp subqueryOp = lastSubquery();
+            if (subqueryOp != null) {
+                Asserts.isTrue(subqueryOp.offset == null, "offset already specified for subquery");
+                subqueryOp.offset = offset;
+            } else {
+                opCaches.add(new OffsetOp(offset));
+            }
+            return this;
+        }
+
+        /**
+         * &#64;修饰，固定求值时刻，紧跟在{@link #subquery(String, String)}之后时作用于该子查询，否则作用于指标选择器
+         *
+         * @param timestamp Unix时间戳（秒），或start()、end()表示区间查询的起止时刻
+         * @return PromSqlBuilder
+         */
+        public PromSqlBuilder at(final String timestamp) {
+            Asserts.notBlank(timestamp, "timestamp must not be empty");
+            SubqueryOp subqueryOp = lastSubquery();
+            if (subqueryOp != null) {
+                Asserts.isTrue(subqueryOp.at == null, "@ already specified for subquery");
+                subqueryOp.at = timestamp;
+            } else {
+                opCaches.add(new AtOp(timestamp));
+            }
+            return this;
+        }
+
+        /**
+         * @param epochSeconds Unix时间戳（秒）
+         * @return PromSqlBuilder
+         * @see #at(String)
+         */
+        public PromSqlBuilder at(long epochSeconds) {
+            return at(Long.toString(epochSeconds));
+        }
+
+        /**
+         * 子查询，在服务端按resolution对当前表达式多次求值得到区间向量，再由外层的*_over_time等函数处理，
+         * 如max_over_time(rate(http_requests_total[5m])[1d:5m])，代替在客户端逐段发送瞬时查询
+         *
+         * @param range      时间区间，如1d
+         * @param resolution 求值间隔，如5m，为空时使用Prometheus全局的evaluation_interval
+         * @return PromSqlBuilder
+         */
+        public PromSqlBuilder subquery(final String range, final String resolution) {
+            Asserts.notBlank(range, "range must not be empty");
+            opCaches.add(new SubqueryOp(range, resolution));
             return this;
         }
 
+        public PromSqlBuilder subquery(final String range) {
+            return subquery(range, null);
+        }
+
+        private SubqueryOp lastSubquery() {
+            BaseOp last = opCaches.isEmpty() ? null : opCaches.get(opCaches.size() - 1);
+            return last instanceof SubqueryOp ? (SubqueryOp) last : null;
+        }
+
         //==================查询条件-开始==================
         public PromSqlBuilder eq(final String label, final String value) {
             return eq(true, label, value);
@@ -80,6 +214,7 @@ public class PromHelper {
             if (!condition) {
                 return this;
             }
+            Asserts.notNull(value, "value of label " + label + " must not be null");
             opCaches.add(new LabelOp("=", label, value));
             return this;
         }
@@ -93,6 +228,7 @@ public class PromHelper {
             if (!condition) {
                 return this;
             }
+            Asserts.notNull(value, "value of label " + label + " must not be null");
             opCaches.add(new LabelOp("!=", label, value));
             return this;
         }
@@ -122,6 +258,7 @@ public class PromHelper {
             if (!condition) {
                 return this;
             }
+            Asserts.notNull(value, "value of label " + label + " must not be null");
             opCaches.add(new LabelOp("=~", label, value));
             return this;
         }
@@ -135,10 +272,79 @@ public class PromHelper {
             if (!condition) {
                 return this;
             }
+            Asserts.notNull(value, "value of label " + label + " must not be null");
             opCaches.add(new LabelOp("!~", label, value));
             return this;
         }
 
+        /**
+         * label值属于给定集合，生成字面量多选正则（元字符已转义），只有一个值时生成=
+         *
+         * @param label  label名
+         * @param values label值，按字面量处理，多个值时不能含模板参数
+         * @return PromSqlBuilder
+         */
+        public PromSqlBuilder in(String label, String... values) {
+            return in(true, label, values);
+        }
+
+        public PromSqlBuilder in(boolean condition, String label, String... values) {
+            Asserts.notEmpty(values, "values must not be empty");
+            return in(condition, label, Arrays.asList(values));
+        }
+
+        public PromSqlBuilder in(String label, Collection<String> values) {
+            return in(true, label, values);
+        }
+
+        public PromSqlBuilder in(boolean condition, String label, Collection<String> values) {
+            return set(condition, label, values, false);
+        }
+
+        /**
+         * label值不属于给定集合，生成字面量多选正则（元字符已转义），只有一个值时生成!=
+         *
+         * @param label  label名
+         * @param values label值，按字面量处理，多个值时不能含模板参数
+         * @return PromSqlBuilder
+         */
+        public PromSqlBuilder notIn(String label, String... values) {
+            return notIn(true, label, values);
+        }
+
+        public PromSqlBuilder notIn(boolean condition, String label, String... values) {
+            Asserts.notEmpty(values, "values must not be empty");
+            return notIn(condition, label, Arrays.asList(values));
+        }
+
+        public PromSqlBuilder notIn(String label, Collection<String> values) {
+            return notIn(true, label, values);
+        }
+
+        public PromSqlBuilder notIn(boolean condition, String label, Collection<String> values) {
+            return set(condition, label, values, true);
+        }
+
+        private PromSqlBuilder set(boolean condition, String label, Collection<String> values, boolean negative) {
+            Asserts.notBlank(label, "label must not be empty");
+            Asserts.notEmpty(values, "values must not be empty");
+            if (!condition) {
+                return this;
+            }
+            TreeSet<String> distinct = new TreeSet<>(values);
+            if (distinct.size() == 1) {
+                opCaches.add(new LabelOp(negative ? "!=" : "=", label, distinct.first()));
+            } else {
+                // 占位符会与其他值一起被转义，编译后不再是参数
+                for (String value : distinct) {
+                    Asserts.isTrue(!PromTemplate.containsParam(value), "template param " + value + " cannot be combined with other values in "
+                            + (negative ? "notIn" : "in") + ", bind the whole set as one param with " + (negative ? "notRegex" : "regex") + "() instead");
+                }
+                opCaches.add(new LabelOp(negative ? "!~" : "=~", label, MatcherOptimizer.literalSet(distinct)));
+            }
+            return this;
+        }
+
         //==================查询条件-结束==================
 
         //==================聚合操作-开始==================
@@ -187,21 +393,35 @@ public class PromHelper {
         public PromSqlBuilder countValues(String label) {
             //count_values("version", build_version)
             Asserts.notBlank(label, "label is required");
-            opCaches.add(new AggOp("count_values(\"" + label + "\", %s)"));
+            opCaches.add(new AggOp("count_values", true, new StringLiteral(label)));
             return this;
         }
 
         public PromSqlBuilder topk(Integer top) {
             //topk(3, sum by (app, proc) (rate(instance_cpu_time_ns[5m])))
             Asserts.notNull(top, "top is required");
-            opCaches.add(new AggOp("topk(" + top + ", %s)"));
+            opCaches.add(new AggOp("topk", true, new NumberLiteral(top.toString())));
+            return this;
+        }
+
+        public PromSqlBuilder topk(String top) {
+            //topk(${k}, http_requests_total)
+            Asserts.notBlank(top, "top is required");
+            opCaches.add(new AggOp("topk", true, new NumberLiteral(top)));
             return this;
         }
 
         public PromSqlBuilder bottomk(Integer bottom) {
             //topk(3, sum by (app, proc) (rate(instance_cpu_time_ns[5m])))
             Asserts.notNull(bottom, "bottom is required");
-            opCaches.add(new AggOp("bottomk(" + bottom + ", %s)"));
+            opCaches.add(new AggOp("bottomk", true, new NumberLiteral(bottom.toString())));
+            return this;
+        }
+
+        public PromSqlBuilder bottomk(String bottom) {
+            //bottomk(${k}, http_requests_total)
+            Asserts.notBlank(bottom, "bottom is required");
+            opCaches.add(new AggOp("bottomk", true, new NumberLiteral(bottom)));
             return this;
         }
 
@@ -215,11 +435,8 @@ public class PromHelper {
          */
         public PromSqlBuilder agg(String agg, boolean isBy, String... labels) {
             //<aggr-op> [without|by (<label list>)] ([parameter,] <vector expression>) or  <aggr-op>([parameter,] <vector expression>) [without|by (<label list>)]
-            if (labels.length == 0) {
-                opCaches.add(new AggOp(agg + "(%s)"));
-                return this;
-            }
-            opCaches.add(new AggOp(agg + (isBy ? " by" : " without") + "(" + String.join(", ", labels) + ")(%s)"));
+            Asserts.notBlank(agg, "agg is required");
+            opCaches.add(new AggOp(agg, isBy, null, labels));
             return this;
         }
         //==================聚合操作-结束==================
@@ -268,7 +485,8 @@ public class PromHelper {
          */
         public PromSqlBuilder fn(String functionName) {
             //abs(v instant-vector)
-            opCaches.add(new AggOp(functionName + "(%s)"));
+            Asserts.notBlank(functionName, "functionName is required");
+            opCaches.add(new FnOp(functionName));
             return this;
         }
 
@@ -282,59 +500,447 @@ public class PromHelper {
         public PromSqlBuilder fn(String functionName, String duration) {
             //delta(cpu_temp_celsius{host="zeus"}[2h])
             Asserts.notBlank(duration, "duration is required");
-            opCaches.add(new DurationAggOp(functionName + "(%s)", duration));
+            Asserts.notBlank(functionName, "functionName is required");
+            for (BaseOp baseOp : opCaches) {
+                // 时间区间只能作用于指标选择器，二元运算的结果需先转为子查询
+                Asserts.isTrue(!(baseOp instanceof BinOp), functionName + "(..., " + duration + ") after a binary operation is not allowed, "
+                        + "use subquery(\"" + duration + "\").fn(\"" + functionName + "\") instead");
+            }
+            opCaches.add(new DurationFnOp(functionName, duration));
             return this;
         }
         //==================函数操作-结束==================
 
+        //==================二元运算-开始==================
+
+        /**
+         * 以当前表达式为左操作数、other为右操作数做二元运算，运算在Prometheus内完成，一次查询即可得到结果，
+         * 如instance_memory_limit_bytes - instance_memory_usage_bytes
+         * <p>
+         * 右操作数在调用时转换为表达式树，之后修改other不影响本查询；之后的聚合、函数包裹整个运算结果，
+         * 带时间区间的函数（如rate）不能用于运算结果，需先转为子查询：subquery("5m").fn("rate")。
+         * 紧随其后可调用{@link #on}、{@link #ignoring}、{@link #groupLeft}、{@link #groupRight}、{@link #bool()}指定匹配方式
+         *
+         * @param operator 运算符，如+、/、>、and、unless
+         * @param other    右操作数
+         * @return PromSqlBuilder
+         */
+        public PromSqlBuilder binary(String operator, PromSqlBuilder other) {
+            Asserts.notNull(other, "other is required");
+            opCaches.add(new BinOp(BinaryOp.of(operator), other.toRewrittenExpr(), other.estimateLength()));
+            return this;
+        }
+
+        /**
+         * 与标量做二元运算，如除以1024、大于0.5，代替last(" / 1024")拼接
+         *
+         * @param operator 运算符，不能为集合运算符
+         * @param value    标量
+         * @return PromSqlBuilder
+         */
+        public PromSqlBuilder binary(String operator, Number value) {
+            Asserts.notNull(value, "value is required");
+            BinaryOp op = BinaryOp.of(operator);
+            Asserts.isTrue(!op.isSetOperator(), "set operator " + operator + " not allowed between vector and scalar");
+            String text = numberText(value);
+            opCaches.add(new BinOp(op, new NumberLiteral(text), text.length()));
+            return this;
+        }
+
+        public PromSqlBuilder add(PromSqlBuilder other) {
+            return binary("+", other);
+        }
+
+        public PromSqlBuilder add(Number value) {
+            return binary("+", value);
+        }
+
+        public PromSqlBuilder sub(PromSqlBuilder other) {
+            return binary("-", other);
+        }
+
+        public PromSqlBuilder sub(Number value) {
+            return binary("-", value);
+        }
+
+        public PromSqlBuilder mul(PromSqlBuilder other) {
+            return binary("*", other);
+        }
+
+        public PromSqlBuilder mul(Number value) {
+            return binary("*", value);
+        }
+
+        public PromSqlBuilder div(PromSqlBuilder other) {
+            return binary("/", other);
+        }
+
+        public PromSqlBuilder div(Number value) {
+            return binary("/", value);
+        }
+
+        public PromSqlBuilder mod(PromSqlBuilder other) {
+            return binary("%", other);
+        }
+
+        public PromSqlBuilder mod(Number value) {
+            return binary("%", value);
+        }
+
+        public PromSqlBuilder pow(PromSqlBuilder other) {
+            return binary("^", other);
+        }
+
+        public PromSqlBuilder pow(Number value) {
+            return binary("^", value);
+        }
+
+        public PromSqlBuilder eql(PromSqlBuilder other) {
+            return binary("==", other);
+        }
+
+        public PromSqlBuilder eql(Number value) {
+            return binary("==", value);
+        }
+
+        public PromSqlBuilder neq(PromSqlBuilder other) {
+            return binary("!=", other);
+        }
+
+        public PromSqlBuilder neq(Number value) {
+            return binary("!=", value);
+        }
+
+        public PromSqlBuilder gt(PromSqlBuilder other) {
+            return binary(">", other);
+        }
+
+        public PromSqlBuilder gt(Number value) {
+            return binary(">", value);
+        }
+
+        public PromSqlBuilder gte(PromSqlBuilder other) {
+            return binary(">=", other);
+        }
+
+        public PromSqlBuilder gte(Number value) {
+            return binary(">=", value);
+        }
+
+        public PromSqlBuilder lt(PromSqlBuilder other) {
+            return binary("<", other);
+        }
+
+        public PromSqlBuilder lt(Number value) {
+            return binary("<", value);
+        }
+
+        public PromSqlBuilder lte(PromSqlBuilder other) {
+            return binary("<=", other);
+        }
+
+        public PromSqlBuilder lte(Number value) {
+            return binary("<=", value);
+        }
+
+        public PromSqlBuilder and(PromSqlBuilder other) {
+            return binary("and", other);
+        }
+
+        public PromSqlBuilder or(PromSqlBuilder other) {
+            return binary("or", other);
+        }
+
+        public PromSqlBuilder unless(PromSqlBuilder other) {
+            return binary("unless", other);
+        }
+
+        /**
+         * 比较运算返回0/1而不是过滤序列，如up == bool 1
+         *
+         * @return PromSqlBuilder
+         */
+        public PromSqlBuilder bool() {
+            BinOp binOp = lastBinary("bool");
+            Asserts.isTrue(binOp.op.isComparison(), "bool modifier can only be used on comparison operators");
+            binOp.returnBool = true;
+            return this;
+        }
+
+        /**
+         * 只按给定label匹配左右两侧的序列
+         *
+         * @param labels 匹配的label，可为空
+         * @return PromSqlBuilder
+         */
+        public PromSqlBuilder on(String... labels) {
+            return matching("on", true, labels);
+        }
+
+        /**
+         * 匹配时忽略给定label
+         *
+         * @param labels 忽略的label，可为空
+         * @return PromSqlBuilder
+         */
+        public PromSqlBuilder ignoring(String... labels) {
+            return matching("ignoring", false, labels);
+        }
+
+        /**
+         * 多对一匹配，左侧多条序列对应右侧一条，可从右侧带入label，如
+         * {@code a / on(instance) group_left(job) b}；未指定on/ignoring时等同ignoring()
+         *
+         * @param labels 从右侧带入的label，可为空
+         * @return PromSqlBuilder
+         */
+        public PromSqlBuilder groupLeft(String... labels) {
+            return group("group_left", VectorMatching.Cardinality.MANY_TO_ONE, labels);
+        }
+
+        /**
+         * 一对多匹配，右侧多条序列对应左侧一条，可从左侧带入label
+         *
+         * @param labels 从左侧带入的label，可为空
+         * @return PromSqlBuilder
+         * @see #groupLeft(String...)
+         */
+        public PromSqlBuilder groupRight(String... labels) {
+            return group("group_right", VectorMatching.Cardinality.ONE_TO_MANY, labels);
+        }
+
+        private PromSqlBuilder matching(String modifier, boolean on, String... labels) {
+            BinOp binOp = lastVectorBinary(modifier);
+            Asserts.isTrue(binOp.on == null, "on/ignoring already specified");
+            binOp.on = on;
+            binOp.labels = labels;
+            return this;
+        }
+
+        private PromSqlBuilder group(String modifier, VectorMatching.Cardinality cardinality, String... labels) {
+            BinOp binOp = lastVectorBinary(modifier);
+            Asserts.isTrue(!binOp.op.isSetOperator(), modifier + " not allowed with set operator " + binOp.op.getSymbol());
+            Asserts.isTrue(binOp.cardinality == VectorMatching.Cardinality.ONE_TO_ONE, "group modifier already specified");
+            binOp.cardinality = cardinality;
+            binOp.include = labels;
+            return this;
+        }
+
+        private BinOp lastBinary(String modifier) {
+            BaseOp last = opCaches.isEmpty() ? null : opCaches.get(opCaches.size() - 1);
+            Asserts.isTrue(last instanceof BinOp, modifier + " must follow a binary operation");
+            return (BinOp) last;
+        }
+
+        private BinOp lastVectorBinary(String modifier) {
+            BinOp binOp = lastBinary(modifier);
+            Asserts.isTrue(!(binOp.rhs instanceof NumberLiteral), modifier + " only allowed between two vectors");
+            return binOp;
+        }
+
+        private static String numberText(Number value) {
+            if (value instanceof Double || value instanceof Float) {
+                double d = value.doubleValue();
+                if (Double.isInfinite(d)) {
+                    return d > 0 ? "Inf" : "-Inf";
+                }
+                if (d == Math.rint(d) && Math.abs(d) < 1e15) {
+                    return Long.toString((long) d);
+                }
+            }
+            return value.toString();
+        }
+        //==================二元运算-结束==================
+
         public PromSqlBuilder last(String last) {
             opCaches.add(new LastOp(last));
             return this;
         }
 
+        /**
+         * 规范化模式：label条件、__name__多选、by/without label排序去重，时间区间以最大单位表示，
+         * 语义相同的查询生成相同的字符串
+         *
+         * @return PromSqlBuilder
+         */
+        public PromSqlBuilder normalize() {
+            this.normalize = true;
+            return this;
+        }
+
+        /**
+         * 优化模式：不含元字符的正则降级为=、!=，字面量多选去重排序，同一label的多个!=合并为集合，
+         * Prometheus对这些条件的匹配比一般正则快得多。规范化模式已包含此优化
+         *
+         * @return PromSqlBuilder
+         * @see MatcherOptimizer
+         */
+        public PromSqlBuilder optimize() {
+            this.optimize = true;
+            return this;
+        }
+
+        /**
+         * 使用预计算规则：与规则相同的子表达式改写为预计算序列名，如sum by(job)(rate(http_requests_total[5m]))改写为job:http_requests:rate5m
+         *
+         * @param rules 预计算规则，可由{@link RecordingRuleGenerator}生成
+         * @return PromSqlBuilder
+         */
+        public PromSqlBuilder useRecordingRules(RecordingRules rules) {
+            Asserts.notNull(rules, "rules must not be null");
+            this.recordingRules = rules;
+            return this;
+        }
+
         public String build() {
-            String promSql = StrUtil.EMPTY;
-            //1.指标名处理
-            List<String> metrics = opCaches.stream().filter(MetricOp.class::isInstance).flatMap(op -> Arrays.stream(((MetricOp) op).metric)).collect(Collectors.toList());
-            if (metrics.size() == 1) {
-                promSql = metrics.get(0);
-            } else {
-                opCaches.add(0, new LabelOp("=~", "__name__", String.join("|", metrics)));
+            PromSqlMetrics metrics = PromSqlMetrics.current();
+            if (metrics == null) {
+                return doBuild();
+            }
+            long start = System.nanoTime();
+            try {
+                String promSql = doBuild();
+                metrics.recordBuild(System.nanoTime() - start);
+                return promSql;
+            } catch (RuntimeException e) {
+                metrics.recordBuildError();
+                throw e;
             }
+        }
 
-            //2.label条件处理
-            List<String> labels = opCaches.stream().filter(LabelOp.class::isInstance).map(LabelOp.class::cast).map(labelOp -> String.format("%s%s\"%s\"", labelOp.label, labelOp.operator, labelOp.values.length != 0 ? labelOp.values[0] : "")).collect(Collectors.toList());
-            if (!labels.isEmpty()) {
-                promSql += "{%s}";
-                promSql = String.format(promSql, String.join(", ", labels));
+        private String doBuild() {
+            Expr expr = toRewrittenExpr();
+            if (normalize) {
+                expr = ExprNormalizer.normalize(expr);
+            } else if (optimize) {
+                expr = MatcherOptimizer.optimize(expr);
             }
+            return PromPrinter.print(expr, new StringBuilder(estimateLength())).toString();
+        }
 
-            promSql += DURATION;
+        /**
+         * 规范化后查询的64位指纹，不渲染查询字符串，可作为结果缓存、请求合并的key；
+         * 与{@link #build()}一致，按预计算规则改写后的表达式计算
+         *
+         * @return 指纹
+         */
+        public long fingerprint() {
+            return ExprFingerprint.of(ExprNormalizer.normalize(toRewrittenExpr()));
+        }
 
-            Optional<OffsetOp> offsetOp = opCaches.stream().filter(OffsetOp.class::isInstance).map(OffsetOp.class::cast).findFirst();
-            if (offsetOp.isPresent()) {
-                promSql += " offset " + offsetOp.get().offset;
-            }
+        /**
+         * 查询是否引用了区间的起止时刻（@ start()、@ end()），按表达式树判断，label值中的同样文本不算引用；
+         * last()拼接的文本只能按文本判断
+         *
+         * @return 是否引用区间的起止时刻
+         */
+        public boolean dependsOnRange() {
+            boolean[] found = new boolean[1];
+            new ExprRewriter() {
+                @Override
+                public Expr visitVectorSelector(VectorSelector expr) {
+                    found[0] |= isRangeTimestamp(expr.getAt());
+                    return expr;
+                }
+
+                @Override
+                public Expr visitSubquery(SubqueryExpr expr) {
+                    found[0] |= isRangeTimestamp(expr.getAt());
+                    return super.visitSubquery(expr);
+                }
+
+                @Override
+                public Expr visitRawSuffix(RawSuffixExpr expr) {
+                    found[0] |= expr.getSuffix().contains("start()") || expr.getSuffix().contains("end()");
+                    return super.visitRawSuffix(expr);
+                }
+            }.rewrite(toRewrittenExpr());
+            return found[0];
+        }
 
-            //3.聚合操作处理
+        private static boolean isRangeTimestamp(String at) {
+            return "start()".equals(at) || "end()".equals(at);
+        }
+
+        /**
+         * 实际发送的表达式树：设置了{@link #useRecordingRules(RecordingRules)}时为改写后的表达式，否则同{@link #toExpr()}；
+         * 估算开销、作为二元运算的右操作数时使用
+         *
+         * @return 表达式树
+         */
+        public Expr toRewrittenExpr() {
+            Expr expr = toExpr();
+            return recordingRules == null ? expr : recordingRules.rewrite(expr);
+        }
+
+        /**
+         * 编译为不可变模板，label值、时间区间等可使用{@link PromHelper#param(String)}占位，之后仅需绑定参数
+         *
+         * @return 查询模板
+         */
+        public PromTemplate compile() {
+            return PromTemplate.compile(build());
+        }
+
+        /**
+         * 转换为表达式树，便于分析、改写或缓存
+         * <p>
+         * 时间区间取第一个带时间段参数的函数，offset、@各取第一个，均作用于指标选择器（紧跟子查询的除外）；
+         * 聚合、函数、子查询及二元运算按调用顺序由内向外嵌套；多个指标时转换为__name__正则条件。
+         *
+         * @return 表达式树
+         */
+        public Expr toExpr() {
+            List<String> metrics = new ArrayList<>(1);
+            List<LabelMatcher> matchers = new ArrayList<>();
+            OffsetOp offsetOp = null;
+            AtOp atOp = null;
+            DurationFnOp durationOp = null;
+            LastOp lastOp = null;
             for (BaseOp baseOp : opCaches) {
-                if (baseOp instanceof AggOp) {
-                    AggOp agg = (AggOp) baseOp;
-                    promSql = String.format(agg.operator, promSql);
-                    if (agg instanceof DurationAggOp) {
-                        promSql = promSql.replace(DURATION, "[" + ((DurationAggOp) agg).duration + "]");
-                    }
+                if (baseOp instanceof MetricOp) {
+                    Collections.addAll(metrics, ((MetricOp) baseOp).metric);
+                } else if (baseOp instanceof LabelOp) {
+                    LabelOp labelOp = (LabelOp) baseOp;
+                    matchers.add(new LabelMatcher(labelOp.label, MatchOp.of(labelOp.operator), labelOp.value()));
+                } else if (durationOp == null && baseOp instanceof DurationFnOp) {
+                    durationOp = (DurationFnOp) baseOp;
+                } else if (offsetOp == null && baseOp instanceof OffsetOp) {
+                    offsetOp = (OffsetOp) baseOp;
+                } else if (atOp == null && baseOp instanceof AtOp) {
+                    atOp = (AtOp) baseOp;
+                } else if (lastOp == null && baseOp instanceof LastOp) {
+                    lastOp = (LastOp) baseOp;
                 }
             }
-            promSql = promSql.replace(DURATION, StrUtil.EMPTY);
 
-            //4.last操作处理
-            Optional<LastOp> lastOpList = opCaches.stream().filter(LastOp.class::isInstance).map(LastOp.class::cast).findFirst();
-            if (lastOpList.isPresent()) {
-                promSql += lastOpList.get().operator;
+            String offset = offsetOp == null ? null : offsetOp.offset;
+            String at = atOp == null ? null : atOp.operator;
+            VectorSelector selector;
+            if (metrics.size() == 1) {
+                selector = new VectorSelector(metrics.get(0), matchers, offset, at);
+            } else {
+                matchers.add(0, new LabelMatcher(LabelMatcher.METRIC_NAME, MatchOp.RE, String.join("|", metrics)));
+                selector = new VectorSelector(null, matchers, offset, at);
+            }
+            Expr expr = durationOp == null ? selector : new MatrixSelector(selector, durationOp.duration);
+            for (BaseOp baseOp : opCaches) {
+                if (baseOp instanceof WrapOp) {
+                    expr = ((WrapOp) baseOp).wrap(expr);
+                }
             }
+            return lastOp == null ? expr : new RawSuffixExpr(expr, lastOp.operator);
+        }
 
-            return promSql;
+        /**
+         * 预估查询长度，用于一次性分配输出缓冲区
+         */
+        private int estimateLength() {
+            int length = 16;
+            for (BaseOp baseOp : opCaches) {
+                length += baseOp.estimateLength();
+            }
+            return length;
         }
 
         @Data
@@ -342,6 +948,10 @@ public class PromHelper {
         private abstract static class BaseOp {
             @Getter
             public final String operator;
+
+            int estimateLength() {
+                return operator == null ? 0 : operator.length();
+            }
         }
 
         private static class MetricOp extends BaseOp {
@@ -352,6 +962,15 @@ public class PromHelper {
                 super(null);
                 this.metric = metric;
             }
+
+            @Override
+            int estimateLength() {
+                int length = 16;
+                for (String m : metric) {
+                    length += m.length() + 1;
+                }
+                return length;
+            }
         }
 
         private static class LabelOp extends BaseOp {
@@ -365,22 +984,133 @@ public class PromHelper {
                 this.label = label;
                 this.values = values;
             }
+
+            String value() {
+                return values.length != 0 ? values[0] : StrUtil.EMPTY;
+            }
+
+            @Override
+            int estimateLength() {
+                String value = value();
+                return label.length() + operator.length() + (value == null ? 0 : value.length()) + 4;
+            }
         }
 
-        private static class AggOp extends BaseOp {
-            AggOp(String operator) {
+        /**
+         * 包裹内层表达式的操作，如聚合、函数
+         */
+        private abstract static class WrapOp extends BaseOp {
+            WrapOp(String operator) {
                 super(operator);
             }
+
+            abstract Expr wrap(Expr expr);
+
+            @Override
+            int estimateLength() {
+                return operator.length() + 2;
+            }
         }
 
-        private static class DurationAggOp extends AggOp {
+        private static class AggOp extends WrapOp {
+            @Getter
+            private final boolean isBy;
+            @Getter
+            private final Expr param;
+            @Getter
+            private final String[] labels;
+
+            AggOp(String operator, boolean isBy, Expr param, String... labels) {
+                super(operator);
+                this.isBy = isBy;
+                this.param = param;
+                this.labels = labels;
+            }
+
+            @Override
+            Expr wrap(Expr expr) {
+                return new AggregateExpr(operator, expr, param, Arrays.asList(labels), !isBy);
+            }
+
+            @Override
+            int estimateLength() {
+                int length = super.estimateLength() + 10;
+                for (String label : labels) {
+                    length += label.length() + 2;
+                }
+                return length;
+            }
+        }
+
+        private static class FnOp extends WrapOp {
+            FnOp(String operator) {
+                super(operator);
+            }
+
+            @Override
+            Expr wrap(Expr expr) {
+                return new Call(operator, expr);
+            }
+        }
+
+        private static class DurationFnOp extends FnOp {
             @Getter
             private final String duration;
 
-            DurationAggOp(String operator, String duration) {
+            DurationFnOp(String operator, String duration) {
                 super(operator);
                 this.duration = duration;
             }
+
+            @Override
+            int estimateLength() {
+                return super.estimateLength() + duration.length() + 2;
+            }
+        }
+
+        /**
+         * 二元运算，当前表达式为左操作数，匹配方式由紧随其后的on/ignoring/group_left/group_right/bool设置
+         */
+        private static class BinOp extends WrapOp {
+            private final BinaryOp op;
+            private final Expr rhs;
+            private final int rhsLength;
+            private boolean returnBool;
+            /**
+             * true为on，false为ignoring，null为未指定
+             */
+            private Boolean on;
+            private String[] labels = {};
+            private VectorMatching.Cardinality cardinality = VectorMatching.Cardinality.ONE_TO_ONE;
+            private String[] include = {};
+
+            BinOp(BinaryOp op, Expr rhs, int rhsLength) {
+                super(op.getSymbol());
+                this.op = op;
+                this.rhs = rhs;
+                this.rhsLength = rhsLength;
+            }
+
+            @Override
+            Expr wrap(Expr expr) {
+                VectorMatching matching = null;
+                if (on != null || cardinality != VectorMatching.Cardinality.ONE_TO_ONE) {
+                    matching = new VectorMatching(Boolean.TRUE.equals(on), Arrays.asList(labels), cardinality, Arrays.asList(include));
+                }
+                return new BinaryExpr(op, expr, rhs, returnBool, matching);
+            }
+
+            @Override
+            int estimateLength() {
+                int length = super.estimateLength() + rhsLength + 8;
+                for (String label : labels) {
+                    length += label.length() + 2;
+                }
+                for (String label : include) {
+                    length += label.length() + 2;
+                }
+                return length;
+            }
         }
 
         private static class OffsetOp extends BaseOp {
@@ -391,6 +1121,47 @@ public class PromHelper {
                 super(null);
                 this.offset = offset;
             }
+
+            @Override
+            int estimateLength() {
+                return offset.length() + 8;
+            }
+        }
+
+        private static class AtOp extends BaseOp {
+            AtOp(String timestamp) {
+                super(timestamp);
+            }
+
+            @Override
+            int estimateLength() {
+                return operator.length() + 3;
+            }
+        }
+
+        /**
+         * 子查询，offset、@由紧随其后的offset()、at()设置
+         */
+        private static class SubqueryOp extends WrapOp {
+            private final String resolution;
+            private String offset;
+            private String at;
+
+            SubqueryOp(String range, String resolution) {
+                super(range);
+                this.resolution = resolution;
+            }
+
+            @Override
+            Expr wrap(Expr expr) {
+                return new SubqueryExpr(expr, operator, resolution, offset, at);
+            }
+
+            @Override
+            int estimateLength() {
+                return super.estimateLength() + (resolution == null ? 0 : resolution.length())
+                        + (offset == null ? 0 : offset.length() + 8) + (at == null ? 0 : at.length() + 3);
+            }
         }
 
         private static class LastOp extends BaseOp {
@@ -0,0 +1,378 @@
+package io.github.leeyxq.promsql;
+
+import io.github.leeyxq.promsql.util.Asserts;
+import io.github.leeyxq.promsql.util.StrUtil;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.stream.Stream;
+
+/**
+ * 预编译的prom查询模板，类似于PreparedStatement
+ * <p>
+ * 由{@link PromHelper.PromSqlBuilder#compile()}生成，查询结构在编译时渲染并切分为固定片段，
+ * 绑定参数时仅按片段顺序拼接，不再校验或遍历操作列表。实例不可变，可在多线程间共享。
+ * <p>
+ * 参数占位符为<code>${:name}</code>，前缀{@link #PARAM_PREFIX}保留给模板参数：label值等文本中的<code>${name}</code>
+ * （如{@link PromHelper#DURATION}）按字面量处理，不会被识别为参数。
+ *
+ * @author lixiangqian
+ * @since 2026/10/18 10:40
+ */
+public final class PromTemplate {
+    /**
+     * 参数占位符前缀，与Grafana变量、{@link PromHelper#DURATION}等${name}写法区分
+     */
+    public static final String PARAM_PREFIX = "${:";
+    private static final char PARAM_SUFFIX = '}';
+
+    /**
+     * 固定片段，长度为slots.length + 1
+     */
+    private final String[] literals;
+    /**
+     * 每个参数位置对应的参数下标（指向paramNames）
+     */
+    private final int[] slots;
+    /**
+     * 每个参数位置是否位于双引号字符串内，如label值，绑定时需转义
+     */
+    private final boolean[] quoted;
+    /**
+     * 去重后的参数名，按首次出现顺序
+     */
+    private final String[] paramNames;
+    private final int literalLength;
+
+    private PromTemplate(String[] literals, int[] slots, boolean[] quoted, String[] paramNames) {
+        this.literals = literals;
+        this.slots = slots;
+        this.quoted = quoted;
+        this.paramNames = paramNames;
+        int length = 0;
+        for (String literal : literals) {
+            length += literal.length();
+        }
+        this.literalLength = length;
+    }
+
+    /**
+     * 生成参数占位符，如param("tenant")返回${:tenant}
+     *
+     * @param name 参数名，仅支持字母、数字、下划线且不能以数字开头
+     * @return 占位符
+     */
+    static String param(String name) {
+        Asserts.isTrue(isParamName(name, 0, name == null ? 0 : name.length()), "invalid param name: " + name);
+        return PARAM_PREFIX + name + PARAM_SUFFIX;
+    }
+
+    /**
+     * 将渲染后的查询按占位符切分为模板
+     *
+     * @param promSql 含占位符的查询
+     * @return 模板
+     */
+    static PromTemplate compile(String promSql) {
+        List<String> literals = new ArrayList<>();
+        List<String> names = new ArrayList<>();
+        int[] slots = new int[8];
+        boolean[] quoted = new boolean[8];
+        int slotCount = 0;
+        int from = 0;
+        // 已扫描到的位置及此处是否在双引号字符串内
+        int scanned = 0;
+        boolean inQuote = false;
+        int start = promSql.indexOf(PARAM_PREFIX);
+        while (start >= 0) {
+            int end = promSql.indexOf(PARAM_SUFFIX, start + PARAM_PREFIX.length());
+            if (end < 0) {
+                break;
+            }
+            int nameStart = start + PARAM_PREFIX.length();
+            if (!isParamName(promSql, nameStart, end)) {
+                start = promSql.indexOf(PARAM_PREFIX, start + 1);
+                continue;
+            }
+            String name = promSql.substring(nameStart, end);
+            int index = names.indexOf(name);
+            if (index < 0) {
+                index = names.size();
+                names.add(name);
+            }
+            for (; scanned < start; scanned++) {
+                char c = promSql.charAt(scanned);
+                if (inQuote && c == '\\') {
+                    scanned++;
+                } else if (c == '"') {
+                    inQuote = !inQuote;
+                }
+            }
+            if (slotCount == slots.length) {
+                slots = Arrays.copyOf(slots, slotCount * 2);
+                quoted = Arrays.copyOf(quoted, slotCount * 2);
+            }
+            quoted[slotCount] = inQuote;
+            slots[slotCount++] = index;
+            literals.add(promSql.substring(from, start));
+            from = end + 1;
+            scanned = from;
+            start = promSql.indexOf(PARAM_PREFIX, from);
+        }
+        literals.add(promSql.substring(from));
+        return new PromTemplate(literals.toArray(new String[0]), Arrays.copyOf(slots, slotCount),
+                Arrays.copyOf(quoted, slotCount), names.toArray(new String[0]));
+    }
+
+    /**
+     * 文本中是否含有未绑定的参数占位符
+     *
+     * @param str 文本，如label值、时间区间
+     * @return 是否含有参数占位符
+     */
+    public static boolean containsParam(String str) {
+        return str != null && str.contains(PARAM_PREFIX);
+    }
+
+    private static boolean isParamName(String str, int start, int end) {
+        if (str == null || start >= end) {
+            return false;
+        }
+        for (int i = start; i < end; i++) {
+            char c = str.charAt(i);
+            boolean valid = c == '_' || (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (i > start && c >= '0' && c <= '9');
+            if (!valid) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 参数名列表，按首次出现顺序，即{@link #render(Object...)}的参数顺序
+     *
+     * @return 参数名列表
+     */
+    public List<String> getParamNames() {
+        return Collections.unmodifiableList(Arrays.asList(paramNames));
+    }
+
+    /**
+     * 按参数名绑定并生成查询
+     *
+     * @param params 参数名-参数值
+     * @return prom查询
+     */
+    public String render(Map<String, ?> params) {
+        Asserts.notNull(params, "params must not be null");
+        String[] values = new String[paramNames.length];
+        for (int i = 0; i < paramNames.length; i++) {
+            Object value = params.get(paramNames[i]);
+            Asserts.notNull(value, "param " + paramNames[i] + " is required");
+            values[i] = value.toString();
+        }
+        return render((Object[]) values);
+    }
+
+    /**
+     * 按{@link #getParamNames()}顺序绑定并生成查询，位于label值等双引号字符串内的参数自动转义
+     *
+     * @param values 参数值
+     * @return prom查询
+     */
+    public String render(Object... values) {
+        Asserts.isTrue(values != null && values.length == paramNames.length, "expected " + paramNames.length + " params: " + getParamNames());
+        String[] strs = values instanceof String[] ? (String[]) values : new String[values.length];
+        int length = literalLength;
+        for (int i = 0; i < values.length; i++) {
+            Asserts.notNull(values[i], "param " + paramNames[i] + " is required");
+            strs[i] = values[i].toString();
+        }
+        for (int slot : slots) {
+            length += strs[slot].length();
+        }
+        StringBuilder promSql = new StringBuilder(length);
+        for (int i = 0; i < slots.length; i++) {
+            promSql.append(literals[i]);
+            if (quoted[i]) {
+                StrUtil.appendEscaped(promSql, strs[slots[i]]);
+            } else {
+                promSql.append(strs[slots[i]]);
+            }
+        }
+        return promSql.append(literals[slots.length]).toString();
+    }
+
+    /**
+     * 按取值矩阵的全部组合生成查询，使用公共ForkJoinPool并行渲染
+     *
+     * @see #renderAll(BindingMatrix, QuerySink, ForkJoinPool)
+     */
+    public void renderAll(BindingMatrix matrix, QuerySink sink) {
+        renderAll(matrix, sink, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * 按取值矩阵的全部组合生成查询并逐条交给sink，不收集为列表；调用在全部查询交给sink后返回
+     * <p>
+     * 组合按下标区间拆分给ForkJoin任务，每个任务复用一个缓冲：相邻组合通常只有最后一个维度不同，
+     * 渲染时保留第一个变化参数之前的内容，只重新拼接其后的片段。
+     *
+     * @param matrix 取值矩阵，维度需与{@link #getParamNames()}一一对应
+     * @param sink   接收方，会被并发调用
+     * @param pool   执行渲染的线程池
+     */
+    public void renderAll(BindingMatrix matrix, QuerySink sink, ForkJoinPool pool) {
+        Asserts.notNull(matrix, "matrix must not be null");
+        Asserts.notNull(sink, "sink must not be null");
+        Asserts.notNull(pool, "pool must not be null");
+        int[] paramOfDimension = new int[matrix.dimensions()];
+        for (int d = 0; d < paramOfDimension.length; d++) {
+            paramOfDimension[d] = Arrays.asList(paramNames).indexOf(matrix.name(d));
+            Asserts.isTrue(paramOfDimension[d] >= 0, "unknown param " + matrix.name(d) + ", expected " + getParamNames());
+        }
+        Asserts.isTrue(paramOfDimension.length == paramNames.length, "matrix " + matrix.getNames() + " does not bind all params " + getParamNames());
+        long threshold = Math.max(256, matrix.size() / ((long) pool.getParallelism() * 8));
+        pool.invoke(new RenderTask(matrix, paramOfDimension, sink, 0, matrix.size(), threshold));
+    }
+
+    /**
+     * 逐条按参数名绑定并生成查询，流为并行流时并行渲染，每个线程复用一个缓冲
+     *
+     * @param bindings 参数名-参数值
+     * @param sink     接收方，流为并行流时会被并发调用
+     */
+    public void renderAll(Stream<? extends Map<String, ?>> bindings, QuerySink sink) {
+        Asserts.notNull(bindings, "bindings must not be null");
+        Asserts.notNull(sink, "sink must not be null");
+        ThreadLocal<Renderer> renderers = ThreadLocal.withInitial(Renderer::new);
+        bindings.forEach(params -> {
+            Renderer renderer = renderers.get();
+            for (int i = 0; i < paramNames.length; i++) {
+                Object value = params.get(paramNames[i]);
+                Asserts.notNull(value, "param " + paramNames[i] + " is required");
+                renderer.values[i] = value.toString();
+            }
+            sink.accept(renderer.values, renderer.renderFrom(0));
+        });
+    }
+
+    /**
+     * 单线程的渲染缓冲，记录每个参数位置在缓冲中的起点，以便只重新渲染变化之后的部分
+     */
+    private final class Renderer {
+        private final StringBuilder buffer = new StringBuilder(literalLength + slots.length * 16);
+        private final String[] values = new String[paramNames.length];
+        /**
+         * 第i个参数位置的值在buffer中的起点
+         */
+        private final int[] slotOffsets = new int[slots.length];
+
+        private StringBuilder renderFrom(int slot) {
+            if (slot > slots.length) {
+                // 变化的参数不出现在查询中
+                return buffer;
+            }
+            if (slot == 0) {
+                buffer.setLength(0);
+                buffer.append(literals[0]);
+            } else {
+                buffer.setLength(slotOffsets[slot]);
+            }
+            for (int i = slot; i < slots.length; i++) {
+                slotOffsets[i] = buffer.length();
+                if (quoted[i]) {
+                    StrUtil.appendEscaped(buffer, values[slots[i]]);
+                } else {
+                    buffer.append(values[slots[i]]);
+                }
+                buffer.append(literals[i + 1]);
+            }
+            return buffer;
+        }
+    }
+
+    /**
+     * 渲染下标区间[from, to)内的组合
+     */
+    private final class RenderTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final transient BindingMatrix matrix;
+        private final int[] paramOfDimension;
+        private final transient QuerySink sink;
+        private final long from;
+        private final long to;
+        private final long threshold;
+
+        private RenderTask(BindingMatrix matrix, int[] paramOfDimension, QuerySink sink, long from, long to, long threshold) {
+            this.matrix = matrix;
+            this.paramOfDimension = paramOfDimension;
+            this.sink = sink;
+            this.from = from;
+            this.to = to;
+            this.threshold = threshold;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from > threshold) {
+                long mid = (from + to) >>> 1;
+                invokeAll(new RenderTask(matrix, paramOfDimension, sink, from, mid, threshold),
+                        new RenderTask(matrix, paramOfDimension, sink, mid, to, threshold));
+                return;
+            }
+            int dimensions = paramOfDimension.length;
+            // firstSlotFrom[d]：维度d及其后任一维度变化时，第一个受影响的参数位置
+            int[] firstSlotFrom = new int[dimensions + 1];
+            firstSlotFrom[dimensions] = slots.length + 1;
+            for (int d = dimensions - 1; d >= 0; d--) {
+                firstSlotFrom[d] = Math.min(firstSlotFrom[d + 1], firstSlot(paramOfDimension[d]));
+            }
+            Renderer renderer = new Renderer();
+            int[] digits = new int[dimensions];
+            matrix.digits(from, digits);
+            for (int d = 0; d < dimensions; d++) {
+                renderer.values[paramOfDimension[d]] = matrix.values(d)[digits[d]];
+            }
+            int changedSlot = 0;
+            for (long index = from; index < to; index++) {
+                if (index > from) {
+                    // 里程表式递增，最后一个维度变化最快
+                    int d = dimensions - 1;
+                    while (++digits[d] == matrix.values(d).length) {
+                        digits[d] = 0;
+                        renderer.values[paramOfDimension[d]] = matrix.values(d)[0];
+                        d--;
+                    }
+                    renderer.values[paramOfDimension[d]] = matrix.values(d)[digits[d]];
+                    changedSlot = firstSlotFrom[d];
+                }
+                sink.accept(renderer.values, index == from ? renderer.renderFrom(0) : renderer.renderFrom(changedSlot));
+            }
+        }
+
+        private int firstSlot(int param) {
+            for (int i = 0; i < slots.length; i++) {
+                if (slots[i] == param) {
+                    return i;
+                }
+            }
+            return slots.length + 1;
+        }
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder promSql = new StringBuilder(literalLength + slots.length * 16);
+        for (int i = 0; i < slots.length; i++) {
+            promSql.append(literals[i]).append(PARAM_PREFIX).append(paramNames[slots[i]]).append(PARAM_SUFFIX);
+        }
+        return promSql.append(literals[slots.length]).toString();
+    }
+}
@@ -0,0 +1,19 @@
+package io.github.leeyxq.promsql;
+
+/**
+ * 批量生成查询的接收方，由多个线程并发调用，实现需线程安全
+ *
+ * @author lixiangqian
+ * @since 2026/10/19 00:30
+ */
+@FunctionalInterface
+public interface QuerySink {
+
+    /**
+     * 接收一条查询。两个参数均为渲染线程复用的缓冲，只在本次调用内有效，需要保留时应复制（如promSql.toString()）
+     *
+     * @param values  本条查询的参数值，按{@link PromTemplate#getParamNames()}顺序
+     * @param promSql 查询
+     */
+    void accept(String[] values, CharSequence promSql);
+}
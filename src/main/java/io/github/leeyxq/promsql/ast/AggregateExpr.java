@@ -0,0 +1,52 @@
+package io.github.leeyxq.promsql.ast;
+
+import io.github.leeyxq.promsql.util.Asserts;
+import lombok.Value;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * 聚合操作，如sum by(job)(x)、topk(5, x)、count_values("version", x)
+ *
+ * @author lixiangqian
+ * @since 2026/10/18 11:00
+ */
+@Value
+public class AggregateExpr implements Expr {
+    /**
+     * 聚合函数，如sum、topk
+     */
+    String op;
+    Expr expr;
+    /**
+     * 聚合参数，如topk的k、quantile的φ，可为null
+     */
+    Expr param;
+    List<String> grouping;
+    /**
+     * true为without，false为by
+     */
+    boolean without;
+
+    public AggregateExpr(String op, Expr expr, Expr param, List<String> grouping, boolean without) {
+        Asserts.notBlank(op, "aggregation operator is required");
+        Asserts.notNull(expr, "expr is required");
+        this.op = op;
+        this.expr = expr;
+        this.param = param;
+        this.grouping = grouping == null || grouping.isEmpty() ? Collections.emptyList() : Collections.unmodifiableList(new ArrayList<>(grouping));
+        this.without = without;
+    }
+
+    @Override
+    public <R> R accept(ExprVisitor<R> visitor) {
+        return visitor.visitAggregate(this);
+    }
+
+    @Override
+    public String toString() {
+        return PromPrinter.print(this);
+    }
+}
@@ -0,0 +1,51 @@
+package io.github.leeyxq.promsql.ast;
+
+import io.github.leeyxq.promsql.util.Asserts;
+import lombok.Value;
+
+/**
+ * 二元操作，如a - b、a / on(instance) group_left b、a > bool 0
+ *
+ * @author lixiangqian
+ * @since 2026/10/18 11:00
+ */
+@Value
+public class BinaryExpr implements Expr {
+    BinaryOp op;
+    Expr lhs;
+    Expr rhs;
+    /**
+     * 比较操作是否带bool修饰
+     */
+    boolean returnBool;
+    /**
+     * 向量匹配方式，可为null
+     */
+    VectorMatching matching;
+
+    public BinaryExpr(BinaryOp op, Expr lhs, Expr rhs, boolean returnBool, VectorMatching matching) {
+        Asserts.notNull(op, "binary operator is required");
+        Asserts.notNull(lhs, "lhs is required");
+        Asserts.notNull(rhs, "rhs is required");
+        Asserts.isTrue(!returnBool || op.isComparison(), "bool modifier can only be used on comparison operators");
+        this.op = op;
+        this.lhs = lhs;
+        this.rhs = rhs;
+        this.returnBool = returnBool;
+        this.matching = matching;
+    }
+
+    public BinaryExpr(BinaryOp op, Expr lhs, Expr rhs) {
+        this(op, lhs, rhs, false, null);
+    }
+
+    @Override
+    public <R> R accept(ExprVisitor<R> visitor) {
+        return visitor.visitBinary(this);
+    }
+
+    @Override
+    public String toString() {
+        return PromPrinter.print(this);
+    }
+}
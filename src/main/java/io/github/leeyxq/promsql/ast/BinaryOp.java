@@ -0,0 +1,62 @@
+package io.github.leeyxq.promsql.ast;
+
+import lombok.Getter;
+
+/**
+ * 二元操作符，precedence越大优先级越高
+ *
+ * @author lixiangqian
+ * @since 2026/10/18 11:00
+ */
+public enum BinaryOp {
+    OR("or", 1),
+    AND("and", 2),
+    UNLESS("unless", 2),
+    EQL("==", 3),
+    NEQ("!=", 3),
+    GTR(">", 3),
+    LSS("<", 3),
+    GTE(">=", 3),
+    LTE("<=", 3),
+    ADD("+", 4),
+    SUB("-", 4),
+    MUL("*", 5),
+    DIV("/", 5),
+    MOD("%", 5),
+    ATAN2("atan2", 5),
+    POW("^", 6);
+
+    @Getter
+    private final String symbol;
+    @Getter
+    private final int precedence;
+
+    BinaryOp(String symbol, int precedence) {
+        this.symbol = symbol;
+        this.precedence = precedence;
+    }
+
+    public static BinaryOp of(String symbol) {
+        for (BinaryOp op : values()) {
+            if (op.symbol.equals(symbol)) {
+                return op;
+            }
+        }
+        throw new IllegalArgumentException("unknown binary operator: " + symbol);
+    }
+
+    public boolean isComparison() {
+        return precedence == 3;
+    }
+
+    public boolean isSetOperator() {
+        return this == OR || this == AND || this == UNLESS;
+    }
+
+    /**
+     * 仅^为右结合
+     */
+    public boolean isRightAssociative() {
+        return this == POW;
+    }
+}
@@ -0,0 +1,42 @@
+package io.github.leeyxq.promsql.ast;
+
+import io.github.leeyxq.promsql.util.Asserts;
+import lombok.Value;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * 函数调用，如rate(http_requests_total[5m])
+ *
+ * @author lixiangqian
+ * @since 2026/10/18 11:00
+ */
+@Value
+public class Call implements Expr {
+    String function;
+    List<Expr> args;
+
+    public Call(String function, Expr... args) {
+        this(function, Arrays.asList(args));
+    }
+
+    public Call(String function, List<Expr> args) {
+        Asserts.notBlank(function, "function name is required");
+        Asserts.notNull(args, "args is required");
+        this.function = function;
+        this.args = Collections.unmodifiableList(new ArrayList<>(args));
+    }
+
+    @Override
+    public <R> R accept(ExprVisitor<R> visitor) {
+        return visitor.visitCall(this);
+    }
+
+    @Override
+    public String toString() {
+        return PromPrinter.print(this);
+    }
+}
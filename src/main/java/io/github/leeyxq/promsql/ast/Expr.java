@@ -0,0 +1,22 @@
+package io.github.leeyxq.promsql.ast;
+
+/**
+ * PromQL表达式树节点
+ * <p>
+ * 所有节点均不可变，equals/hashCode按结构比较，可安全地在多个表达式间共享子树；
+ * toString()输出对应的PromQL文本。
+ *
+ * @author lixiangqian
+ * @since 2026/10/18 11:00
+ */
+public interface Expr {
+
+    /**
+     * 访问者模式入口
+     *
+     * @param visitor 访问者
+     * @param <R>     返回值类型
+     * @return 访问结果
+     */
+    <R> R accept(ExprVisitor<R> visitor);
+}
@@ -0,0 +1,189 @@
+package io.github.leeyxq.promsql.ast;
+
+import java.util.List;
+
+/**
+ * 表达式64位指纹，直接遍历表达式树计算，无需渲染查询字符串
+ * <p>
+ * 基于FNV-1a并在结尾做一次位混合，结果与JVM实例无关，可用作跨进程的缓存key；
+ * 需要忽略写法差异时先经{@link ExprNormalizer}规范化。
+ *
+ * @author lixiangqian
+ * @since 2026/10/18 14:00
+ */
+public final class ExprFingerprint implements ExprVisitor<Void> {
+    private static final long OFFSET_BASIS = 0xcbf29ce484222325L;
+    private static final long PRIME = 0x100000001b3L;
+    /**
+     * 字符串结束标记，避免相邻字段拼接产生歧义
+     */
+    private static final char END = '\uffff';
+    private static final char NULL = '\ufffe';
+
+    private long hash = OFFSET_BASIS;
+
+    private ExprFingerprint() {
+    }
+
+    public static long of(Expr expr) {
+        ExprFingerprint fingerprint = new ExprFingerprint();
+        expr.accept(fingerprint);
+        return mix(fingerprint.hash);
+    }
+
+    @Override
+    public Void visitVectorSelector(VectorSelector expr) {
+        tag(1);
+        string(expr.getMetricName());
+        List<LabelMatcher> matchers = expr.getMatchers();
+        tag(matchers.size());
+        for (LabelMatcher matcher : matchers) {
+            string(matcher.getName());
+            tag(matcher.getOp().ordinal());
+            string(matcher.getValue());
+        }
+        string(expr.getOffset());
+        at(expr.getAt());
+        return null;
+    }
+
+    @Override
+    public Void visitMatrixSelector(MatrixSelector expr) {
+        tag(2);
+        expr.getSelector().accept(this);
+        string(expr.getRange());
+        return null;
+    }
+
+    @Override
+    public Void visitSubquery(SubqueryExpr expr) {
+        tag(10);
+        expr.getExpr().accept(this);
+        string(expr.getRange());
+        string(expr.getStep());
+        string(expr.getOffset());
+        at(expr.getAt());
+        return null;
+    }
+
+    @Override
+    public Void visitCall(Call expr) {
+        tag(3);
+        string(expr.getFunction());
+        tag(expr.getArgs().size());
+        for (Expr arg : expr.getArgs()) {
+            arg.accept(this);
+        }
+        return null;
+    }
+
+    @Override
+    public Void visitAggregate(AggregateExpr expr) {
+        tag(4);
+        string(expr.getOp());
+        tag(expr.isWithout() ? 1 : 0);
+        labels(expr.getGrouping());
+        if (expr.getParam() == null) {
+            tag(0);
+        } else {
+            tag(1);
+            expr.getParam().accept(this);
+        }
+        expr.getExpr().accept(this);
+        return null;
+    }
+
+    @Override
+    public Void visitBinary(BinaryExpr expr) {
+        tag(5);
+        tag(expr.getOp().ordinal());
+        tag(expr.isReturnBool() ? 1 : 0);
+        VectorMatching matching = expr.getMatching();
+        if (matching == null) {
+            tag(0);
+        } else {
+            tag(matching.isOn() ? 1 : 2);
+            labels(matching.getLabels());
+            tag(matching.getCardinality().ordinal());
+            labels(matching.getInclude());
+        }
+        expr.getLhs().accept(this);
+        expr.getRhs().accept(this);
+        return null;
+    }
+
+    @Override
+    public Void visitUnary(UnaryExpr expr) {
+        tag(6);
+        tag(expr.getOp().ordinal());
+        expr.getExpr().accept(this);
+        return null;
+    }
+
+    @Override
+    public Void visitNumber(NumberLiteral expr) {
+        tag(7);
+        string(expr.getText());
+        return null;
+    }
+
+    @Override
+    public Void visitString(StringLiteral expr) {
+        tag(8);
+        string(expr.getValue());
+        return null;
+    }
+
+    @Override
+    public Void visitRawSuffix(RawSuffixExpr expr) {
+        tag(9);
+        expr.getExpr().accept(this);
+        string(expr.getSuffix());
+        return null;
+    }
+
+    /**
+     * 只在有@修饰时计入，不含@的表达式指纹保持不变
+     */
+    private void at(String at) {
+        if (at != null) {
+            tag(11);
+            string(at);
+        }
+    }
+
+    private void labels(List<String> labels) {
+        tag(labels.size());
+        for (String label : labels) {
+            string(label);
+        }
+    }
+
+    private void tag(int value) {
+        hash = (hash ^ value) * PRIME;
+    }
+
+    private void string(String str) {
+        long h = hash;
+        if (str == null) {
+            h = (h ^ NULL) * PRIME;
+        } else {
+            for (int i = 0; i < str.length(); i++) {
+                h = (h ^ str.charAt(i)) * PRIME;
+            }
+        }
+        hash = (h ^ END) * PRIME;
+    }
+
+    /**
+     * MurmurHash3 fmix64，改善低位分布
+     */
+    private static long mix(long h) {
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+}
@@ -0,0 +1,69 @@
+package io.github.leeyxq.promsql.ast;
+
+import io.github.leeyxq.promsql.util.DurationUtil;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.TreeSet;
+
+/**
+ * 表达式规范化，语义相同的查询规范化后结构一致，用于缓存key、请求合并
+ * <ul>
+ *     <li>label匹配条件按label名、操作符、值排序并去重</li>
+ *     <li>先经{@link MatcherOptimizer}优化，如job=~"api"与job="api"、__name__=~"b|a|b"与__name__=~"a|b"结果相同</li>
+ *     <li>时间区间及offset以最大单位表示，如300s -> 5m</li>
+ *     <li>by/without、on/ignoring及group_left/group_right的label排序去重</li>
+ * </ul>
+ * 未发生变化的子树直接复用。
+ *
+ * @author lixiangqian
+ * @since 2026/10/18 14:00
+ */
+public final class ExprNormalizer extends ExprRewriter {
+    private static final ExprNormalizer INSTANCE = new ExprNormalizer();
+    private static final Comparator<LabelMatcher> MATCHER_ORDER = Comparator.comparing(LabelMatcher::getName)
+            .thenComparing(LabelMatcher::getOp)
+            .thenComparing(LabelMatcher::getValue);
+
+    private ExprNormalizer() {
+    }
+
+    public static Expr normalize(Expr expr) {
+        return expr.accept(INSTANCE);
+    }
+
+    @Override
+    protected List<LabelMatcher> rewriteMatchers(VectorSelector selector) {
+        return normalizeMatchers(MatcherOptimizer.optimize(selector), selector.getMatchers());
+    }
+
+    @Override
+    protected String rewriteDuration(String duration) {
+        String canonical = DurationUtil.canonical(duration);
+        return canonical.equals(duration) ? duration : canonical;
+    }
+
+    @Override
+    protected List<String> rewriteLabels(List<String> labels) {
+        return normalizeLabels(labels);
+    }
+
+    private static List<LabelMatcher> normalizeMatchers(List<LabelMatcher> matchers, List<LabelMatcher> original) {
+        if (matchers.isEmpty()) {
+            return matchers;
+        }
+        TreeSet<LabelMatcher> sorted = new TreeSet<>(MATCHER_ORDER);
+        sorted.addAll(matchers);
+        List<LabelMatcher> normalized = new ArrayList<>(sorted);
+        return normalized.equals(original) ? original : normalized;
+    }
+
+    private static List<String> normalizeLabels(List<String> labels) {
+        if (labels.size() < 2) {
+            return labels;
+        }
+        List<String> normalized = new ArrayList<>(new TreeSet<>(labels));
+        return normalized.equals(labels) ? labels : normalized;
+    }
+}
@@ -0,0 +1,138 @@
+package io.github.leeyxq.promsql.ast;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 表达式改写的基类：遍历整棵树，通过钩子方法改写label条件、时间区间和label列表，
+ * 子树未发生变化时直接复用原节点，不产生新对象。
+ *
+ * @author lixiangqian
+ * @since 2026/10/18 19:00
+ */
+public abstract class ExprRewriter implements ExprVisitor<Expr> {
+
+    public Expr rewrite(Expr expr) {
+        return expr.accept(this);
+    }
+
+    /**
+     * 改写选择器的label条件，无变化时返回原列表
+     */
+    protected List<LabelMatcher> rewriteMatchers(VectorSelector selector) {
+        return selector.getMatchers();
+    }
+
+    /**
+     * 改写时间区间、子查询求值间隔及offset，无变化时返回原值
+     */
+    protected String rewriteDuration(String duration) {
+        return duration;
+    }
+
+    /**
+     * 改写by/without、on/ignoring及group_left/group_right的label列表，无变化时返回原列表
+     */
+    protected List<String> rewriteLabels(List<String> labels) {
+        return labels;
+    }
+
+    @Override
+    public Expr visitVectorSelector(VectorSelector expr) {
+        List<LabelMatcher> matchers = rewriteMatchers(expr);
+        String offset = expr.getOffset() == null ? null : rewriteDuration(expr.getOffset());
+        if (matchers == expr.getMatchers() && offset == expr.getOffset()) {
+            return expr;
+        }
+        return new VectorSelector(expr.getMetricName(), matchers, offset, expr.getAt());
+    }
+
+    @Override
+    public Expr visitMatrixSelector(MatrixSelector expr) {
+        VectorSelector selector = (VectorSelector) expr.getSelector().accept(this);
+        String range = rewriteDuration(expr.getRange());
+        if (selector == expr.getSelector() && range == expr.getRange()) {
+            return expr;
+        }
+        return new MatrixSelector(selector, range);
+    }
+
+    @Override
+    public Expr visitSubquery(SubqueryExpr expr) {
+        Expr inner = expr.getExpr().accept(this);
+        String range = rewriteDuration(expr.getRange());
+        String step = expr.getStep() == null ? null : rewriteDuration(expr.getStep());
+        String offset = expr.getOffset() == null ? null : rewriteDuration(expr.getOffset());
+        if (inner == expr.getExpr() && range == expr.getRange() && step == expr.getStep() && offset == expr.getOffset()) {
+            return expr;
+        }
+        return new SubqueryExpr(inner, range, step, offset, expr.getAt());
+    }
+
+    @Override
+    public Expr visitCall(Call expr) {
+        List<Expr> args = expr.getArgs();
+        List<Expr> rewritten = null;
+        for (int i = 0; i < args.size(); i++) {
+            Expr arg = args.get(i).accept(this);
+            if (arg != args.get(i) && rewritten == null) {
+                rewritten = new ArrayList<>(args.subList(0, i));
+            }
+            if (rewritten != null) {
+                rewritten.add(arg);
+            }
+        }
+        return rewritten == null ? expr : new Call(expr.getFunction(), rewritten);
+    }
+
+    @Override
+    public Expr visitAggregate(AggregateExpr expr) {
+        Expr inner = expr.getExpr().accept(this);
+        Expr param = expr.getParam() == null ? null : expr.getParam().accept(this);
+        List<String> grouping = rewriteLabels(expr.getGrouping());
+        if (inner == expr.getExpr() && param == expr.getParam() && grouping == expr.getGrouping()) {
+            return expr;
+        }
+        return new AggregateExpr(expr.getOp(), inner, param, grouping, expr.isWithout());
+    }
+
+    @Override
+    public Expr visitBinary(BinaryExpr expr) {
+        Expr lhs = expr.getLhs().accept(this);
+        Expr rhs = expr.getRhs().accept(this);
+        VectorMatching matching = expr.getMatching();
+        if (matching != null) {
+            List<String> labels = rewriteLabels(matching.getLabels());
+            List<String> include = rewriteLabels(matching.getInclude());
+            if (labels != matching.getLabels() || include != matching.getInclude()) {
+                matching = new VectorMatching(matching.isOn(), labels, matching.getCardinality(), include);
+            }
+        }
+        if (lhs == expr.getLhs() && rhs == expr.getRhs() && matching == expr.getMatching()) {
+            return expr;
+        }
+        return new BinaryExpr(expr.getOp(), lhs, rhs, expr.isReturnBool(), matching);
+    }
+
+    @Override
+    public Expr visitUnary(UnaryExpr expr) {
+        Expr inner = expr.getExpr().accept(this);
+        return inner == expr.getExpr() ? expr : new UnaryExpr(expr.getOp(), inner);
+    }
+
+    @Override
+    public Expr visitNumber(NumberLiteral expr) {
+        return expr;
+    }
+
+    @Override
+    public Expr visitString(StringLiteral expr) {
+        return expr;
+    }
+
+    @Override
+    public Expr visitRawSuffix(RawSuffixExpr expr) {
+        Expr inner = expr.getExpr().accept(this);
+        return inner == expr.getExpr() ? expr : new RawSuffixExpr(inner, expr.getSuffix());
+    }
+}
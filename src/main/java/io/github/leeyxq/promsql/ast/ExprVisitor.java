@@ -0,0 +1,31 @@
+package io.github.leeyxq.promsql.ast;
+
+/**
+ * 表达式树访问者，打印、规范化等遍历逻辑均基于此接口实现
+ *
+ * @param <R> 返回值类型
+ * @author lixiangqian
+ * @since 2026/10/18 11:00
+ */
+public interface ExprVisitor<R> {
+
+    R visitVectorSelector(VectorSelector expr);
+
+    R visitMatrixSelector(MatrixSelector expr);
+
+    R visitSubquery(SubqueryExpr expr);
+
+    R visitCall(Call expr);
+
+    R visitAggregate(AggregateExpr expr);
+
+    R visitBinary(BinaryExpr expr);
+
+    R visitUnary(UnaryExpr expr);
+
+    R visitNumber(NumberLiteral expr);
+
+    R visitString(StringLiteral expr);
+
+    R visitRawSuffix(RawSuffixExpr expr);
+}
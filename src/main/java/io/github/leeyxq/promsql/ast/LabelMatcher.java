@@ -0,0 +1,32 @@
+package io.github.leeyxq.promsql.ast;
+
+import io.github.leeyxq.promsql.util.Asserts;
+import lombok.Value;
+
+/**
+ * label匹配条件，如job=~".*server"
+ *
+ * @author lixiangqian
+ * @since 2026/10/18 11:00
+ */
+@Value
+public class LabelMatcher {
+    public static final String METRIC_NAME = "__name__";
+
+    String name;
+    MatchOp op;
+    String value;
+
+    public LabelMatcher(String name, MatchOp op, String value) {
+        Asserts.notBlank(name, "label must not be empty");
+        Asserts.notNull(op, "match operator is required");
+        this.name = name;
+        this.op = op;
+        this.value = value == null ? "" : value;
+    }
+
+    @Override
+    public String toString() {
+        return PromPrinter.print(this);
+    }
+}
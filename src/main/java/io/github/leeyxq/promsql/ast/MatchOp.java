@@ -0,0 +1,40 @@
+package io.github.leeyxq.promsql.ast;
+
+import lombok.Getter;
+
+/**
+ * label匹配操作符
+ *
+ * @author lixiangqian
+ * @since 2026/10/18 11:00
+ */
+public enum MatchOp {
+    EQ("="),
+    NEQ("!="),
+    RE("=~"),
+    NRE("!~");
+
+    @Getter
+    private final String symbol;
+
+    MatchOp(String symbol) {
+        this.symbol = symbol;
+    }
+
+    public static MatchOp of(String symbol) {
+        for (MatchOp op : values()) {
+            if (op.symbol.equals(symbol)) {
+                return op;
+            }
+        }
+        throw new IllegalArgumentException("unknown match operator: " + symbol);
+    }
+
+    public boolean isRegex() {
+        return this == RE || this == NRE;
+    }
+
+    public boolean isNegative() {
+        return this == NEQ || this == NRE;
+    }
+}
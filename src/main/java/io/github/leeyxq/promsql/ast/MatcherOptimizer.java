@@ -0,0 +1,230 @@
+package io.github.leeyxq.promsql.ast;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+
+/**
+ * label条件优化：Prometheus对=、!=及纯字面量多选正则有专门的快速路径，比一般正则快得多
+ * <ul>
+ *     <li>不含元字符的正则降级为=、!=，如job=~"api" -> job="api"</li>
+ *     <li>纯字面量多选正则去重排序，只剩一个值时降级，如job=~"b|a|(b)" -> job=~"a|b"</li>
+ *     <li>同一label的多个否定字面量条件合并为一个集合，如job!="a", job!="b" -> job!~"a|b"</li>
+ *     <li>=~".+"改写为!=""，!~".+"改写为=""</li>
+ *     <li>已有其他条件限定时去掉恒为真的=~".*"</li>
+ * </ul>
+ * Prometheus的正则是全匹配的，上述改写不改变查询语义。未发生变化的子树直接复用。
+ *
+ * @author lixiangqian
+ * @since 2026/10/18 19:00
+ */
+public final class MatcherOptimizer extends ExprRewriter {
+    private static final MatcherOptimizer INSTANCE = new MatcherOptimizer();
+    private static final String REGEX_META = ".+*?()|[]{}^$\\";
+    private static final String MATCH_ALL = ".*";
+    private static final String MATCH_NON_EMPTY = ".+";
+
+    private MatcherOptimizer() {
+    }
+
+    public static Expr optimize(Expr expr) {
+        return expr.accept(INSTANCE);
+    }
+
+    /**
+     * 优化单个选择器的label条件
+     *
+     * @return 无变化时返回原列表
+     */
+    public static List<LabelMatcher> optimize(VectorSelector selector) {
+        List<LabelMatcher> matchers = selector.getMatchers();
+        if (matchers.isEmpty()) {
+            return matchers;
+        }
+        List<LabelMatcher> simplified = new ArrayList<>(matchers.size());
+        // 每个label的否定字面量条件个数及值的并集
+        Map<String, Integer> negativeCounts = new HashMap<>(4);
+        Map<String, TreeSet<String>> negativeValues = new HashMap<>(4);
+        boolean restricted = selector.getMetricName() != null;
+        for (LabelMatcher matcher : matchers) {
+            LabelMatcher m = simplify(matcher);
+            restricted |= !matchesEmpty(m);
+            Collection<String> negatives = negativeLiterals(m);
+            if (negatives != null) {
+                negativeCounts.merge(m.getName(), 1, Integer::sum);
+                negativeValues.computeIfAbsent(m.getName(), k -> new TreeSet<>()).addAll(negatives);
+            }
+            simplified.add(m);
+        }
+        List<LabelMatcher> optimized = new ArrayList<>(simplified.size());
+        for (LabelMatcher m : simplified) {
+            if (restricted && isMatchAll(m)) {
+                continue;
+            }
+            if (negativeLiterals(m) != null && negativeCounts.get(m.getName()) > 1) {
+                // 在第一次出现的位置输出合并后的条件
+                TreeSet<String> values = negativeValues.remove(m.getName());
+                if (values != null) {
+                    optimized.add(values.size() == 1 ? new LabelMatcher(m.getName(), MatchOp.NEQ, values.first())
+                            : new LabelMatcher(m.getName(), MatchOp.NRE, literalSet(values)));
+                }
+                continue;
+            }
+            optimized.add(m);
+        }
+        return optimized.equals(matchers) ? matchers : optimized;
+    }
+
+    @Override
+    protected List<LabelMatcher> rewriteMatchers(VectorSelector selector) {
+        return optimize(selector);
+    }
+
+    /**
+     * 由字面量生成多选正则，元字符转义，去重排序
+     *
+     * @param values 字面量
+     * @return 正则，如a|b\.c
+     */
+    public static String literalSet(Collection<String> values) {
+        TreeSet<String> sorted = values instanceof TreeSet ? (TreeSet<String>) values : new TreeSet<>(values);
+        StringBuilder sb = new StringBuilder(sorted.size() * 16);
+        for (String value : sorted) {
+            if (sb.length() > 0) {
+                sb.append('|');
+            }
+            quote(sb, value);
+        }
+        return sb.toString();
+    }
+
+    /**
+     * 转义正则元字符
+     */
+    public static String quote(String literal) {
+        for (int i = 0; i < literal.length(); i++) {
+            if (REGEX_META.indexOf(literal.charAt(i)) >= 0) {
+                return quote(new StringBuilder(literal.length() + 8), literal).toString();
+            }
+        }
+        return literal;
+    }
+
+    private static StringBuilder quote(StringBuilder sb, String literal) {
+        for (int i = 0; i < literal.length(); i++) {
+            char c = literal.charAt(i);
+            if (REGEX_META.indexOf(c) >= 0) {
+                sb.append('\\');
+            }
+            sb.append(c);
+        }
+        return sb;
+    }
+
+    /**
+     * 解析纯字面量多选正则，如a|b\.c|(d)
+     *
+     * @return 各分支的字面量，含元字符等非字面量时返回null
+     */
+    public static List<String> literalAlternatives(String regex) {
+        regex = unwrapGroup(regex);
+        List<String> alternatives = new ArrayList<>(4);
+        StringBuilder current = new StringBuilder(regex.length());
+        for (int i = 0; i < regex.length(); i++) {
+            char c = regex.charAt(i);
+            if (c == '\\') {
+                // 转义的标点为字面量，\d、\w等字符类不是
+                if (i + 1 == regex.length() || Character.isLetterOrDigit(regex.charAt(i + 1))) {
+                    return null;
+                }
+                current.append(regex.charAt(++i));
+            } else if (c == '|') {
+                alternatives.add(current.toString());
+                current.setLength(0);
+            } else if (REGEX_META.indexOf(c) >= 0) {
+                return null;
+            } else {
+                current.append(c);
+            }
+        }
+        alternatives.add(current.toString());
+        return alternatives;
+    }
+
+    /**
+     * 去掉包裹整个正则的(...)或(?:...)，内部不能再有括号
+     */
+    private static String unwrapGroup(String regex) {
+        if (regex.length() < 2 || regex.charAt(0) != '(' || regex.charAt(regex.length() - 1) != ')') {
+            return regex;
+        }
+        int from = regex.startsWith("(?:") ? 3 : 1;
+        for (int i = from; i < regex.length() - 1; i++) {
+            char c = regex.charAt(i);
+            if (c == '\\') {
+                i++;
+            } else if (c == '(' || c == ')') {
+                return regex;
+            }
+        }
+        return regex.substring(from, regex.length() - 1);
+    }
+
+    private static LabelMatcher simplify(LabelMatcher matcher) {
+        MatchOp op = matcher.getOp();
+        if (!op.isRegex()) {
+            return matcher;
+        }
+        String value = matcher.getValue();
+        if (MATCH_NON_EMPTY.equals(value)) {
+            return new LabelMatcher(matcher.getName(), op.isNegative() ? MatchOp.EQ : MatchOp.NEQ, "");
+        }
+        List<String> alternatives = literalAlternatives(value);
+        if (alternatives == null) {
+            return matcher;
+        }
+        TreeSet<String> values = new TreeSet<>(alternatives);
+        if (values.size() == 1) {
+            return new LabelMatcher(matcher.getName(), op.isNegative() ? MatchOp.NEQ : MatchOp.EQ, values.first());
+        }
+        String set = literalSet(values);
+        return set.equals(value) ? matcher : new LabelMatcher(matcher.getName(), op, set);
+    }
+
+    /**
+     * 否定字面量条件的值集合，空串不参与合并（job!=""表示label存在，单独保留更直观）
+     */
+    private static Collection<String> negativeLiterals(LabelMatcher matcher) {
+        if (matcher.getOp() == MatchOp.NEQ) {
+            return matcher.getValue().isEmpty() ? null : Collections.singletonList(matcher.getValue());
+        }
+        if (matcher.getOp() == MatchOp.NRE) {
+            List<String> alternatives = literalAlternatives(matcher.getValue());
+            return alternatives == null || alternatives.contains("") ? null : alternatives;
+        }
+        return null;
+    }
+
+    private static boolean isMatchAll(LabelMatcher matcher) {
+        return matcher.getOp() == MatchOp.RE && MATCH_ALL.equals(matcher.getValue());
+    }
+
+    /**
+     * 条件是否匹配不存在该label的序列（label值为空串）
+     */
+    private static boolean matchesEmpty(LabelMatcher matcher) {
+        switch (matcher.getOp()) {
+            case EQ:
+                return matcher.getValue().isEmpty();
+            case NEQ:
+                return !matcher.getValue().isEmpty();
+            default:
+                // 正则无法简单判断，保守地认为可能匹配空串
+                return true;
+        }
+    }
+}
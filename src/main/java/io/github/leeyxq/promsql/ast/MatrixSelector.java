@@ -0,0 +1,36 @@
+package io.github.leeyxq.promsql.ast;
+
+import io.github.leeyxq.promsql.util.Asserts;
+import lombok.Value;
+
+/**
+ * 区间向量选择器，如http_requests_total[5m] offset 1w
+ *
+ * @author lixiangqian
+ * @since 2026/10/18 11:00
+ */
+@Value
+public class MatrixSelector implements Expr {
+    VectorSelector selector;
+    /**
+     * 时间区间，如5m、1h
+     */
+    String range;
+
+    public MatrixSelector(VectorSelector selector, String range) {
+        Asserts.notNull(selector, "selector is required");
+        Asserts.notBlank(range, "range is required");
+        this.selector = selector;
+        this.range = range;
+    }
+
+    @Override
+    public <R> R accept(ExprVisitor<R> visitor) {
+        return visitor.visitMatrixSelector(this);
+    }
+
+    @Override
+    public String toString() {
+        return PromPrinter.print(this);
+    }
+}
@@ -0,0 +1,34 @@
+package io.github.leeyxq.promsql.ast;
+
+import io.github.leeyxq.promsql.util.Asserts;
+import lombok.Value;
+
+/**
+ * 数值字面量，保留原始文本以保证输出一致，如10、0.95、1e3
+ *
+ * @author lixiangqian
+ * @since 2026/10/18 11:00
+ */
+@Value
+public class NumberLiteral implements Expr {
+    String text;
+
+    public NumberLiteral(String text) {
+        Asserts.notBlank(text, "number is required");
+        this.text = text;
+    }
+
+    public NumberLiteral(long value) {
+        this(Long.toString(value));
+    }
+
+    @Override
+    public <R> R accept(ExprVisitor<R> visitor) {
+        return visitor.visitNumber(this);
+    }
+
+    @Override
+    public String toString() {
+        return text;
+    }
+}
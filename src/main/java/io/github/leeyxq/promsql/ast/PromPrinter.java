@@ -0,0 +1,240 @@
+package io.github.leeyxq.promsql.ast;
+
+import io.github.leeyxq.promsql.util.StrUtil;
+
+import java.util.List;
+
+/**
+ * 表达式树打印器，将整棵树一次性输出到同一个StringBuilder
+ *
+ * @author lixiangqian
+ * @since 2026/10/18 11:00
+ */
+public final class PromPrinter implements ExprVisitor<Void> {
+    private static final int DEFAULT_CAPACITY = 64;
+
+    private final StringBuilder out;
+
+    private PromPrinter(StringBuilder out) {
+        this.out = out;
+    }
+
+    public static String print(Expr expr) {
+        return print(expr, new StringBuilder(DEFAULT_CAPACITY)).toString();
+    }
+
+    /**
+     * 打印到指定的StringBuilder，便于调用方预估容量或复用缓冲区
+     *
+     * @param expr 表达式
+     * @param out  输出
+     * @return out
+     */
+    public static StringBuilder print(Expr expr, StringBuilder out) {
+        expr.accept(new PromPrinter(out));
+        return out;
+    }
+
+    public static String print(LabelMatcher matcher) {
+        StringBuilder out = new StringBuilder(DEFAULT_CAPACITY);
+        new PromPrinter(out).appendMatcher(matcher);
+        return out.toString();
+    }
+
+    @Override
+    public Void visitVectorSelector(VectorSelector expr) {
+        appendSelector(expr);
+        appendModifiers(expr.getAt(), expr.getOffset());
+        return null;
+    }
+
+    @Override
+    public Void visitMatrixSelector(MatrixSelector expr) {
+        appendSelector(expr.getSelector());
+        out.append('[').append(expr.getRange()).append(']');
+        appendModifiers(expr.getSelector().getAt(), expr.getSelector().getOffset());
+        return null;
+    }
+
+    @Override
+    public Void visitSubquery(SubqueryExpr expr) {
+        Expr inner = expr.getExpr();
+        //选择器带@或offset时加括号，避免区间被当作选择器的一部分
+        boolean paren = inner instanceof BinaryExpr || inner instanceof UnaryExpr || inner instanceof RawSuffixExpr
+                || (inner instanceof VectorSelector && (((VectorSelector) inner).getOffset() != null || ((VectorSelector) inner).getAt() != null));
+        if (paren) {
+            out.append('(');
+        }
+        inner.accept(this);
+        if (paren) {
+            out.append(')');
+        }
+        out.append('[').append(expr.getRange()).append(':');
+        if (expr.getStep() != null) {
+            out.append(expr.getStep());
+        }
+        out.append(']');
+        appendModifiers(expr.getAt(), expr.getOffset());
+        return null;
+    }
+
+    @Override
+    public Void visitCall(Call expr) {
+        out.append(expr.getFunction()).append('(');
+        List<Expr> args = expr.getArgs();
+        for (int i = 0; i < args.size(); i++) {
+            if (i > 0) {
+                out.append(", ");
+            }
+            args.get(i).accept(this);
+        }
+        out.append(')');
+        return null;
+    }
+
+    @Override
+    public Void visitAggregate(AggregateExpr expr) {
+        out.append(expr.getOp());
+        if (!expr.getGrouping().isEmpty()) {
+            out.append(expr.isWithout() ? " without" : " by");
+            appendLabels(expr.getGrouping());
+        }
+        out.append('(');
+        if (expr.getParam() != null) {
+            expr.getParam().accept(this);
+            out.append(", ");
+        }
+        expr.getExpr().accept(this);
+        out.append(')');
+        return null;
+    }
+
+    @Override
+    public Void visitBinary(BinaryExpr expr) {
+        BinaryOp op = expr.getOp();
+        appendOperand(expr.getLhs(), op, true);
+        out.append(' ').append(op.getSymbol()).append(' ');
+        if (expr.isReturnBool()) {
+            out.append("bool ");
+        }
+        VectorMatching matching = expr.getMatching();
+        if (matching != null) {
+            boolean group = matching.getCardinality() != VectorMatching.Cardinality.ONE_TO_ONE;
+            //group_left/group_right前必须有on或ignoring，ignoring()为空时也要输出
+            if (matching.isOn() || !matching.getLabels().isEmpty() || group) {
+                out.append(matching.isOn() ? "on" : "ignoring");
+                appendLabels(matching.getLabels());
+                out.append(' ');
+            }
+            if (group) {
+                out.append(matching.getCardinality() == VectorMatching.Cardinality.MANY_TO_ONE ? "group_left" : "group_right");
+                appendLabels(matching.getInclude());
+                out.append(' ');
+            }
+        }
+        appendOperand(expr.getRhs(), op, false);
+        return null;
+    }
+
+    @Override
+    public Void visitUnary(UnaryExpr expr) {
+        out.append(expr.getOp().getSymbol());
+        boolean paren = expr.getExpr() instanceof BinaryExpr || isNegative(expr.getExpr());
+        if (paren) {
+            out.append('(');
+        }
+        expr.getExpr().accept(this);
+        if (paren) {
+            out.append(')');
+        }
+        return null;
+    }
+
+    @Override
+    public Void visitNumber(NumberLiteral expr) {
+        out.append(expr.getText());
+        return null;
+    }
+
+    @Override
+    public Void visitString(StringLiteral expr) {
+        out.append('"');
+        StrUtil.appendEscaped(out, expr.getValue()).append('"');
+        return null;
+    }
+
+    @Override
+    public Void visitRawSuffix(RawSuffixExpr expr) {
+        expr.getExpr().accept(this);
+        out.append(expr.getSuffix());
+        return null;
+    }
+
+    private void appendSelector(VectorSelector selector) {
+        if (selector.getMetricName() != null) {
+            out.append(selector.getMetricName());
+        }
+        List<LabelMatcher> matchers = selector.getMatchers();
+        if (!matchers.isEmpty()) {
+            out.append('{');
+            for (int i = 0; i < matchers.size(); i++) {
+                if (i > 0) {
+                    out.append(", ");
+                }
+                appendMatcher(matchers.get(i));
+            }
+            out.append('}');
+        }
+    }
+
+    private void appendMatcher(LabelMatcher matcher) {
+        out.append(matcher.getName()).append(matcher.getOp().getSymbol()).append('"');
+        StrUtil.appendEscaped(out, matcher.getValue()).append('"');
+    }
+
+    /**
+     * 先@后offset，与Prometheus的输出顺序一致
+     */
+    private void appendModifiers(String at, String offset) {
+        if (at != null) {
+            out.append(" @ ").append(at);
+        }
+        if (offset != null) {
+            out.append(" offset ").append(offset);
+        }
+    }
+
+    private void appendLabels(List<String> labels) {
+        out.append('(');
+        for (int i = 0; i < labels.size(); i++) {
+            if (i > 0) {
+                out.append(", ");
+            }
+            out.append(labels.get(i));
+        }
+        out.append(')');
+    }
+
+    /**
+     * 子表达式优先级低于父操作（或同级但结合方向相反）时加括号
+     */
+    private void appendOperand(Expr operand, BinaryOp parent, boolean left) {
+        //一元操作优先级低于^，如(-a) ^ b
+        boolean paren = operand instanceof RawSuffixExpr || (left && parent == BinaryOp.POW && isNegative(operand));
+        if (operand instanceof BinaryExpr) {
+            int precedence = ((BinaryExpr) operand).getOp().getPrecedence();
+            paren = precedence < parent.getPrecedence() || (precedence == parent.getPrecedence() && left == parent.isRightAssociative());
+        }
+        if (paren) {
+            out.append('(');
+        }
+        operand.accept(this);
+        if (paren) {
+            out.append(')');
+        }
+    }
+
+    private static boolean isNegative(Expr expr) {
+        return expr instanceof UnaryExpr || (expr instanceof NumberLiteral && ((NumberLiteral) expr).getText().startsWith("-"));
+    }
+}
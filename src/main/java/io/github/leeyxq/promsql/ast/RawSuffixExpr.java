@@ -0,0 +1,33 @@
+package io.github.leeyxq.promsql.ast;
+
+import io.github.leeyxq.promsql.util.Asserts;
+import lombok.Value;
+
+/**
+ * 表达式后原样拼接的PromQL文本，对应PromSqlBuilder#last，如 / 1024 / 1024
+ *
+ * @author lixiangqian
+ * @since 2026/10/18 11:00
+ */
+@Value
+public class RawSuffixExpr implements Expr {
+    Expr expr;
+    String suffix;
+
+    public RawSuffixExpr(Expr expr, String suffix) {
+        Asserts.notNull(expr, "expr is required");
+        Asserts.notNull(suffix, "suffix is required");
+        this.expr = expr;
+        this.suffix = suffix;
+    }
+
+    @Override
+    public <R> R accept(ExprVisitor<R> visitor) {
+        return visitor.visitRawSuffix(this);
+    }
+
+    @Override
+    public String toString() {
+        return PromPrinter.print(this);
+    }
+}
@@ -0,0 +1,30 @@
+package io.github.leeyxq.promsql.ast;
+
+import io.github.leeyxq.promsql.util.Asserts;
+import lombok.Value;
+
+/**
+ * 字符串字面量，如count_values("version", x)中的"version"
+ *
+ * @author lixiangqian
+ * @since 2026/10/18 11:00
+ */
+@Value
+public class StringLiteral implements Expr {
+    String value;
+
+    public StringLiteral(String value) {
+        Asserts.notNull(value, "string is required");
+        this.value = value;
+    }
+
+    @Override
+    public <R> R accept(ExprVisitor<R> visitor) {
+        return visitor.visitString(this);
+    }
+
+    @Override
+    public String toString() {
+        return PromPrinter.print(this);
+    }
+}
@@ -0,0 +1,56 @@
+package io.github.leeyxq.promsql.ast;
+
+import io.github.leeyxq.promsql.util.Asserts;
+import lombok.Value;
+
+/**
+ * 子查询，在服务端按resolution对内层表达式多次求值得到区间向量，如max_over_time(rate(x[5m])[1d:5m])
+ *
+ * @author lixiangqian
+ * @since 2026/10/18 21:00
+ */
+@Value
+public class SubqueryExpr implements Expr {
+    Expr expr;
+    /**
+     * 时间区间，如1d
+     */
+    String range;
+    /**
+     * 求值间隔，如5m，为null时使用全局默认的求值间隔
+     */
+    String step;
+    /**
+     * offset时间，可为null
+     */
+    String offset;
+    /**
+     * @修饰的求值时刻，如1609746000、start()、end()，可为null
+     */
+    String at;
+
+    public SubqueryExpr(Expr expr, String range, String step, String offset, String at) {
+        Asserts.notNull(expr, "expr is required");
+        Asserts.notBlank(range, "range is required");
+        Asserts.isTrue(!(expr instanceof MatrixSelector), "subquery is only allowed on instant vector");
+        this.expr = expr;
+        this.range = range;
+        this.step = step == null || step.isEmpty() ? null : step;
+        this.offset = offset;
+        this.at = at;
+    }
+
+    public SubqueryExpr(Expr expr, String range, String step) {
+        this(expr, range, step, null, null);
+    }
+
+    @Override
+    public <R> R accept(ExprVisitor<R> visitor) {
+        return visitor.visitSubquery(this);
+    }
+
+    @Override
+    public String toString() {
+        return PromPrinter.print(this);
+    }
+}
@@ -0,0 +1,36 @@
+package io.github.leeyxq.promsql.ast;
+
+import io.github.leeyxq.promsql.util.Asserts;
+import lombok.Value;
+
+/**
+ * 一元操作，如-rate(x[5m])
+ *
+ * @author lixiangqian
+ * @since 2026/10/18 13:00
+ */
+@Value
+public class UnaryExpr implements Expr {
+    /**
+     * 仅支持ADD、SUB
+     */
+    BinaryOp op;
+    Expr expr;
+
+    public UnaryExpr(BinaryOp op, Expr expr) {
+        Asserts.isTrue(op == BinaryOp.ADD || op == BinaryOp.SUB, "unary operator must be + or -");
+        Asserts.notNull(expr, "expr is required");
+        this.op = op;
+        this.expr = expr;
+    }
+
+    @Override
+    public <R> R accept(ExprVisitor<R> visitor) {
+        return visitor.visitUnary(this);
+    }
+
+    @Override
+    public String toString() {
+        return PromPrinter.print(this);
+    }
+}
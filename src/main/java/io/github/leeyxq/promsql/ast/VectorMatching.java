@@ -0,0 +1,44 @@
+package io.github.leeyxq.promsql.ast;
+
+import lombok.Value;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * 二元操作的向量匹配方式，如on(instance) group_left(job)
+ *
+ * @author lixiangqian
+ * @since 2026/10/18 11:00
+ */
+@Value
+public class VectorMatching {
+    /**
+     * true为on，false为ignoring
+     */
+    boolean on;
+    List<String> labels;
+    Cardinality cardinality;
+    /**
+     * group_left/group_right携带的label
+     */
+    List<String> include;
+
+    public VectorMatching(boolean on, List<String> labels, Cardinality cardinality, List<String> include) {
+        this.on = on;
+        this.labels = copy(labels);
+        this.cardinality = cardinality == null ? Cardinality.ONE_TO_ONE : cardinality;
+        this.include = copy(include);
+    }
+
+    private static List<String> copy(List<String> list) {
+        return list == null || list.isEmpty() ? Collections.emptyList() : Collections.unmodifiableList(new ArrayList<>(list));
+    }
+
+    public enum Cardinality {
+        ONE_TO_ONE,
+        MANY_TO_ONE,
+        ONE_TO_MANY
+    }
+}
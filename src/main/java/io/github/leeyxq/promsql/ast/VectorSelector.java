@@ -0,0 +1,61 @@
+package io.github.leeyxq.promsql.ast;
+
+import io.github.leeyxq.promsql.util.Asserts;
+import lombok.Value;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * 瞬时向量选择器，如http_requests_total{job="api"} @ 1609746000 offset 5m
+ *
+ * @author lixiangqian
+ * @since 2026/10/18 11:00
+ */
+@Value
+public class VectorSelector implements Expr {
+    /**
+     * 指标名，多指标查询时为null并以__name__匹配条件代替
+     */
+    String metricName;
+    List<LabelMatcher> matchers;
+    /**
+     * offset时间，如5m、-1w，可为null
+     */
+    String offset;
+    /**
+     * @修饰的求值时刻，如1609746000、start()、end()，可为null
+     */
+    String at;
+
+    public VectorSelector(String metricName, List<LabelMatcher> matchers, String offset) {
+        this(metricName, matchers, offset, null);
+    }
+
+    public VectorSelector(String metricName, List<LabelMatcher> matchers, String offset, String at) {
+        Asserts.isTrue(metricName != null || (matchers != null && !matchers.isEmpty()), "metric name or label matchers is required");
+        this.metricName = metricName;
+        this.matchers = matchers == null || matchers.isEmpty() ? Collections.emptyList() : Collections.unmodifiableList(new ArrayList<>(matchers));
+        this.offset = offset;
+        this.at = at;
+    }
+
+    public VectorSelector withOffset(String offset) {
+        return new VectorSelector(metricName, matchers, offset, at);
+    }
+
+    public VectorSelector withAt(String at) {
+        return new VectorSelector(metricName, matchers, offset, at);
+    }
+
+    @Override
+    public <R> R accept(ExprVisitor<R> visitor) {
+        return visitor.visitVectorSelector(this);
+    }
+
+    @Override
+    public String toString() {
+        return PromPrinter.print(this);
+    }
+}
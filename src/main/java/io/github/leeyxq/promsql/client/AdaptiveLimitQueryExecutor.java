@@ -0,0 +1,281 @@
+package io.github.leeyxq.promsql.client;
+
+import io.github.leeyxq.promsql.util.Asserts;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * 自适应并发限制：按Prometheus的响应情况调整同时发送的查询数上限（AIMD），Prometheus变慢时自动减少并发，恢复后逐步放开
+ * <pre>{@code
+ * AdaptiveLimitQueryExecutor limiter = AdaptiveLimitQueryExecutor.builder(client).maxLimit(64).slowQueryMillis(5_000).build();
+ * PromSqlMetrics.enable().registerLimiter("prometheus", limiter);
+ * }</pre>
+ * <ul>
+ *     <li>加性增：查询成功且并发已用到上限的一半以上时，上限增加1/limit，即每完成一轮上限加1</li>
+ *     <li>乘性减：超时、网络错误、5xx、429或耗时超过slowQueryMillis时，上限乘以backoffRatio；
+ *     同一轮（上次下调之前发出的）查询的失败只下调一次，避免一次拥塞把上限压到最低</li>
+ *     <li>达到上限后按先来先到排队，排队超过maxQueueWaitMillis或队列已满时抛出{@link QueryShedException}，不再发送</li>
+ * </ul>
+ * 4xx（查询语法错误等）及发送前被拒绝的查询不视为拥塞。
+ *
+ * @author lixiangqian
+ * @since 2026/10/19 01:30
+ */
+@Slf4j
+public final class AdaptiveLimitQueryExecutor implements QueryExecutor {
+    private final QueryExecutor delegate;
+    private final int minLimit;
+    private final int maxLimit;
+    private final double backoffRatio;
+    private final long slowQueryNanos;
+    private final long maxQueueWaitNanos;
+    private final int maxQueueSize;
+
+    /**
+     * 保护limit、inFlight、queued、epoch，条件队列按等待先后唤醒
+     */
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition available = lock.newCondition();
+    private double limit;
+    private int inFlight;
+    private int queued;
+    /**
+     * 每次下调加1，查询开始时记下，用于判断失败是否属于已处理过的拥塞
+     */
+    private long epoch;
+    private final LongAdder shed = new LongAdder();
+
+    private AdaptiveLimitQueryExecutor(Builder builder) {
+        this.delegate = builder.delegate;
+        this.minLimit = builder.minLimit;
+        this.maxLimit = builder.maxLimit;
+        this.backoffRatio = builder.backoffRatio;
+        this.slowQueryNanos = TimeUnit.MILLISECONDS.toNanos(builder.slowQueryMillis);
+        this.maxQueueWaitNanos = TimeUnit.MILLISECONDS.toNanos(builder.maxQueueWaitMillis);
+        this.maxQueueSize = builder.maxQueueSize;
+        this.limit = Math.max(minLimit, Math.min(maxLimit, builder.initialLimit));
+    }
+
+    public static Builder builder(QueryExecutor delegate) {
+        return new Builder(delegate);
+    }
+
+    @Override
+    public QueryResult execute(QueryRequest request) {
+        long startEpoch = acquire(request);
+        long start = System.nanoTime();
+        boolean congested = false;
+        try {
+            QueryResult result = delegate.execute(request);
+            congested = System.nanoTime() - start > slowQueryNanos;
+            return result;
+        } catch (PromQueryException e) {
+            congested = isCongestion(e);
+            throw e;
+        } finally {
+            release(startEpoch, congested);
+        }
+    }
+
+    private long acquire(QueryRequest request) {
+        lock.lock();
+        try {
+            if (inFlight < (int) limit && queued == 0) {
+                inFlight++;
+                return epoch;
+            }
+            if (queued >= maxQueueSize) {
+                throw shed("queue is full (" + queued + ")", request);
+            }
+            queued++;
+            boolean acquired = false;
+            try {
+                long remaining = maxQueueWaitNanos;
+                while (inFlight >= (int) limit) {
+                    if (remaining <= 0) {
+                        throw shed("queued longer than " + TimeUnit.NANOSECONDS.toMillis(maxQueueWaitNanos) + "ms", request);
+                    }
+                    remaining = available.awaitNanos(remaining);
+                }
+                acquired = true;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new PromQueryException("interrupted while waiting for concurrency limit: " + request, e);
+            } finally {
+                queued--;
+                // 被唤醒的同时超时或中断而放弃时，空位转给下一个等待者，否则空位会闲置到下一次release
+                if (!acquired && inFlight < (int) limit && queued > 0) {
+                    available.signal();
+                }
+            }
+            inFlight++;
+            // 上限提高或并发下降时可能有多个空位
+            if (inFlight < (int) limit && queued > 0) {
+                available.signal();
+            }
+            return epoch;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void release(long startEpoch, boolean congested) {
+        lock.lock();
+        try {
+            if (congested) {
+                if (startEpoch == epoch) {
+                    epoch++;
+                    double previous = limit;
+                    limit = Math.max(minLimit, limit * backoffRatio);
+                    log.debug("concurrency limit decreased: {} -> {}", (int) previous, (int) limit);
+                }
+            } else if (inFlight * 2 >= (int) limit) {
+                limit = Math.min(maxLimit, limit + 1 / limit);
+            }
+            inFlight--;
+            if (queued > 0 && inFlight < (int) limit) {
+                available.signal();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private QueryShedException shed(String reason, QueryRequest request) {
+        shed.increment();
+        return new QueryShedException("query shed, concurrency limit " + (int) limit + " reached and " + reason + ": " + request);
+    }
+
+    private static boolean isCongestion(PromQueryException e) {
+        if (e instanceof QueryRejectedException || e instanceof QueryShedException) {
+            return false;
+        }
+        int status = e.getStatusCode();
+        return status == 0 || status == 429 || status >= 500;
+    }
+
+    /**
+     * 当前并发上限
+     */
+    public int getLimit() {
+        lock.lock();
+        try {
+            return (int) limit;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int getInFlight() {
+        lock.lock();
+        try {
+            return inFlight;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int getQueued() {
+        lock.lock();
+        try {
+            return queued;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 排队超时或队列已满而丢弃的查询数
+     */
+    public long getShed() {
+        return shed.sum();
+    }
+
+    public static final class Builder {
+        private final QueryExecutor delegate;
+        private int initialLimit = 20;
+        private int minLimit = 1;
+        private int maxLimit = 200;
+        private double backoffRatio = 0.9;
+        private long slowQueryMillis = 5_000;
+        private long maxQueueWaitMillis = 1_000;
+        private int maxQueueSize = 1_000;
+
+        private Builder(QueryExecutor delegate) {
+            Asserts.notNull(delegate, "delegate must not be null");
+            this.delegate = delegate;
+        }
+
+        /**
+         * 初始并发上限，默认20
+         */
+        public Builder initialLimit(int initialLimit) {
+            Asserts.isTrue(initialLimit > 0, "initialLimit must be positive");
+            this.initialLimit = initialLimit;
+            return this;
+        }
+
+        /**
+         * 并发上限的下限，默认1
+         */
+        public Builder minLimit(int minLimit) {
+            Asserts.isTrue(minLimit > 0, "minLimit must be positive");
+            this.minLimit = minLimit;
+            return this;
+        }
+
+        /**
+         * 并发上限的上限，默认200
+         */
+        public Builder maxLimit(int maxLimit) {
+            Asserts.isTrue(maxLimit > 0, "maxLimit must be positive");
+            this.maxLimit = maxLimit;
+            return this;
+        }
+
+        /**
+         * 拥塞时上限的缩小比例，默认0.9
+         */
+        public Builder backoffRatio(double backoffRatio) {
+            Asserts.isTrue(backoffRatio >= 0.5 && backoffRatio < 1, "backoffRatio must be in [0.5, 1)");
+            this.backoffRatio = backoffRatio;
+            return this;
+        }
+
+        /**
+         * 耗时超过此值的成功查询也视为拥塞，默认5秒
+         */
+        public Builder slowQueryMillis(long slowQueryMillis) {
+            Asserts.isTrue(slowQueryMillis > 0, "slowQueryMillis must be positive");
+            this.slowQueryMillis = slowQueryMillis;
+            return this;
+        }
+
+        /**
+         * 排队的最长时间，超过后丢弃，默认1秒；0表示达到上限时立即丢弃
+         */
+        public Builder maxQueueWaitMillis(long maxQueueWaitMillis) {
+            Asserts.isTrue(maxQueueWaitMillis >= 0, "maxQueueWaitMillis must not be negative");
+            this.maxQueueWaitMillis = maxQueueWaitMillis;
+            return this;
+        }
+
+        /**
+         * 最多排队的查询数，默认1000
+         */
+        public Builder maxQueueSize(int maxQueueSize) {
+            Asserts.isTrue(maxQueueSize >= 0, "maxQueueSize must not be negative");
+            this.maxQueueSize = maxQueueSize;
+            return this;
+        }
+
+        public AdaptiveLimitQueryExecutor build() {
+            Asserts.isTrue(minLimit <= maxLimit, "minLimit must not exceed maxLimit");
+            return new AdaptiveLimitQueryExecutor(this);
+        }
+    }
+}
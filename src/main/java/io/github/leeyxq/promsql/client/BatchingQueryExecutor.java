@@ -0,0 +1,332 @@
+package io.github.leeyxq.promsql.client;
+
+import io.github.leeyxq.promsql.ast.AggregateExpr;
+import io.github.leeyxq.promsql.ast.Expr;
+import io.github.leeyxq.promsql.ast.ExprNormalizer;
+import io.github.leeyxq.promsql.ast.LabelMatcher;
+import io.github.leeyxq.promsql.ast.MatchOp;
+import io.github.leeyxq.promsql.ast.PromPrinter;
+import io.github.leeyxq.promsql.ast.VectorSelector;
+import io.github.leeyxq.promsql.parser.PromParseException;
+import io.github.leeyxq.promsql.parser.PromParser;
+import io.github.leeyxq.promsql.util.Asserts;
+import lombok.EqualsAndHashCode;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 批量合并查询的执行器：短时间窗口内到达的、除metric名外完全相同的查询合并为一个
+ * {@code {__name__=~"a|b|c", ...}}查询执行一次，再按结果中的__name__拆回各自的结果。
+ * <p>
+ * 只有结果中保留__name__的查询才能拆分，目前支持：
+ * <ul>
+ *     <li>单个metric的选择器，可带offset，如{@code http_requests_total{job="api"} offset 5m}</li>
+ *     <li>对上述选择器的by聚合（sum、min、max、avg、count、group、stddev、stdvar、topk、bottomk），
+ *     合并时在by中加入__name__，拆分后再去掉</li>
+ * </ul>
+ * rate等函数及without聚合会丢弃__name__，这类查询及无法解析的查询直接交给下游执行。
+ * <p>
+ * 窗口内第一个到达的请求负责等待窗口结束（或凑满maxBatchSize）后执行合并查询，其余请求登记后等待结果。
+ *
+ * @author lixiangqian
+ * @since 2026/10/18 18:30
+ */
+public final class BatchingQueryExecutor implements QueryExecutor {
+    private static final String PLACEHOLDER = "__batch__";
+    private static final Set<String> NAME_DROPPING_AGGREGATIONS = new HashSet<>(Arrays.asList(
+            "sum", "min", "max", "avg", "count", "group", "stddev", "stdvar"));
+    private static final Set<String> NAME_KEEPING_AGGREGATIONS = new HashSet<>(Arrays.asList("topk", "bottomk"));
+
+    private final QueryExecutor delegate;
+    private final long windowMillis;
+    private final int maxBatchSize;
+    private final ConcurrentMap<BatchKey, Batch> pending = new ConcurrentHashMap<>();
+    private final LongAdder submitted = new LongAdder();
+    private final LongAdder executed = new LongAdder();
+
+    private BatchingQueryExecutor(Builder builder) {
+        this.delegate = builder.delegate;
+        this.windowMillis = builder.windowMillis;
+        this.maxBatchSize = builder.maxBatchSize;
+    }
+
+    public static Builder builder(QueryExecutor delegate) {
+        return new Builder(delegate);
+    }
+
+    @Override
+    public QueryResult execute(QueryRequest request) {
+        Shape shape = Shape.of(request);
+        if (shape == null) {
+            executed.increment();
+            return delegate.execute(request);
+        }
+        submitted.increment();
+        BatchKey key = new BatchKey(shape.text, request);
+        while (true) {
+            Batch batch = pending.get(key);
+            if (batch == null) {
+                Batch created = new Batch(shape, request);
+                if (pending.putIfAbsent(key, created) == null) {
+                    return lead(key, created, shape.metric);
+                }
+                continue;
+            }
+            CompletableFuture<QueryResult> future = batch.join(shape.metric, maxBatchSize);
+            if (future != null) {
+                return Futures.await(future, 0, request);
+            }
+            // 该批次已关闭但尚未从pending移除，重新获取
+            Thread.yield();
+        }
+    }
+
+    private QueryResult lead(BatchKey key, Batch batch, String metric) {
+        CompletableFuture<QueryResult> own = batch.join(metric, maxBatchSize);
+        Map<String, CompletableFuture<QueryResult>> members = batch.awaitAndClose(windowMillis, maxBatchSize);
+        pending.remove(key, batch);
+        executed.increment();
+        try {
+            if (members.size() == 1) {
+                own.complete(delegate.execute(batch.request));
+            } else {
+                demux(batch.shape, delegate.execute(batch.shape.merge(members.keySet(), batch.request)), members);
+            }
+        } catch (RuntimeException | Error e) {
+            for (CompletableFuture<QueryResult> future : members.values()) {
+                future.completeExceptionally(e);
+            }
+            throw e;
+        }
+        return own.join();
+    }
+
+    private static void demux(Shape shape, QueryResult merged, Map<String, CompletableFuture<QueryResult>> members) {
+        Map<String, List<Series>> split = new LinkedHashMap<>(members.size() * 2);
+        for (String metric : members.keySet()) {
+            split.put(metric, new ArrayList<>());
+        }
+        for (Series series : merged.getSeries()) {
+            List<Series> target = split.get(series.getLabels().get(LabelMatcher.METRIC_NAME));
+            if (target != null) {
+                target.add(shape.stripName ? new Series(series.getLabels().without(LabelMatcher.METRIC_NAME), series.timestamps(), series.values()) : series);
+            }
+        }
+        for (Map.Entry<String, CompletableFuture<QueryResult>> entry : members.entrySet()) {
+            entry.getValue().complete(new QueryResult(merged.getResultType(), split.get(entry.getKey()), merged.getWarnings()));
+        }
+    }
+
+    /**
+     * 参与合并的请求数
+     */
+    public long getSubmitted() {
+        return submitted.sum();
+    }
+
+    /**
+     * 实际发往下游的查询数，含不可合并的查询
+     */
+    public long getExecuted() {
+        return executed.sum();
+    }
+
+    /**
+     * 去掉metric名后的查询结构
+     */
+    private static final class Shape {
+        private final String metric;
+        private final VectorSelector selector;
+        private final AggregateExpr aggregate;
+        /**
+         * 以占位符代替metric名打印的查询，结构相同的查询才能合并
+         */
+        private final String text;
+        /**
+         * 合并时为拆分加入了__name__分组，拆分后需去掉
+         */
+        private final boolean stripName;
+
+        private Shape(String metric, VectorSelector selector, AggregateExpr aggregate) {
+            this.metric = metric;
+            this.selector = selector;
+            this.aggregate = aggregate;
+            VectorSelector template = new VectorSelector(PLACEHOLDER, selector.getMatchers(), selector.getOffset(), selector.getAt());
+            this.text = PromPrinter.print(aggregate == null ? template
+                    : new AggregateExpr(aggregate.getOp(), template, aggregate.getParam(), aggregate.getGrouping(), false));
+            this.stripName = aggregate != null && NAME_DROPPING_AGGREGATIONS.contains(aggregate.getOp())
+                    && !aggregate.getGrouping().contains(LabelMatcher.METRIC_NAME);
+        }
+
+        /**
+         * @return 不可合并时返回null
+         */
+        static Shape of(QueryRequest request) {
+            Expr expr;
+            try {
+                expr = ExprNormalizer.normalize(PromParser.parse(request.getQuery()));
+            } catch (PromParseException e) {
+                return null;
+            }
+            if (expr instanceof VectorSelector) {
+                VectorSelector selector = (VectorSelector) expr;
+                return batchable(selector) ? new Shape(selector.getMetricName(), selector, null) : null;
+            }
+            if (expr instanceof AggregateExpr) {
+                AggregateExpr aggregate = (AggregateExpr) expr;
+                boolean supported = NAME_DROPPING_AGGREGATIONS.contains(aggregate.getOp()) && aggregate.getParam() == null
+                        || NAME_KEEPING_AGGREGATIONS.contains(aggregate.getOp());
+                if (supported && !aggregate.isWithout() && aggregate.getExpr() instanceof VectorSelector
+                        && batchable((VectorSelector) aggregate.getExpr())) {
+                    VectorSelector selector = (VectorSelector) aggregate.getExpr();
+                    return new Shape(selector.getMetricName(), selector, aggregate);
+                }
+            }
+            return null;
+        }
+
+        private static boolean batchable(VectorSelector selector) {
+            if (selector.getMetricName() == null) {
+                return false;
+            }
+            for (LabelMatcher matcher : selector.getMatchers()) {
+                if (LabelMatcher.METRIC_NAME.equals(matcher.getName())) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        /**
+         * 生成合并后的请求，metric名均为合法标识符，无需正则转义
+         */
+        QueryRequest merge(Set<String> metrics, QueryRequest request) {
+            List<LabelMatcher> matchers = new ArrayList<>(selector.getMatchers().size() + 1);
+            matchers.add(new LabelMatcher(LabelMatcher.METRIC_NAME, MatchOp.RE, String.join("|", metrics)));
+            matchers.addAll(selector.getMatchers());
+            Expr merged = new VectorSelector(null, matchers, selector.getOffset(), selector.getAt());
+            if (aggregate != null) {
+                List<String> grouping = new ArrayList<>(aggregate.getGrouping().size() + 1);
+                if (!aggregate.getGrouping().contains(LabelMatcher.METRIC_NAME)) {
+                    grouping.add(LabelMatcher.METRIC_NAME);
+                }
+                grouping.addAll(aggregate.getGrouping());
+                merged = new AggregateExpr(aggregate.getOp(), merged, aggregate.getParam(), grouping, false);
+            }
+            String query = PromPrinter.print(merged);
+            if (request.isRange()) {
+                return QueryRequest.range(query, request.getStart(), request.getEnd(), request.getStep());
+            }
+            return request.getTime() == null ? QueryRequest.instant(query) : QueryRequest.instant(query, request.getTime());
+        }
+    }
+
+    private static final class Batch {
+        private final Shape shape;
+        /**
+         * 发起批次的请求，批次只有一个metric时原样执行
+         */
+        private final QueryRequest request;
+        private final Map<String, CompletableFuture<QueryResult>> members = new LinkedHashMap<>();
+        private boolean closed;
+
+        private Batch(Shape shape, QueryRequest request) {
+            this.shape = shape;
+            this.request = request;
+        }
+
+        /**
+         * 加入批次，同一metric的请求共享结果
+         *
+         * @return 批次已关闭时返回null
+         */
+        synchronized CompletableFuture<QueryResult> join(String metric, int maxBatchSize) {
+            if (closed) {
+                return null;
+            }
+            CompletableFuture<QueryResult> future = members.computeIfAbsent(metric, k -> new CompletableFuture<>());
+            if (members.size() >= maxBatchSize) {
+                notifyAll();
+            }
+            return future;
+        }
+
+        /**
+         * 等待窗口结束或批次凑满，然后关闭批次
+         */
+        synchronized Map<String, CompletableFuture<QueryResult>> awaitAndClose(long windowMillis, int maxBatchSize) {
+            long deadline = System.nanoTime() + windowMillis * 1_000_000L;
+            long remaining;
+            while (members.size() < maxBatchSize && (remaining = deadline - System.nanoTime()) > 0) {
+                try {
+                    wait(remaining / 1_000_000L, (int) (remaining % 1_000_000L));
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    break;
+                }
+            }
+            closed = true;
+            return members;
+        }
+    }
+
+    @EqualsAndHashCode
+    private static final class BatchKey {
+        private final String shape;
+        private final Long time;
+        private final long start;
+        private final long end;
+        private final long step;
+
+        private BatchKey(String shape, QueryRequest request) {
+            this.shape = shape;
+            this.time = request.getTime();
+            this.start = request.getStart();
+            this.end = request.getEnd();
+            this.step = request.getStep();
+        }
+    }
+
+    public static final class Builder {
+        private final QueryExecutor delegate;
+        private long windowMillis = 5;
+        private int maxBatchSize = 64;
+
+        private Builder(QueryExecutor delegate) {
+            Asserts.notNull(delegate, "delegate must not be null");
+            this.delegate = delegate;
+        }
+
+        /**
+         * 合并窗口，默认5毫秒，即批次中第一个请求最多额外等待的时间
+         */
+        public Builder windowMillis(long windowMillis) {
+            Asserts.isTrue(windowMillis >= 0, "windowMillis must not be negative");
+            this.windowMillis = windowMillis;
+            return this;
+        }
+
+        /**
+         * 单个批次的最大metric数，凑满后立即执行，默认64
+         */
+        public Builder maxBatchSize(int maxBatchSize) {
+            Asserts.isTrue(maxBatchSize > 0, "maxBatchSize must be positive");
+            this.maxBatchSize = maxBatchSize;
+            return this;
+        }
+
+        public BatchingQueryExecutor build() {
+            return new BatchingQueryExecutor(this);
+        }
+    }
+}
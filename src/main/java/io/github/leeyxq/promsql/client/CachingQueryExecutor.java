@@ -0,0 +1,166 @@
+package io.github.leeyxq.promsql.client;
+
+import io.github.leeyxq.promsql.util.Asserts;
+import lombok.Getter;
+
+import java.util.Arrays;
+import java.util.function.LongSupplier;
+
+/**
+ * 带结果缓存的查询执行器
+ * <ul>
+ *     <li>区间查询先把start、end向下对齐到step，不同时刻刷新的同一面板命中同一缓存键</li>
+ *     <li>早于 当前时间-maxFreshness 的数据不再变化，这部分结果按historicalTtl长期缓存；
+ *     之后仍在写入的尾部按recentTtl短期缓存</li>
+ *     <li>跨越两者的区间查询在按historyGranularity对齐的边界处拆为两段分别缓存，再拼接结果，
+ *     尾部过期重查时历史段仍可命中；含@ start()、@ end()的查询不拆分，整体按recentTtl缓存</li>
+ *     <li>未指定时间的瞬时查询不缓存</li>
+ * </ul>
+ *
+ * @author lixiangqian
+ * @since 2026/10/18 17:00
+ */
+public final class CachingQueryExecutor implements QueryExecutor {
+    private final QueryExecutor delegate;
+    @Getter
+    private final ResultCache cache;
+    private final long historicalTtlMillis;
+    private final long recentTtlMillis;
+    private final long maxFreshnessMillis;
+    private final long historyGranularityMillis;
+    private final LongSupplier clock;
+
+    private CachingQueryExecutor(Builder builder) {
+        this.delegate = builder.delegate;
+        this.clock = builder.clock;
+        this.cache = builder.cache == null ? new ResultCache(builder.maxEntries, builder.maxSamples, clock) : builder.cache;
+        this.historicalTtlMillis = builder.historicalTtlMillis;
+        this.recentTtlMillis = builder.recentTtlMillis;
+        this.maxFreshnessMillis = builder.maxFreshnessMillis;
+        this.historyGranularityMillis = builder.historyGranularityMillis;
+    }
+
+    public static Builder builder(QueryExecutor delegate) {
+        return new Builder(delegate);
+    }
+
+    @Override
+    public QueryResult execute(QueryRequest request) {
+        long immutableBefore = clock.getAsLong() - maxFreshnessMillis;
+        if (!request.isRange()) {
+            if (request.getTime() == null) {
+                return delegate.execute(request);
+            }
+            return cached(request, request.getTime() < immutableBefore ? historicalTtlMillis : recentTtlMillis);
+        }
+        QueryRequest aligned = request.stepAligned();
+        long step = aligned.getStep();
+        // 历史段边界对齐到step的整数倍，且在一个粒度周期内保持不变
+        long granularity = Math.max(step, (historyGranularityMillis + step - 1) / step * step);
+        long boundary = Math.floorDiv(immutableBefore, granularity) * granularity;
+        if (aligned.getEnd() < boundary) {
+            return cached(aligned, historicalTtlMillis);
+        }
+        if (aligned.getStart() >= boundary || aligned.dependsOnRange()) {
+            return cached(aligned, recentTtlMillis);
+        }
+        QueryResult historical = cached(aligned.withRange(aligned.getStart(), boundary - step), historicalTtlMillis);
+        QueryResult recent = cached(aligned.withRange(boundary, aligned.getEnd()), recentTtlMillis);
+        return QueryResult.concat(Arrays.asList(historical, recent));
+    }
+
+    private QueryResult cached(QueryRequest request, long ttlMillis) {
+        ResultCache.Key key = ResultCache.Key.of(request);
+        QueryResult result = cache.get(key);
+        if (result == null) {
+            result = delegate.execute(request);
+            cache.put(key, result, ttlMillis);
+        }
+        return result;
+    }
+
+    public static final class Builder {
+        private final QueryExecutor delegate;
+        private ResultCache cache;
+        private int maxEntries = 10_000;
+        private long maxSamples = 10_000_000;
+        private long historicalTtlMillis = 24 * 3600_000L;
+        private long recentTtlMillis = 10_000;
+        private long maxFreshnessMillis = 5 * 60_000L;
+        private long historyGranularityMillis = 3600_000L;
+        private LongSupplier clock = System::currentTimeMillis;
+
+        private Builder(QueryExecutor delegate) {
+            Asserts.notNull(delegate, "delegate must not be null");
+            this.delegate = delegate;
+        }
+
+        /**
+         * 使用已有缓存，多个执行器可共享；设置后maxEntries、maxSamples不再生效
+         */
+        public Builder cache(ResultCache cache) {
+            this.cache = cache;
+            return this;
+        }
+
+        public Builder maxEntries(int maxEntries) {
+            this.maxEntries = maxEntries;
+            return this;
+        }
+
+        /**
+         * 缓存的最大样本总数，默认1000万（约160MB）
+         */
+        public Builder maxSamples(long maxSamples) {
+            this.maxSamples = maxSamples;
+            return this;
+        }
+
+        /**
+         * 不再变化的历史数据的缓存时间，默认24小时
+         */
+        public Builder historicalTtlMillis(long historicalTtlMillis) {
+            this.historicalTtlMillis = historicalTtlMillis;
+            return this;
+        }
+
+        /**
+         * 仍在写入的近期数据的缓存时间，默认10秒
+         */
+        public Builder recentTtlMillis(long recentTtlMillis) {
+            this.recentTtlMillis = recentTtlMillis;
+            return this;
+        }
+
+        /**
+         * 距今多久以内的数据仍可能变化（采集延迟、乱序写入），默认5分钟
+         */
+        public Builder maxFreshnessMillis(long maxFreshnessMillis) {
+            Asserts.isTrue(maxFreshnessMillis >= 0, "maxFreshnessMillis must not be negative");
+            this.maxFreshnessMillis = maxFreshnessMillis;
+            return this;
+        }
+
+        /**
+         * 历史段边界的对齐粒度，默认1小时；越大历史段的缓存键越稳定，近期段越长
+         */
+        public Builder historyGranularityMillis(long historyGranularityMillis) {
+            Asserts.isTrue(historyGranularityMillis > 0, "historyGranularityMillis must be positive");
+            this.historyGranularityMillis = historyGranularityMillis;
+            return this;
+        }
+
+        /**
+         * 毫秒时钟，便于测试
+         */
+        public Builder clock(LongSupplier clock) {
+            Asserts.notNull(clock, "clock must not be null");
+            this.clock = clock;
+            return this;
+        }
+
+        public CachingQueryExecutor build() {
+            return new CachingQueryExecutor(this);
+        }
+    }
+}
@@ -0,0 +1,110 @@
+package io.github.leeyxq.promsql.client;
+
+import io.github.leeyxq.promsql.util.Asserts;
+import lombok.EqualsAndHashCode;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 合并并发相同查询的执行器（singleflight）：规范化查询、时间、step都相同的请求同时到达时，
+ * 只有第一个请求真正执行，其余请求等待并共享其结果或异常。
+ * <p>
+ * 等待者通过ConcurrentHashMap.putIfAbsent登记，无需加锁；执行者完成后先移除登记再通知等待者，
+ * 之后到达的请求会发起新的查询，不会拿到过时结果。
+ *
+ * @author lixiangqian
+ * @since 2026/10/18 18:00
+ */
+public final class CoalescingQueryExecutor implements QueryExecutor {
+    private final QueryExecutor delegate;
+    private final long waitTimeoutMillis;
+    private final ConcurrentMap<Key, CompletableFuture<QueryResult>> inflight = new ConcurrentHashMap<>();
+    private final LongAdder executed = new LongAdder();
+    private final LongAdder coalesced = new LongAdder();
+
+    public CoalescingQueryExecutor(QueryExecutor delegate) {
+        this(delegate, 0);
+    }
+
+    /**
+     * @param delegate          实际执行查询的执行器
+     * @param waitTimeoutMillis 等待者的最长等待时间，0表示一直等到执行者结束
+     */
+    public CoalescingQueryExecutor(QueryExecutor delegate, long waitTimeoutMillis) {
+        Asserts.notNull(delegate, "delegate must not be null");
+        Asserts.isTrue(waitTimeoutMillis >= 0, "waitTimeoutMillis must not be negative");
+        this.delegate = delegate;
+        this.waitTimeoutMillis = waitTimeoutMillis;
+    }
+
+    @Override
+    public QueryResult execute(QueryRequest request) {
+        Key key = new Key(request);
+        CompletableFuture<QueryResult> future = inflight.get(key);
+        if (future == null) {
+            CompletableFuture<QueryResult> created = new CompletableFuture<>();
+            future = inflight.putIfAbsent(key, created);
+            if (future == null) {
+                return executeAsLeader(key, request, created);
+            }
+        }
+        coalesced.increment();
+        return Futures.await(future, waitTimeoutMillis, request);
+    }
+
+    private QueryResult executeAsLeader(Key key, QueryRequest request, CompletableFuture<QueryResult> future) {
+        executed.increment();
+        QueryResult result;
+        try {
+            result = delegate.execute(request);
+        } catch (RuntimeException | Error e) {
+            inflight.remove(key, future);
+            future.completeExceptionally(e);
+            throw e;
+        }
+        inflight.remove(key, future);
+        future.complete(result);
+        return result;
+    }
+
+    /**
+     * 实际发往下游的查询数
+     */
+    public long getExecuted() {
+        return executed.sum();
+    }
+
+    /**
+     * 合并到进行中查询的请求数
+     */
+    public long getCoalesced() {
+        return coalesced.sum();
+    }
+
+    /**
+     * 当前进行中的查询数
+     */
+    public int inflightCount() {
+        return inflight.size();
+    }
+
+    @EqualsAndHashCode
+    private static final class Key {
+        private final long fingerprint;
+        private final Long time;
+        private final long start;
+        private final long end;
+        private final long step;
+
+        private Key(QueryRequest request) {
+            this.fingerprint = request.fingerprint();
+            this.time = request.getTime();
+            this.start = request.getStart();
+            this.end = request.getEnd();
+            this.step = request.getStep();
+        }
+    }
+}
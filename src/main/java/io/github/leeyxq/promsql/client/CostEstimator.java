@@ -0,0 +1,297 @@
+package io.github.leeyxq.promsql.client;
+
+import io.github.leeyxq.promsql.ast.AggregateExpr;
+import io.github.leeyxq.promsql.ast.BinaryExpr;
+import io.github.leeyxq.promsql.ast.Call;
+import io.github.leeyxq.promsql.ast.Expr;
+import io.github.leeyxq.promsql.ast.ExprVisitor;
+import io.github.leeyxq.promsql.ast.LabelMatcher;
+import io.github.leeyxq.promsql.ast.MatchOp;
+import io.github.leeyxq.promsql.ast.MatcherOptimizer;
+import io.github.leeyxq.promsql.ast.MatrixSelector;
+import io.github.leeyxq.promsql.ast.NumberLiteral;
+import io.github.leeyxq.promsql.ast.RawSuffixExpr;
+import io.github.leeyxq.promsql.ast.StringLiteral;
+import io.github.leeyxq.promsql.ast.SubqueryExpr;
+import io.github.leeyxq.promsql.ast.UnaryExpr;
+import io.github.leeyxq.promsql.ast.VectorSelector;
+import io.github.leeyxq.promsql.parser.PromParser;
+import io.github.leeyxq.promsql.util.Asserts;
+import io.github.leeyxq.promsql.util.DurationUtil;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.function.Supplier;
+
+/**
+ * 查询开销估算，在查询发送前遍历表达式树估算涉及的序列数和扫描的样本数
+ * <ul>
+ *     <li>序列数：metric的序列数取自{@link SeriesCountSnapshot}，未知时取defaultSeriesPerMetric；
+ *     每个=或字面量多选条件按matcherSelectivity缩小；不限定metric的选择器按全部序列计</li>
+ *     <li>每次求值的样本数：区间选择器为 时间区间/采集间隔，瞬时选择器为1</li>
+ *     <li>求值次数：区间查询为 (end-start)/step+1，瞬时查询为1；子查询内层再乘以 区间/求值间隔</li>
+ * </ul>
+ * 实例不可变，线程安全。
+ *
+ * @author lixiangqian
+ * @since 2026/10/18 19:30
+ */
+public final class CostEstimator {
+    /**
+     * Prometheus瞬时选择器的默认回溯时间
+     */
+    private static final long LOOKBACK_DELTA = 5 * DurationUtil.MINUTE;
+    /**
+     * 子查询未指定求值间隔时使用全局evaluation_interval，默认1分钟
+     */
+    private static final long DEFAULT_SUBQUERY_STEP = DurationUtil.MINUTE;
+
+    private final Supplier<SeriesCountSnapshot> snapshot;
+    private final long defaultSeriesPerMetric;
+    private final long unboundedSeries;
+    private final long scrapeIntervalMillis;
+    private final double matcherSelectivity;
+
+    private CostEstimator(Builder builder) {
+        this.snapshot = builder.snapshot;
+        this.defaultSeriesPerMetric = builder.defaultSeriesPerMetric;
+        this.unboundedSeries = builder.unboundedSeries;
+        this.scrapeIntervalMillis = builder.scrapeIntervalMillis;
+        this.matcherSelectivity = builder.matcherSelectivity;
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * 估算请求的开销，需解析查询文本
+     */
+    public QueryCost estimate(QueryRequest request) {
+        Expr expr = PromParser.parse(request.getQuery());
+        return request.isRange() ? estimate(expr, request.getStart(), request.getEnd(), request.getStep()) : estimate(expr);
+    }
+
+    /**
+     * 估算瞬时查询的开销，可直接传入{@code PromSqlBuilder.toExpr()}，无需生成查询文本
+     */
+    public QueryCost estimate(Expr expr) {
+        return estimate(expr, 1, 0);
+    }
+
+    /**
+     * 估算区间查询的开销
+     */
+    public QueryCost estimate(Expr expr, long start, long end, long step) {
+        Asserts.isTrue(step > 0, "step must be positive");
+        return estimate(expr, (end - start) / step + 1, end - start);
+    }
+
+    private QueryCost estimate(Expr expr, long evaluations, long spanMillis) {
+        Estimation estimation = new Estimation(snapshot.get(), evaluations);
+        expr.accept(estimation);
+        return new QueryCost(estimation.series, estimation.samples, estimation.lookback + spanMillis, estimation.unbounded);
+    }
+
+    private static long saturate(double value) {
+        return value >= Long.MAX_VALUE ? Long.MAX_VALUE : (long) Math.ceil(value);
+    }
+
+    /**
+     * 单次估算的累加状态
+     */
+    private final class Estimation implements ExprVisitor<Void> {
+        private final SeriesCountSnapshot snapshot;
+        private long evaluations;
+        private long rangeMillis;
+        /**
+         * 外层子查询的区间及offset使内层回溯得更早
+         */
+        private long shiftMillis;
+        private long series;
+        private long samples;
+        private long lookback;
+        private boolean unbounded;
+
+        private Estimation(SeriesCountSnapshot snapshot, long evaluations) {
+            this.snapshot = snapshot == null ? SeriesCountSnapshot.EMPTY : snapshot;
+            this.evaluations = evaluations;
+        }
+
+        @Override
+        public Void visitVectorSelector(VectorSelector expr) {
+            long count = selectorSeries(expr);
+            double perEvaluation = rangeMillis > 0 ? Math.max(1, rangeMillis / scrapeIntervalMillis) : 1;
+            series = saturate((double) series + count);
+            samples = saturate(samples + (double) count * perEvaluation * evaluations);
+            Long offset = expr.getOffset() == null ? null : DurationUtil.parseMillis(expr.getOffset());
+            lookback = Math.max(lookback, shiftMillis + (rangeMillis > 0 ? rangeMillis : LOOKBACK_DELTA) + (offset == null ? 0 : Math.max(0, offset)));
+            return null;
+        }
+
+        @Override
+        public Void visitMatrixSelector(MatrixSelector expr) {
+            Long range = DurationUtil.parseMillis(expr.getRange());
+            rangeMillis = range == null ? LOOKBACK_DELTA : range;
+            expr.getSelector().accept(this);
+            rangeMillis = 0;
+            return null;
+        }
+
+        @Override
+        public Void visitSubquery(SubqueryExpr expr) {
+            Long range = DurationUtil.parseMillis(expr.getRange());
+            Long step = expr.getStep() == null ? null : DurationUtil.parseMillis(expr.getStep());
+            Long offset = expr.getOffset() == null ? null : DurationUtil.parseMillis(expr.getOffset());
+            long rangeValue = range == null ? LOOKBACK_DELTA : range;
+            long stepValue = step == null || step <= 0 ? DEFAULT_SUBQUERY_STEP : step;
+            long outerEvaluations = evaluations;
+            long outerShift = shiftMillis;
+            evaluations = saturate((double) evaluations * Math.max(1, rangeValue / stepValue));
+            shiftMillis += rangeValue + (offset == null ? 0 : Math.max(0, offset));
+            expr.getExpr().accept(this);
+            evaluations = outerEvaluations;
+            shiftMillis = outerShift;
+            return null;
+        }
+
+        @Override
+        public Void visitCall(Call expr) {
+            for (Expr arg : expr.getArgs()) {
+                arg.accept(this);
+            }
+            return null;
+        }
+
+        @Override
+        public Void visitAggregate(AggregateExpr expr) {
+            if (expr.getParam() != null) {
+                expr.getParam().accept(this);
+            }
+            expr.getExpr().accept(this);
+            return null;
+        }
+
+        @Override
+        public Void visitBinary(BinaryExpr expr) {
+            expr.getLhs().accept(this);
+            expr.getRhs().accept(this);
+            return null;
+        }
+
+        @Override
+        public Void visitUnary(UnaryExpr expr) {
+            expr.getExpr().accept(this);
+            return null;
+        }
+
+        @Override
+        public Void visitNumber(NumberLiteral expr) {
+            return null;
+        }
+
+        @Override
+        public Void visitString(StringLiteral expr) {
+            return null;
+        }
+
+        @Override
+        public Void visitRawSuffix(RawSuffixExpr expr) {
+            expr.getExpr().accept(this);
+            return null;
+        }
+
+        private long selectorSeries(VectorSelector selector) {
+            List<String> metrics = selector.getMetricName() == null ? null : Collections.singletonList(selector.getMetricName());
+            int restricting = 0;
+            for (LabelMatcher matcher : selector.getMatchers()) {
+                boolean literal = matcher.getOp() == MatchOp.EQ
+                        || matcher.getOp() == MatchOp.RE && MatcherOptimizer.literalAlternatives(matcher.getValue()) != null;
+                if (LabelMatcher.METRIC_NAME.equals(matcher.getName())) {
+                    if (metrics == null && literal) {
+                        metrics = matcher.getOp() == MatchOp.EQ ? Collections.singletonList(matcher.getValue())
+                                : MatcherOptimizer.literalAlternatives(matcher.getValue());
+                    }
+                } else if (literal && !matcher.getValue().isEmpty()) {
+                    restricting++;
+                }
+            }
+            double count;
+            if (metrics == null) {
+                unbounded = true;
+                long total = snapshot.totalSeries();
+                count = total < 0 ? unboundedSeries : total;
+            } else {
+                count = 0;
+                for (String metric : metrics) {
+                    long known = snapshot.seriesCount(metric);
+                    count += known < 0 ? defaultSeriesPerMetric : known;
+                }
+            }
+            return Math.max(count == 0 ? 0 : 1, saturate(count * Math.pow(matcherSelectivity, restricting)));
+        }
+    }
+
+    public static final class Builder {
+        private Supplier<SeriesCountSnapshot> snapshot = () -> SeriesCountSnapshot.EMPTY;
+        private long defaultSeriesPerMetric = 1000;
+        private long unboundedSeries = 1_000_000;
+        private long scrapeIntervalMillis = 15_000;
+        private double matcherSelectivity = 0.1;
+
+        private Builder() {
+        }
+
+        /**
+         * 序列数快照，每次估算时获取，便于定期整体替换，如{@code AtomicReference::get}
+         */
+        public Builder snapshot(Supplier<SeriesCountSnapshot> snapshot) {
+            Asserts.notNull(snapshot, "snapshot must not be null");
+            this.snapshot = snapshot;
+            return this;
+        }
+
+        public Builder snapshot(SeriesCountSnapshot snapshot) {
+            Asserts.notNull(snapshot, "snapshot must not be null");
+            return snapshot(() -> snapshot);
+        }
+
+        /**
+         * 快照中没有的metric按此序列数估算，默认1000
+         */
+        public Builder defaultSeriesPerMetric(long defaultSeriesPerMetric) {
+            this.defaultSeriesPerMetric = defaultSeriesPerMetric;
+            return this;
+        }
+
+        /**
+         * 快照为空时不限定metric的选择器按此序列数估算，默认100万
+         */
+        public Builder unboundedSeries(long unboundedSeries) {
+            this.unboundedSeries = unboundedSeries;
+            return this;
+        }
+
+        /**
+         * 采集间隔，默认15秒
+         */
+        public Builder scrapeIntervalMillis(long scrapeIntervalMillis) {
+            Asserts.isTrue(scrapeIntervalMillis > 0, "scrapeIntervalMillis must be positive");
+            this.scrapeIntervalMillis = scrapeIntervalMillis;
+            return this;
+        }
+
+        /**
+         * 每个=或字面量多选条件保留的序列比例，默认0.1
+         */
+        public Builder matcherSelectivity(double matcherSelectivity) {
+            Asserts.isTrue(matcherSelectivity > 0 && matcherSelectivity <= 1, "matcherSelectivity must be in (0, 1]");
+            this.matcherSelectivity = matcherSelectivity;
+            return this;
+        }
+
+        public CostEstimator build() {
+            return new CostEstimator(this);
+        }
+    }
+}
@@ -0,0 +1,194 @@
+package io.github.leeyxq.promsql.client;
+
+import io.github.leeyxq.promsql.PromHelper;
+import io.github.leeyxq.promsql.ast.Expr;
+import io.github.leeyxq.promsql.parser.PromParseException;
+import io.github.leeyxq.promsql.util.Asserts;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 查询开销防护：发送前估算开销，超出预算时拒绝或仅告警
+ * <ul>
+ *     <li>maxSeries：涉及的序列数</li>
+ *     <li>maxSamples：扫描的样本数，如sum(rate(x[30d]))的区间查询</li>
+ *     <li>maxLookbackMillis：最早读取的数据距今时长，含时间区间、offset及查询跨度</li>
+ *     <li>rejectUnbounded：不限定metric的选择器，如{__name__=~".*"}</li>
+ * </ul>
+ * 无法解析的查询不做估算，直接交给下游。
+ *
+ * @author lixiangqian
+ * @since 2026/10/18 19:30
+ */
+@Slf4j
+public final class CostGuardQueryExecutor implements QueryExecutor {
+    private final QueryExecutor delegate;
+    private final CostEstimator estimator;
+    private final long maxSeries;
+    private final long maxSamples;
+    private final long maxLookbackMillis;
+    private final boolean rejectUnbounded;
+    private final boolean warnOnly;
+    private final LongAdder rejected = new LongAdder();
+    private final LongAdder warned = new LongAdder();
+
+    private CostGuardQueryExecutor(Builder builder) {
+        this.delegate = builder.delegate;
+        this.estimator = builder.estimator == null ? CostEstimator.builder().build() : builder.estimator;
+        this.maxSeries = builder.maxSeries;
+        this.maxSamples = builder.maxSamples;
+        this.maxLookbackMillis = builder.maxLookbackMillis;
+        this.rejectUnbounded = builder.rejectUnbounded;
+        this.warnOnly = builder.warnOnly;
+    }
+
+    public static Builder builder(QueryExecutor delegate) {
+        return new Builder(delegate);
+    }
+
+    @Override
+    public QueryResult execute(QueryRequest request) {
+        try {
+            check(request);
+        } catch (PromParseException e) {
+            log.debug("skip cost check for unparsable query: {}", request, e);
+        }
+        return delegate.execute(request);
+    }
+
+    /**
+     * 估算并检查请求的开销
+     *
+     * @param request 查询请求
+     * @return 估算的开销
+     * @throws QueryRejectedException 超出预算且非仅告警模式
+     */
+    public QueryCost check(QueryRequest request) {
+        QueryCost cost = estimator.estimate(request);
+        enforce(cost, request);
+        return cost;
+    }
+
+    /**
+     * 直接按构建器的表达式树（预计算规则改写后）估算并检查区间查询的开销，不生成查询文本
+     *
+     * @throws QueryRejectedException 超出预算且非仅告警模式
+     */
+    public QueryCost check(PromHelper.PromSqlBuilder builder, long start, long end, long step) {
+        Expr expr = builder.toRewrittenExpr();
+        QueryCost cost = estimator.estimate(expr, start, end, step);
+        enforce(cost, expr);
+        return cost;
+    }
+
+    private void enforce(QueryCost cost, Object query) {
+        List<String> violations = violations(cost);
+        if (violations.isEmpty()) {
+            return;
+        }
+        String message = "query exceeds cost budget (" + String.join("; ", violations) + "): " + query;
+        if (warnOnly) {
+            warned.increment();
+            log.warn(message);
+            return;
+        }
+        rejected.increment();
+        throw new QueryRejectedException(message, cost);
+    }
+
+    private List<String> violations(QueryCost cost) {
+        List<String> violations = new ArrayList<>(0);
+        if (rejectUnbounded && cost.isUnbounded()) {
+            violations.add("selector without metric name");
+        }
+        if (cost.getSeries() > maxSeries) {
+            violations.add("series " + cost.getSeries() + " > " + maxSeries);
+        }
+        if (cost.getSamples() > maxSamples) {
+            violations.add("samples " + cost.getSamples() + " > " + maxSamples);
+        }
+        if (cost.getLookbackMillis() > maxLookbackMillis) {
+            violations.add("lookback " + cost.getLookbackMillis() + "ms > " + maxLookbackMillis + "ms");
+        }
+        return violations;
+    }
+
+    public CostEstimator getEstimator() {
+        return estimator;
+    }
+
+    public long getRejected() {
+        return rejected.sum();
+    }
+
+    public long getWarned() {
+        return warned.sum();
+    }
+
+    public static final class Builder {
+        private final QueryExecutor delegate;
+        private CostEstimator estimator;
+        private long maxSeries = 100_000;
+        private long maxSamples = 50_000_000;
+        private long maxLookbackMillis = Long.MAX_VALUE;
+        private boolean rejectUnbounded = true;
+        private boolean warnOnly;
+
+        private Builder(QueryExecutor delegate) {
+            Asserts.notNull(delegate, "delegate must not be null");
+            this.delegate = delegate;
+        }
+
+        public Builder estimator(CostEstimator estimator) {
+            this.estimator = estimator;
+            return this;
+        }
+
+        /**
+         * 最大序列数，默认10万
+         */
+        public Builder maxSeries(long maxSeries) {
+            this.maxSeries = maxSeries;
+            return this;
+        }
+
+        /**
+         * 最大样本数，默认5000万（Prometheus的query.max-samples默认值）
+         */
+        public Builder maxSamples(long maxSamples) {
+            this.maxSamples = maxSamples;
+            return this;
+        }
+
+        /**
+         * 最早可读取的数据距今时长，默认不限制
+         */
+        public Builder maxLookbackMillis(long maxLookbackMillis) {
+            this.maxLookbackMillis = maxLookbackMillis;
+            return this;
+        }
+
+        /**
+         * 是否拒绝不限定metric的选择器，默认是
+         */
+        public Builder rejectUnbounded(boolean rejectUnbounded) {
+            this.rejectUnbounded = rejectUnbounded;
+            return this;
+        }
+
+        /**
+         * 仅告警模式：超出预算时只记录日志，不拒绝，便于上线前观察
+         */
+        public Builder warnOnly(boolean warnOnly) {
+            this.warnOnly = warnOnly;
+            return this;
+        }
+
+        public CostGuardQueryExecutor build() {
+            return new CostGuardQueryExecutor(this);
+        }
+    }
+}
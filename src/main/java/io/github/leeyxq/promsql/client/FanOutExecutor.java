@@ -0,0 +1,282 @@
+package io.github.leeyxq.promsql.client;
+
+import io.github.leeyxq.promsql.PromHelper;
+import io.github.leeyxq.promsql.util.Asserts;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * 并发扇出执行一批查询，如渲染仪表盘时一次提交全部面板的查询，按提交顺序返回结果
+ * <pre>{@code
+ * FanOutExecutor fanOut = FanOutExecutor.builder(client).maxConcurrency(64).build();
+ * List<QueryResult> results = fanOut.executeAll(requests, 32, 10_000);
+ * }</pre>
+ * <ul>
+ *     <li>Java 21及以上每个查询一个虚拟线程，Java 8使用有界的平台线程池，由多版本jar自动选择</li>
+ *     <li>每次调用最多同时执行maxConcurrency个查询，一个结束后才开始下一个，避免一次扇出压垮Prometheus</li>
+ *     <li>超过deadline时未完成的结果以{@link PromQueryException}结束，尚未开始的查询不再执行，执行中的查询被中断</li>
+ * </ul>
+ *
+ * @author lixiangqian
+ * @since 2026/10/18 23:00
+ */
+public final class FanOutExecutor implements AutoCloseable {
+    private static final AtomicInteger INSTANCE_SEQ = new AtomicInteger();
+
+    private final QueryExecutor delegate;
+    private final int maxConcurrency;
+    private final long deadlineMillis;
+    private final ExecutorService executor;
+    private final ScheduledExecutorService timer;
+
+    private FanOutExecutor(Builder builder) {
+        this.delegate = builder.delegate;
+        this.maxConcurrency = builder.maxConcurrency;
+        this.deadlineMillis = builder.deadlineMillis;
+        String name = "prom-fanout-" + INSTANCE_SEQ.incrementAndGet();
+        this.executor = FanOutThreads.newExecutor(name, builder.platformThreads);
+        this.timer = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, name + "-timer");
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    public static Builder builder(QueryExecutor delegate) {
+        return new Builder(delegate);
+    }
+
+    /**
+     * 是否使用虚拟线程执行查询
+     */
+    public boolean isVirtualThreads() {
+        return FanOutThreads.isVirtual();
+    }
+
+    /**
+     * 使用默认并发数和deadline提交
+     *
+     * @see #submit(List, int, long)
+     */
+    public List<CompletableFuture<QueryResult>> submit(List<QueryRequest> requests) {
+        return submit(requests, maxConcurrency, deadlineMillis);
+    }
+
+    /**
+     * 提交一批查询，立即返回
+     *
+     * @param requests       查询请求
+     * @param maxConcurrency 本次调用同时执行的查询数上限
+     * @param deadlineMillis 本次调用的最长耗时，0表示不限
+     * @return 与requests一一对应的结果
+     */
+    public List<CompletableFuture<QueryResult>> submit(List<QueryRequest> requests, int maxConcurrency, long deadlineMillis) {
+        Asserts.notNull(requests, "requests must not be null");
+        Asserts.isTrue(maxConcurrency > 0, "maxConcurrency must be positive");
+        Asserts.isTrue(deadlineMillis >= 0, "deadlineMillis must not be negative");
+        return new FanOut(requests, deadlineMillis).start(maxConcurrency);
+    }
+
+    /**
+     * 即时查询一批构建器
+     *
+     * @param time 查询时间，毫秒
+     */
+    public List<CompletableFuture<QueryResult>> submitInstant(List<PromHelper.PromSqlBuilder> builders, long time) {
+        List<QueryRequest> requests = new ArrayList<>(builders.size());
+        for (PromHelper.PromSqlBuilder builder : builders) {
+            requests.add(QueryRequest.instant(builder, time));
+        }
+        return submit(requests);
+    }
+
+    /**
+     * 区间查询一批构建器，时间参数均为毫秒
+     */
+    public List<CompletableFuture<QueryResult>> submitRange(List<PromHelper.PromSqlBuilder> builders, long start, long end, long step) {
+        List<QueryRequest> requests = new ArrayList<>(builders.size());
+        for (PromHelper.PromSqlBuilder builder : builders) {
+            requests.add(QueryRequest.range(builder, start, end, step));
+        }
+        return submit(requests);
+    }
+
+    /**
+     * @see #executeAll(List, int, long)
+     */
+    public List<QueryResult> executeAll(List<QueryRequest> requests) {
+        return executeAll(requests, maxConcurrency, deadlineMillis);
+    }
+
+    /**
+     * 执行一批查询并等待全部完成，任一查询失败时取消尚未开始的查询并抛出其异常
+     *
+     * @return 与requests一一对应的结果
+     * @throws PromQueryException 按提交顺序第一个失败的查询的异常，或超过deadline
+     */
+    public List<QueryResult> executeAll(List<QueryRequest> requests, int maxConcurrency, long deadlineMillis) {
+        List<CompletableFuture<QueryResult>> futures = submit(requests, maxConcurrency, deadlineMillis);
+        List<QueryResult> results = new ArrayList<>(futures.size());
+        try {
+            for (int i = 0; i < futures.size(); i++) {
+                results.add(Futures.await(futures.get(i), 0, requests.get(i)));
+            }
+        } catch (RuntimeException | Error e) {
+            for (CompletableFuture<QueryResult> future : futures) {
+                future.cancel(false);
+            }
+            throw e;
+        }
+        return results;
+    }
+
+    @Override
+    public void close() {
+        executor.shutdownNow();
+        timer.shutdownNow();
+    }
+
+    /**
+     * 一次扇出调用：每个查询结束后由同一条链领取下一个，同时运行的链数即并发上限
+     */
+    private final class FanOut {
+        private final List<QueryRequest> requests;
+        private final long deadlineMillis;
+        private final long deadlineNanos;
+        private final List<CompletableFuture<QueryResult>> results;
+        private final AtomicReferenceArray<Future<?>> running;
+        private final AtomicInteger next = new AtomicInteger();
+
+        private FanOut(List<QueryRequest> requests, long deadlineMillis) {
+            this.requests = new ArrayList<>(requests);
+            this.deadlineMillis = deadlineMillis;
+            this.deadlineNanos = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(deadlineMillis);
+            this.results = new ArrayList<>(requests.size());
+            for (int i = 0; i < requests.size(); i++) {
+                results.add(new CompletableFuture<>());
+            }
+            this.running = new AtomicReferenceArray<>(requests.size());
+        }
+
+        private List<CompletableFuture<QueryResult>> start(int maxConcurrency) {
+            if (requests.isEmpty()) {
+                return results;
+            }
+            if (deadlineMillis > 0) {
+                ScheduledFuture<?> expiry = timer.schedule(this::expire, deadlineMillis, TimeUnit.MILLISECONDS);
+                CompletableFuture.allOf(results.toArray(new CompletableFuture[0])).whenComplete((r, e) -> expiry.cancel(false));
+            }
+            for (int i = Math.min(maxConcurrency, requests.size()); i > 0; i--) {
+                startNext();
+            }
+            return results;
+        }
+
+        private void startNext() {
+            int i;
+            while ((i = next.getAndIncrement()) < requests.size()) {
+                CompletableFuture<QueryResult> result = results.get(i);
+                if (result.isDone()) {
+                    // 已取消或已超时
+                    continue;
+                }
+                if (deadlineMillis > 0 && System.nanoTime() - deadlineNanos >= 0) {
+                    result.completeExceptionally(deadlineExceeded(i));
+                    continue;
+                }
+                int index = i;
+                try {
+                    running.set(index, executor.submit(() -> run(index)));
+                    return;
+                } catch (RejectedExecutionException e) {
+                    result.completeExceptionally(new PromQueryException("fan-out executor is closed", e));
+                }
+            }
+        }
+
+        private void run(int index) {
+            try {
+                CompletableFuture<QueryResult> result = results.get(index);
+                if (!result.isDone()) {
+                    try {
+                        result.complete(delegate.execute(requests.get(index)));
+                    } catch (Throwable e) {
+                        result.completeExceptionally(e);
+                    }
+                }
+            } finally {
+                running.set(index, null);
+                startNext();
+            }
+        }
+
+        private void expire() {
+            for (int i = 0; i < results.size(); i++) {
+                if (results.get(i).completeExceptionally(deadlineExceeded(i))) {
+                    Future<?> task = running.get(i);
+                    if (task != null) {
+                        task.cancel(true);
+                    }
+                }
+            }
+        }
+
+        private PromQueryException deadlineExceeded(int index) {
+            return new PromQueryException("deadline of " + deadlineMillis + "ms exceeded: " + requests.get(index).getQuery(), 0);
+        }
+    }
+
+    public static final class Builder {
+        private final QueryExecutor delegate;
+        private int maxConcurrency = 64;
+        private int platformThreads = 32;
+        private long deadlineMillis;
+
+        private Builder(QueryExecutor delegate) {
+            Asserts.notNull(delegate, "delegate must not be null");
+            this.delegate = delegate;
+        }
+
+        /**
+         * 每次调用默认的并发上限，默认64
+         */
+        public Builder maxConcurrency(int maxConcurrency) {
+            Asserts.isTrue(maxConcurrency > 0, "maxConcurrency must be positive");
+            this.maxConcurrency = maxConcurrency;
+            return this;
+        }
+
+        /**
+         * Java 21以下平台线程池的大小，所有调用共享，默认32
+         */
+        public Builder platformThreads(int platformThreads) {
+            Asserts.isTrue(platformThreads > 0, "platformThreads must be positive");
+            this.platformThreads = platformThreads;
+            return this;
+        }
+
+        /**
+         * 每次调用默认的最长耗时，默认0不限
+         */
+        public Builder deadlineMillis(long deadlineMillis) {
+            Asserts.isTrue(deadlineMillis >= 0, "deadlineMillis must not be negative");
+            this.deadlineMillis = deadlineMillis;
+            return this;
+        }
+
+        public FanOutExecutor build() {
+            return new FanOutExecutor(this);
+        }
+    }
+}
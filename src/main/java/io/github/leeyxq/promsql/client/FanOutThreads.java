@@ -0,0 +1,40 @@
+package io.github.leeyxq.promsql.client;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 扇出查询使用的线程：Java 8～20使用有界的平台线程池；
+ * Java 21及以上由多版本jar中META-INF/versions/21下的同名类替换为虚拟线程
+ *
+ * @author lixiangqian
+ * @since 2026/10/18 23:00
+ */
+final class FanOutThreads {
+
+    private FanOutThreads() {
+    }
+
+    static boolean isVirtual() {
+        return false;
+    }
+
+    /**
+     * @param name            线程名前缀
+     * @param platformThreads 平台线程数上限，空闲60秒后回收
+     */
+    static ExecutorService newExecutor(String name, int platformThreads) {
+        AtomicInteger seq = new AtomicInteger();
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(platformThreads, platformThreads, 60, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(), r -> {
+            Thread t = new Thread(r, name + "-" + seq.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+}
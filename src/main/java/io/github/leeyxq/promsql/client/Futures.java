@@ -0,0 +1,51 @@
+package io.github.leeyxq.promsql.client;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * 等待其他线程执行的查询结果
+ *
+ * @author lixiangqian
+ * @since 2026/10/18 18:00
+ */
+final class Futures {
+
+    private Futures() {
+    }
+
+    /**
+     * 等待结果，执行失败时每个等待者抛出各自的异常实例：{@link QueryRejectedException}、{@link QueryShedException}
+     * 保持原类型及开销，其他异常包装为{@link PromQueryException}并保留状态码，原始异常均作为cause
+     *
+     * @param future        执行结果
+     * @param timeoutMillis 最长等待时间，0表示一直等待
+     * @param what          被等待的查询，用于异常信息
+     * @return 查询结果
+     */
+    static QueryResult await(CompletableFuture<QueryResult> future, long timeoutMillis, Object what) {
+        try {
+            return timeoutMillis > 0 ? future.get(timeoutMillis, TimeUnit.MILLISECONDS) : future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new PromQueryException("interrupted while waiting for in-flight query: " + what, e);
+        } catch (TimeoutException e) {
+            throw new PromQueryException("timed out after " + timeoutMillis + "ms waiting for in-flight query: " + what, e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            if (cause instanceof QueryRejectedException) {
+                throw new QueryRejectedException(cause.getMessage(), ((QueryRejectedException) cause).getCost(), cause);
+            }
+            if (cause instanceof QueryShedException) {
+                throw new QueryShedException(cause.getMessage(), cause);
+            }
+            int statusCode = cause instanceof PromQueryException ? ((PromQueryException) cause).getStatusCode() : 0;
+            throw new PromQueryException(cause.getMessage(), statusCode, cause);
+        }
+    }
+}
@@ -0,0 +1,47 @@
+package io.github.leeyxq.promsql.client;
+
+import io.github.leeyxq.promsql.metrics.PromSqlMetrics;
+import io.github.leeyxq.promsql.util.Asserts;
+
+/**
+ * 统计查询耗时、失败数及进行中数量的执行器，指标记入{@link PromSqlMetrics}中以name区分的统计。
+ * 包在其他装饰器外层统计调用方感知的耗时（含缓存命中），包在PromClient外层统计实际发往Prometheus的查询。
+ * <p>
+ * 未开启{@link PromSqlMetrics}时直接委托，不取时间、不计数。
+ *
+ * @author lixiangqian
+ * @since 2026/10/18 22:30
+ */
+public final class InstrumentedQueryExecutor implements QueryExecutor {
+    private final QueryExecutor delegate;
+    private final String name;
+
+    /**
+     * @param delegate 实际执行查询的执行器
+     * @param name     执行器名称，输出为executor标签
+     */
+    public InstrumentedQueryExecutor(QueryExecutor delegate, String name) {
+        Asserts.notNull(delegate, "delegate must not be null");
+        Asserts.notBlank(name, "name must not be empty");
+        this.delegate = delegate;
+        this.name = name;
+    }
+
+    @Override
+    public QueryResult execute(QueryRequest request) {
+        PromSqlMetrics metrics = PromSqlMetrics.current();
+        if (metrics == null) {
+            return delegate.execute(request);
+        }
+        PromSqlMetrics.QueryStats stats = metrics.query(name);
+        long start = stats.start();
+        boolean success = false;
+        try {
+            QueryResult result = delegate.execute(request);
+            success = true;
+            return result;
+        } finally {
+            stats.end(start, success);
+        }
+    }
+}
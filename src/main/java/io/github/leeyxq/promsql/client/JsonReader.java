@@ -0,0 +1,344 @@
+package io.github.leeyxq.promsql.client;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.Arrays;
+
+/**
+ * 极简流式JSON读取器，仅覆盖Prometheus响应所需的操作
+ * <p>
+ * 字符串读取到可复用的临时缓冲区，由调用方决定比较、驻留或创建字符串；数值直接从字符解析，不经过String。
+ *
+ * @author lixiangqian
+ * @since 2026/10/18 16:00
+ */
+final class JsonReader {
+    private static final double[] POW10 = {1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+            1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22};
+
+    private final Reader in;
+    private final char[] buffer = new char[8192];
+    private int pos;
+    private int limit;
+
+    /**
+     * 最近一次读取的字符串内容
+     */
+    char[] scratch = new char[64];
+    int scratchLength;
+
+    JsonReader(Reader in) {
+        this.in = in;
+    }
+
+    /**
+     * 跳过空白后的下一个字符，不消费；已到结尾时返回0
+     */
+    char peek() throws IOException {
+        while (true) {
+            if (pos >= limit && !fill()) {
+                return 0;
+            }
+            char c = buffer[pos];
+            if (c == ' ' || c == '\n' || c == '\r' || c == '\t') {
+                pos++;
+            } else {
+                return c;
+            }
+        }
+    }
+
+    void expect(char expected) throws IOException {
+        char c = peek();
+        if (c != expected) {
+            throw syntaxError("expected '" + expected + "' but found '" + c + "'");
+        }
+        pos++;
+    }
+
+    /**
+     * 下一个字符为c时消费并返回true
+     */
+    boolean consume(char c) throws IOException {
+        if (peek() == c) {
+            pos++;
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * 对象或数组中是否还有下一个元素，自动消费逗号与结束符
+     */
+    boolean hasNext(char end) throws IOException {
+        char c = peek();
+        if (c == ',') {
+            pos++;
+            return true;
+        }
+        if (c == end) {
+            pos++;
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * 读取对象的key到scratch并消费冒号
+     */
+    void readName() throws IOException {
+        readStringChars();
+        expect(':');
+    }
+
+    boolean scratchEquals(String str) {
+        if (str.length() != scratchLength) {
+            return false;
+        }
+        for (int i = 0; i < scratchLength; i++) {
+            if (scratch[i] != str.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    String readString() throws IOException {
+        readStringChars();
+        return new String(scratch, 0, scratchLength);
+    }
+
+    void readStringChars() throws IOException {
+        expect('"');
+        int length = 0;
+        while (true) {
+            if (pos >= limit && !fill()) {
+                throw syntaxError("unterminated string");
+            }
+            char c = buffer[pos++];
+            if (c == '"') {
+                break;
+            }
+            if (c == '\\') {
+                c = readEscape();
+            }
+            if (length == scratch.length) {
+                scratch = Arrays.copyOf(scratch, length * 2);
+            }
+            scratch[length++] = c;
+        }
+        scratchLength = length;
+    }
+
+    /**
+     * 读取秒级时间戳（如1690000000.123）并转换为毫秒，不经过double以避免精度损失
+     */
+    long readTimestampMillis() throws IOException {
+        peek();
+        boolean negative = consume('-');
+        long seconds = 0;
+        while (isDigit(peekRaw())) {
+            seconds = seconds * 10 + (buffer[pos++] - '0');
+        }
+        long millis = 0;
+        if (peekRaw() == '.') {
+            pos++;
+            int digits = 0;
+            while (isDigit(peekRaw())) {
+                char c = buffer[pos++];
+                if (digits < 3) {
+                    millis = millis * 10 + (c - '0');
+                    digits++;
+                }
+            }
+            for (; digits < 3; digits++) {
+                millis *= 10;
+            }
+        }
+        long result = seconds * 1000 + millis;
+        return negative ? -result : result;
+    }
+
+    /**
+     * 读取字符串形式的样本值，如"1.5"、"NaN"、"+Inf"
+     */
+    double readDoubleString() throws IOException {
+        readStringChars();
+        return parseDouble(scratch, scratchLength);
+    }
+
+    /**
+     * 读取数值，如scalar结果中的数值
+     */
+    double readNumber() throws IOException {
+        peek();
+        int length = 0;
+        char c;
+        while ((c = peekRaw()) != 0 && (isDigit(c) || c == '-' || c == '+' || c == '.' || c == 'e' || c == 'E')) {
+            if (length == scratch.length) {
+                scratch = Arrays.copyOf(scratch, length * 2);
+            }
+            scratch[length++] = c;
+            pos++;
+        }
+        scratchLength = length;
+        return parseDouble(scratch, length);
+    }
+
+    void skipValue() throws IOException {
+        char c = peek();
+        switch (c) {
+            case '{':
+                pos++;
+                if (consume('}')) {
+                    return;
+                }
+                do {
+                    readName();
+                    skipValue();
+                } while (hasNext('}'));
+                return;
+            case '[':
+                pos++;
+                if (consume(']')) {
+                    return;
+                }
+                do {
+                    skipValue();
+                } while (hasNext(']'));
+                return;
+            case '"':
+                readStringChars();
+                return;
+            default:
+                while ((c = peekRaw()) != 0 && c != ',' && c != '}' && c != ']' && c != ' ' && c != '\n' && c != '\r' && c != '\t') {
+                    pos++;
+                }
+        }
+    }
+
+    IOException syntaxError(String message) {
+        return new IOException("malformed prometheus response: " + message);
+    }
+
+    /**
+     * 快速路径：有效数字不超过15位且指数较小时直接由long与10的幂计算，结果与Double.parseDouble一致；其余情况回退
+     */
+    static double parseDouble(char[] chars, int length) {
+        int i = 0;
+        boolean negative = false;
+        if (length > 0 && (chars[0] == '-' || chars[0] == '+')) {
+            negative = chars[0] == '-';
+            i++;
+        }
+        long mantissa = 0;
+        int digits = 0;
+        int scale = 0;
+        boolean dot = false;
+        for (; i < length; i++) {
+            char c = chars[i];
+            if (isDigit(c)) {
+                if (mantissa == 0 && c == '0') {
+                    if (dot) {
+                        scale++;
+                    }
+                    continue;
+                }
+                if (++digits > 15) {
+                    return fallback(chars, length);
+                }
+                mantissa = mantissa * 10 + (c - '0');
+                if (dot) {
+                    scale++;
+                }
+            } else if (c == '.' && !dot) {
+                dot = true;
+            } else {
+                return fallback(chars, length);
+            }
+        }
+        if (i == 0 || (digits == 0 && mantissa == 0 && !hasDigit(chars, length))) {
+            return fallback(chars, length);
+        }
+        if (scale >= POW10.length) {
+            return fallback(chars, length);
+        }
+        double value = scale == 0 ? mantissa : mantissa / POW10[scale];
+        return negative ? -value : value;
+    }
+
+    private static boolean hasDigit(char[] chars, int length) {
+        for (int i = 0; i < length; i++) {
+            if (isDigit(chars[i])) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static double fallback(char[] chars, int length) {
+        String str = new String(chars, 0, length);
+        switch (str) {
+            case "NaN":
+                return Double.NaN;
+            case "+Inf":
+            case "Inf":
+                return Double.POSITIVE_INFINITY;
+            case "-Inf":
+                return Double.NEGATIVE_INFINITY;
+            default:
+                return Double.parseDouble(str);
+        }
+    }
+
+    private char readEscape() throws IOException {
+        if (pos >= limit && !fill()) {
+            throw syntaxError("unterminated escape");
+        }
+        char c = buffer[pos++];
+        switch (c) {
+            case 'n':
+                return '\n';
+            case 't':
+                return '\t';
+            case 'r':
+                return '\r';
+            case 'b':
+                return '\b';
+            case 'f':
+                return '\f';
+            case 'u':
+                int value = 0;
+                for (int i = 0; i < 4; i++) {
+                    if (pos >= limit && !fill()) {
+                        throw syntaxError("unterminated escape");
+                    }
+                    value = (value << 4) | Character.digit(buffer[pos++], 16);
+                }
+                return (char) value;
+            default:
+                return c;
+        }
+    }
+
+    private char peekRaw() throws IOException {
+        if (pos >= limit && !fill()) {
+            return 0;
+        }
+        return buffer[pos];
+    }
+
+    private boolean fill() throws IOException {
+        int n = in.read(buffer, 0, buffer.length);
+        if (n <= 0) {
+            return false;
+        }
+        pos = 0;
+        limit = n;
+        return true;
+    }
+
+    private static boolean isDigit(char c) {
+        return c >= '0' && c <= '9';
+    }
+}
@@ -0,0 +1,111 @@
+package io.github.leeyxq.promsql.client;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * 不可变label集合，按label名排序存储于数组，比HashMap更紧凑
+ *
+ * @author lixiangqian
+ * @since 2026/10/18 16:00
+ */
+public final class Labels {
+    public static final Labels EMPTY = new Labels(new String[0], new String[0]);
+
+    private final String[] names;
+    private final String[] values;
+    private final int hash;
+
+    /**
+     * @param names  label名，需已排序
+     * @param values label值
+     */
+    Labels(String[] names, String[] values) {
+        this.names = names;
+        this.values = values;
+        this.hash = 31 * Arrays.hashCode(names) + Arrays.hashCode(values);
+    }
+
+    public static Labels of(Map<String, String> labels) {
+        String[] names = labels.keySet().toArray(new String[0]);
+        Arrays.sort(names);
+        String[] values = new String[names.length];
+        for (int i = 0; i < names.length; i++) {
+            values[i] = labels.get(names[i]);
+        }
+        return new Labels(names, values);
+    }
+
+    public String get(String name) {
+        int idx = Arrays.binarySearch(names, name);
+        return idx < 0 ? null : values[idx];
+    }
+
+    public int size() {
+        return names.length;
+    }
+
+    public String getName(int index) {
+        return names[index];
+    }
+
+    public String getValue(int index) {
+        return values[index];
+    }
+
+    /**
+     * 去掉指定label后的新集合
+     */
+    public Labels without(String name) {
+        int idx = Arrays.binarySearch(names, name);
+        if (idx < 0) {
+            return this;
+        }
+        String[] newNames = new String[names.length - 1];
+        String[] newValues = new String[names.length - 1];
+        System.arraycopy(names, 0, newNames, 0, idx);
+        System.arraycopy(values, 0, newValues, 0, idx);
+        System.arraycopy(names, idx + 1, newNames, idx, names.length - idx - 1);
+        System.arraycopy(values, idx + 1, newValues, idx, names.length - idx - 1);
+        return new Labels(newNames, newValues);
+    }
+
+    public Map<String, String> toMap() {
+        Map<String, String> map = new LinkedHashMap<>(names.length * 2);
+        for (int i = 0; i < names.length; i++) {
+            map.put(names[i], values[i]);
+        }
+        return Collections.unmodifiableMap(map);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof Labels)) {
+            return false;
+        }
+        Labels other = (Labels) o;
+        return hash == other.hash && Arrays.equals(names, other.names) && Arrays.equals(values, other.values);
+    }
+
+    @Override
+    public int hashCode() {
+        return hash;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder(names.length * 16 + 2).append('{');
+        for (int i = 0; i < names.length; i++) {
+            if (i > 0) {
+                sb.append(", ");
+            }
+            sb.append(names[i]).append("=\"").append(values[i]).append('"');
+        }
+        return sb.append('}').toString();
+    }
+}
@@ -0,0 +1,614 @@
+package io.github.leeyxq.promsql.client;
+
+import io.github.leeyxq.promsql.PromHelper;
+import io.github.leeyxq.promsql.ast.Expr;
+import io.github.leeyxq.promsql.ast.ExprRewriter;
+import io.github.leeyxq.promsql.ast.LabelMatcher;
+import io.github.leeyxq.promsql.ast.MatchOp;
+import io.github.leeyxq.promsql.ast.MatcherOptimizer;
+import io.github.leeyxq.promsql.ast.VectorSelector;
+import io.github.leeyxq.promsql.util.Asserts;
+import io.github.leeyxq.promsql.util.CompactTrie;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.LongSupplier;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+/**
+ * 内存中的元数据缓存：metric名、label名及各metric的label值，均以{@link CompactTrie}保存
+ * <ul>
+ *     <li>本地校验metric名、label名、label值，拼错的条件在发送查询前即可发现</li>
+ *     <li>可选地把非字面量正则展开为精确值集合，如job=~"api-.*" -> job=~"api-a|api-b"，命中Prometheus的字面量快速路径</li>
+ *     <li>后台定期增量刷新：只查询上次刷新之后（含重叠窗口）出现的数据并与已有数据合并，每隔若干次做一次全量重建以淘汰已消失的值</li>
+ *     <li>label值按metric懒加载，只跟踪实际访问过的metric，刷新时批量查询</li>
+ * </ul>
+ * 快照整体替换，读操作无锁。元数据只覆盖最近lookback窗口，正则展开得到的是刷新时刻的值集合，
+ * 之后新出现的label值在下次刷新前不会被匹配，只适合label值相对稳定的场景。
+ * <pre>{@code
+ * MetadataCache cache = MetadataCache.builder(client).build().start();
+ * List<String> problems = cache.validate(builder);
+ * Expr expanded = cache.expandRegex(builder.toExpr());
+ * }</pre>
+ *
+ * @author lixiangqian
+ * @since 2026/10/18 20:00
+ */
+@Slf4j
+public final class MetadataCache implements AutoCloseable {
+    static final String METRIC_NAMES_PATH = "/api/v1/label/__name__/values";
+    static final String LABEL_NAMES_PATH = "/api/v1/labels";
+    static final String SERIES_PATH = "/api/v1/series";
+    private static final AtomicInteger THREAD_SEQ = new AtomicInteger();
+    /**
+     * 单次series请求最多携带的match[]个数
+     */
+    private static final int SERIES_BATCH = 32;
+    private static final String REGEX_META = ".+*?()|[]{}^$\\";
+
+    private final PromClient client;
+    private final long refreshIntervalMillis;
+    private final long lookbackMillis;
+    private final long overlapMillis;
+    private final int fullRefreshEvery;
+    private final int maxTrackedMetrics;
+    private final int maxExpansion;
+    private final LongSupplier clock;
+    private final ConcurrentHashMap<String, MetricLabels> metricLabels = new ConcurrentHashMap<>();
+    private volatile Snapshot snapshot;
+    private int refreshCount;
+    private ScheduledExecutorService scheduler;
+
+    private MetadataCache(Builder builder) {
+        this.client = builder.client;
+        this.refreshIntervalMillis = builder.refreshIntervalMillis;
+        this.lookbackMillis = builder.lookbackMillis;
+        this.overlapMillis = builder.overlapMillis;
+        this.fullRefreshEvery = builder.fullRefreshEvery;
+        this.maxTrackedMetrics = builder.maxTrackedMetrics;
+        this.maxExpansion = builder.maxExpansion;
+        this.clock = builder.clock;
+    }
+
+    public static Builder builder(PromClient client) {
+        return new Builder(client);
+    }
+
+    /**
+     * 启动后台刷新，首次刷新立即在后台执行
+     */
+    public synchronized MetadataCache start() {
+        if (scheduler == null) {
+            String name = "prom-metadata-" + THREAD_SEQ.incrementAndGet();
+            scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread t = new Thread(r, name);
+                t.setDaemon(true);
+                return t;
+            });
+            scheduler.scheduleWithFixedDelay(this::refreshQuietly, 0, refreshIntervalMillis, TimeUnit.MILLISECONDS);
+        }
+        return this;
+    }
+
+    @Override
+    public synchronized void close() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+            scheduler = null;
+        }
+    }
+
+    private void refreshQuietly() {
+        try {
+            refresh();
+        } catch (RuntimeException e) {
+            log.warn("failed to refresh prometheus metadata: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * 同步刷新一次：首次及每fullRefreshEvery次全量重建，其余只查询上次刷新之后的数据并合并
+     *
+     * @throws PromQueryException 请求失败，已有快照保持不变
+     */
+    public synchronized void refresh() {
+        long now = clock.getAsLong();
+        Snapshot current = snapshot;
+        boolean full = refreshCount++ % fullRefreshEvery == 0 || current == null;
+        long start = full ? now - lookbackMillis : current.refreshedAt - overlapMillis;
+        List<String> names = fetchStrings(METRIC_NAMES_PATH, start, now);
+        List<String> labels = fetchStrings(LABEL_NAMES_PATH, start, now);
+        CompactTrie metrics = full ? CompactTrie.of(names) : union(current.metrics, names);
+        CompactTrie labelNames = full ? CompactTrie.of(labels) : union(current.labelNames, labels);
+
+        List<String> tracked = new ArrayList<>(metricLabels.keySet());
+        Map<String, Map<String, Set<String>>> series = fetchSeries(tracked, start, now);
+        for (String metric : tracked) {
+            if (full && !metrics.contains(metric)) {
+                metricLabels.remove(metric);
+                continue;
+            }
+            Map<String, Set<String>> values = series.getOrDefault(metric, Collections.emptyMap());
+            metricLabels.put(metric, full ? MetricLabels.of(values) : metricLabels.get(metric).merge(values));
+        }
+        snapshot = new Snapshot(metrics, labelNames, now);
+        log.debug("refreshed prometheus metadata (full={}): {} metrics, {} label names, {} tracked metrics",
+                full, metrics.size(), labelNames.size(), tracked.size());
+    }
+
+    public boolean isLoaded() {
+        return snapshot != null;
+    }
+
+    /**
+     * @return 最近一次刷新的时间，未加载时返回-1
+     */
+    public long getRefreshedAt() {
+        Snapshot s = snapshot;
+        return s == null ? -1 : s.refreshedAt;
+    }
+
+    public boolean hasMetric(String metric) {
+        Snapshot s = snapshot;
+        return s != null && s.metrics.contains(metric);
+    }
+
+    /**
+     * @return 以prefix开头的metric名，按字典序
+     */
+    public List<String> metricNames(String prefix) {
+        Snapshot s = snapshot;
+        return s == null ? Collections.emptyList() : s.metrics.withPrefix(prefix);
+    }
+
+    public boolean hasLabelName(String label) {
+        Snapshot s = snapshot;
+        return s != null && s.labelNames.contains(label);
+    }
+
+    /**
+     * @return metric的label名，按字典序，metric未知时返回空列表
+     */
+    public List<String> labelNames(String metric) {
+        MetricLabels m = metricLabels(metric);
+        if (m == null) {
+            return Collections.emptyList();
+        }
+        List<String> names = new ArrayList<>(m.values.keySet());
+        Collections.sort(names);
+        return names;
+    }
+
+    /**
+     * @return metric下label的全部值，按字典序，未知时返回空列表
+     */
+    public List<String> labelValues(String metric, String label) {
+        CompactTrie values = values(metric, label);
+        return values == null ? Collections.emptyList() : values.toList();
+    }
+
+    public boolean hasLabelValue(String metric, String label, String value) {
+        CompactTrie values = values(metric, label);
+        return values != null && values.contains(value);
+    }
+
+    /**
+     * 校验查询中的metric名、label名和=条件的label值
+     *
+     * @return 问题描述，未加载或没有问题时返回空列表
+     */
+    public List<String> validate(PromHelper.PromSqlBuilder builder) {
+        return validate(builder.toExpr());
+    }
+
+    /**
+     * @see #validate(PromHelper.PromSqlBuilder)
+     */
+    public List<String> validate(Expr expr) {
+        if (!isLoaded()) {
+            return Collections.emptyList();
+        }
+        Validator validator = new Validator();
+        validator.rewrite(expr);
+        return validator.problems;
+    }
+
+    /**
+     * 把非字面量的=~条件展开为当前已知的精确值集合，匹配到的值个数在1到maxExpansion之间时才展开，
+     * 否则保持原样。__name__条件按metric名展开，其他label需要选择器带有metric名。
+     * 能匹配空串的正则（如.*、a?）同时匹配不带该label的序列，而已知值集合中没有空值，展开会漏掉这些序列，因此不展开。
+     *
+     * @return 展开后的表达式，无变化时返回原表达式
+     */
+    public Expr expandRegex(Expr expr) {
+        return isLoaded() ? new Expander().rewrite(expr) : expr;
+    }
+
+    private CompactTrie values(String metric, String label) {
+        MetricLabels m = metricLabels(metric);
+        return m == null ? null : m.values.get(label);
+    }
+
+    /**
+     * 获取metric的label值，首次访问时同步加载并开始跟踪
+     */
+    private MetricLabels metricLabels(String metric) {
+        MetricLabels m = metricLabels.get(metric);
+        if (m != null || !hasMetric(metric) || metricLabels.size() >= maxTrackedMetrics) {
+            return m;
+        }
+        long now = clock.getAsLong();
+        Map<String, Set<String>> values = fetchSeries(Collections.singletonList(metric), now - lookbackMillis, now)
+                .getOrDefault(metric, Collections.emptyMap());
+        MetricLabels loaded = MetricLabels.of(values);
+        m = metricLabels.putIfAbsent(metric, loaded);
+        return m == null ? loaded : m;
+    }
+
+    /**
+     * 按候选集合匹配正则，先用正则的字面量前缀在trie中剪枝
+     *
+     * @return 匹配的值，超过limit个或正则无法编译时返回null
+     */
+    private static List<String> match(CompactTrie values, String regex, int limit) {
+        Pattern pattern;
+        try {
+            pattern = Pattern.compile(regex);
+        } catch (PatternSyntaxException e) {
+            return null;
+        }
+        if (pattern.matcher("").matches()) {
+            return null;
+        }
+        List<String> matched = values.find(literalPrefix(regex), v -> pattern.matcher(v).matches(), limit + 1);
+        return matched.size() > limit ? null : matched;
+    }
+
+    /**
+     * 正则匹配的值必然具有的字面量前缀，含|时为空串
+     */
+    static String literalPrefix(String regex) {
+        if (regex.indexOf('|') >= 0) {
+            return "";
+        }
+        int i = 0;
+        while (i < regex.length() && REGEX_META.indexOf(regex.charAt(i)) < 0) {
+            i++;
+        }
+        if (i < regex.length() && i > 0) {
+            char c = regex.charAt(i);
+            // 量词作用于前一个字符，该字符可能不出现或重复
+            if (c == '*' || c == '?' || c == '{') {
+                i--;
+            }
+        }
+        return regex.substring(0, i);
+    }
+
+    private static String metricName(VectorSelector selector) {
+        if (selector.getMetricName() != null) {
+            return selector.getMetricName();
+        }
+        for (LabelMatcher m : selector.getMatchers()) {
+            if (m.getOp() == MatchOp.EQ && LabelMatcher.METRIC_NAME.equals(m.getName())) {
+                return m.getValue();
+            }
+        }
+        return null;
+    }
+
+    private static CompactTrie union(CompactTrie trie, List<String> values) {
+        if (values.isEmpty()) {
+            return trie;
+        }
+        List<String> all = trie.toList();
+        all.addAll(values);
+        return CompactTrie.of(all);
+    }
+
+    private List<String> fetchStrings(String path, long start, long end) {
+        StringBuilder form = new StringBuilder(64);
+        appendRange(form, start, end);
+        return client.execute(path, form.toString(), body -> {
+            List<String> values = new ArrayList<>();
+            readData(new JsonReader(new InputStreamReader(body, StandardCharsets.UTF_8)), reader -> {
+                reader.expect('[');
+                if (!reader.consume(']')) {
+                    do {
+                        values.add(reader.readString());
+                    } while (reader.hasNext(']'));
+                }
+            });
+            return values;
+        });
+    }
+
+    /**
+     * 查询metric的序列，按metric汇总各label的值
+     */
+    private Map<String, Map<String, Set<String>>> fetchSeries(List<String> metrics, long start, long end) {
+        Map<String, Map<String, Set<String>>> result = new HashMap<>(metrics.size() * 2);
+        for (int from = 0; from < metrics.size(); from += SERIES_BATCH) {
+            List<String> batch = metrics.subList(from, Math.min(metrics.size(), from + SERIES_BATCH));
+            StringBuilder form = new StringBuilder(64 + batch.size() * 32);
+            for (String metric : batch) {
+                PromClient.appendParam(form, "match[]", metric);
+            }
+            appendRange(form, start, end);
+            client.execute(SERIES_PATH, form.toString(), body -> {
+                readData(new JsonReader(new InputStreamReader(body, StandardCharsets.UTF_8)), reader -> {
+                    reader.expect('[');
+                    if (!reader.consume(']')) {
+                        do {
+                            readSeriesLabels(reader, result);
+                        } while (reader.hasNext(']'));
+                    }
+                });
+                return null;
+            });
+        }
+        return result;
+    }
+
+    private static void readSeriesLabels(JsonReader reader, Map<String, Map<String, Set<String>>> result) throws IOException {
+        Map<String, String> labels = new HashMap<>(16);
+        reader.expect('{');
+        if (!reader.consume('}')) {
+            do {
+                reader.readName();
+                String name = new String(reader.scratch, 0, reader.scratchLength);
+                labels.put(name, reader.readString());
+            } while (reader.hasNext('}'));
+        }
+        String metric = labels.remove(LabelMatcher.METRIC_NAME);
+        if (metric == null) {
+            return;
+        }
+        Map<String, Set<String>> values = result.computeIfAbsent(metric, k -> new HashMap<>());
+        for (Map.Entry<String, String> label : labels.entrySet()) {
+            values.computeIfAbsent(label.getKey(), k -> new HashSet<>()).add(label.getValue());
+        }
+    }
+
+    private static void appendRange(StringBuilder form, long start, long end) {
+        PromClient.appendParam(form, "start", QueryRequest.formatSeconds(start));
+        PromClient.appendParam(form, "end", QueryRequest.formatSeconds(end));
+    }
+
+    /**
+     * 解析响应外层的status/error，data交给dataReader
+     */
+    private static void readData(JsonReader reader, DataReader dataReader) throws IOException {
+        String status = null;
+        String error = null;
+        String errorType = null;
+        reader.expect('{');
+        if (!reader.consume('}')) {
+            do {
+                reader.readName();
+                if (reader.scratchEquals("status")) {
+                    status = reader.readString();
+                } else if (reader.scratchEquals("error")) {
+                    error = reader.readString();
+                } else if (reader.scratchEquals("errorType")) {
+                    errorType = reader.readString();
+                } else if (reader.scratchEquals("data") && reader.peek() == '[') {
+                    dataReader.read(reader);
+                } else {
+                    reader.skipValue();
+                }
+            } while (reader.hasNext('}'));
+        }
+        if (!"success".equals(status)) {
+            throw new PromQueryException("prometheus metadata query failed: " + errorType + ": " + error, 0);
+        }
+    }
+
+    private interface DataReader {
+        void read(JsonReader reader) throws IOException;
+    }
+
+    private static final class Snapshot {
+        private final CompactTrie metrics;
+        private final CompactTrie labelNames;
+        private final long refreshedAt;
+
+        private Snapshot(CompactTrie metrics, CompactTrie labelNames, long refreshedAt) {
+            this.metrics = metrics;
+            this.labelNames = labelNames;
+            this.refreshedAt = refreshedAt;
+        }
+    }
+
+    /**
+     * 单个metric各label的值，不可变
+     */
+    private static final class MetricLabels {
+        private final Map<String, CompactTrie> values;
+
+        private MetricLabels(Map<String, CompactTrie> values) {
+            this.values = values;
+        }
+
+        private static MetricLabels of(Map<String, Set<String>> values) {
+            Map<String, CompactTrie> tries = new HashMap<>(values.size() * 2);
+            values.forEach((label, set) -> tries.put(label, CompactTrie.of(set)));
+            return new MetricLabels(tries);
+        }
+
+        private MetricLabels merge(Map<String, Set<String>> added) {
+            if (added.isEmpty()) {
+                return this;
+            }
+            Map<String, CompactTrie> tries = new HashMap<>(values);
+            added.forEach((label, set) -> tries.merge(label, CompactTrie.of(set),
+                    (old, trie) -> union(old, trie.toList())));
+            return new MetricLabels(tries);
+        }
+    }
+
+    private final class Validator extends ExprRewriter {
+        private final List<String> problems = new ArrayList<>();
+
+        @Override
+        protected List<LabelMatcher> rewriteMatchers(VectorSelector selector) {
+            String metric = metricName(selector);
+            if (metric != null && !hasMetric(metric)) {
+                problems.add("unknown metric: " + metric);
+                return selector.getMatchers();
+            }
+            MetricLabels labels = metric == null ? null : metricLabels(metric);
+            for (LabelMatcher m : selector.getMatchers()) {
+                String name = m.getName();
+                boolean positive = m.getOp() == MatchOp.EQ && !m.getValue().isEmpty();
+                if (LabelMatcher.METRIC_NAME.equals(name) || !positive) {
+                    continue;
+                }
+                if (labels == null) {
+                    if (!hasLabelName(name)) {
+                        problems.add("unknown label: " + name);
+                    }
+                } else if (!labels.values.containsKey(name)) {
+                    problems.add("unknown label " + name + " for metric " + metric);
+                } else if (!labels.values.get(name).contains(m.getValue())) {
+                    problems.add("unknown value " + m + " for metric " + metric);
+                }
+            }
+            return selector.getMatchers();
+        }
+    }
+
+    private final class Expander extends ExprRewriter {
+
+        @Override
+        protected List<LabelMatcher> rewriteMatchers(VectorSelector selector) {
+            List<LabelMatcher> matchers = selector.getMatchers();
+            List<LabelMatcher> expanded = null;
+            String metric = metricName(selector);
+            for (int i = 0; i < matchers.size(); i++) {
+                LabelMatcher m = matchers.get(i);
+                LabelMatcher e = expand(metric, m);
+                if (e != m && expanded == null) {
+                    expanded = new ArrayList<>(matchers);
+                }
+                if (expanded != null) {
+                    expanded.set(i, e);
+                }
+            }
+            return expanded == null ? matchers : expanded;
+        }
+
+        private LabelMatcher expand(String metric, LabelMatcher m) {
+            if (m.getOp() != MatchOp.RE || MatcherOptimizer.literalAlternatives(m.getValue()) != null) {
+                return m;
+            }
+            CompactTrie candidates;
+            if (LabelMatcher.METRIC_NAME.equals(m.getName())) {
+                candidates = snapshot.metrics;
+            } else {
+                candidates = metric == null ? null : values(metric, m.getName());
+            }
+            List<String> matched = candidates == null ? null : match(candidates, m.getValue(), maxExpansion);
+            if (matched == null || matched.isEmpty()) {
+                return m;
+            }
+            return matched.size() == 1 ? new LabelMatcher(m.getName(), MatchOp.EQ, matched.get(0))
+                    : new LabelMatcher(m.getName(), MatchOp.RE, MatcherOptimizer.literalSet(matched));
+        }
+    }
+
+    public static final class Builder {
+        private final PromClient client;
+        private long refreshIntervalMillis = 60_000L;
+        private long lookbackMillis = 24 * 3600_000L;
+        private long overlapMillis = 5 * 60_000L;
+        private int fullRefreshEvery = 60;
+        private int maxTrackedMetrics = 1000;
+        private int maxExpansion = 32;
+        private LongSupplier clock = System::currentTimeMillis;
+
+        private Builder(PromClient client) {
+            Asserts.notNull(client, "client must not be null");
+            this.client = client;
+        }
+
+        /**
+         * 后台刷新间隔，默认1分钟
+         */
+        public Builder refreshIntervalMillis(long refreshIntervalMillis) {
+            Asserts.isTrue(refreshIntervalMillis > 0, "refreshIntervalMillis must be positive");
+            this.refreshIntervalMillis = refreshIntervalMillis;
+            return this;
+        }
+
+        /**
+         * 全量加载的时间窗口，默认24小时，窗口越大Prometheus需要扫描的block越多
+         */
+        public Builder lookbackMillis(long lookbackMillis) {
+            Asserts.isTrue(lookbackMillis > 0, "lookbackMillis must be positive");
+            this.lookbackMillis = lookbackMillis;
+            return this;
+        }
+
+        /**
+         * 增量刷新时向前重叠的时间，覆盖采集与写入延迟，默认5分钟
+         */
+        public Builder overlapMillis(long overlapMillis) {
+            Asserts.isTrue(overlapMillis >= 0, "overlapMillis must not be negative");
+            this.overlapMillis = overlapMillis;
+            return this;
+        }
+
+        /**
+         * 每隔多少次刷新做一次全量重建，默认60，为1时每次都全量刷新
+         */
+        public Builder fullRefreshEvery(int fullRefreshEvery) {
+            Asserts.isTrue(fullRefreshEvery > 0, "fullRefreshEvery must be positive");
+            this.fullRefreshEvery = fullRefreshEvery;
+            return this;
+        }
+
+        /**
+         * 最多跟踪label值的metric个数，默认1000，超过后新访问的metric不再加载label值
+         */
+        public Builder maxTrackedMetrics(int maxTrackedMetrics) {
+            Asserts.isTrue(maxTrackedMetrics >= 0, "maxTrackedMetrics must not be negative");
+            this.maxTrackedMetrics = maxTrackedMetrics;
+            return this;
+        }
+
+        /**
+         * 正则展开的最大值个数，默认32
+         */
+        public Builder maxExpansion(int maxExpansion) {
+            Asserts.isTrue(maxExpansion > 0, "maxExpansion must be positive");
+            this.maxExpansion = maxExpansion;
+            return this;
+        }
+
+        public Builder clock(LongSupplier clock) {
+            Asserts.notNull(clock, "clock must not be null");
+            this.clock = clock;
+            return this;
+        }
+
+        public MetadataCache build() {
+            return new MetadataCache(this);
+        }
+    }
+}
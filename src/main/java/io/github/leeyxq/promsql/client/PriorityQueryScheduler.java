@@ -0,0 +1,330 @@
+package io.github.leeyxq.promsql.client;
+
+import io.github.leeyxq.promsql.util.Asserts;
+
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * 按优先级类别调度查询，交互式查询（仪表盘）与批量查询（报表）共用到Prometheus的并发时，批量查询不会长时间占满并发
+ * <pre>{@code
+ * PriorityQueryScheduler scheduler = PriorityQueryScheduler.builder(client)
+ *         .maxConcurrency(16)
+ *         .priorityClass("interactive", 8, 16, 10_000)
+ *         .priorityClass("batch", 1, 4, 0)
+ *         .build();
+ * QueryExecutor dashboard = scheduler.executor("interactive");
+ * QueryExecutor report = scheduler.executor("batch");
+ * }</pre>
+ * <ul>
+ *     <li>加权公平排队：并发满时各类别按权重分配空出的位置，上例中两类都在排队时交互式查询得到8/9的位置，批量查询也不会饿死</li>
+ *     <li>类别并发上限：批量查询最多占4个，其余位置总是留给交互式查询，交互式查询无需等批量查询结束</li>
+ *     <li>截止时间：排队超过deadline的查询不再发送，抛出{@link QueryShedException}，避免把资源花在调用方已放弃的查询上</li>
+ * </ul>
+ * 调度只决定发送顺序，查询在调用线程中执行；可与{@link FanOutExecutor}、{@link AdaptiveLimitQueryExecutor}组合使用。
+ *
+ * @author lixiangqian
+ * @since 2026/10/19 02:00
+ */
+public final class PriorityQueryScheduler {
+    private final QueryExecutor delegate;
+    private final int maxConcurrency;
+    /**
+     * 按注册顺序，权重进度相同时先注册的类别优先
+     */
+    private final Map<String, PriorityClass> classes;
+
+    /**
+     * 保护所有类别的队列、计数及虚拟时间
+     */
+    private final ReentrantLock lock = new ReentrantLock();
+    private int inFlight;
+    /**
+     * 最近一次放行的类别进度，重新开始排队的类别从此处开始计算，空闲期间不积攒额度
+     */
+    private double virtualTime;
+
+    private PriorityQueryScheduler(Builder builder) {
+        this.delegate = builder.delegate;
+        this.maxConcurrency = builder.maxConcurrency;
+        // 每个调度器使用各自的队列与计数，同一Builder多次build()互不影响
+        this.classes = new LinkedHashMap<>();
+        builder.classes.forEach((name, c) -> classes.put(name, new PriorityClass(name, c.weight, c.maxConcurrency, c.deadlineNanos)));
+    }
+
+    public static Builder builder(QueryExecutor delegate) {
+        return new Builder(delegate);
+    }
+
+    /**
+     * 指定类别的执行器，使用类别的默认deadline
+     *
+     * @param priorityClass 类别名称
+     * @return 执行器
+     */
+    public QueryExecutor executor(String priorityClass) {
+        PriorityClass clazz = clazz(priorityClass);
+        return request -> execute(clazz, request, clazz.deadlineNanos);
+    }
+
+    /**
+     * 按类别调度并执行查询，使用类别的默认deadline
+     *
+     * @see #execute(String, QueryRequest, long)
+     */
+    public QueryResult execute(String priorityClass, QueryRequest request) {
+        PriorityClass clazz = clazz(priorityClass);
+        return execute(clazz, request, clazz.deadlineNanos);
+    }
+
+    /**
+     * 按类别调度并执行查询，阻塞至查询完成
+     *
+     * @param priorityClass  类别名称
+     * @param request        查询请求
+     * @param deadlineMillis 最长排队时间，超过后不再发送；0表示不限
+     * @return 查询结果
+     * @throws QueryShedException 排队超过deadline
+     */
+    public QueryResult execute(String priorityClass, QueryRequest request, long deadlineMillis) {
+        Asserts.isTrue(deadlineMillis >= 0, "deadlineMillis must not be negative");
+        return execute(clazz(priorityClass), request, TimeUnit.MILLISECONDS.toNanos(deadlineMillis));
+    }
+
+    private QueryResult execute(PriorityClass clazz, QueryRequest request, long deadlineNanos) {
+        Asserts.notNull(request, "request must not be null");
+        acquire(clazz, new Ticket(request, deadlineNanos == 0 ? Long.MAX_VALUE : System.nanoTime() + deadlineNanos));
+        try {
+            return delegate.execute(request);
+        } finally {
+            release(clazz);
+        }
+    }
+
+    private void acquire(PriorityClass clazz, Ticket ticket) {
+        lock.lock();
+        try {
+            if (clazz.queue.isEmpty()) {
+                clazz.pass = Math.max(clazz.pass, virtualTime);
+            }
+            clazz.queue.add(ticket);
+            dispatch();
+            while (ticket.state == Ticket.WAITING) {
+                long remaining = ticket.deadline == Long.MAX_VALUE ? Long.MAX_VALUE : ticket.deadline - System.nanoTime();
+                if (remaining <= 0) {
+                    clazz.queue.remove(ticket);
+                    ticket.state = Ticket.SHED;
+                    break;
+                }
+                if (remaining == Long.MAX_VALUE) {
+                    ticket.granted.await();
+                } else {
+                    ticket.granted.awaitNanos(remaining);
+                }
+            }
+            if (ticket.state == Ticket.SHED) {
+                clazz.shed.increment();
+                throw new QueryShedException("query shed, deadline exceeded while queued in class " + clazz.name + ": " + ticket.request);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            if (ticket.state == Ticket.GRANTED) {
+                releaseLocked(clazz);
+            } else {
+                clazz.queue.remove(ticket);
+            }
+            throw new PromQueryException("interrupted while queued in class " + clazz.name + ": " + ticket.request, e);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void release(PriorityClass clazz) {
+        lock.lock();
+        try {
+            releaseLocked(clazz);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void releaseLocked(PriorityClass clazz) {
+        inFlight--;
+        clazz.inFlight--;
+        dispatch();
+    }
+
+    /**
+     * 有空位时放行队首：在未达类别上限的类别中选权重进度最小的，每放行一个查询该类别进度增加1/weight；
+     * 队列中已过期的查询直接丢弃
+     */
+    private void dispatch() {
+        while (inFlight < maxConcurrency) {
+            PriorityClass next = null;
+            for (PriorityClass clazz : classes.values()) {
+                if (clazz.inFlight >= clazz.maxConcurrency) {
+                    continue;
+                }
+                dropExpired(clazz);
+                if (!clazz.queue.isEmpty() && (next == null || clazz.pass < next.pass)) {
+                    next = clazz;
+                }
+            }
+            if (next == null) {
+                return;
+            }
+            Ticket ticket = next.queue.poll();
+            ticket.state = Ticket.GRANTED;
+            next.inFlight++;
+            inFlight++;
+            virtualTime = next.pass;
+            next.pass += 1.0 / next.weight;
+            ticket.granted.signal();
+        }
+    }
+
+    private static void dropExpired(PriorityClass clazz) {
+        if (clazz.queue.isEmpty()) {
+            return;
+        }
+        long now = System.nanoTime();
+        for (Iterator<Ticket> it = clazz.queue.iterator(); it.hasNext(); ) {
+            Ticket ticket = it.next();
+            if (ticket.deadline != Long.MAX_VALUE && ticket.deadline - now <= 0) {
+                it.remove();
+                ticket.state = Ticket.SHED;
+                ticket.granted.signal();
+            }
+        }
+    }
+
+    private PriorityClass clazz(String name) {
+        PriorityClass clazz = classes.get(name);
+        if (clazz == null) {
+            throw new IllegalArgumentException("unknown priority class " + name + ", expected " + classes.keySet());
+        }
+        return clazz;
+    }
+
+    /**
+     * 类别中排队的查询数
+     */
+    public int getQueued(String priorityClass) {
+        PriorityClass clazz = clazz(priorityClass);
+        lock.lock();
+        try {
+            return clazz.queue.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 类别中执行中的查询数
+     */
+    public int getInFlight(String priorityClass) {
+        PriorityClass clazz = clazz(priorityClass);
+        lock.lock();
+        try {
+            return clazz.inFlight;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 类别中因超过deadline而丢弃的查询数
+     */
+    public long getShed(String priorityClass) {
+        return clazz(priorityClass).shed.sum();
+    }
+
+    /**
+     * 排队中的查询，状态由lock保护
+     */
+    private final class Ticket {
+        private static final int WAITING = 0;
+        private static final int GRANTED = 1;
+        private static final int SHED = 2;
+
+        private final QueryRequest request;
+        private final long deadline;
+        private final Condition granted = lock.newCondition();
+        private int state = WAITING;
+
+        private Ticket(QueryRequest request, long deadline) {
+            this.request = request;
+            this.deadline = deadline;
+        }
+    }
+
+    private static final class PriorityClass {
+        private final String name;
+        private final int weight;
+        private final int maxConcurrency;
+        private final long deadlineNanos;
+        private final ArrayDeque<Ticket> queue = new ArrayDeque<>();
+        private final LongAdder shed = new LongAdder();
+        private int inFlight;
+        /**
+         * 权重进度，已放行数/权重
+         */
+        private double pass;
+
+        private PriorityClass(String name, int weight, int maxConcurrency, long deadlineNanos) {
+            this.name = name;
+            this.weight = weight;
+            this.maxConcurrency = maxConcurrency;
+            this.deadlineNanos = deadlineNanos;
+        }
+    }
+
+    public static final class Builder {
+        private final QueryExecutor delegate;
+        private int maxConcurrency = 32;
+        private final Map<String, PriorityClass> classes = new LinkedHashMap<>();
+
+        private Builder(QueryExecutor delegate) {
+            Asserts.notNull(delegate, "delegate must not be null");
+            this.delegate = delegate;
+        }
+
+        /**
+         * 所有类别合计的并发上限，默认32
+         */
+        public Builder maxConcurrency(int maxConcurrency) {
+            Asserts.isTrue(maxConcurrency > 0, "maxConcurrency must be positive");
+            this.maxConcurrency = maxConcurrency;
+            return this;
+        }
+
+        /**
+         * 注册优先级类别
+         *
+         * @param name           类别名称，如interactive、batch
+         * @param weight         权重，多个类别排队时按权重比例分配并发
+         * @param maxConcurrency 类别的并发上限
+         * @param deadlineMillis 默认最长排队时间，0表示不限
+         */
+        public Builder priorityClass(String name, int weight, int maxConcurrency, long deadlineMillis) {
+            Asserts.notBlank(name, "name must not be empty");
+            Asserts.isTrue(!classes.containsKey(name), "duplicate priority class: " + name);
+            Asserts.isTrue(weight > 0, "weight must be positive");
+            Asserts.isTrue(maxConcurrency > 0, "maxConcurrency must be positive");
+            Asserts.isTrue(deadlineMillis >= 0, "deadlineMillis must not be negative");
+            classes.put(name, new PriorityClass(name, weight, maxConcurrency, TimeUnit.MILLISECONDS.toNanos(deadlineMillis)));
+            return this;
+        }
+
+        public PriorityQueryScheduler build() {
+            Asserts.isTrue(!classes.isEmpty(), "at least one priority class is required");
+            return new PriorityQueryScheduler(this);
+        }
+    }
+}
@@ -0,0 +1,321 @@
+package io.github.leeyxq.promsql.client;
+
+import io.github.leeyxq.promsql.util.Asserts;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Prometheus HTTP查询客户端
+ * <ul>
+ *     <li>基于HttpURLConnection，响应读完后连接回到JDK的keep-alive连接池复用，池大小由系统属性http.maxConnections控制</li>
+ *     <li>默认请求gzip压缩响应</li>
+ *     <li>查询参数编码后URL超过阈值时自动改为表单POST，避免超长__name__正则被网关截断</li>
+ * </ul>
+ * 实例线程安全。
+ *
+ * @author lixiangqian
+ * @since 2026/10/18 15:00
+ */
+@Slf4j
+public final class PromClient implements QueryExecutor {
+    public static final String QUERY_PATH = "/api/v1/query";
+    public static final String QUERY_RANGE_PATH = "/api/v1/query_range";
+    private static final int MAX_ERROR_LENGTH = 1024;
+
+    @Getter
+    private final String baseUrl;
+    private final int connectTimeoutMillis;
+    private final int readTimeoutMillis;
+    private final int maxGetUrlLength;
+    private final boolean gzip;
+    private final String queryTimeout;
+    private final Map<String, String> headers;
+    @Getter
+    private final PromResponseDecoder decoder;
+
+    private PromClient(Builder builder) {
+        this.baseUrl = builder.baseUrl;
+        this.connectTimeoutMillis = builder.connectTimeoutMillis;
+        this.readTimeoutMillis = builder.readTimeoutMillis;
+        this.maxGetUrlLength = builder.maxGetUrlLength;
+        this.gzip = builder.gzip;
+        this.queryTimeout = builder.queryTimeout;
+        this.headers = new LinkedHashMap<>(builder.headers);
+        this.decoder = builder.decoder == null ? new PromResponseDecoder() : builder.decoder;
+    }
+
+    /**
+     * 获取一个客户端构建器
+     *
+     * @param baseUrl Prometheus地址，如http://localhost:9090
+     * @return 构建器
+     */
+    public static Builder builder(String baseUrl) {
+        return new Builder(baseUrl);
+    }
+
+    /**
+     * 执行查询，响应流式解析为基本类型数组
+     *
+     * @param request 查询请求
+     * @return 查询结果
+     */
+    @Override
+    public QueryResult execute(QueryRequest request) {
+        return execute(request, decoder.handler(request));
+    }
+
+    /**
+     * 执行查询并返回原始JSON
+     *
+     * @param request 查询请求
+     * @return 响应JSON
+     */
+    public String queryRaw(QueryRequest request) {
+        return execute(request, PromClient::readString);
+    }
+
+    /**
+     * 执行查询，由handler直接消费响应流
+     *
+     * @param request 查询请求
+     * @param handler 响应处理器
+     * @param <T>     结果类型
+     * @return 处理结果
+     */
+    public <T> T execute(QueryRequest request, ResponseHandler<T> handler) {
+        StringBuilder form = new StringBuilder(request.getQuery().length() + 64);
+        appendParam(form, "query", request.getQuery());
+        if (request.isRange()) {
+            appendParam(form, "start", QueryRequest.formatSeconds(request.getStart()));
+            appendParam(form, "end", QueryRequest.formatSeconds(request.getEnd()));
+            appendParam(form, "step", QueryRequest.formatSeconds(request.getStep()));
+        } else if (request.getTime() != null) {
+            appendParam(form, "time", QueryRequest.formatSeconds(request.getTime()));
+        }
+        if (queryTimeout != null) {
+            appendParam(form, "timeout", queryTimeout);
+        }
+        return execute(request.isRange() ? QUERY_RANGE_PATH : QUERY_PATH, form.toString(), handler);
+    }
+
+    /**
+     * 调用任意Prometheus HTTP API
+     *
+     * @param path    接口路径，如/api/v1/labels
+     * @param form    已编码的查询参数，可为空
+     * @param handler 响应处理器
+     * @param <T>     结果类型
+     * @return 处理结果
+     */
+    public <T> T execute(String path, String form, ResponseHandler<T> handler) {
+        String url = baseUrl + path;
+        boolean post = form != null && !form.isEmpty() && url.length() + 1 + form.length() > maxGetUrlLength;
+        if (!post && form != null && !form.isEmpty()) {
+            url = url + '?' + form;
+        }
+        Map<String, String> requestHeaders = new LinkedHashMap<>(4);
+        requestHeaders.put("Accept", "application/json");
+        if (post) {
+            requestHeaders.put("Content-Type", "application/x-www-form-urlencoded");
+        }
+        byte[] body = post ? form.getBytes(StandardCharsets.UTF_8) : null;
+        return exchange(path, url, requestHeaders, body, (contentType, in) -> handler.handle(in));
+    }
+
+    /**
+     * POST二进制请求体，如remote-read的protobuf请求
+     *
+     * @param path           接口路径
+     * @param requestHeaders 请求头，如Content-Type、Content-Encoding
+     * @param body           请求体
+     * @param handler        响应处理器，可按响应的Content-Type选择解析方式
+     */
+    <T> T post(String path, Map<String, String> requestHeaders, byte[] body, TypedResponseHandler<T> handler) {
+        return exchange(path, baseUrl + path, requestHeaders, body, handler);
+    }
+
+    private <T> T exchange(String path, String url, Map<String, String> requestHeaders, byte[] body, TypedResponseHandler<T> handler) {
+        HttpURLConnection conn = null;
+        try {
+            conn = (HttpURLConnection) new URL(url).openConnection();
+            conn.setConnectTimeout(connectTimeoutMillis);
+            conn.setReadTimeout(readTimeoutMillis);
+            conn.setUseCaches(false);
+            if (gzip) {
+                conn.setRequestProperty("Accept-Encoding", "gzip");
+            }
+            for (Map.Entry<String, String> header : requestHeaders.entrySet()) {
+                conn.setRequestProperty(header.getKey(), header.getValue());
+            }
+            for (Map.Entry<String, String> header : headers.entrySet()) {
+                conn.setRequestProperty(header.getKey(), header.getValue());
+            }
+            if (body != null) {
+                conn.setRequestMethod("POST");
+                conn.setDoOutput(true);
+                conn.setFixedLengthStreamingMode(body.length);
+                try (OutputStream out = conn.getOutputStream()) {
+                    out.write(body);
+                }
+            }
+            int status = conn.getResponseCode();
+            InputStream raw = status < HttpURLConnection.HTTP_BAD_REQUEST ? conn.getInputStream() : conn.getErrorStream();
+            if (raw == null) {
+                throw new PromQueryException("prometheus returned status " + status + " without body: " + path, status);
+            }
+            try (InputStream in = "gzip".equalsIgnoreCase(conn.getContentEncoding()) ? new GZIPInputStream(raw, 8192) : raw) {
+                if (status / 100 != 2) {
+                    String error = readString(in);
+                    throw new PromQueryException("prometheus returned status " + status + ": "
+                            + (error.length() > MAX_ERROR_LENGTH ? error.substring(0, MAX_ERROR_LENGTH) : error), status);
+                }
+                T result = handler.handle(conn.getContentType(), in);
+                drain(in);
+                return result;
+            }
+        } catch (IOException e) {
+            drainError(conn);
+            throw new PromQueryException("failed to query prometheus " + path + ": " + e.getMessage(), e);
+        }
+    }
+
+    static void appendParam(StringBuilder form, String name, String value) {
+        if (form.length() > 0) {
+            form.append('&');
+        }
+        try {
+            form.append(name).append('=').append(URLEncoder.encode(value, StandardCharsets.UTF_8.name()));
+        } catch (UnsupportedEncodingException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    static String readString(InputStream in) throws IOException {
+        return new String(readBytes(in), StandardCharsets.UTF_8);
+    }
+
+    static byte[] readBytes(InputStream in) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(4096);
+        byte[] buffer = new byte[4096];
+        int n;
+        while ((n = in.read(buffer)) >= 0) {
+            out.write(buffer, 0, n);
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * 读完剩余内容，保证连接可以回到keep-alive连接池
+     */
+    private static void drain(InputStream in) throws IOException {
+        byte[] buffer = new byte[1024];
+        while (in.read(buffer) >= 0) {
+            //ignore
+        }
+    }
+
+    private static void drainError(HttpURLConnection conn) {
+        if (conn == null) {
+            return;
+        }
+        try (InputStream error = conn.getErrorStream()) {
+            if (error != null) {
+                drain(error);
+            }
+        } catch (IOException e) {
+            log.debug("failed to drain error stream", e);
+        }
+    }
+
+    /**
+     * 需要根据响应Content-Type选择解析方式的处理器
+     */
+    @FunctionalInterface
+    interface TypedResponseHandler<T> {
+
+        T handle(String contentType, InputStream body) throws IOException;
+    }
+
+    public static final class Builder {
+        private final String baseUrl;
+        private int connectTimeoutMillis = 3000;
+        private int readTimeoutMillis = 30000;
+        private int maxGetUrlLength = 4096;
+        private boolean gzip = true;
+        private String queryTimeout;
+        private final Map<String, String> headers = new LinkedHashMap<>();
+        private PromResponseDecoder decoder;
+
+        private Builder(String baseUrl) {
+            Asserts.notBlank(baseUrl, "baseUrl must not be empty");
+            this.baseUrl = baseUrl.endsWith("/") ? baseUrl.substring(0, baseUrl.length() - 1) : baseUrl;
+        }
+
+        public Builder connectTimeoutMillis(int connectTimeoutMillis) {
+            this.connectTimeoutMillis = connectTimeoutMillis;
+            return this;
+        }
+
+        public Builder readTimeoutMillis(int readTimeoutMillis) {
+            this.readTimeoutMillis = readTimeoutMillis;
+            return this;
+        }
+
+        /**
+         * GET请求URL的最大长度，超过后改为POST
+         */
+        public Builder maxGetUrlLength(int maxGetUrlLength) {
+            Asserts.isTrue(maxGetUrlLength > 0, "maxGetUrlLength must be positive");
+            this.maxGetUrlLength = maxGetUrlLength;
+            return this;
+        }
+
+        public Builder gzip(boolean gzip) {
+            this.gzip = gzip;
+            return this;
+        }
+
+        /**
+         * Prometheus端的查询超时，如30s
+         */
+        public Builder queryTimeout(String queryTimeout) {
+            this.queryTimeout = queryTimeout;
+            return this;
+        }
+
+        /**
+         * 附加请求头，如Authorization
+         */
+        public Builder header(String name, String value) {
+            Asserts.notBlank(name, "header name must not be empty");
+            headers.put(name, value);
+            return this;
+        }
+
+        /**
+         * 共享响应解析器，多个客户端共用label驻留表
+         */
+        public Builder decoder(PromResponseDecoder decoder) {
+            this.decoder = decoder;
+            return this;
+        }
+
+        public PromClient build() {
+            return new PromClient(this);
+        }
+    }
+}
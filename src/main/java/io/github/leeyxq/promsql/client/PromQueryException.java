@@ -0,0 +1,33 @@
+package io.github.leeyxq.promsql.client;
+
+import lombok.Getter;
+
+/**
+ * prom查询执行异常，如网络错误、Prometheus返回非2xx状态码
+ *
+ * @author lixiangqian
+ * @since 2026/10/18 15:00
+ */
+public class PromQueryException extends RuntimeException {
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * HTTP状态码，网络错误等无响应时为0
+     */
+    @Getter
+    private final int statusCode;
+
+    public PromQueryException(String message, int statusCode) {
+        super(message);
+        this.statusCode = statusCode;
+    }
+
+    public PromQueryException(String message, Throwable cause) {
+        this(message, 0, cause);
+    }
+
+    public PromQueryException(String message, int statusCode, Throwable cause) {
+        super(message, cause);
+        this.statusCode = statusCode;
+    }
+}
@@ -0,0 +1,253 @@
+package io.github.leeyxq.promsql.client;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * 流式解析Prometheus查询响应（matrix/vector/scalar/string）
+ * <ul>
+ *     <li>边读边解析，不构建完整JSON树</li>
+ *     <li>时间戳写入long[]、样本值写入double[]，不产生装箱对象</li>
+ *     <li>label名、label值及label集合均驻留复用，重复查询的序列共享同一Labels实例</li>
+ * </ul>
+ * 实例线程安全，建议全局共享以提高驻留命中率。
+ *
+ * @author lixiangqian
+ * @since 2026/10/18 16:00
+ */
+public final class PromResponseDecoder {
+    /**
+     * Prometheus单条序列最多返回11000个点
+     */
+    private static final int MAX_PRESIZE = 11_000;
+    private static final int MAX_INTERNED_LABELS = 100_000;
+
+    private final StringInterner interner = new StringInterner(1 << 16);
+    private final ConcurrentMap<Labels, Labels> labelSets = new ConcurrentHashMap<>();
+
+    /**
+     * 解析响应
+     *
+     * @param body            响应流
+     * @param expectedSamples 每条序列预估样本数，用于预分配数组，如区间查询的(end - start) / step + 1
+     * @return 查询结果
+     * @throws IOException 读取失败或格式错误
+     */
+    public QueryResult decode(InputStream body, int expectedSamples) throws IOException {
+        JsonReader reader = new JsonReader(new InputStreamReader(body, StandardCharsets.UTF_8));
+        String status = null;
+        String error = null;
+        String errorType = null;
+        ResultType resultType = null;
+        List<Series> series = null;
+        List<String> warnings = null;
+
+        reader.expect('{');
+        if (!reader.consume('}')) {
+            do {
+                reader.readName();
+                if (reader.scratchEquals("status")) {
+                    status = reader.readString();
+                } else if (reader.scratchEquals("error")) {
+                    error = reader.readString();
+                } else if (reader.scratchEquals("errorType")) {
+                    errorType = reader.readString();
+                } else if (reader.scratchEquals("warnings")) {
+                    warnings = readStrings(reader);
+                } else if (reader.scratchEquals("data") && reader.peek() == '{') {
+                    reader.expect('{');
+                    if (!reader.consume('}')) {
+                        do {
+                            reader.readName();
+                            if (reader.scratchEquals("resultType")) {
+                                resultType = ResultType.of(reader.readString());
+                            } else if (reader.scratchEquals("result")) {
+                                series = readResult(reader, Math.max(1, expectedSamples));
+                            } else {
+                                reader.skipValue();
+                            }
+                        } while (reader.hasNext('}'));
+                    }
+                } else {
+                    reader.skipValue();
+                }
+            } while (reader.hasNext('}'));
+        }
+
+        if (!"success".equals(status)) {
+            throw new PromQueryException("prometheus query failed: " + errorType + ": " + error, 0);
+        }
+        if (resultType == null) {
+            throw reader.syntaxError("missing resultType");
+        }
+        return new QueryResult(resultType, series == null ? new ArrayList<>() : series, warnings);
+    }
+
+    /**
+     * 绑定预估样本数的响应处理器，可直接传给{@link PromClient#execute(QueryRequest, ResponseHandler)}
+     */
+    public ResponseHandler<QueryResult> handler(QueryRequest request) {
+        int expectedSamples = request.isRange()
+                ? (int) Math.min(MAX_PRESIZE, (request.getEnd() - request.getStart()) / request.getStep() + 1)
+                : 1;
+        return body -> decode(body, expectedSamples);
+    }
+
+    private List<Series> readResult(JsonReader reader, int expectedSamples) throws IOException {
+        List<Series> series = new ArrayList<>();
+        reader.expect('[');
+        if (reader.consume(']')) {
+            return series;
+        }
+        if (reader.peek() != '{') {
+            //scalar/string：[ts, "value"]
+            long timestamp = reader.readTimestampMillis();
+            reader.expect(',');
+            double value = reader.peek() == '"' ? readValueOrNaN(reader) : reader.readNumber();
+            reader.expect(']');
+            series.add(new Series(Labels.EMPTY, new long[]{timestamp}, new double[]{value}));
+            return series;
+        }
+        do {
+            series.add(readSeries(reader, expectedSamples));
+        } while (reader.hasNext(']'));
+        return series;
+    }
+
+    private Series readSeries(JsonReader reader, int expectedSamples) throws IOException {
+        Labels labels = Labels.EMPTY;
+        long[] timestamps = null;
+        double[] values = null;
+        int size = 0;
+        reader.expect('{');
+        if (!reader.consume('}')) {
+            do {
+                reader.readName();
+                if (reader.scratchEquals("metric")) {
+                    labels = readLabels(reader);
+                } else if (reader.scratchEquals("value")) {
+                    timestamps = new long[1];
+                    values = new double[1];
+                    reader.expect('[');
+                    timestamps[0] = reader.readTimestampMillis();
+                    reader.expect(',');
+                    values[0] = reader.readDoubleString();
+                    reader.expect(']');
+                    size = 1;
+                } else if (reader.scratchEquals("values")) {
+                    timestamps = new long[expectedSamples];
+                    values = new double[expectedSamples];
+                    reader.expect('[');
+                    if (!reader.consume(']')) {
+                        do {
+                            if (size == timestamps.length) {
+                                timestamps = Arrays.copyOf(timestamps, size * 2);
+                                values = Arrays.copyOf(values, size * 2);
+                            }
+                            reader.expect('[');
+                            timestamps[size] = reader.readTimestampMillis();
+                            reader.expect(',');
+                            values[size] = reader.readDoubleString();
+                            reader.expect(']');
+                            size++;
+                        } while (reader.hasNext(']'));
+                    }
+                } else {
+                    //原生直方图等暂不支持的字段
+                    reader.skipValue();
+                }
+            } while (reader.hasNext('}'));
+        }
+        if (timestamps == null) {
+            return new Series(labels, new long[0], new double[0]);
+        }
+        if (size != timestamps.length) {
+            timestamps = Arrays.copyOf(timestamps, size);
+            values = Arrays.copyOf(values, size);
+        }
+        return new Series(labels, timestamps, values);
+    }
+
+    private Labels readLabels(JsonReader reader) throws IOException {
+        reader.expect('{');
+        if (reader.consume('}')) {
+            return Labels.EMPTY;
+        }
+        String[] names = new String[8];
+        String[] values = new String[8];
+        int size = 0;
+        boolean sorted = true;
+        do {
+            if (size == names.length) {
+                names = Arrays.copyOf(names, size * 2);
+                values = Arrays.copyOf(values, size * 2);
+            }
+            reader.readName();
+            names[size] = interner.intern(reader.scratch, 0, reader.scratchLength);
+            reader.readStringChars();
+            values[size] = interner.intern(reader.scratch, 0, reader.scratchLength);
+            if (size > 0 && names[size - 1].compareTo(names[size]) > 0) {
+                sorted = false;
+            }
+            size++;
+        } while (reader.hasNext('}'));
+        if (size != names.length) {
+            names = Arrays.copyOf(names, size);
+            values = Arrays.copyOf(values, size);
+        }
+        if (!sorted) {
+            sortByName(names, values);
+        }
+        Labels labels = new Labels(names, values);
+        Labels interned = labelSets.get(labels);
+        if (interned != null) {
+            return interned;
+        }
+        if (labelSets.size() < MAX_INTERNED_LABELS) {
+            interned = labelSets.putIfAbsent(labels, labels);
+        }
+        return interned == null ? labels : interned;
+    }
+
+    private static List<String> readStrings(JsonReader reader) throws IOException {
+        List<String> strings = new ArrayList<>();
+        reader.expect('[');
+        if (!reader.consume(']')) {
+            do {
+                strings.add(reader.readString());
+            } while (reader.hasNext(']'));
+        }
+        return strings;
+    }
+
+    private static double readValueOrNaN(JsonReader reader) throws IOException {
+        try {
+            return reader.readDoubleString();
+        } catch (NumberFormatException e) {
+            //string结果类型的值不是数值
+            return Double.NaN;
+        }
+    }
+
+    private static void sortByName(String[] names, String[] values) {
+        for (int i = 1; i < names.length; i++) {
+            String name = names[i];
+            String value = values[i];
+            int j = i - 1;
+            while (j >= 0 && names[j].compareTo(name) > 0) {
+                names[j + 1] = names[j];
+                values[j + 1] = values[j];
+                j--;
+            }
+            names[j + 1] = name;
+            values[j + 1] = value;
+        }
+    }
+}
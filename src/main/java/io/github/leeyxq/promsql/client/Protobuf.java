@@ -0,0 +1,213 @@
+package io.github.leeyxq.promsql.client;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * remote-read用到的protobuf线格式读写，只支持varint、64位定长和长度前缀三种类型，不依赖protobuf运行时
+ *
+ * @author lixiangqian
+ * @since 2026/10/18 23:30
+ */
+final class Protobuf {
+    static final int VARINT = 0;
+    static final int FIXED64 = 1;
+    static final int LENGTH_DELIMITED = 2;
+    static final int FIXED32 = 5;
+
+    private Protobuf() {
+    }
+
+    /**
+     * 追加写入的消息缓冲
+     */
+    static final class Writer {
+        private byte[] buf = new byte[256];
+        private int size;
+
+        Writer varint(int field, long value) {
+            tag(field, VARINT);
+            return rawVarint(value);
+        }
+
+        Writer fixed64(int field, double value) {
+            tag(field, FIXED64);
+            ensure(8);
+            long bits = Double.doubleToRawLongBits(value);
+            for (int i = 0; i < 8; i++) {
+                buf[size++] = (byte) (bits >>> (8 * i));
+            }
+            return this;
+        }
+
+        Writer string(int field, String value) {
+            return bytes(field, value.getBytes(StandardCharsets.UTF_8));
+        }
+
+        Writer bytes(int field, byte[] value) {
+            tag(field, LENGTH_DELIMITED);
+            rawVarint(value.length);
+            ensure(value.length);
+            System.arraycopy(value, 0, buf, size, value.length);
+            size += value.length;
+            return this;
+        }
+
+        Writer message(int field, Writer message) {
+            return bytes(field, message.toByteArray());
+        }
+
+        /**
+         * packed编码的repeated varint
+         */
+        Writer packed(int field, int... values) {
+            Writer packed = new Writer();
+            for (int value : values) {
+                packed.rawVarint(value);
+            }
+            return bytes(field, packed.toByteArray());
+        }
+
+        byte[] toByteArray() {
+            return Arrays.copyOf(buf, size);
+        }
+
+        private void tag(int field, int wireType) {
+            rawVarint((long) field << 3 | wireType);
+        }
+
+        private Writer rawVarint(long value) {
+            ensure(10);
+            size = Snappy.writeUvarint(buf, size, value);
+            return this;
+        }
+
+        private void ensure(int extra) {
+            if (size + extra > buf.length) {
+                buf = Arrays.copyOf(buf, Math.max(buf.length * 2, size + extra));
+            }
+        }
+    }
+
+    /**
+     * 在字节数组的一段上顺序读取字段，子消息通过{@link #message()}得到共享底层数组的新Reader，不复制
+     */
+    static final class Reader {
+        private final byte[] buf;
+        private final int limit;
+        private int pos;
+        private int wireType;
+
+        Reader(byte[] buf, int offset, int length) {
+            this.buf = buf;
+            this.pos = offset;
+            this.limit = offset + length;
+        }
+
+        /**
+         * @return 下一个字段号，读完时为0
+         */
+        int next() throws IOException {
+            if (pos >= limit) {
+                return 0;
+            }
+            long tag = varint();
+            wireType = (int) (tag & 7);
+            return (int) (tag >>> 3);
+        }
+
+        long varint() throws IOException {
+            long value = 0;
+            for (int shift = 0; shift < 64; shift += 7) {
+                if (pos >= limit) {
+                    throw new IOException("protobuf: truncated varint");
+                }
+                int b = buf[pos++] & 0xFF;
+                value |= (long) (b & 0x7F) << shift;
+                if (b < 0x80) {
+                    return value;
+                }
+            }
+            throw new IOException("protobuf: varint overflow");
+        }
+
+        double fixed64AsDouble() throws IOException {
+            require(8);
+            long bits = 0;
+            for (int i = 7; i >= 0; i--) {
+                bits = bits << 8 | (buf[pos + i] & 0xFF);
+            }
+            pos += 8;
+            return Double.longBitsToDouble(bits);
+        }
+
+        String string() throws IOException {
+            int length = length();
+            String value = new String(buf, pos, length, StandardCharsets.UTF_8);
+            pos += length;
+            return value;
+        }
+
+        Reader message() throws IOException {
+            int length = length();
+            Reader reader = new Reader(buf, pos, length);
+            pos += length;
+            return reader;
+        }
+
+        /**
+         * 跳过当前字段，兼容新版本协议中增加的字段
+         */
+        void skip() throws IOException {
+            switch (wireType) {
+                case VARINT:
+                    varint();
+                    break;
+                case FIXED64:
+                    require(8);
+                    pos += 8;
+                    break;
+                case LENGTH_DELIMITED:
+                    pos += length();
+                    break;
+                case FIXED32:
+                    require(4);
+                    pos += 4;
+                    break;
+                default:
+                    throw new IOException("protobuf: unsupported wire type " + wireType);
+            }
+        }
+
+        int wireType() {
+            return wireType;
+        }
+
+        byte[] array() {
+            return buf;
+        }
+
+        int position() {
+            return pos;
+        }
+
+        int remaining() {
+            return limit - pos;
+        }
+
+        private int length() throws IOException {
+            long length = varint();
+            if (length < 0 || length > limit - pos) {
+                throw new IOException("protobuf: length " + length + " exceeds message");
+            }
+            return (int) length;
+        }
+
+        private void require(int n) throws IOException {
+            if (limit - pos < n) {
+                throw new IOException("protobuf: truncated message");
+            }
+        }
+    }
+}
@@ -0,0 +1,34 @@
+package io.github.leeyxq.promsql.client;
+
+import lombok.Value;
+
+/**
+ * 查询开销估算结果，数量均为估算值，超出long范围时取Long.MAX_VALUE
+ *
+ * @author lixiangqian
+ * @since 2026/10/18 19:30
+ */
+@Value
+public class QueryCost {
+    /**
+     * 涉及的序列数
+     */
+    long series;
+    /**
+     * 扫描的样本数，与Prometheus查询统计中的totalQueryableSamples口径一致：每次求值分别计数
+     */
+    long samples;
+    /**
+     * 最早读取的数据距查询结束时间的毫秒数，含时间区间、offset及区间查询跨度
+     */
+    long lookbackMillis;
+    /**
+     * 是否含有不限定metric的选择器，如{__name__=~".*"}
+     */
+    boolean unbounded;
+
+    @Override
+    public String toString() {
+        return "series=" + series + ", samples=" + samples + ", lookback=" + lookbackMillis + "ms" + (unbounded ? ", unbounded" : "");
+    }
+}
@@ -0,0 +1,20 @@
+package io.github.leeyxq.promsql.client;
+
+/**
+ * 查询执行器，缓存、合并、拆分等能力均以装饰器形式实现此接口，可按需组合
+ *
+ * @author lixiangqian
+ * @since 2026/10/18 16:00
+ */
+@FunctionalInterface
+public interface QueryExecutor {
+
+    /**
+     * 执行查询
+     *
+     * @param request 查询请求
+     * @return 查询结果
+     * @throws PromQueryException 执行失败
+     */
+    QueryResult execute(QueryRequest request);
+}
@@ -0,0 +1,96 @@
+package io.github.leeyxq.promsql.client;
+
+import io.github.leeyxq.promsql.PromHelper;
+import io.github.leeyxq.promsql.PromTemplate;
+import io.github.leeyxq.promsql.util.Asserts;
+import io.github.leeyxq.promsql.util.DurationUtil;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 由{@link StepPolicy}推导出的区间查询参数：已对齐的start、end、step及rate窗口，时间均为毫秒
+ * <p>
+ * 生成请求时替换查询中的内置占位符：{@link PromHelper#INTERVAL}为step，{@link PromHelper#RATE_INTERVAL}为rate窗口，
+ * {@link PromHelper#RANGE}为查询的时间跨度，构建查询时无需写死5m之类的时间窗口。
+ *
+ * @author lixiangqian
+ * @since 2026/10/19 01:00
+ */
+@Getter
+@EqualsAndHashCode
+public final class QueryRange {
+    private static final String BUILTIN_PREFIX = PromTemplate.PARAM_PREFIX + "__";
+
+    private final long start;
+    private final long end;
+    private final long step;
+    /**
+     * rate、increase等函数的时间窗口
+     */
+    private final long rateIntervalMillis;
+
+    QueryRange(long start, long end, long step, long rateIntervalMillis) {
+        this.start = start;
+        this.end = end;
+        this.step = step;
+        this.rateIntervalMillis = rateIntervalMillis;
+    }
+
+    /**
+     * step的时间区间写法，如1m
+     */
+    public String interval() {
+        return DurationUtil.format(step);
+    }
+
+    /**
+     * rate窗口的时间区间写法，如1m15s，可直接传给{@link PromHelper.PromSqlBuilder#rate(String)}
+     */
+    public String rateInterval() {
+        return DurationUtil.format(rateIntervalMillis);
+    }
+
+    /**
+     * 生成区间查询请求，查询中的内置占位符按本区间替换
+     *
+     * @param builder 查询构建器
+     * @return 区间查询请求
+     */
+    public QueryRequest request(PromHelper.PromSqlBuilder builder) {
+        Asserts.notNull(builder, "builder must not be null");
+        String promSql = builder.build();
+        if (!promSql.contains(BUILTIN_PREFIX)) {
+            return QueryRequest.range(promSql, start, end, step, builder.fingerprint(), builder.dependsOnRange());
+        }
+        return request(builder.compile(), new HashMap<>());
+    }
+
+    /**
+     * 绑定模板参数并生成区间查询请求，内置占位符按本区间替换，其他参数取自params
+     *
+     * @param template 查询模板
+     * @param params   内置占位符以外的参数
+     * @return 区间查询请求
+     */
+    public QueryRequest request(PromTemplate template, Map<String, ?> params) {
+        Asserts.notNull(template, "template must not be null");
+        Asserts.notNull(params, "params must not be null");
+        Map<String, Object> values = new HashMap<>(params);
+        values.put(name(PromHelper.INTERVAL), interval());
+        values.put(name(PromHelper.RATE_INTERVAL), rateInterval());
+        values.put(name(PromHelper.RANGE), DurationUtil.format(Math.max(end - start, step)));
+        return QueryRequest.range(template.render(values), start, end, step);
+    }
+
+    private static String name(String placeholder) {
+        return placeholder.substring(PromTemplate.PARAM_PREFIX.length(), placeholder.length() - 1);
+    }
+
+    @Override
+    public String toString() {
+        return "[" + start + ", " + end + "] step " + interval() + " rate " + rateInterval();
+    }
+}
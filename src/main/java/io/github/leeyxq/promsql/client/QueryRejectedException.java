@@ -0,0 +1,26 @@
+package io.github.leeyxq.promsql.client;
+
+import lombok.Getter;
+
+/**
+ * 查询开销超出预算，在发送前被拒绝
+ *
+ * @author lixiangqian
+ * @since 2026/10/18 19:30
+ */
+public class QueryRejectedException extends PromQueryException {
+    private static final long serialVersionUID = 1L;
+
+    @Getter
+    private final transient QueryCost cost;
+
+    public QueryRejectedException(String message, QueryCost cost) {
+        super(message, 0);
+        this.cost = cost;
+    }
+
+    public QueryRejectedException(String message, QueryCost cost, Throwable cause) {
+        super(message, 0, cause);
+        this.cost = cost;
+    }
+}
@@ -0,0 +1,166 @@
+package io.github.leeyxq.promsql.client;
+
+import io.github.leeyxq.promsql.PromHelper;
+import io.github.leeyxq.promsql.ast.ExprFingerprint;
+import io.github.leeyxq.promsql.ast.ExprNormalizer;
+import io.github.leeyxq.promsql.ast.StringLiteral;
+import io.github.leeyxq.promsql.parser.PromParseException;
+import io.github.leeyxq.promsql.parser.PromParser;
+import io.github.leeyxq.promsql.util.Asserts;
+import lombok.AccessLevel;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+
+/**
+ * prom查询请求，瞬时查询对应/api/v1/query，区间查询对应/api/v1/query_range，时间均为毫秒时间戳
+ *
+ * @author lixiangqian
+ * @since 2026/10/18 15:00
+ */
+@Getter
+@EqualsAndHashCode
+public final class QueryRequest {
+    private final String query;
+    /**
+     * 瞬时查询时间，为null时由Prometheus取当前时间
+     */
+    private final Long time;
+    private final long start;
+    private final long end;
+    /**
+     * 区间查询步长，瞬时查询为0
+     */
+    private final long step;
+    /**
+     * 规范化查询的指纹，懒加载；并发下重复计算结果一致，无需同步
+     */
+    @Getter(AccessLevel.NONE)
+    @EqualsAndHashCode.Exclude
+    private volatile Long fingerprint;
+    /**
+     * 由构建器生成时按表达式树判断的{@link #dependsOnRange()}，原始查询文本为null
+     */
+    @Getter(AccessLevel.NONE)
+    @EqualsAndHashCode.Exclude
+    private final Boolean rangeDependent;
+
+    private QueryRequest(String query, Long time, long start, long end, long step, Long fingerprint, Boolean rangeDependent) {
+        Asserts.notBlank(query, "query must not be empty");
+        this.query = query;
+        this.time = time;
+        this.start = start;
+        this.end = end;
+        this.step = step;
+        this.fingerprint = fingerprint;
+        this.rangeDependent = rangeDependent;
+    }
+
+    public static QueryRequest instant(String query) {
+        return new QueryRequest(query, null, 0, 0, 0, null, null);
+    }
+
+    public static QueryRequest instant(String query, long time) {
+        return new QueryRequest(query, time, 0, 0, 0, null, null);
+    }
+
+    public static QueryRequest instant(PromHelper.PromSqlBuilder builder, long time) {
+        return new QueryRequest(builder.build(), time, 0, 0, 0, builder.fingerprint(), builder.dependsOnRange());
+    }
+
+    public static QueryRequest range(String query, long start, long end, long step) {
+        return range(query, start, end, step, null, null);
+    }
+
+    public static QueryRequest range(PromHelper.PromSqlBuilder builder, long start, long end, long step) {
+        return range(builder.build(), start, end, step, builder.fingerprint(), builder.dependsOnRange());
+    }
+
+    static QueryRequest range(String query, long start, long end, long step, Long fingerprint, Boolean rangeDependent) {
+        Asserts.isTrue(step > 0, "step must be positive");
+        Asserts.isTrue(start <= end, "start must not be after end");
+        return new QueryRequest(query, null, start, end, step, fingerprint, rangeDependent);
+    }
+
+    public boolean isRange() {
+        return step > 0;
+    }
+
+    /**
+     * 查询是否引用了区间的起止时刻（@ start()、@ end()），此类查询按时间拆分后语义会改变。
+     * 由构建器生成的请求按表达式树判断；原始查询文本只做文本判断，label值中出现同样的文本时保守地视为引用
+     */
+    boolean dependsOnRange() {
+        if (rangeDependent != null) {
+            return rangeDependent;
+        }
+        return query.contains("start()") || query.contains("end()");
+    }
+
+    /**
+     * 同一查询语句、不同时间范围的新请求
+     */
+    public QueryRequest withRange(long start, long end) {
+        return range(query, start, end, step, fingerprint, rangeDependent);
+    }
+
+    /**
+     * start、end向下对齐到step的整数倍，对齐后的请求在不同时刻发起也能命中同一缓存
+     */
+    public QueryRequest stepAligned() {
+        if (!isRange()) {
+            return this;
+        }
+        long alignedStart = Math.floorDiv(start, step) * step;
+        long alignedEnd = Math.floorDiv(end, step) * step;
+        return alignedStart == start && alignedEnd == end ? this : withRange(alignedStart, alignedEnd);
+    }
+
+    /**
+     * 规范化查询的64位指纹，写法不同但语义相同的查询指纹一致；无法解析的查询退化为按原文计算
+     *
+     * @return 指纹
+     */
+    public long fingerprint() {
+        Long value = fingerprint;
+        if (value == null) {
+            try {
+                value = ExprFingerprint.of(ExprNormalizer.normalize(PromParser.parse(query)));
+            } catch (PromParseException e) {
+                value = ExprFingerprint.of(new StringLiteral(query));
+            }
+            fingerprint = value;
+        }
+        return value;
+    }
+
+    @Override
+    public String toString() {
+        return isRange() ? query + " [" + start + ", " + end + "] step " + step : query + (time == null ? "" : " @ " + time);
+    }
+
+    /**
+     * 毫秒转换为Prometheus接受的秒数格式，如1690000000.5
+     */
+    static String formatSeconds(long millis) {
+        long seconds = millis / 1000;
+        long fraction = Math.abs(millis % 1000);
+        if (fraction == 0) {
+            return Long.toString(seconds);
+        }
+        StringBuilder sb = new StringBuilder(16);
+        if (millis < 0 && seconds == 0) {
+            sb.append('-');
+        }
+        sb.append(seconds).append('.');
+        if (fraction < 100) {
+            sb.append('0');
+        }
+        if (fraction < 10) {
+            sb.append('0');
+        }
+        while (fraction % 10 == 0) {
+            fraction /= 10;
+        }
+        return sb.append(fraction).toString();
+    }
+}
@@ -0,0 +1,96 @@
+package io.github.leeyxq.promsql.client;
+
+import lombok.Getter;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 查询结果，matrix每条序列含多个样本，vector每条序列仅一个样本，scalar为一条无label序列
+ *
+ * @author lixiangqian
+ * @since 2026/10/18 16:00
+ */
+@Getter
+public final class QueryResult {
+    private final ResultType resultType;
+    private final List<Series> series;
+    private final List<String> warnings;
+
+    public QueryResult(ResultType resultType, List<Series> series, List<String> warnings) {
+        this.resultType = resultType;
+        this.series = Collections.unmodifiableList(series);
+        this.warnings = warnings == null ? Collections.emptyList() : Collections.unmodifiableList(warnings);
+    }
+
+    /**
+     * 样本总数
+     */
+    public int sampleCount() {
+        int count = 0;
+        for (Series s : series) {
+            count += s.size();
+        }
+        return count;
+    }
+
+    /**
+     * 按时间先后拼接同一查询相邻时间段的结果，同label的序列首尾相接，序列顺序按首次出现排列
+     *
+     * @param parts 各时间段结果，需按时间升序且互不重叠
+     * @return 拼接后的结果
+     */
+    public static QueryResult concat(List<QueryResult> parts) {
+        if (parts.size() == 1) {
+            return parts.get(0);
+        }
+        ResultType resultType = null;
+        Map<Labels, List<Series>> grouped = new LinkedHashMap<>();
+        List<String> warnings = new ArrayList<>(0);
+        for (QueryResult part : parts) {
+            if (resultType == null) {
+                resultType = part.resultType;
+            }
+            for (Series s : part.series) {
+                grouped.computeIfAbsent(s.getLabels(), k -> new ArrayList<>(parts.size())).add(s);
+            }
+            for (String warning : part.warnings) {
+                if (!warnings.contains(warning)) {
+                    warnings.add(warning);
+                }
+            }
+        }
+        List<Series> series = new ArrayList<>(grouped.size());
+        for (Map.Entry<Labels, List<Series>> entry : grouped.entrySet()) {
+            series.add(concatSeries(entry.getKey(), entry.getValue()));
+        }
+        return new QueryResult(resultType == null ? ResultType.MATRIX : resultType, series, warnings);
+    }
+
+    private static Series concatSeries(Labels labels, List<Series> pieces) {
+        if (pieces.size() == 1) {
+            return pieces.get(0);
+        }
+        int total = 0;
+        for (Series piece : pieces) {
+            total += piece.size();
+        }
+        long[] timestamps = new long[total];
+        double[] values = new double[total];
+        int offset = 0;
+        for (Series piece : pieces) {
+            System.arraycopy(piece.timestamps(), 0, timestamps, offset, piece.size());
+            System.arraycopy(piece.values(), 0, values, offset, piece.size());
+            offset += piece.size();
+        }
+        return new Series(labels, timestamps, values);
+    }
+
+    @Override
+    public String toString() {
+        return resultType + " " + series;
+    }
+}
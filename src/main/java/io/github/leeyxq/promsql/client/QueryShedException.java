@@ -0,0 +1,19 @@
+package io.github.leeyxq.promsql.client;
+
+/**
+ * 并发已达上限且排队超时（或队列已满），查询在发送前被丢弃，调用方可稍后重试或降级
+ *
+ * @author lixiangqian
+ * @since 2026/10/19 01:30
+ */
+public class QueryShedException extends PromQueryException {
+    private static final long serialVersionUID = 1L;
+
+    public QueryShedException(String message) {
+        super(message, 0);
+    }
+
+    public QueryShedException(String message, Throwable cause) {
+        super(message, 0, cause);
+    }
+}
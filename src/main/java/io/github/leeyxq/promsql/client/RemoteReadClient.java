@@ -0,0 +1,429 @@
+package io.github.leeyxq.promsql.client;
+
+import io.github.leeyxq.promsql.PromHelper;
+import io.github.leeyxq.promsql.PromTemplate;
+import io.github.leeyxq.promsql.ast.Expr;
+import io.github.leeyxq.promsql.ast.ExprRewriter;
+import io.github.leeyxq.promsql.ast.LabelMatcher;
+import io.github.leeyxq.promsql.ast.PromPrinter;
+import io.github.leeyxq.promsql.ast.VectorSelector;
+import io.github.leeyxq.promsql.util.Asserts;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+/**
+ * Prometheus remote-read客户端，用于批量导出原始样本：请求为snappy压缩的protobuf，
+ * 响应优先使用流式XOR chunk（Prometheus 2.13+），chunk直接解码为基本类型数组，服务端无需编码JSON
+ * <pre>{@code
+ * RemoteReadClient reader = RemoteReadClient.builder(client).build();
+ * reader.read(PromHelper.sqlBuilder().metric("node_cpu_seconds_total").eq("mode", "idle"), start, end,
+ *         series -> export(series.getLabels(), series.timestamps(), series.values()));
+ * }</pre>
+ * <ul>
+ *     <li>只读取构建器中的指标选择器（metric名、label条件），函数、聚合、区间等不参与，每个选择器一个remote-read查询</li>
+ *     <li>选择器不能带offset、@或模板参数</li>
+ *     <li>服务端不支持流式响应时自动按整包样本格式解析</li>
+ *     <li>chunk按原样返回，区间外的样本在解码时丢弃；原生直方图chunk跳过</li>
+ * </ul>
+ * 实例线程安全。
+ *
+ * @author lixiangqian
+ * @since 2026/10/18 23:30
+ */
+@Slf4j
+public final class RemoteReadClient {
+    public static final String READ_PATH = "/api/v1/read";
+    static final int SAMPLES = 0;
+    static final int STREAMED_XOR_CHUNKS = 1;
+    static final String STREAMED_CONTENT_TYPE = "application/x-streamed-protobuf";
+    private static final int XOR_ENCODING = 1;
+    private static final int[] CRC32C_TABLE = crc32cTable();
+
+    private final PromClient client;
+    private final boolean streamed;
+    private final int maxFrameBytes;
+
+    private RemoteReadClient(Builder builder) {
+        this.client = builder.client;
+        this.streamed = builder.streamed;
+        this.maxFrameBytes = builder.maxFrameBytes;
+    }
+
+    public static Builder builder(PromClient client) {
+        return new Builder(client);
+    }
+
+    /**
+     * 读取构建器中各选择器在时间区间内的原始样本
+     *
+     * @param start 开始时间，毫秒，含
+     * @param end   结束时间，毫秒，含
+     * @return 各选择器的序列，按选择器顺序
+     */
+    public QueryResult read(PromHelper.PromSqlBuilder builder, long start, long end) {
+        return read(builder.toExpr(), start, end);
+    }
+
+    public QueryResult read(Expr expr, long start, long end) {
+        List<Series> series = new ArrayList<>();
+        read(expr, start, end, series::add);
+        return new QueryResult(ResultType.MATRIX, series, null);
+    }
+
+    /**
+     * 逐条回调读取的序列，流式响应下每条序列解码完即回调，不在内存中保留全部结果
+     */
+    public void read(PromHelper.PromSqlBuilder builder, long start, long end, Consumer<Series> consumer) {
+        read(builder.toExpr(), start, end, consumer);
+    }
+
+    public void read(Expr expr, long start, long end, Consumer<Series> consumer) {
+        Asserts.isTrue(start <= end, "start must not be after end");
+        Asserts.notNull(consumer, "consumer must not be null");
+        byte[] body = Snappy.compress(encodeRequest(selectors(expr), start, end));
+        Map<String, String> headers = new LinkedHashMap<>(4);
+        headers.put("Content-Type", "application/x-protobuf");
+        headers.put("Content-Encoding", "snappy");
+        headers.put("X-Prometheus-Remote-Read-Version", "0.1.0");
+        client.post(READ_PATH, headers, body, (contentType, in) -> {
+            if (contentType != null && contentType.startsWith(STREAMED_CONTENT_TYPE)) {
+                readFrames(in, start, end, consumer);
+            } else {
+                readSamples(in, consumer);
+            }
+            return null;
+        });
+    }
+
+    /**
+     * 收集表达式中的选择器，顺序与查询中出现的顺序一致
+     */
+    static List<VectorSelector> selectors(Expr expr) {
+        List<VectorSelector> selectors = new ArrayList<>();
+        expr.accept(new ExprRewriter() {
+            @Override
+            public Expr visitVectorSelector(VectorSelector selector) {
+                Asserts.isTrue(selector.getOffset() == null && selector.getAt() == null,
+                        "offset and @ are not supported by remote read: " + PromPrinter.print(selector));
+                selectors.add(selector);
+                return selector;
+            }
+        });
+        Asserts.isTrue(!selectors.isEmpty(), "no selector to read: " + PromPrinter.print(expr));
+        return selectors;
+    }
+
+    /**
+     * ReadRequest{repeated Query queries = 1; repeated ResponseType accepted_response_types = 2;}
+     */
+    byte[] encodeRequest(List<VectorSelector> selectors, long start, long end) {
+        Protobuf.Writer request = new Protobuf.Writer();
+        for (VectorSelector selector : selectors) {
+            Protobuf.Writer query = new Protobuf.Writer().varint(1, start).varint(2, end);
+            if (selector.getMetricName() != null) {
+                query.message(3, matcher(0, LabelMatcher.METRIC_NAME, selector.getMetricName()));
+            }
+            for (LabelMatcher matcher : selector.getMatchers()) {
+                Asserts.isTrue(!PromTemplate.containsParam(matcher.getValue()), "template parameter is not bound: " + matcher);
+                query.message(3, matcher(matcher.getOp().ordinal(), matcher.getName(), matcher.getValue()));
+            }
+            request.message(1, query);
+        }
+        return (streamed ? request.packed(2, STREAMED_XOR_CHUNKS, SAMPLES) : request.packed(2, SAMPLES)).toByteArray();
+    }
+
+    /**
+     * LabelMatcher{Type type = 1; string name = 2; string value = 3;}，Type与{@link io.github.leeyxq.promsql.ast.MatchOp}顺序一致
+     */
+    private static Protobuf.Writer matcher(int type, String name, String value) {
+        return new Protobuf.Writer().varint(1, type).string(2, name).string(3, value);
+    }
+
+    /**
+     * 整包响应：snappy压缩的ReadResponse{repeated QueryResult results = 1;}，
+     * QueryResult{repeated TimeSeries timeseries = 1;}，TimeSeries{repeated Label labels = 1; repeated Sample samples = 2;}
+     */
+    private static void readSamples(InputStream in, Consumer<Series> consumer) throws IOException {
+        byte[] data = Snappy.decompress(PromClient.readBytes(in));
+        Protobuf.Reader response = new Protobuf.Reader(data, 0, data.length);
+        XorChunk.SampleBuffer samples = new XorChunk.SampleBuffer();
+        for (int field; (field = response.next()) != 0; ) {
+            if (field != 1) {
+                response.skip();
+                continue;
+            }
+            Protobuf.Reader result = response.message();
+            for (int f; (f = result.next()) != 0; ) {
+                if (f != 1) {
+                    result.skip();
+                    continue;
+                }
+                Protobuf.Reader timeSeries = result.message();
+                List<String> labels = new ArrayList<>();
+                samples.clear();
+                for (int t; (t = timeSeries.next()) != 0; ) {
+                    if (t == 1) {
+                        readLabel(timeSeries.message(), labels);
+                    } else if (t == 2) {
+                        readSample(timeSeries.message(), samples);
+                    } else {
+                        timeSeries.skip();
+                    }
+                }
+                consumer.accept(new Series(labels(labels), samples.timestamps(), samples.values()));
+            }
+        }
+    }
+
+    /**
+     * Sample{double value = 1; int64 timestamp = 2;}
+     */
+    private static void readSample(Protobuf.Reader sample, XorChunk.SampleBuffer samples) throws IOException {
+        double value = 0;
+        long timestamp = 0;
+        for (int f; (f = sample.next()) != 0; ) {
+            if (f == 1 && sample.wireType() == Protobuf.FIXED64) {
+                value = sample.fixed64AsDouble();
+            } else if (f == 2) {
+                timestamp = sample.varint();
+            } else {
+                sample.skip();
+            }
+        }
+        samples.add(timestamp, value);
+    }
+
+    /**
+     * 流式响应：每帧为uvarint长度 + 4字节大端CRC32C + ChunkedReadResponse{repeated ChunkedSeries chunked_series = 1; int64 query_index = 2;}。
+     * 同一序列的chunk可能分布在相邻的多帧中，标签相同且属于同一查询时合并
+     */
+    private void readFrames(InputStream in, long start, long end, Consumer<Series> consumer) throws IOException {
+        XorChunk.SampleBuffer samples = new XorChunk.SampleBuffer();
+        Labels current = null;
+        long currentQuery = -1;
+        byte[] frame = new byte[4096];
+        long length;
+        while ((length = readFrameLength(in)) >= 0) {
+            if (length > maxFrameBytes) {
+                throw new IOException("remote read frame of " + length + " bytes exceeds limit " + maxFrameBytes);
+            }
+            int size = (int) length;
+            int checksum = readInt(in);
+            if (frame.length < size) {
+                frame = new byte[Math.max(size, frame.length * 2)];
+            }
+            readFully(in, frame, size);
+            if (crc32c(frame, size) != checksum) {
+                throw new IOException("remote read frame checksum mismatch");
+            }
+            Protobuf.Reader response = new Protobuf.Reader(frame, 0, size);
+            List<Protobuf.Reader> chunkedSeries = new ArrayList<>(4);
+            long queryIndex = 0;
+            for (int field; (field = response.next()) != 0; ) {
+                if (field == 1) {
+                    chunkedSeries.add(response.message());
+                } else if (field == 2) {
+                    queryIndex = response.varint();
+                } else {
+                    response.skip();
+                }
+            }
+            for (Protobuf.Reader series : chunkedSeries) {
+                List<String> labelList = new ArrayList<>();
+                List<Protobuf.Reader> chunks = new ArrayList<>();
+                for (int f; (f = series.next()) != 0; ) {
+                    if (f == 1) {
+                        readLabel(series.message(), labelList);
+                    } else if (f == 2) {
+                        chunks.add(series.message());
+                    } else {
+                        series.skip();
+                    }
+                }
+                Labels labels = labels(labelList);
+                if (current != null && (queryIndex != currentQuery || !labels.equals(current))) {
+                    consumer.accept(new Series(current, samples.timestamps(), samples.values()));
+                    samples.clear();
+                }
+                current = labels;
+                currentQuery = queryIndex;
+                for (Protobuf.Reader chunk : chunks) {
+                    readChunk(chunk, start, end, samples, labels);
+                }
+            }
+        }
+        if (current != null) {
+            consumer.accept(new Series(current, samples.timestamps(), samples.values()));
+        }
+    }
+
+    /**
+     * Chunk{int64 min_time_ms = 1; int64 max_time_ms = 2; Encoding type = 3; bytes data = 4;}
+     */
+    private static void readChunk(Protobuf.Reader chunk, long start, long end, XorChunk.SampleBuffer samples, Labels labels) throws IOException {
+        long type = 0;
+        int dataOffset = -1;
+        int dataLength = 0;
+        for (int f; (f = chunk.next()) != 0; ) {
+            if (f == 3) {
+                type = chunk.varint();
+            } else if (f == 4) {
+                Protobuf.Reader data = chunk.message();
+                dataOffset = data.position();
+                dataLength = data.remaining();
+            } else {
+                chunk.skip();
+            }
+        }
+        if (type != XOR_ENCODING) {
+            log.debug("skip chunk with encoding {} of {}", type, labels);
+            return;
+        }
+        if (dataOffset >= 0) {
+            XorChunk.decode(chunk.array(), dataOffset, dataLength, start, end, samples);
+        }
+    }
+
+    /**
+     * Label{string name = 1; string value = 2;}，名称和值交替放入list
+     */
+    private static void readLabel(Protobuf.Reader label, List<String> out) throws IOException {
+        String name = "";
+        String value = "";
+        for (int f; (f = label.next()) != 0; ) {
+            if (f == 1) {
+                name = label.string();
+            } else if (f == 2) {
+                value = label.string();
+            } else {
+                label.skip();
+            }
+        }
+        out.add(name);
+        out.add(value);
+    }
+
+    /**
+     * Prometheus返回的label已按名称排序，乱序时再排序
+     */
+    private static Labels labels(List<String> pairs) {
+        int n = pairs.size() / 2;
+        String[] names = new String[n];
+        String[] values = new String[n];
+        boolean sorted = true;
+        for (int i = 0; i < n; i++) {
+            names[i] = pairs.get(2 * i);
+            values[i] = pairs.get(2 * i + 1);
+            sorted &= i == 0 || names[i - 1].compareTo(names[i]) < 0;
+        }
+        if (sorted) {
+            return n == 0 ? Labels.EMPTY : new Labels(names, values);
+        }
+        Map<String, String> map = new LinkedHashMap<>(n * 2);
+        for (int i = 0; i < n; i++) {
+            map.put(names[i], values[i]);
+        }
+        return Labels.of(map);
+    }
+
+    /**
+     * @return 帧长度，流结束时为-1
+     */
+    private static long readFrameLength(InputStream in) throws IOException {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            int b = in.read();
+            if (b < 0) {
+                if (shift == 0) {
+                    return -1;
+                }
+                throw new EOFException("remote read frame truncated");
+            }
+            value |= (long) (b & 0x7F) << shift;
+            if (b < 0x80) {
+                return value;
+            }
+        }
+        throw new IOException("remote read frame length overflow");
+    }
+
+    private static void readFully(InputStream in, byte[] buf, int length) throws IOException {
+        int off = 0;
+        while (off < length) {
+            int n = in.read(buf, off, length - off);
+            if (n < 0) {
+                throw new EOFException("remote read frame truncated");
+            }
+            off += n;
+        }
+    }
+
+    /**
+     * 4字节大端整数
+     */
+    private static int readInt(InputStream in) throws IOException {
+        byte[] buf = new byte[4];
+        readFully(in, buf, 4);
+        return (buf[0] & 0xFF) << 24 | (buf[1] & 0xFF) << 16 | (buf[2] & 0xFF) << 8 | (buf[3] & 0xFF);
+    }
+
+    static int crc32c(byte[] data, int length) {
+        int crc = ~0;
+        for (int i = 0; i < length; i++) {
+            crc = CRC32C_TABLE[(crc ^ data[i]) & 0xFF] ^ (crc >>> 8);
+        }
+        return ~crc;
+    }
+
+    private static int[] crc32cTable() {
+        int[] table = new int[256];
+        for (int i = 0; i < 256; i++) {
+            int crc = i;
+            for (int k = 0; k < 8; k++) {
+                crc = (crc & 1) != 0 ? (crc >>> 1) ^ 0x82F63B78 : crc >>> 1;
+            }
+            table[i] = crc;
+        }
+        return table;
+    }
+
+    public static final class Builder {
+        private final PromClient client;
+        private boolean streamed = true;
+        private int maxFrameBytes = 64 << 20;
+
+        private Builder(PromClient client) {
+            Asserts.notNull(client, "client must not be null");
+            this.client = client;
+        }
+
+        /**
+         * 是否请求流式XOR chunk响应，默认true；关闭时服务端一次性返回全部样本
+         */
+        public Builder streamed(boolean streamed) {
+            this.streamed = streamed;
+            return this;
+        }
+
+        /**
+         * 流式响应单帧的大小上限，默认64MB
+         */
+        public Builder maxFrameBytes(int maxFrameBytes) {
+            Asserts.isTrue(maxFrameBytes > 0, "maxFrameBytes must be positive");
+            this.maxFrameBytes = maxFrameBytes;
+            return this;
+        }
+
+        public RemoteReadClient build() {
+            return new RemoteReadClient(this);
+        }
+    }
+}
@@ -0,0 +1,17 @@
+package io.github.leeyxq.promsql.client;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * 响应处理器，直接消费（已解压的）响应流，避免先读取为完整字符串
+ *
+ * @param <T> 结果类型
+ * @author lixiangqian
+ * @since 2026/10/18 15:00
+ */
+@FunctionalInterface
+public interface ResponseHandler<T> {
+
+    T handle(InputStream body) throws IOException;
+}
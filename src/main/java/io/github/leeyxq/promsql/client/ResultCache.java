@@ -0,0 +1,198 @@
+package io.github.leeyxq.promsql.client;
+
+import io.github.leeyxq.promsql.util.Asserts;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+/**
+ * 查询结果缓存，按条目数和样本总数限定容量，超出后淘汰最久未访问的条目；每个条目有独立的过期时间。
+ * <p>
+ * 访问量不大的进程内缓存，用一把锁保护LinkedHashMap即可，计数器使用LongAdder避免统计本身成为争用点。
+ *
+ * @author lixiangqian
+ * @since 2026/10/18 17:00
+ */
+public final class ResultCache {
+    private final int maxEntries;
+    private final long maxSamples;
+    private final LongSupplier clock;
+    private final LinkedHashMap<Key, Entry> entries = new LinkedHashMap<>(64, 0.75f, true);
+    private long samples;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private final LongAdder expirations = new LongAdder();
+
+    public ResultCache(int maxEntries, long maxSamples) {
+        this(maxEntries, maxSamples, System::currentTimeMillis);
+    }
+
+    /**
+     * @param maxEntries 最大条目数
+     * @param maxSamples 所有条目的最大样本总数，近似限定内存占用（每个样本16字节）
+     * @param clock      毫秒时钟
+     */
+    public ResultCache(int maxEntries, long maxSamples, LongSupplier clock) {
+        Asserts.isTrue(maxEntries > 0, "maxEntries must be positive");
+        Asserts.isTrue(maxSamples > 0, "maxSamples must be positive");
+        Asserts.notNull(clock, "clock must not be null");
+        this.maxEntries = maxEntries;
+        this.maxSamples = maxSamples;
+        this.clock = clock;
+    }
+
+    /**
+     * 取缓存结果，不存在或已过期返回null
+     */
+    public QueryResult get(Key key) {
+        long now = clock.getAsLong();
+        synchronized (this) {
+            Entry entry = entries.get(key);
+            if (entry != null && entry.expireAt <= now) {
+                remove(key, entry);
+                expirations.increment();
+                entry = null;
+            }
+            if (entry == null) {
+                misses.increment();
+                return null;
+            }
+            hits.increment();
+            return entry.result;
+        }
+    }
+
+    /**
+     * 放入缓存，超出容量时淘汰最久未访问的条目；单个结果超出样本上限时不缓存
+     *
+     * @param ttlMillis 存活时间，非正数时不缓存
+     */
+    public void put(Key key, QueryResult result, long ttlMillis) {
+        int weight = result.sampleCount();
+        if (ttlMillis <= 0 || weight > maxSamples) {
+            return;
+        }
+        Entry entry = new Entry(result, weight, clock.getAsLong() + ttlMillis);
+        synchronized (this) {
+            Entry old = entries.put(key, entry);
+            if (old != null) {
+                samples -= old.weight;
+            }
+            samples += weight;
+            Iterator<Map.Entry<Key, Entry>> it = entries.entrySet().iterator();
+            while ((entries.size() > maxEntries || samples > maxSamples) && it.hasNext()) {
+                Map.Entry<Key, Entry> eldest = it.next();
+                it.remove();
+                samples -= eldest.getValue().weight;
+                evictions.increment();
+            }
+        }
+    }
+
+    public synchronized void clear() {
+        entries.clear();
+        samples = 0;
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    /**
+     * 当前缓存的样本总数
+     */
+    public synchronized long sampleCount() {
+        return samples;
+    }
+
+    public long getHits() {
+        return hits.sum();
+    }
+
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    /**
+     * 因容量不足被淘汰的条目数
+     */
+    public long getEvictions() {
+        return evictions.sum();
+    }
+
+    /**
+     * 因过期被移除的条目数
+     */
+    public long getExpirations() {
+        return expirations.sum();
+    }
+
+    @Override
+    public String toString() {
+        return "ResultCache{size=" + size() + ", hits=" + getHits() + ", misses=" + getMisses()
+                + ", evictions=" + getEvictions() + ", expirations=" + getExpirations() + '}';
+    }
+
+    private void remove(Key key, Entry entry) {
+        entries.remove(key);
+        samples -= entry.weight;
+    }
+
+    private static final class Entry {
+        private final QueryResult result;
+        private final int weight;
+        private final long expireAt;
+
+        private Entry(QueryResult result, int weight, long expireAt) {
+            this.result = result;
+            this.weight = weight;
+            this.expireAt = expireAt;
+        }
+    }
+
+    /**
+     * 缓存键：规范化查询指纹 + 时间范围，区间查询的时间需先按step对齐
+     */
+    @Getter
+    @EqualsAndHashCode
+    public static final class Key {
+        private final long fingerprint;
+        private final long start;
+        private final long end;
+        private final long step;
+
+        private Key(long fingerprint, long start, long end, long step) {
+            this.fingerprint = fingerprint;
+            this.start = start;
+            this.end = end;
+            this.step = step;
+        }
+
+        /**
+         * 由请求生成缓存键，未指定时间的瞬时查询结果随当前时间变化，不可缓存
+         *
+         * @return 缓存键，不可缓存时返回null
+         */
+        public static Key of(QueryRequest request) {
+            if (request.isRange()) {
+                return new Key(request.fingerprint(), request.getStart(), request.getEnd(), request.getStep());
+            }
+            if (request.getTime() == null) {
+                return null;
+            }
+            return new Key(request.fingerprint(), request.getTime(), request.getTime(), 0);
+        }
+
+        @Override
+        public String toString() {
+            return Long.toHexString(fingerprint) + " [" + start + ", " + end + "] step " + step;
+        }
+    }
+}
@@ -0,0 +1,29 @@
+package io.github.leeyxq.promsql.client;
+
+/**
+ * 查询结果类型
+ *
+ * @author lixiangqian
+ * @since 2026/10/18 16:00
+ */
+public enum ResultType {
+    MATRIX,
+    VECTOR,
+    SCALAR,
+    STRING;
+
+    static ResultType of(String name) {
+        switch (name) {
+            case "matrix":
+                return MATRIX;
+            case "vector":
+                return VECTOR;
+            case "scalar":
+                return SCALAR;
+            case "string":
+                return STRING;
+            default:
+                throw new PromQueryException("unknown result type: " + name, 0);
+        }
+    }
+}
@@ -0,0 +1,53 @@
+package io.github.leeyxq.promsql.client;
+
+import lombok.Getter;
+
+/**
+ * 单条时间序列，时间戳（毫秒）与值分别存放于基本类型数组，不产生装箱对象
+ *
+ * @author lixiangqian
+ * @since 2026/10/18 16:00
+ */
+public final class Series {
+    @Getter
+    private final Labels labels;
+    private final long[] timestamps;
+    private final double[] values;
+
+    public Series(Labels labels, long[] timestamps, double[] values) {
+        this.labels = labels;
+        this.timestamps = timestamps;
+        this.values = values;
+    }
+
+    public int size() {
+        return timestamps.length;
+    }
+
+    public long getTimestamp(int index) {
+        return timestamps[index];
+    }
+
+    public double getValue(int index) {
+        return values[index];
+    }
+
+    /**
+     * 时间戳数组，调用方不应修改
+     */
+    public long[] timestamps() {
+        return timestamps;
+    }
+
+    /**
+     * 值数组，调用方不应修改
+     */
+    public double[] values() {
+        return values;
+    }
+
+    @Override
+    public String toString() {
+        return labels + " (" + timestamps.length + " samples)";
+    }
+}
@@ -0,0 +1,75 @@
+package io.github.leeyxq.promsql.client;
+
+import io.github.leeyxq.promsql.ast.LabelMatcher;
+import io.github.leeyxq.promsql.util.Asserts;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 各metric序列数的快照，供{@link CostEstimator}估算查询涉及的序列数。实例不可变，定期重新加载后整体替换。
+ *
+ * @author lixiangqian
+ * @since 2026/10/18 19:30
+ */
+public final class SeriesCountSnapshot {
+    public static final SeriesCountSnapshot EMPTY = new SeriesCountSnapshot(new HashMap<>(0));
+    /**
+     * 统计各metric序列数的查询，开销较大，应低频执行并缓存结果
+     */
+    public static final String COUNT_QUERY = "count by(__name__)({__name__=~\".+\"})";
+
+    private final Map<String, Long> counts;
+    private final long totalSeries;
+
+    private SeriesCountSnapshot(Map<String, Long> counts) {
+        this.counts = counts;
+        long total = 0;
+        for (long count : counts.values()) {
+            total += count;
+        }
+        this.totalSeries = total;
+    }
+
+    public static SeriesCountSnapshot of(Map<String, Long> counts) {
+        Asserts.notNull(counts, "counts must not be null");
+        return new SeriesCountSnapshot(new HashMap<>(counts));
+    }
+
+    /**
+     * 通过{@link #COUNT_QUERY}从Prometheus加载快照
+     *
+     * @param executor 查询执行器
+     * @return 快照
+     */
+    public static SeriesCountSnapshot load(QueryExecutor executor) {
+        QueryResult result = executor.execute(QueryRequest.instant(COUNT_QUERY));
+        Map<String, Long> counts = new HashMap<>(result.getSeries().size() * 2);
+        for (Series series : result.getSeries()) {
+            String name = series.getLabels().get(LabelMatcher.METRIC_NAME);
+            if (name != null && series.size() > 0) {
+                counts.put(name, (long) series.getValue(series.size() - 1));
+            }
+        }
+        return new SeriesCountSnapshot(counts);
+    }
+
+    /**
+     * @return metric的序列数，未知时返回-1
+     */
+    public long seriesCount(String metricName) {
+        Long count = counts.get(metricName);
+        return count == null ? -1 : count;
+    }
+
+    /**
+     * @return 所有metric的序列总数，快照为空时返回-1
+     */
+    public long totalSeries() {
+        return counts.isEmpty() ? -1 : totalSeries;
+    }
+
+    public int size() {
+        return counts.size();
+    }
+}
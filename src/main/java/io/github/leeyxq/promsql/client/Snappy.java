@@ -0,0 +1,177 @@
+package io.github.leeyxq.promsql.client;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * snappy块格式（非framing格式）的压缩与解压，remote-read的请求与非流式响应使用此格式
+ * <p>
+ * 压缩使用4字节哈希表查找最近的重复片段，压缩率低于官方实现但输出完全兼容；请求体很小，无需更复杂的匹配。
+ *
+ * @author lixiangqian
+ * @since 2026/10/18 23:30
+ */
+final class Snappy {
+    private static final int HASH_BITS = 14;
+    private static final int MIN_MATCH = 4;
+    private static final int MAX_COPY = 64;
+
+    private Snappy() {
+    }
+
+    static byte[] compress(byte[] input) {
+        int length = input.length;
+        byte[] out = new byte[32 + length + length / 6];
+        int pos = writeUvarint(out, 0, length);
+        int[] table = new int[1 << HASH_BITS];
+        Arrays.fill(table, -1);
+        int literalStart = 0;
+        int i = 0;
+        while (i + MIN_MATCH <= length) {
+            int hash = hash(input, i);
+            int candidate = table[hash];
+            table[hash] = i;
+            if (candidate < 0 || i - candidate > 0xFFFF || !equals4(input, candidate, i)) {
+                i++;
+                continue;
+            }
+            int matchLength = MIN_MATCH;
+            while (i + matchLength < length && input[candidate + matchLength] == input[i + matchLength]) {
+                matchLength++;
+            }
+            pos = writeLiteral(out, pos, input, literalStart, i - literalStart);
+            pos = writeCopy(out, pos, i - candidate, matchLength);
+            i += matchLength;
+            literalStart = i;
+        }
+        pos = writeLiteral(out, pos, input, literalStart, length - literalStart);
+        return Arrays.copyOf(out, pos);
+    }
+
+    static byte[] decompress(byte[] input) throws IOException {
+        int[] pos = {0};
+        long declared = readUvarint(input, pos);
+        if (declared > Integer.MAX_VALUE - 8) {
+            throw new IOException("snappy: decoded length too large: " + declared);
+        }
+        byte[] out = new byte[(int) declared];
+        int o = 0;
+        int i = pos[0];
+        while (i < input.length) {
+            int tag = input[i++] & 0xFF;
+            int length;
+            int offset;
+            switch (tag & 3) {
+                case 0:
+                    length = tag >>> 2;
+                    if (length >= 60) {
+                        int bytes = length - 59;
+                        check(i + bytes <= input.length, "truncated literal length");
+                        length = 0;
+                        for (int b = 0; b < bytes; b++) {
+                            length |= (input[i++] & 0xFF) << (8 * b);
+                        }
+                    }
+                    length++;
+                    check(length > 0 && i + length <= input.length && o + length <= out.length, "literal out of range");
+                    System.arraycopy(input, i, out, o, length);
+                    i += length;
+                    o += length;
+                    continue;
+                case 1:
+                    check(i < input.length, "truncated copy");
+                    length = 4 + ((tag >>> 2) & 7);
+                    offset = ((tag >>> 5) << 8) | (input[i++] & 0xFF);
+                    break;
+                case 2:
+                    check(i + 2 <= input.length, "truncated copy");
+                    length = 1 + (tag >>> 2);
+                    offset = (input[i] & 0xFF) | (input[i + 1] & 0xFF) << 8;
+                    i += 2;
+                    break;
+                default:
+                    check(i + 4 <= input.length, "truncated copy");
+                    length = 1 + (tag >>> 2);
+                    offset = (input[i] & 0xFF) | (input[i + 1] & 0xFF) << 8 | (input[i + 2] & 0xFF) << 16 | (input[i + 3] & 0xFF) << 24;
+                    i += 4;
+                    break;
+            }
+            check(offset > 0 && offset <= o && o + length <= out.length, "copy out of range");
+            // 片段可能与输出重叠（offset < length），只能逐字节复制
+            for (int end = o + length; o < end; o++) {
+                out[o] = out[o - offset];
+            }
+        }
+        check(o == out.length, "decoded length mismatch");
+        return out;
+    }
+
+    private static void check(boolean condition, String message) throws IOException {
+        if (!condition) {
+            throw new IOException("snappy: " + message);
+        }
+    }
+
+    private static int hash(byte[] in, int i) {
+        int v = (in[i] & 0xFF) | (in[i + 1] & 0xFF) << 8 | (in[i + 2] & 0xFF) << 16 | (in[i + 3] & 0xFF) << 24;
+        return (v * 0x1E35A7BD) >>> (32 - HASH_BITS);
+    }
+
+    private static boolean equals4(byte[] in, int a, int b) {
+        return in[a] == in[b] && in[a + 1] == in[b + 1] && in[a + 2] == in[b + 2] && in[a + 3] == in[b + 3];
+    }
+
+    private static int writeLiteral(byte[] out, int pos, byte[] in, int start, int length) {
+        if (length == 0) {
+            return pos;
+        }
+        int n = length - 1;
+        if (n < 60) {
+            out[pos++] = (byte) (n << 2);
+        } else {
+            int bytes = n < 1 << 8 ? 1 : n < 1 << 16 ? 2 : n < 1 << 24 ? 3 : 4;
+            out[pos++] = (byte) ((59 + bytes) << 2);
+            for (int b = 0; b < bytes; b++) {
+                out[pos++] = (byte) (n >>> (8 * b));
+            }
+        }
+        System.arraycopy(in, start, out, pos, length);
+        return pos + length;
+    }
+
+    /**
+     * 以2字节偏移的copy元素输出，每个元素最长64字节
+     */
+    private static int writeCopy(byte[] out, int pos, int offset, int length) {
+        while (length > 0) {
+            int n = Math.min(length, MAX_COPY);
+            out[pos++] = (byte) (((n - 1) << 2) | 2);
+            out[pos++] = (byte) offset;
+            out[pos++] = (byte) (offset >>> 8);
+            length -= n;
+        }
+        return pos;
+    }
+
+    static int writeUvarint(byte[] out, int pos, long value) {
+        while ((value & ~0x7FL) != 0) {
+            out[pos++] = (byte) ((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out[pos++] = (byte) value;
+        return pos;
+    }
+
+    private static long readUvarint(byte[] in, int[] pos) throws IOException {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            check(pos[0] < in.length, "truncated varint");
+            int b = in[pos[0]++] & 0xFF;
+            value |= (long) (b & 0x7F) << shift;
+            if (b < 0x80) {
+                return value;
+            }
+        }
+        throw new IOException("snappy: varint overflow");
+    }
+}
@@ -0,0 +1,193 @@
+package io.github.leeyxq.promsql.client;
+
+import io.github.leeyxq.promsql.util.Asserts;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * 按时间区间拆分区间查询并行执行的执行器，效果同Thanos/Cortex的query-frontend
+ * <ul>
+ *     <li>区间查询先按step对齐，再在interval（默认1天）的整数倍处切开，各段的求值时刻与原查询完全一致</li>
+ *     <li>单个查询最多parallelism段同时执行，调用线程也参与执行，线程池满时不会互相等待</li>
+ *     <li>各段结果按时间顺序拼接，任一段失败时其余未开始的段不再执行，异常抛给调用方</li>
+ *     <li>含@ start()、@ end()的查询依赖整个区间的起止时刻，不拆分</li>
+ * </ul>
+ * 已完成的历史区间可通过组合{@link CachingQueryExecutor}缓存：
+ * <pre>{@code
+ * QueryExecutor executor = SplittingQueryExecutor.builder(CachingQueryExecutor.builder(client).build()).build();
+ * }</pre>
+ * 此时每个整天区间各自为一个缓存条目，刷新面板时只有包含当前时间的最后一段需要重新查询。
+ *
+ * @author lixiangqian
+ * @since 2026/10/18 17:30
+ */
+@Slf4j
+public final class SplittingQueryExecutor implements QueryExecutor, AutoCloseable {
+    private static final AtomicInteger POOL_SEQ = new AtomicInteger();
+
+    private final QueryExecutor delegate;
+    private final long intervalMillis;
+    private final int parallelism;
+    private final ExecutorService executor;
+    private final boolean ownExecutor;
+
+    private SplittingQueryExecutor(Builder builder) {
+        this.delegate = builder.delegate;
+        this.intervalMillis = builder.intervalMillis;
+        this.parallelism = builder.parallelism;
+        this.ownExecutor = builder.executor == null;
+        this.executor = ownExecutor ? newPool(parallelism) : builder.executor;
+    }
+
+    public static Builder builder(QueryExecutor delegate) {
+        return new Builder(delegate);
+    }
+
+    @Override
+    public QueryResult execute(QueryRequest request) {
+        if (!request.isRange() || request.dependsOnRange()) {
+            return delegate.execute(request);
+        }
+        List<QueryRequest> parts = split(request.stepAligned(), intervalMillis);
+        if (parts.size() == 1) {
+            return delegate.execute(parts.get(0));
+        }
+        return QueryResult.concat(Arrays.asList(executeAll(parts)));
+    }
+
+    /**
+     * 把已对齐的区间查询在interval的整数倍处切开
+     */
+    static List<QueryRequest> split(QueryRequest request, long intervalMillis) {
+        long step = request.getStep();
+        // 区间长度取step的整数倍，切点才会落在求值时刻上
+        long interval = Math.max(step, (intervalMillis + step - 1) / step * step);
+        long start = request.getStart();
+        long end = request.getEnd();
+        List<QueryRequest> parts = new ArrayList<>((int) Math.min(1024, (end - start) / interval + 2));
+        while (start <= end) {
+            long next = (Math.floorDiv(start, interval) + 1) * interval;
+            long partEnd = Math.min(end, next - step);
+            parts.add(start == request.getStart() && partEnd == end ? request : request.withRange(start, partEnd));
+            start = next;
+        }
+        return parts;
+    }
+
+    private QueryResult[] executeAll(List<QueryRequest> parts) {
+        QueryResult[] results = new QueryResult[parts.size()];
+        AtomicInteger next = new AtomicInteger();
+        AtomicReference<RuntimeException> failure = new AtomicReference<>();
+        Runnable worker = () -> {
+            int i;
+            while (failure.get() == null && (i = next.getAndIncrement()) < results.length) {
+                try {
+                    results[i] = delegate.execute(parts.get(i));
+                } catch (RuntimeException e) {
+                    failure.compareAndSet(null, e);
+                }
+            }
+        };
+        int workers = Math.min(parallelism, parts.size());
+        List<Future<?>> futures = new ArrayList<>(workers - 1);
+        for (int i = 1; i < workers; i++) {
+            try {
+                futures.add(executor.submit(worker));
+            } catch (RejectedExecutionException e) {
+                log.warn("split executor rejected task, running with {} workers", i);
+                break;
+            }
+        }
+        worker.run();
+        for (Future<?> future : futures) {
+            try {
+                future.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                failure.compareAndSet(null, new PromQueryException("interrupted while waiting for split queries", e));
+                // 已开始的段无法取消，阻止剩余段继续执行
+                next.set(results.length);
+            } catch (ExecutionException e) {
+                failure.compareAndSet(null, new PromQueryException("split query failed", e.getCause()));
+            }
+        }
+        RuntimeException e = failure.get();
+        if (e != null) {
+            throw e;
+        }
+        return results;
+    }
+
+    /**
+     * 关闭自建的线程池，外部传入的线程池由调用方管理
+     */
+    @Override
+    public void close() {
+        if (ownExecutor) {
+            executor.shutdown();
+        }
+    }
+
+    private static ExecutorService newPool(int parallelism) {
+        String prefix = "prom-split-" + POOL_SEQ.incrementAndGet() + "-";
+        AtomicInteger seq = new AtomicInteger();
+        // 调用线程也会执行一段，池中只需parallelism-1个线程
+        return Executors.newFixedThreadPool(Math.max(1, parallelism - 1), r -> {
+            Thread t = new Thread(r, prefix + seq.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    public static final class Builder {
+        private final QueryExecutor delegate;
+        private long intervalMillis = 24 * 3600_000L;
+        private int parallelism = 4;
+        private ExecutorService executor;
+
+        private Builder(QueryExecutor delegate) {
+            Asserts.notNull(delegate, "delegate must not be null");
+            this.delegate = delegate;
+        }
+
+        /**
+         * 拆分区间，默认1天，向上取整到step的整数倍
+         */
+        public Builder intervalMillis(long intervalMillis) {
+            Asserts.isTrue(intervalMillis > 0, "intervalMillis must be positive");
+            this.intervalMillis = intervalMillis;
+            return this;
+        }
+
+        /**
+         * 单个查询同时执行的最大段数，默认4
+         */
+        public Builder parallelism(int parallelism) {
+            Asserts.isTrue(parallelism > 0, "parallelism must be positive");
+            this.parallelism = parallelism;
+            return this;
+        }
+
+        /**
+         * 使用外部线程池，未设置时自建parallelism-1个守护线程
+         */
+        public Builder executor(ExecutorService executor) {
+            this.executor = executor;
+            return this;
+        }
+
+        public SplittingQueryExecutor build() {
+            return new SplittingQueryExecutor(this);
+        }
+    }
+}
@@ -0,0 +1,132 @@
+package io.github.leeyxq.promsql.client;
+
+import io.github.leeyxq.promsql.util.Asserts;
+import io.github.leeyxq.promsql.util.DurationUtil;
+
+/**
+ * 区间查询的步长策略：按面板宽度（最多点数）推导step，并取整到固定的档位，如15s、1m、5m
+ * <pre>{@code
+ * StepPolicy policy = StepPolicy.builder().maxPoints(panelWidth).scrapeIntervalMillis(15_000).build();
+ * QueryRange range = policy.resolve(start, end);
+ * QueryRequest request = range.request(PromHelper.sqlBuilder().metric("http_requests_total").rate(PromHelper.RATE_INTERVAL));
+ * }</pre>
+ * 同样的时间跨度总是得到同样的step，start、end再对齐到step的整数倍，不同时刻、不同面板发起的请求可以命中同一缓存。
+ * 实例不可变，线程安全。
+ *
+ * @author lixiangqian
+ * @since 2026/10/19 01:00
+ */
+public final class StepPolicy {
+    /**
+     * step档位，与Grafana的取整方式相近；超过最后一档时取整到天
+     */
+    private static final long[] NICE_STEPS = {
+            DurationUtil.SECOND, 2 * DurationUtil.SECOND, 5 * DurationUtil.SECOND, 10 * DurationUtil.SECOND,
+            15 * DurationUtil.SECOND, 30 * DurationUtil.SECOND, DurationUtil.MINUTE, 2 * DurationUtil.MINUTE,
+            5 * DurationUtil.MINUTE, 10 * DurationUtil.MINUTE, 15 * DurationUtil.MINUTE, 30 * DurationUtil.MINUTE,
+            DurationUtil.HOUR, 2 * DurationUtil.HOUR, 3 * DurationUtil.HOUR, 6 * DurationUtil.HOUR,
+            12 * DurationUtil.HOUR, DurationUtil.DAY};
+
+    private final int maxPoints;
+    private final long minStepMillis;
+    private final long scrapeIntervalMillis;
+
+    private StepPolicy(Builder builder) {
+        this.maxPoints = builder.maxPoints;
+        this.scrapeIntervalMillis = builder.scrapeIntervalMillis;
+        this.minStepMillis = builder.minStepMillis > 0 ? builder.minStepMillis : builder.scrapeIntervalMillis;
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * 按时间跨度推导step，并将start、end向下对齐到step的整数倍
+     *
+     * @param start 开始时间，毫秒
+     * @param end   结束时间，毫秒
+     * @return 对齐后的区间
+     */
+    public QueryRange resolve(long start, long end) {
+        Asserts.isTrue(start <= end, "start must not be after end");
+        long step = step(end - start);
+        return new QueryRange(Math.floorDiv(start, step) * step, Math.floorDiv(end, step) * step, step, rateInterval(step));
+    }
+
+    /**
+     * 时间跨度对应的step：不小于minStep，点数不超过maxPoints，再向上取整到档位
+     *
+     * @param rangeMillis 时间跨度，毫秒
+     * @return step，毫秒
+     */
+    public long step(long rangeMillis) {
+        Asserts.isTrue(rangeMillis >= 0, "rangeMillis must not be negative");
+        // 点数为 range/step + 1
+        long raw = maxPoints > 1 ? (rangeMillis + maxPoints - 2) / (maxPoints - 1) : rangeMillis;
+        raw = Math.max(raw, minStepMillis);
+        for (long nice : NICE_STEPS) {
+            if (nice >= raw) {
+                return nice;
+            }
+        }
+        return (raw + DurationUtil.DAY - 1) / DurationUtil.DAY * DurationUtil.DAY;
+    }
+
+    /**
+     * rate、increase等函数的时间窗口，与Grafana的$__rate_interval一致：max(step + 采集间隔, 4 × 采集间隔)，
+     * 保证每个窗口至少有4个采集点，且相邻求值点的窗口首尾相接、不漏样本
+     *
+     * @param stepMillis step，毫秒
+     * @return 时间窗口，毫秒
+     */
+    public long rateInterval(long stepMillis) {
+        return Math.max(stepMillis + scrapeIntervalMillis, 4 * scrapeIntervalMillis);
+    }
+
+    @Override
+    public String toString() {
+        return "StepPolicy{maxPoints=" + maxPoints + ", minStep=" + DurationUtil.format(minStepMillis)
+                + ", scrapeInterval=" + DurationUtil.format(scrapeIntervalMillis) + '}';
+    }
+
+    public static final class Builder {
+        private int maxPoints = 1_000;
+        private long minStepMillis;
+        private long scrapeIntervalMillis = 15 * DurationUtil.SECOND;
+
+        private Builder() {
+        }
+
+        /**
+         * 每条序列最多返回的点数，一般取面板宽度（像素），默认1000；Prometheus单次最多11000
+         */
+        public Builder maxPoints(int maxPoints) {
+            Asserts.isTrue(maxPoints > 0 && maxPoints <= 11_000, "maxPoints must be in (0, 11000]");
+            this.maxPoints = maxPoints;
+            return this;
+        }
+
+        /**
+         * 最小step，默认与采集间隔相同，step小于采集间隔时相邻点的值重复
+         */
+        public Builder minStepMillis(long minStepMillis) {
+            Asserts.isTrue(minStepMillis > 0, "minStepMillis must be positive");
+            this.minStepMillis = minStepMillis;
+            return this;
+        }
+
+        /**
+         * Prometheus的采集间隔（scrape_interval），默认15秒
+         */
+        public Builder scrapeIntervalMillis(long scrapeIntervalMillis) {
+            Asserts.isTrue(scrapeIntervalMillis > 0, "scrapeIntervalMillis must be positive");
+            this.scrapeIntervalMillis = scrapeIntervalMillis;
+            return this;
+        }
+
+        public StepPolicy build() {
+            return new StepPolicy(this);
+        }
+    }
+}
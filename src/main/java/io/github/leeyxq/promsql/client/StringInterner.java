@@ -0,0 +1,59 @@
+package io.github.leeyxq.promsql.client;
+
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * 无锁、定长的字符串驻留表，直接以字符区间查找，命中时不创建新字符串
+ * <p>
+ * 冲突探测超过上限时退化为直接创建字符串，内存占用有上界。
+ *
+ * @author lixiangqian
+ * @since 2026/10/18 16:00
+ */
+final class StringInterner {
+    private static final int MAX_PROBE = 8;
+
+    private final AtomicReferenceArray<String> table;
+    private final int mask;
+
+    StringInterner(int capacity) {
+        int size = Integer.highestOneBit(Math.max(16, capacity - 1)) << 1;
+        this.table = new AtomicReferenceArray<>(size);
+        this.mask = size - 1;
+    }
+
+    String intern(char[] chars, int offset, int length) {
+        int hash = 0;
+        for (int i = offset; i < offset + length; i++) {
+            hash = 31 * hash + chars[i];
+        }
+        int idx = (hash ^ (hash >>> 16)) & mask;
+        for (int probe = 0; probe < MAX_PROBE; probe++) {
+            String str = table.get(idx);
+            if (str == null) {
+                String created = new String(chars, offset, length);
+                if (table.compareAndSet(idx, null, created)) {
+                    return created;
+                }
+                str = table.get(idx);
+            }
+            if (matches(str, chars, offset, length)) {
+                return str;
+            }
+            idx = (idx + 1) & mask;
+        }
+        return new String(chars, offset, length);
+    }
+
+    private static boolean matches(String str, char[] chars, int offset, int length) {
+        if (str.length() != length) {
+            return false;
+        }
+        for (int i = 0; i < length; i++) {
+            if (str.charAt(i) != chars[offset + i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
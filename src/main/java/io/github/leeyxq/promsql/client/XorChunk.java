@@ -0,0 +1,199 @@
+package io.github.leeyxq.promsql.client;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * Prometheus TSDB的XOR（Gorilla）chunk解码，样本直接写入基本类型数组
+ * <ul>
+ *     <li>头部2字节样本数</li>
+ *     <li>首个样本：varint时间戳 + 64位值</li>
+ *     <li>第二个样本：uvarint时间差 + 值的异或编码</li>
+ *     <li>之后：时间差的差值按0/14/17/20/64位分档 + 值的异或编码</li>
+ * </ul>
+ *
+ * @author lixiangqian
+ * @since 2026/10/18 23:30
+ */
+final class XorChunk {
+
+    private XorChunk() {
+    }
+
+    /**
+     * 解码一个chunk，只保留[start, end]内的样本
+     *
+     * @return 解码的样本总数（含区间外的）
+     */
+    static int decode(byte[] data, int offset, int length, long start, long end, SampleBuffer out) throws IOException {
+        if (length < 2) {
+            throw new IOException("xor chunk: too short");
+        }
+        int count = (data[offset] & 0xFF) << 8 | (data[offset + 1] & 0xFF);
+        BitReader in = new BitReader(data, offset + 2, length - 2);
+        long t = 0;
+        long delta = 0;
+        long bits = 0;
+        int leading = 0;
+        int trailing = 0;
+        for (int i = 0; i < count; i++) {
+            if (i == 0) {
+                t = zigzag(in.uvarint());
+                bits = in.bits(64);
+            } else if (i == 1) {
+                delta = in.uvarint();
+                t += delta;
+            } else {
+                delta += readDeltaOfDelta(in);
+                t += delta;
+            }
+            if (i > 0 && in.bit()) {
+                if (in.bit()) {
+                    leading = (int) in.bits(5);
+                    int significant = (int) in.bits(6);
+                    if (significant == 0) {
+                        significant = 64;
+                    }
+                    trailing = 64 - leading - significant;
+                }
+                int significant = 64 - leading - trailing;
+                if (significant <= 0 || trailing < 0) {
+                    throw new IOException("xor chunk: invalid value encoding");
+                }
+                bits ^= in.bits(significant) << trailing;
+            }
+            if (t >= start && t <= end) {
+                out.add(t, Double.longBitsToDouble(bits));
+            }
+        }
+        return count;
+    }
+
+    private static long readDeltaOfDelta(BitReader in) throws IOException {
+        int prefix = 0;
+        while (prefix < 4 && in.bit()) {
+            prefix++;
+        }
+        int size;
+        switch (prefix) {
+            case 0:
+                return 0;
+            case 1:
+                size = 14;
+                break;
+            case 2:
+                size = 17;
+                break;
+            case 3:
+                size = 20;
+                break;
+            default:
+                return in.bits(64);
+        }
+        long value = in.bits(size);
+        // 有符号值，范围为(-2^(size-1), 2^(size-1)]
+        if (value > 1L << (size - 1)) {
+            value -= 1L << size;
+        }
+        return value;
+    }
+
+    private static long zigzag(long value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    /**
+     * 按位读取，高位在前
+     */
+    private static final class BitReader {
+        private final byte[] data;
+        private final int end;
+        private int pos;
+        private int bitOffset;
+
+        private BitReader(byte[] data, int offset, int length) {
+            this.data = data;
+            this.pos = offset;
+            this.end = offset + length;
+        }
+
+        boolean bit() throws IOException {
+            if (pos >= end) {
+                throw new IOException("xor chunk: unexpected end of data");
+            }
+            boolean bit = (data[pos] & (0x80 >>> bitOffset)) != 0;
+            if (++bitOffset == 8) {
+                bitOffset = 0;
+                pos++;
+            }
+            return bit;
+        }
+
+        long bits(int n) throws IOException {
+            long value = 0;
+            while (n > 0) {
+                if (pos >= end) {
+                    throw new IOException("xor chunk: unexpected end of data");
+                }
+                int available = 8 - bitOffset;
+                int take = Math.min(available, n);
+                int b = (data[pos] & 0xFF) >>> (available - take) & ((1 << take) - 1);
+                value = value << take | b;
+                n -= take;
+                bitOffset += take;
+                if (bitOffset == 8) {
+                    bitOffset = 0;
+                    pos++;
+                }
+            }
+            return value;
+        }
+
+        long uvarint() throws IOException {
+            long value = 0;
+            for (int shift = 0; shift < 64; shift += 7) {
+                int b = (int) bits(8);
+                value |= (long) (b & 0x7F) << shift;
+                if (b < 0x80) {
+                    return value;
+                }
+            }
+            throw new IOException("xor chunk: varint overflow");
+        }
+    }
+
+    /**
+     * 可增长的样本数组
+     */
+    static final class SampleBuffer {
+        private long[] timestamps = new long[128];
+        private double[] values = new double[128];
+        private int size;
+
+        void add(long timestamp, double value) {
+            if (size == timestamps.length) {
+                timestamps = Arrays.copyOf(timestamps, size * 2);
+                values = Arrays.copyOf(values, size * 2);
+            }
+            timestamps[size] = timestamp;
+            values[size] = value;
+            size++;
+        }
+
+        int size() {
+            return size;
+        }
+
+        long[] timestamps() {
+            return Arrays.copyOf(timestamps, size);
+        }
+
+        double[] values() {
+            return Arrays.copyOf(values, size);
+        }
+
+        void clear() {
+            size = 0;
+        }
+    }
+}
@@ -0,0 +1,129 @@
+package io.github.leeyxq.promsql.metrics;
+
+import io.github.leeyxq.promsql.util.Asserts;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 无锁耗时直方图：每个桶一个LongAdder，LongAdder内部按线程分段累加，并发记录时不争用同一个计数；
+ * 桶边界固定，记录时只做一次线性查找与一次累加
+ * <p>
+ * 读取时各桶分别求和，与并发写入之间不保证原子快照，用于监控足够准确。
+ *
+ * @author lixiangqian
+ * @since 2026/10/18 22:30
+ */
+public final class LatencyHistogram {
+    /**
+     * 构建查询的默认桶边界（秒），10µs～10ms
+     */
+    public static final double[] BUILD_BUCKETS = {0.00001, 0.000025, 0.00005, 0.0001, 0.00025, 0.0005, 0.001, 0.0025, 0.005, 0.01};
+    /**
+     * 执行查询的默认桶边界（秒），5ms～30s
+     */
+    public static final double[] QUERY_BUCKETS = {0.005, 0.01, 0.025, 0.05, 0.1, 0.25, 0.5, 1, 2.5, 5, 10, 30};
+
+    private final double[] bounds;
+    private final long[] boundNanos;
+    /**
+     * 各桶（非累计）计数，最后一个为+Inf
+     */
+    private final LongAdder[] buckets;
+    private final LongAdder sumNanos = new LongAdder();
+
+    /**
+     * @param bounds 桶上界（秒），严格递增
+     */
+    public LatencyHistogram(double... bounds) {
+        Asserts.isTrue(bounds != null && bounds.length > 0, "bounds must not be empty");
+        this.bounds = bounds.clone();
+        this.boundNanos = new long[bounds.length];
+        for (int i = 0; i < bounds.length; i++) {
+            Asserts.isTrue(bounds[i] > 0 && (i == 0 || bounds[i] > bounds[i - 1]), "bounds must be positive and increasing");
+            boundNanos[i] = (long) (bounds[i] * TimeUnit.SECONDS.toNanos(1));
+        }
+        this.buckets = new LongAdder[bounds.length + 1];
+        for (int i = 0; i < buckets.length; i++) {
+            buckets[i] = new LongAdder();
+        }
+    }
+
+    public void observeNanos(long nanos) {
+        long value = Math.max(0, nanos);
+        int i = 0;
+        while (i < boundNanos.length && value > boundNanos[i]) {
+            i++;
+        }
+        buckets[i].increment();
+        sumNanos.add(value);
+    }
+
+    /**
+     * 记录自startNanos（{@link System#nanoTime()}）以来的耗时
+     */
+    public void observeSince(long startNanos) {
+        observeNanos(System.nanoTime() - startNanos);
+    }
+
+    public double[] getBounds() {
+        return bounds.clone();
+    }
+
+    /**
+     * 累计计数，第i项为耗时不超过第i个上界的次数，最后一项为总次数
+     */
+    public long[] cumulativeCounts() {
+        long[] counts = new long[buckets.length];
+        long total = 0;
+        for (int i = 0; i < buckets.length; i++) {
+            total += buckets[i].sum();
+            counts[i] = total;
+        }
+        return counts;
+    }
+
+    public long count() {
+        long total = 0;
+        for (LongAdder bucket : buckets) {
+            total += bucket.sum();
+        }
+        return total;
+    }
+
+    public double sumSeconds() {
+        return sumNanos.sum() / 1e9;
+    }
+
+    /**
+     * 按桶内线性插值估算分位数，与Prometheus的histogram_quantile算法一致；落在+Inf桶时返回最大上界
+     *
+     * @param q 分位，0～1
+     * @return 估算耗时（秒），无数据时为NaN
+     */
+    public double quantile(double q) {
+        Asserts.isTrue(q >= 0 && q <= 1, "q must be between 0 and 1");
+        long[] counts = cumulativeCounts();
+        long total = counts[counts.length - 1];
+        if (total == 0) {
+            return Double.NaN;
+        }
+        double rank = q * total;
+        for (int i = 0; i < bounds.length; i++) {
+            if (counts[i] >= rank) {
+                double lower = i == 0 ? 0 : bounds[i - 1];
+                long below = i == 0 ? 0 : counts[i - 1];
+                long inBucket = counts[i] - below;
+                return inBucket == 0 ? bounds[i] : lower + (bounds[i] - lower) * (rank - below) / inBucket;
+            }
+        }
+        return bounds[bounds.length - 1];
+    }
+
+    public void reset() {
+        for (LongAdder bucket : buckets) {
+            bucket.reset();
+        }
+        sumNanos.reset();
+    }
+}
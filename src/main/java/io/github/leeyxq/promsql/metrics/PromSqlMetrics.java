@@ -0,0 +1,275 @@
+package io.github.leeyxq.promsql.metrics;
+
+import io.github.leeyxq.promsql.client.AdaptiveLimitQueryExecutor;
+import io.github.leeyxq.promsql.client.ResultCache;
+import io.github.leeyxq.promsql.util.Asserts;
+import io.github.leeyxq.promsql.util.StrUtil;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * prom-sql自身的运行指标：查询构建耗时、各执行器的查询耗时/失败数/进行中数量、结果缓存命中率、
+ * 自适应并发上限，可输出为Prometheus文本格式，也可由{@link Slf4jMetricsReporter}定期写入日志
+ * <pre>{@code
+ * PromSqlMetrics metrics = PromSqlMetrics.enable();
+ * QueryExecutor executor = new InstrumentedQueryExecutor(client, "prometheus");
+ * metrics.registerCache("panel", caching.getCache());
+ * //在/metrics接口中输出
+ * String text = metrics.scrape();
+ * }</pre>
+ * 默认关闭，关闭时埋点处只多一次volatile读，不取时间、不计数。
+ *
+ * @author lixiangqian
+ * @since 2026/10/18 22:30
+ */
+public final class PromSqlMetrics {
+    private static volatile PromSqlMetrics current;
+
+    private final LatencyHistogram buildDuration = new LatencyHistogram(LatencyHistogram.BUILD_BUCKETS);
+    private final LongAdder buildErrors = new LongAdder();
+    /**
+     * 按名称排序，输出顺序稳定
+     */
+    private final ConcurrentMap<String, QueryStats> queries = new ConcurrentSkipListMap<>();
+    private final ConcurrentMap<String, ResultCache> caches = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, AdaptiveLimitQueryExecutor> limiters = new ConcurrentHashMap<>();
+
+    private PromSqlMetrics() {
+    }
+
+    /**
+     * 开启统计，已开启时返回当前实例
+     */
+    public static synchronized PromSqlMetrics enable() {
+        if (current == null) {
+            current = new PromSqlMetrics();
+        }
+        return current;
+    }
+
+    /**
+     * 关闭统计并丢弃已有数据
+     */
+    public static synchronized void disable() {
+        current = null;
+    }
+
+    /**
+     * @return 当前实例，未开启时为null
+     */
+    public static PromSqlMetrics current() {
+        return current;
+    }
+
+    public void recordBuild(long nanos) {
+        buildDuration.observeNanos(nanos);
+    }
+
+    public void recordBuildError() {
+        buildErrors.increment();
+    }
+
+    public LatencyHistogram getBuildDuration() {
+        return buildDuration;
+    }
+
+    public long getBuildErrors() {
+        return buildErrors.sum();
+    }
+
+    /**
+     * 获取执行器的查询统计，首次访问时创建
+     *
+     * @param executor 执行器名称
+     */
+    public QueryStats query(String executor) {
+        QueryStats stats = queries.get(executor);
+        return stats != null ? stats : queries.computeIfAbsent(executor, k -> new QueryStats());
+    }
+
+    /**
+     * 输出结果缓存的命中、未命中、淘汰次数及命中率
+     *
+     * @param name  缓存名称
+     * @param cache 缓存，如{@link io.github.leeyxq.promsql.client.CachingQueryExecutor#getCache()}
+     * @return this
+     */
+    public PromSqlMetrics registerCache(String name, ResultCache cache) {
+        Asserts.notBlank(name, "name must not be empty");
+        Asserts.notNull(cache, "cache must not be null");
+        caches.put(name, cache);
+        return this;
+    }
+
+    /**
+     * 输出自适应并发限制的当前上限、排队数及丢弃次数
+     *
+     * @param name    名称
+     * @param limiter 并发限制执行器
+     * @return this
+     */
+    public PromSqlMetrics registerLimiter(String name, AdaptiveLimitQueryExecutor limiter) {
+        Asserts.notBlank(name, "name must not be empty");
+        Asserts.notNull(limiter, "limiter must not be null");
+        limiters.put(name, limiter);
+        return this;
+    }
+
+    /**
+     * Prometheus文本格式（text/plain; version=0.0.4）
+     */
+    public String scrape() {
+        StringBuilder out = new StringBuilder(2048);
+        writeTo(out);
+        return out.toString();
+    }
+
+    public void writeTo(StringBuilder out) {
+        header(out, "promsql_build_duration_seconds", "histogram", "Time spent rendering queries in PromSqlBuilder.build().");
+        histogram(out, "promsql_build_duration_seconds", null, null, buildDuration);
+        header(out, "promsql_build_errors_total", "counter", "Queries that failed to build.");
+        sample(out, "promsql_build_errors_total", null, null, null, buildErrors.sum());
+        if (!queries.isEmpty()) {
+            header(out, "promsql_query_duration_seconds", "histogram", "Query execution latency by executor.");
+            for (Map.Entry<String, QueryStats> entry : queries.entrySet()) {
+                histogram(out, "promsql_query_duration_seconds", "executor", entry.getKey(), entry.getValue().duration);
+            }
+            header(out, "promsql_query_errors_total", "counter", "Queries that failed by executor.");
+            for (Map.Entry<String, QueryStats> entry : queries.entrySet()) {
+                sample(out, "promsql_query_errors_total", "executor", entry.getKey(), null, entry.getValue().getErrors());
+            }
+            header(out, "promsql_queries_in_flight", "gauge", "Queries currently executing by executor.");
+            for (Map.Entry<String, QueryStats> entry : queries.entrySet()) {
+                sample(out, "promsql_queries_in_flight", "executor", entry.getKey(), null, entry.getValue().getInFlight());
+            }
+        }
+        if (!caches.isEmpty()) {
+            Map<String, ResultCache> sorted = new ConcurrentSkipListMap<>(caches);
+            header(out, "promsql_cache_requests_total", "counter", "Result cache lookups by cache and result.");
+            for (Map.Entry<String, ResultCache> entry : sorted.entrySet()) {
+                sample(out, "promsql_cache_requests_total", "cache", entry.getKey(), "result=\"hit\"", entry.getValue().getHits());
+                sample(out, "promsql_cache_requests_total", "cache", entry.getKey(), "result=\"miss\"", entry.getValue().getMisses());
+            }
+            header(out, "promsql_cache_evictions_total", "counter", "Result cache entries evicted to stay within limits.");
+            for (Map.Entry<String, ResultCache> entry : sorted.entrySet()) {
+                sample(out, "promsql_cache_evictions_total", "cache", entry.getKey(), null, entry.getValue().getEvictions());
+            }
+            header(out, "promsql_cache_hit_ratio", "gauge", "Result cache hit ratio since start.");
+            for (Map.Entry<String, ResultCache> entry : sorted.entrySet()) {
+                sample(out, "promsql_cache_hit_ratio", "cache", entry.getKey(), null, hitRatio(entry.getValue()));
+            }
+        }
+        if (!limiters.isEmpty()) {
+            Map<String, AdaptiveLimitQueryExecutor> sorted = getLimiters();
+            header(out, "promsql_concurrency_limit", "gauge", "Current adaptive concurrency limit.");
+            for (Map.Entry<String, AdaptiveLimitQueryExecutor> entry : sorted.entrySet()) {
+                sample(out, "promsql_concurrency_limit", "limiter", entry.getKey(), null, entry.getValue().getLimit());
+            }
+            header(out, "promsql_concurrency_queued", "gauge", "Queries waiting for the concurrency limit.");
+            for (Map.Entry<String, AdaptiveLimitQueryExecutor> entry : sorted.entrySet()) {
+                sample(out, "promsql_concurrency_queued", "limiter", entry.getKey(), null, entry.getValue().getQueued());
+            }
+            header(out, "promsql_concurrency_shed_total", "counter", "Queries shed after waiting too long for the concurrency limit.");
+            for (Map.Entry<String, AdaptiveLimitQueryExecutor> entry : sorted.entrySet()) {
+                sample(out, "promsql_concurrency_shed_total", "limiter", entry.getKey(), null, entry.getValue().getShed());
+            }
+        }
+    }
+
+    Map<String, QueryStats> getQueries() {
+        return queries;
+    }
+
+    Map<String, ResultCache> getCaches() {
+        return new ConcurrentSkipListMap<>(caches);
+    }
+
+    Map<String, AdaptiveLimitQueryExecutor> getLimiters() {
+        return new ConcurrentSkipListMap<>(limiters);
+    }
+
+    static double hitRatio(ResultCache cache) {
+        long hits = cache.getHits();
+        long total = hits + cache.getMisses();
+        return total == 0 ? 0 : (double) hits / total;
+    }
+
+    private static void header(StringBuilder out, String name, String type, String help) {
+        out.append("# HELP ").append(name).append(' ').append(help).append('\n');
+        out.append("# TYPE ").append(name).append(' ').append(type).append('\n');
+    }
+
+    private static void histogram(StringBuilder out, String name, String label, String value, LatencyHistogram histogram) {
+        double[] bounds = histogram.getBounds();
+        long[] counts = histogram.cumulativeCounts();
+        for (int i = 0; i < counts.length; i++) {
+            String le = "le=\"" + (i < bounds.length ? format(bounds[i]) : "+Inf") + '"';
+            sample(out, name + "_bucket", label, value, le, counts[i]);
+        }
+        sample(out, name + "_sum", label, value, null, histogram.sumSeconds());
+        sample(out, name + "_count", label, value, null, counts[counts.length - 1]);
+    }
+
+    private static void sample(StringBuilder out, String name, String label, String value, String extra, double sample) {
+        out.append(name);
+        if (label != null || extra != null) {
+            out.append('{');
+            if (label != null) {
+                StrUtil.appendEscaped(out.append(label).append("=\""), value).append('"');
+            }
+            if (extra != null) {
+                out.append(label != null ? "," : "").append(extra);
+            }
+            out.append('}');
+        }
+        out.append(' ').append(format(sample)).append('\n');
+    }
+
+    private static String format(double value) {
+        if (value == (long) value) {
+            return Long.toString((long) value);
+        }
+        return Double.toString(value);
+    }
+
+    /**
+     * 单个执行器的查询统计
+     */
+    public static final class QueryStats {
+        private final LatencyHistogram duration = new LatencyHistogram(LatencyHistogram.QUERY_BUCKETS);
+        private final LongAdder errors = new LongAdder();
+        private final LongAdder inFlight = new LongAdder();
+
+        /**
+         * 查询开始，返回开始时间，需与{@link #end(long, boolean)}成对调用
+         */
+        public long start() {
+            inFlight.increment();
+            return System.nanoTime();
+        }
+
+        public void end(long startNanos, boolean success) {
+            inFlight.decrement();
+            duration.observeSince(startNanos);
+            if (!success) {
+                errors.increment();
+            }
+        }
+
+        public LatencyHistogram getDuration() {
+            return duration;
+        }
+
+        public long getErrors() {
+            return errors.sum();
+        }
+
+        public long getInFlight() {
+            return inFlight.sum();
+        }
+    }
+}
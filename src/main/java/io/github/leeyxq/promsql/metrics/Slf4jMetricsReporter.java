@@ -0,0 +1,150 @@
+package io.github.leeyxq.promsql.metrics;
+
+import io.github.leeyxq.promsql.client.AdaptiveLimitQueryExecutor;
+import io.github.leeyxq.promsql.client.ResultCache;
+import io.github.leeyxq.promsql.util.Asserts;
+import lombok.extern.slf4j.Slf4j;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 定期把{@link PromSqlMetrics}的摘要写入SLF4J日志，适用于没有接入Prometheus抓取的服务
+ * <pre>{@code
+ * Slf4jMetricsReporter reporter = Slf4jMetricsReporter.builder(PromSqlMetrics.enable())
+ *         .intervalMillis(60_000)
+ *         .build()
+ *         .start();
+ * //prom-sql build: count=1200, p50=0.012ms, p99=0.094ms, errors=0
+ * //prom-sql query[prometheus]: count=300, p50=35.2ms, p99=480.0ms, errors=2, inFlight=1
+ * //prom-sql cache[panel]: hits=900, misses=300, hitRatio=75.0%, evictions=0
+ * //prom-sql limiter[prometheus]: limit=18, inFlight=3, queued=0, shed=0
+ * }</pre>
+ *
+ * @author lixiangqian
+ * @since 2026/10/18 22:30
+ */
+@Slf4j
+public final class Slf4jMetricsReporter implements AutoCloseable {
+    private static final AtomicInteger THREAD_SEQ = new AtomicInteger();
+
+    private final PromSqlMetrics metrics;
+    private final Logger logger;
+    private final long intervalMillis;
+    private ScheduledExecutorService scheduler;
+
+    private Slf4jMetricsReporter(Builder builder) {
+        this.metrics = builder.metrics;
+        this.logger = builder.logger;
+        this.intervalMillis = builder.intervalMillis;
+    }
+
+    public static Builder builder(PromSqlMetrics metrics) {
+        return new Builder(metrics);
+    }
+
+    /**
+     * 启动定期输出，首次输出在一个间隔之后
+     */
+    public synchronized Slf4jMetricsReporter start() {
+        if (scheduler == null) {
+            String name = "prom-metrics-" + THREAD_SEQ.incrementAndGet();
+            scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread t = new Thread(r, name);
+                t.setDaemon(true);
+                return t;
+            });
+            scheduler.scheduleAtFixedRate(this::reportQuietly, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+        }
+        return this;
+    }
+
+    @Override
+    public synchronized void close() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+            scheduler = null;
+        }
+    }
+
+    private void reportQuietly() {
+        try {
+            report();
+        } catch (RuntimeException e) {
+            log.warn("failed to report prom-sql metrics: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * 立即输出一次，日志级别为INFO，未开启INFO时不做任何计算
+     */
+    public void report() {
+        if (!logger.isInfoEnabled()) {
+            return;
+        }
+        LatencyHistogram build = metrics.getBuildDuration();
+        logger.info("prom-sql build: count={}, p50={}, p99={}, errors={}",
+                build.count(), millis(build.quantile(0.5)), millis(build.quantile(0.99)), metrics.getBuildErrors());
+        for (Map.Entry<String, PromSqlMetrics.QueryStats> entry : metrics.getQueries().entrySet()) {
+            PromSqlMetrics.QueryStats stats = entry.getValue();
+            LatencyHistogram duration = stats.getDuration();
+            logger.info("prom-sql query[{}]: count={}, p50={}, p99={}, errors={}, inFlight={}", entry.getKey(),
+                    duration.count(), millis(duration.quantile(0.5)), millis(duration.quantile(0.99)),
+                    stats.getErrors(), stats.getInFlight());
+        }
+        for (Map.Entry<String, ResultCache> entry : metrics.getCaches().entrySet()) {
+            ResultCache cache = entry.getValue();
+            logger.info("prom-sql cache[{}]: hits={}, misses={}, hitRatio={}, evictions={}", entry.getKey(),
+                    cache.getHits(), cache.getMisses(),
+                    String.format(Locale.ROOT, "%.1f%%", PromSqlMetrics.hitRatio(cache) * 100), cache.getEvictions());
+        }
+        for (Map.Entry<String, AdaptiveLimitQueryExecutor> entry : metrics.getLimiters().entrySet()) {
+            AdaptiveLimitQueryExecutor limiter = entry.getValue();
+            logger.info("prom-sql limiter[{}]: limit={}, inFlight={}, queued={}, shed={}", entry.getKey(),
+                    limiter.getLimit(), limiter.getInFlight(), limiter.getQueued(), limiter.getShed());
+        }
+    }
+
+    private static String millis(double seconds) {
+        return Double.isNaN(seconds) ? "-" : String.format(Locale.ROOT, "%.3fms", seconds * 1000);
+    }
+
+    public static final class Builder {
+        private final PromSqlMetrics metrics;
+        private Logger logger = LoggerFactory.getLogger(Slf4jMetricsReporter.class);
+        private long intervalMillis = 60_000;
+
+        private Builder(PromSqlMetrics metrics) {
+            Asserts.notNull(metrics, "metrics must not be null");
+            this.metrics = metrics;
+        }
+
+        /**
+         * 输出使用的logger，默认为本类的logger
+         */
+        public Builder logger(Logger logger) {
+            Asserts.notNull(logger, "logger must not be null");
+            this.logger = logger;
+            return this;
+        }
+
+        /**
+         * 输出间隔，默认60秒
+         */
+        public Builder intervalMillis(long intervalMillis) {
+            Asserts.isTrue(intervalMillis > 0, "intervalMillis must be positive");
+            this.intervalMillis = intervalMillis;
+            return this;
+        }
+
+        public Slf4jMetricsReporter build() {
+            return new Slf4jMetricsReporter(this);
+        }
+    }
+}
@@ -0,0 +1,366 @@
+package io.github.leeyxq.promsql.parser;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * 手写PromQL词法分析器
+ * <p>
+ * 不生成Token对象，每次{@link #next()}仅更新当前token的类型与起止下标，字符串仅在含转义时才额外分配。
+ *
+ * @author lixiangqian
+ * @since 2026/10/18 13:00
+ */
+final class PromLexer {
+    private final String input;
+    private final int length;
+    private int pos;
+
+    TokenType type;
+    int start;
+    int end;
+
+    PromLexer(String input) {
+        this.input = input;
+        this.length = input.length();
+    }
+
+    String text() {
+        return input.substring(start, end);
+    }
+
+    boolean isIdent(String keyword) {
+        return type == TokenType.IDENT && end - start == keyword.length() && input.regionMatches(start, keyword, 0, keyword.length());
+    }
+
+    PromParseException error(String message) {
+        return new PromParseException(message, input, start);
+    }
+
+    void next() {
+        while (pos < length) {
+            char c = input.charAt(pos);
+            if (isSpace(c)) {
+                pos++;
+            } else if (c == '#') {
+                while (pos < length && input.charAt(pos) != '\n') {
+                    pos++;
+                }
+            } else {
+                break;
+            }
+        }
+        start = pos;
+        if (pos >= length) {
+            end = pos;
+            type = TokenType.EOF;
+            return;
+        }
+        char c = input.charAt(pos++);
+        switch (c) {
+            case '(':
+                type = TokenType.LEFT_PAREN;
+                break;
+            case ')':
+                type = TokenType.RIGHT_PAREN;
+                break;
+            case '{':
+                type = TokenType.LEFT_BRACE;
+                break;
+            case '}':
+                type = TokenType.RIGHT_BRACE;
+                break;
+            case '[':
+                type = TokenType.LEFT_BRACKET;
+                break;
+            case ']':
+                type = TokenType.RIGHT_BRACKET;
+                break;
+            case ',':
+                type = TokenType.COMMA;
+                break;
+            case ':':
+                type = TokenType.COLON;
+                break;
+            case '@':
+                type = TokenType.AT;
+                break;
+            case '+':
+                type = TokenType.ADD;
+                break;
+            case '-':
+                type = TokenType.SUB;
+                break;
+            case '*':
+                type = TokenType.MUL;
+                break;
+            case '/':
+                type = TokenType.DIV;
+                break;
+            case '%':
+                type = TokenType.MOD;
+                break;
+            case '^':
+                type = TokenType.POW;
+                break;
+            case '=':
+                type = accept('=') ? TokenType.EQLC : accept('~') ? TokenType.EQL_REGEX : TokenType.ASSIGN;
+                break;
+            case '!':
+                if (accept('=')) {
+                    type = TokenType.NEQ;
+                } else if (accept('~')) {
+                    type = TokenType.NEQ_REGEX;
+                } else {
+                    throw error("unexpected character '!'");
+                }
+                break;
+            case '>':
+                type = accept('=') ? TokenType.GTE : TokenType.GTR;
+                break;
+            case '<':
+                type = accept('=') ? TokenType.LTE : TokenType.LSS;
+                break;
+            case '"':
+            case '\'':
+            case '`':
+                lexString(c);
+                break;
+            default:
+                if (isDigit(c) || (c == '.' && pos < length && isDigit(input.charAt(pos)))) {
+                    lexNumberOrDuration(c);
+                } else if (isIdentStart(c)) {
+                    while (pos < length && isIdentPart(input.charAt(pos))) {
+                        pos++;
+                    }
+                    type = TokenType.IDENT;
+                } else {
+                    throw error("unexpected character '" + c + "'");
+                }
+        }
+        end = pos;
+    }
+
+    /**
+     * 字符串内容，已去除引号并处理转义
+     */
+    String stringValue() {
+        char quote = input.charAt(start);
+        int from = start + 1;
+        int to = end - 1;
+        int backslash = input.indexOf('\\', from);
+        if (quote == '`' || backslash < 0 || backslash >= to) {
+            return input.substring(from, to);
+        }
+        StringBuilder sb = new StringBuilder(to - from);
+        // \x、八进制转义为字节，与Go一致，连续的字节按UTF-8解码
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(0);
+        for (int i = from; i < to; i++) {
+            char c = input.charAt(i);
+            if (c != '\\') {
+                flushBytes(sb, bytes);
+                sb.append(c);
+                continue;
+            }
+            int escape = i;
+            char e = input.charAt(++i);
+            if (e == 'x') {
+                bytes.write(hexValue(escape, i + 1, 2, to));
+                i += 2;
+                continue;
+            }
+            if (e >= '0' && e <= '7') {
+                int value = 0;
+                for (int k = 0; k < 3; k++) {
+                    char d = i + k < to ? input.charAt(i + k) : 0;
+                    if (d < '0' || d > '7') {
+                        throw invalidEscape(escape, to);
+                    }
+                    value = value * 8 + (d - '0');
+                }
+                if (value > 0xFF) {
+                    throw invalidEscape(escape, to);
+                }
+                bytes.write(value);
+                i += 2;
+                continue;
+            }
+            flushBytes(sb, bytes);
+            switch (e) {
+                case 'n':
+                    sb.append('\n');
+                    break;
+                case 't':
+                    sb.append('\t');
+                    break;
+                case 'r':
+                    sb.append('\r');
+                    break;
+                case 'a':
+                    sb.append('\u0007');
+                    break;
+                case 'b':
+                    sb.append('\b');
+                    break;
+                case 'f':
+                    sb.append('\f');
+                    break;
+                case 'v':
+                    sb.append('\u000b');
+                    break;
+                case 'u':
+                    sb.appendCodePoint(codePoint(escape, hexValue(escape, i + 1, 4, to), to));
+                    i += 4;
+                    break;
+                case 'U':
+                    sb.appendCodePoint(codePoint(escape, hexValue(escape, i + 1, 8, to), to));
+                    i += 8;
+                    break;
+                case '\\':
+                case '"':
+                case '\'':
+                    sb.append(e);
+                    break;
+                default:
+                    throw new PromParseException("unknown escape sequence '\\" + e + "'", input, escape);
+            }
+        }
+        flushBytes(sb, bytes);
+        return sb.toString();
+    }
+
+    /**
+     * 解析转义中固定位数的十六进制数
+     *
+     * @param escape 反斜杠位置
+     * @param from   第一个数字的位置
+     * @param digits 位数
+     * @param to     字符串内容结束位置
+     */
+    private int hexValue(int escape, int from, int digits, int to) {
+        if (from + digits > to) {
+            throw invalidEscape(escape, to);
+        }
+        long value = 0;
+        for (int i = from; i < from + digits; i++) {
+            int digit = Character.digit(input.charAt(i), 16);
+            if (digit < 0) {
+                throw invalidEscape(escape, to);
+            }
+            value = value << 4 | digit;
+        }
+        return value > Integer.MAX_VALUE ? -1 : (int) value;
+    }
+
+    private int codePoint(int escape, int value, int to) {
+        if (value < 0 || value > Character.MAX_CODE_POINT || (value >= Character.MIN_SURROGATE && value <= Character.MAX_SURROGATE)) {
+            throw invalidEscape(escape, to);
+        }
+        return value;
+    }
+
+    private PromParseException invalidEscape(int escape, int to) {
+        String sequence = input.substring(escape, Math.min(escape + 10, to));
+        return new PromParseException("invalid escape sequence '" + sequence + "'", input, escape);
+    }
+
+    private static void flushBytes(StringBuilder sb, ByteArrayOutputStream bytes) {
+        if (bytes.size() > 0) {
+            sb.append(new String(bytes.toByteArray(), StandardCharsets.UTF_8));
+            bytes.reset();
+        }
+    }
+
+    private void lexString(char quote) {
+        while (pos < length) {
+            char c = input.charAt(pos++);
+            if (c == '\\' && quote != '`') {
+                pos++;
+            } else if (c == quote) {
+                type = TokenType.STRING;
+                return;
+            } else if (c == '\n' && quote != '`') {
+                break;
+            }
+        }
+        throw error("unterminated string");
+    }
+
+    private void lexNumberOrDuration(char first) {
+        if (first == '0' && pos < length && (input.charAt(pos) == 'x' || input.charAt(pos) == 'X')) {
+            pos++;
+            while (pos < length && Character.digit(input.charAt(pos), 16) >= 0) {
+                pos++;
+            }
+            type = TokenType.NUMBER;
+            return;
+        }
+        skipDigits();
+        if (pos < length && isDurationUnit(input, pos)) {
+            //如1h30m，数字与单位交替出现
+            while (pos < length && isDurationUnit(input, pos)) {
+                pos += input.startsWith("ms", pos) ? 2 : 1;
+                skipDigits();
+            }
+            type = TokenType.DURATION;
+            return;
+        }
+        if (pos < length && input.charAt(pos) == '.') {
+            pos++;
+            skipDigits();
+        }
+        if (pos < length && (input.charAt(pos) == 'e' || input.charAt(pos) == 'E')) {
+            int mark = pos++;
+            if (pos < length && (input.charAt(pos) == '+' || input.charAt(pos) == '-')) {
+                pos++;
+            }
+            if (pos < length && isDigit(input.charAt(pos))) {
+                skipDigits();
+            } else {
+                pos = mark;
+            }
+        }
+        type = TokenType.NUMBER;
+    }
+
+    private void skipDigits() {
+        while (pos < length && isDigit(input.charAt(pos))) {
+            pos++;
+        }
+    }
+
+    private boolean accept(char c) {
+        if (pos < length && input.charAt(pos) == c) {
+            pos++;
+            return true;
+        }
+        return false;
+    }
+
+    private static boolean isDurationUnit(String input, int i) {
+        char c = input.charAt(i);
+        if (c != 's' && c != 'm' && c != 'h' && c != 'd' && c != 'w' && c != 'y') {
+            return false;
+        }
+        int next = c == 'm' && input.startsWith("ms", i) ? i + 2 : i + 1;
+        //子查询[1h:5m]中单位后紧跟冒号
+        return next >= input.length() || !isIdentPart(input.charAt(next)) || isDigit(input.charAt(next)) || input.charAt(next) == ':';
+    }
+
+    private static boolean isSpace(char c) {
+        return c == ' ' || c == '\t' || c == '\n' || c == '\r';
+    }
+
+    private static boolean isDigit(char c) {
+        return c >= '0' && c <= '9';
+    }
+
+    private static boolean isIdentStart(char c) {
+        return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || c == '_';
+    }
+
+    private static boolean isIdentPart(char c) {
+        //指标名可包含冒号，如job:http_requests:rate5m
+        return isIdentStart(c) || isDigit(c) || c == ':';
+    }
+}
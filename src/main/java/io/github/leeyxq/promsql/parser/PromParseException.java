@@ -0,0 +1,24 @@
+package io.github.leeyxq.promsql.parser;
+
+import lombok.Getter;
+
+/**
+ * PromQL解析异常
+ *
+ * @author lixiangqian
+ * @since 2026/10/18 13:00
+ */
+public class PromParseException extends IllegalArgumentException {
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * 出错位置（字符下标）
+     */
+    @Getter
+    private final int position;
+
+    public PromParseException(String message, String input, int position) {
+        super(message + " at position " + position + ": " + input);
+        this.position = position;
+    }
+}
@@ -0,0 +1,411 @@
+package io.github.leeyxq.promsql.parser;
+
+import io.github.leeyxq.promsql.ast.AggregateExpr;
+import io.github.leeyxq.promsql.ast.BinaryExpr;
+import io.github.leeyxq.promsql.ast.BinaryOp;
+import io.github.leeyxq.promsql.ast.Call;
+import io.github.leeyxq.promsql.ast.Expr;
+import io.github.leeyxq.promsql.ast.LabelMatcher;
+import io.github.leeyxq.promsql.ast.MatchOp;
+import io.github.leeyxq.promsql.ast.MatrixSelector;
+import io.github.leeyxq.promsql.ast.NumberLiteral;
+import io.github.leeyxq.promsql.ast.StringLiteral;
+import io.github.leeyxq.promsql.ast.SubqueryExpr;
+import io.github.leeyxq.promsql.ast.UnaryExpr;
+import io.github.leeyxq.promsql.ast.VectorMatching;
+import io.github.leeyxq.promsql.ast.VectorSelector;
+import io.github.leeyxq.promsql.util.Asserts;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * 手写递归下降PromQL解析器，将查询文本解析为表达式树
+ * <p>
+ * 二元操作按优先级爬升解析，^为右结合；一元负号优先级低于^。括号仅用于分组，不保留在表达式树中，
+ * 打印时按优先级重新补充。字符串字面量解析为转义前的原始值。
+ *
+ * @author lixiangqian
+ * @since 2026/10/18 13:00
+ */
+public final class PromParser {
+    private static final Set<String> AGGREGATIONS = new HashSet<>(Arrays.asList(
+            "sum", "min", "max", "avg", "group", "stddev", "stdvar", "count", "count_values",
+            "bottomk", "topk", "quantile", "limitk", "limit_ratio"));
+
+    private final PromLexer lexer;
+
+    private PromParser(String input) {
+        this.lexer = new PromLexer(input);
+    }
+
+    /**
+     * 解析PromQL
+     *
+     * @param promSql 查询文本
+     * @return 表达式树
+     * @throws PromParseException 语法错误
+     */
+    public static Expr parse(String promSql) {
+        Asserts.notBlank(promSql, "promSql must not be empty");
+        PromParser parser = new PromParser(promSql);
+        parser.lexer.next();
+        Expr expr = parser.parseExpr(0);
+        if (parser.lexer.type != TokenType.EOF) {
+            throw parser.lexer.error("unexpected '" + parser.lexer.text() + "'");
+        }
+        return expr;
+    }
+
+    private Expr parseExpr(int minPrecedence) {
+        Expr lhs = parseUnary();
+        while (true) {
+            BinaryOp op = binaryOp();
+            if (op == null || op.getPrecedence() < minPrecedence) {
+                return lhs;
+            }
+            lexer.next();
+            boolean returnBool = false;
+            if (lexer.isIdent("bool")) {
+                returnBool = true;
+                lexer.next();
+            }
+            VectorMatching matching = null;
+            if (lexer.isIdent("on") || lexer.isIdent("ignoring")) {
+                boolean on = lexer.isIdent("on");
+                lexer.next();
+                List<String> labels = parseLabelList();
+                VectorMatching.Cardinality cardinality = VectorMatching.Cardinality.ONE_TO_ONE;
+                List<String> include = Collections.emptyList();
+                if (lexer.isIdent("group_left") || lexer.isIdent("group_right")) {
+                    cardinality = lexer.isIdent("group_left") ? VectorMatching.Cardinality.MANY_TO_ONE : VectorMatching.Cardinality.ONE_TO_MANY;
+                    lexer.next();
+                    if (lexer.type == TokenType.LEFT_PAREN) {
+                        include = parseLabelList();
+                    }
+                }
+                matching = new VectorMatching(on, labels, cardinality, include);
+            }
+            int nextPrecedence = op.isRightAssociative() ? op.getPrecedence() : op.getPrecedence() + 1;
+            Expr rhs = parseExpr(nextPrecedence);
+            if (returnBool && !op.isComparison()) {
+                throw lexer.error("bool modifier can only be used on comparison operators");
+            }
+            lhs = new BinaryExpr(op, lhs, rhs, returnBool, matching);
+        }
+    }
+
+    private BinaryOp binaryOp() {
+        switch (lexer.type) {
+            case ADD:
+                return BinaryOp.ADD;
+            case SUB:
+                return BinaryOp.SUB;
+            case MUL:
+                return BinaryOp.MUL;
+            case DIV:
+                return BinaryOp.DIV;
+            case MOD:
+                return BinaryOp.MOD;
+            case POW:
+                return BinaryOp.POW;
+            case EQLC:
+                return BinaryOp.EQL;
+            case NEQ:
+                return BinaryOp.NEQ;
+            case GTR:
+                return BinaryOp.GTR;
+            case LSS:
+                return BinaryOp.LSS;
+            case GTE:
+                return BinaryOp.GTE;
+            case LTE:
+                return BinaryOp.LTE;
+            case IDENT:
+                if (lexer.isIdent("and")) {
+                    return BinaryOp.AND;
+                } else if (lexer.isIdent("or")) {
+                    return BinaryOp.OR;
+                } else if (lexer.isIdent("unless")) {
+                    return BinaryOp.UNLESS;
+                } else if (lexer.isIdent("atan2")) {
+                    return BinaryOp.ATAN2;
+                }
+                return null;
+            default:
+                return null;
+        }
+    }
+
+    private Expr parseUnary() {
+        if (lexer.type == TokenType.SUB || lexer.type == TokenType.ADD) {
+            BinaryOp op = lexer.type == TokenType.SUB ? BinaryOp.SUB : BinaryOp.ADD;
+            lexer.next();
+            Expr expr = parseExpr(BinaryOp.POW.getPrecedence());
+            if (op == BinaryOp.SUB && expr instanceof NumberLiteral && !((NumberLiteral) expr).getText().startsWith("-")) {
+                return new NumberLiteral("-" + ((NumberLiteral) expr).getText());
+            }
+            return new UnaryExpr(op, expr);
+        }
+        return parsePostfix(parsePrimary());
+    }
+
+    private Expr parsePrimary() {
+        switch (lexer.type) {
+            case NUMBER: {
+                Expr expr = new NumberLiteral(lexer.text());
+                lexer.next();
+                return expr;
+            }
+            case STRING: {
+                Expr expr = new StringLiteral(lexer.stringValue());
+                lexer.next();
+                return expr;
+            }
+            case LEFT_PAREN: {
+                lexer.next();
+                Expr expr = parseExpr(0);
+                expect(TokenType.RIGHT_PAREN, "')'");
+                lexer.next();
+                return expr;
+            }
+            case LEFT_BRACE:
+                return new VectorSelector(null, parseMatchers(), null);
+            case IDENT:
+                return parseIdentifier();
+            default:
+                throw lexer.error(lexer.type == TokenType.EOF ? "unexpected end of input" : "unexpected '" + lexer.text() + "'");
+        }
+    }
+
+    private Expr parseIdentifier() {
+        String name = lexer.text();
+        lexer.next();
+        if (AGGREGATIONS.contains(name) && (lexer.type == TokenType.LEFT_PAREN || lexer.isIdent("by") || lexer.isIdent("without"))) {
+            return parseAggregate(name);
+        }
+        if (lexer.type == TokenType.LEFT_PAREN) {
+            return new Call(name, parseArgs());
+        }
+        if ("inf".equalsIgnoreCase(name) || "nan".equalsIgnoreCase(name)) {
+            return new NumberLiteral(name);
+        }
+        List<LabelMatcher> matchers = lexer.type == TokenType.LEFT_BRACE ? parseMatchers() : Collections.emptyList();
+        return new VectorSelector(name, matchers, null);
+    }
+
+    private Expr parseAggregate(String op) {
+        List<String> grouping = null;
+        boolean without = false;
+        if (lexer.isIdent("by") || lexer.isIdent("without")) {
+            without = lexer.isIdent("without");
+            lexer.next();
+            grouping = parseLabelList();
+        }
+        expect(TokenType.LEFT_PAREN, "'('");
+        List<Expr> args = parseArgs();
+        if (grouping == null && (lexer.isIdent("by") || lexer.isIdent("without"))) {
+            without = lexer.isIdent("without");
+            lexer.next();
+            grouping = parseLabelList();
+        }
+        if (args.isEmpty() || args.size() > 2) {
+            throw lexer.error("wrong number of arguments for aggregation " + op);
+        }
+        Expr param = args.size() == 2 ? args.get(0) : null;
+        return new AggregateExpr(op, args.get(args.size() - 1), param, grouping, without);
+    }
+
+    private List<Expr> parseArgs() {
+        lexer.next();
+        if (lexer.type == TokenType.RIGHT_PAREN) {
+            lexer.next();
+            return Collections.emptyList();
+        }
+        List<Expr> args = new ArrayList<>(2);
+        while (true) {
+            args.add(parseExpr(0));
+            if (lexer.type == TokenType.COMMA) {
+                lexer.next();
+            } else {
+                break;
+            }
+        }
+        expect(TokenType.RIGHT_PAREN, "')'");
+        lexer.next();
+        return args;
+    }
+
+    private Expr parsePostfix(Expr expr) {
+        while (true) {
+            if (lexer.type == TokenType.LEFT_BRACKET) {
+                expr = parseRange(expr);
+            } else if (lexer.isIdent("offset")) {
+                lexer.next();
+                String offset = parseSignedDuration();
+                if (expr instanceof VectorSelector && ((VectorSelector) expr).getOffset() == null) {
+                    expr = ((VectorSelector) expr).withOffset(offset);
+                } else if (expr instanceof MatrixSelector && ((MatrixSelector) expr).getSelector().getOffset() == null) {
+                    MatrixSelector matrix = (MatrixSelector) expr;
+                    expr = new MatrixSelector(matrix.getSelector().withOffset(offset), matrix.getRange());
+                } else if (expr instanceof SubqueryExpr && ((SubqueryExpr) expr).getOffset() == null) {
+                    SubqueryExpr subquery = (SubqueryExpr) expr;
+                    expr = new SubqueryExpr(subquery.getExpr(), subquery.getRange(), subquery.getStep(), offset, subquery.getAt());
+                } else {
+                    throw lexer.error("offset modifier must be preceded by a selector or subquery and used once");
+                }
+            } else if (lexer.type == TokenType.AT) {
+                lexer.next();
+                String at = parseAt();
+                if (expr instanceof VectorSelector && ((VectorSelector) expr).getAt() == null) {
+                    expr = ((VectorSelector) expr).withAt(at);
+                } else if (expr instanceof MatrixSelector && ((MatrixSelector) expr).getSelector().getAt() == null) {
+                    MatrixSelector matrix = (MatrixSelector) expr;
+                    expr = new MatrixSelector(matrix.getSelector().withAt(at), matrix.getRange());
+                } else if (expr instanceof SubqueryExpr && ((SubqueryExpr) expr).getAt() == null) {
+                    SubqueryExpr subquery = (SubqueryExpr) expr;
+                    expr = new SubqueryExpr(subquery.getExpr(), subquery.getRange(), subquery.getStep(), subquery.getOffset(), at);
+                } else {
+                    throw lexer.error("@ modifier must be preceded by a selector or subquery and used once");
+                }
+            } else {
+                return expr;
+            }
+        }
+    }
+
+    /**
+     * 区间选择器x[5m]或子查询expr[1h:5m]、expr[1h:]
+     */
+    private Expr parseRange(Expr expr) {
+        lexer.next();
+        expect(TokenType.DURATION, "duration");
+        String range = lexer.text();
+        lexer.next();
+        if (lexer.type == TokenType.COLON) {
+            lexer.next();
+            String step = null;
+            if (lexer.type == TokenType.DURATION) {
+                step = lexer.text();
+                lexer.next();
+            }
+            expect(TokenType.RIGHT_BRACKET, "']'");
+            lexer.next();
+            if (expr instanceof MatrixSelector) {
+                throw lexer.error("subquery is only allowed on instant vector");
+            }
+            return new SubqueryExpr(expr, range, step);
+        }
+        expect(TokenType.RIGHT_BRACKET, "']'");
+        if (!(expr instanceof VectorSelector)) {
+            throw lexer.error("ranges only allowed for vector selectors");
+        }
+        lexer.next();
+        return new MatrixSelector((VectorSelector) expr, range);
+    }
+
+    /**
+     * @后的时间戳（秒）或start()、end()
+     */
+    private String parseAt() {
+        if (lexer.isIdent("start") || lexer.isIdent("end")) {
+            String name = lexer.text();
+            lexer.next();
+            expect(TokenType.LEFT_PAREN, "'('");
+            lexer.next();
+            expect(TokenType.RIGHT_PAREN, "')'");
+            lexer.next();
+            return name + "()";
+        }
+        String sign = "";
+        if (lexer.type == TokenType.SUB) {
+            sign = "-";
+            lexer.next();
+        }
+        expect(TokenType.NUMBER, "timestamp");
+        String at = sign + lexer.text();
+        lexer.next();
+        return at;
+    }
+
+    private String parseSignedDuration() {
+        String sign = "";
+        if (lexer.type == TokenType.SUB) {
+            sign = "-";
+            lexer.next();
+        }
+        expect(TokenType.DURATION, "duration");
+        String duration = sign + lexer.text();
+        lexer.next();
+        return duration;
+    }
+
+    private List<LabelMatcher> parseMatchers() {
+        lexer.next();
+        List<LabelMatcher> matchers = new ArrayList<>();
+        while (lexer.type != TokenType.RIGHT_BRACE) {
+            expect(TokenType.IDENT, "label name");
+            String name = lexer.text();
+            lexer.next();
+            MatchOp op;
+            switch (lexer.type) {
+                case ASSIGN:
+                    op = MatchOp.EQ;
+                    break;
+                case NEQ:
+                    op = MatchOp.NEQ;
+                    break;
+                case EQL_REGEX:
+                    op = MatchOp.RE;
+                    break;
+                case NEQ_REGEX:
+                    op = MatchOp.NRE;
+                    break;
+                default:
+                    throw lexer.error("expected label matching operator");
+            }
+            lexer.next();
+            expect(TokenType.STRING, "label value");
+            matchers.add(new LabelMatcher(name, op, lexer.stringValue()));
+            lexer.next();
+            if (lexer.type == TokenType.COMMA) {
+                lexer.next();
+            } else {
+                expect(TokenType.RIGHT_BRACE, "'}'");
+            }
+        }
+        lexer.next();
+        if (matchers.isEmpty()) {
+            throw lexer.error("vector selector must contain at least one label matcher");
+        }
+        return matchers;
+    }
+
+    private List<String> parseLabelList() {
+        expect(TokenType.LEFT_PAREN, "'('");
+        lexer.next();
+        List<String> labels = new ArrayList<>();
+        while (lexer.type != TokenType.RIGHT_PAREN) {
+            expect(TokenType.IDENT, "label name");
+            labels.add(lexer.text());
+            lexer.next();
+            if (lexer.type == TokenType.COMMA) {
+                lexer.next();
+            } else {
+                expect(TokenType.RIGHT_PAREN, "')'");
+            }
+        }
+        lexer.next();
+        return labels;
+    }
+
+    private void expect(TokenType type, String what) {
+        if (lexer.type != type) {
+            throw lexer.error("expected " + what + (lexer.type == TokenType.EOF ? " but reached end of input" : " but found '" + lexer.text() + "'"));
+        }
+    }
+}
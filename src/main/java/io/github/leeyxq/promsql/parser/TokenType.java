@@ -0,0 +1,39 @@
+package io.github.leeyxq.promsql.parser;
+
+/**
+ * 词法单元类型，and/or/unless/by等关键字均作为IDENT由解析器按上下文识别
+ *
+ * @author lixiangqian
+ * @since 2026/10/18 13:00
+ */
+enum TokenType {
+    EOF,
+    IDENT,
+    NUMBER,
+    DURATION,
+    STRING,
+    LEFT_PAREN,
+    RIGHT_PAREN,
+    LEFT_BRACE,
+    RIGHT_BRACE,
+    LEFT_BRACKET,
+    RIGHT_BRACKET,
+    COMMA,
+    COLON,
+    AT,
+    ASSIGN,
+    EQL_REGEX,
+    NEQ_REGEX,
+    ADD,
+    SUB,
+    MUL,
+    DIV,
+    MOD,
+    POW,
+    EQLC,
+    NEQ,
+    GTR,
+    LSS,
+    GTE,
+    LTE
+}
@@ -0,0 +1,54 @@
+package io.github.leeyxq.promsql.rule;
+
+import io.github.leeyxq.promsql.ast.Expr;
+import io.github.leeyxq.promsql.ast.ExprNormalizer;
+import io.github.leeyxq.promsql.ast.PromPrinter;
+import io.github.leeyxq.promsql.parser.PromParser;
+import io.github.leeyxq.promsql.util.Asserts;
+import lombok.Value;
+
+import java.util.regex.Pattern;
+
+/**
+ * 预计算规则：由Prometheus按固定间隔计算expr并写入名为record的序列
+ *
+ * @author lixiangqian
+ * @since 2026/10/18 21:30
+ */
+@Value
+public class RecordingRule {
+    private static final Pattern METRIC_NAME = Pattern.compile("[a-zA-Z_:][a-zA-Z0-9_:]*");
+
+    /**
+     * 预计算序列名，如job:http_requests:rate5m
+     */
+    String record;
+    /**
+     * 规范化后的表达式
+     */
+    Expr expr;
+    /**
+     * 在统计的查询中出现的次数，手工定义的规则为0
+     */
+    int occurrences;
+
+    public RecordingRule(String record, Expr expr, int occurrences) {
+        Asserts.isTrue(record != null && METRIC_NAME.matcher(record).matches(), "invalid record name: " + record);
+        Asserts.notNull(expr, "expr is required");
+        this.record = record;
+        this.expr = ExprNormalizer.normalize(expr);
+        this.occurrences = occurrences;
+    }
+
+    /**
+     * 由已有的规则定义创建，如从规则文件中读取的record、expr
+     */
+    public static RecordingRule of(String record, String expr) {
+        return new RecordingRule(record, PromParser.parse(expr), 0);
+    }
+
+    @Override
+    public String toString() {
+        return record + " = " + PromPrinter.print(expr);
+    }
+}
@@ -0,0 +1,382 @@
+package io.github.leeyxq.promsql.rule;
+
+import io.github.leeyxq.promsql.PromHelper;
+import io.github.leeyxq.promsql.PromTemplate;
+import io.github.leeyxq.promsql.ast.AggregateExpr;
+import io.github.leeyxq.promsql.ast.BinaryExpr;
+import io.github.leeyxq.promsql.ast.Call;
+import io.github.leeyxq.promsql.ast.Expr;
+import io.github.leeyxq.promsql.ast.ExprNormalizer;
+import io.github.leeyxq.promsql.ast.ExprVisitor;
+import io.github.leeyxq.promsql.ast.LabelMatcher;
+import io.github.leeyxq.promsql.ast.MatchOp;
+import io.github.leeyxq.promsql.ast.MatrixSelector;
+import io.github.leeyxq.promsql.ast.NumberLiteral;
+import io.github.leeyxq.promsql.ast.RawSuffixExpr;
+import io.github.leeyxq.promsql.ast.StringLiteral;
+import io.github.leeyxq.promsql.ast.SubqueryExpr;
+import io.github.leeyxq.promsql.ast.UnaryExpr;
+import io.github.leeyxq.promsql.ast.VectorSelector;
+import io.github.leeyxq.promsql.parser.PromParseException;
+import io.github.leeyxq.promsql.parser.PromParser;
+import io.github.leeyxq.promsql.util.Asserts;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * 根据实际查询生成预计算规则：统计各查询中重复出现的高开销子表达式（含区间选择器或聚合的函数、聚合），
+ * 出现次数达到阈值的生成recording rule，查询时改写为直接读取预计算序列
+ * <ul>
+ *     <li>子表达式按规范化后的结构计数，写法差异不影响统计</li>
+ *     <li>外层优先：外层子表达式被选中后，其内部子表达式只统计外层之外的出现次数</li>
+ *     <li>含@、模板参数或last()拼接文本的子表达式不生成规则</li>
+ *     <li>序列名按Prometheus约定 level:metric:operations 生成，如sum by(job)(rate(http_requests_total[5m])) -> job:http_requests:rate5m</li>
+ * </ul>
+ * 非线程安全，收集完成后调用{@link #generate()}。也可直接运行，参数为查询文件（每行一条）及最少出现次数，规则输出到标准输出。
+ *
+ * @author lixiangqian
+ * @since 2026/10/18 21:30
+ */
+@Slf4j
+public final class RecordingRuleGenerator {
+    private final int minOccurrences;
+    /**
+     * 规范化后的子表达式 -> 候选，按首次出现的顺序
+     */
+    private final Map<Expr, Candidate> candidates = new LinkedHashMap<>();
+    private int queries;
+
+    public RecordingRuleGenerator(int minOccurrences) {
+        Asserts.isTrue(minOccurrences > 0, "minOccurrences must be positive");
+        this.minOccurrences = minOccurrences;
+    }
+
+    public RecordingRuleGenerator() {
+        this(3);
+    }
+
+    public RecordingRuleGenerator add(PromHelper.PromSqlBuilder builder) {
+        return add(builder.toExpr());
+    }
+
+    public RecordingRuleGenerator add(String promSql) {
+        return add(PromParser.parse(promSql));
+    }
+
+    public RecordingRuleGenerator add(Expr expr) {
+        ExprNormalizer.normalize(expr).accept(new Collector());
+        queries++;
+        return this;
+    }
+
+    /**
+     * 读取查询文件，每行一条查询，空行及#开头的行忽略，无法解析的行记录日志后跳过
+     *
+     * @return 成功读取的查询数
+     */
+    public int addFile(Path file) throws IOException {
+        int added = 0;
+        try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            String line;
+            int lineNumber = 0;
+            while ((line = reader.readLine()) != null) {
+                lineNumber++;
+                line = line.trim();
+                if (line.isEmpty() || line.startsWith("#")) {
+                    continue;
+                }
+                try {
+                    add(line);
+                    added++;
+                } catch (PromParseException e) {
+                    log.warn("skip invalid query at {}:{}: {}", file, lineNumber, e.getMessage());
+                }
+            }
+        }
+        return added;
+    }
+
+    public int getQueries() {
+        return queries;
+    }
+
+    /**
+     * 生成规则，按出现次数降序
+     */
+    public RecordingRules generate() {
+        List<Candidate> sorted = new ArrayList<>(candidates.values());
+        // 外层先选，外层覆盖的出现次数不再计入内层
+        sorted.sort(Comparator.comparingInt((Candidate c) -> c.size).reversed());
+        Map<Expr, Integer> covered = new HashMap<>();
+        List<Candidate> selected = new ArrayList<>();
+        for (Candidate candidate : sorted) {
+            int remaining = candidate.occurrences - covered.getOrDefault(candidate.expr, 0);
+            if (remaining < minOccurrences) {
+                continue;
+            }
+            selected.add(candidate);
+            for (Expr inner : candidate.inner) {
+                covered.merge(inner, candidate.occurrences, Integer::sum);
+            }
+        }
+        selected.sort(Comparator.comparingInt((Candidate c) -> c.occurrences).reversed());
+        Set<String> names = new HashSet<>();
+        List<RecordingRule> rules = new ArrayList<>(selected.size());
+        for (Candidate candidate : selected) {
+            String name = RuleNames.of(candidate.expr);
+            String unique = name;
+            for (int i = 2; !names.add(unique); i++) {
+                unique = name + "_" + i;
+            }
+            rules.add(new RecordingRule(unique, candidate.expr, candidate.occurrences));
+        }
+        return RecordingRules.of(rules);
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 1) {
+            System.err.println("usage: RecordingRuleGenerator <query-file> [min-occurrences] [group-name]");
+            System.exit(1);
+        }
+        RecordingRuleGenerator generator = new RecordingRuleGenerator(args.length > 1 ? Integer.parseInt(args[1]) : 3);
+        generator.addFile(Paths.get(args[0]));
+        System.out.print(generator.generate().toYaml(args.length > 2 ? args[2] : "prom-sql-recording-rules", null));
+    }
+
+    private static final class Candidate {
+        private final Expr expr;
+        private final int size;
+        /**
+         * 内部的候选子表达式，重复出现时重复记录
+         */
+        private final List<Expr> inner;
+        private int occurrences;
+
+        private Candidate(Expr expr, int size, List<Expr> inner) {
+            this.expr = expr;
+            this.size = size;
+            this.inner = inner;
+        }
+    }
+
+    /**
+     * 子树的统计信息
+     */
+    private static final class Info {
+        private int size = 1;
+        private boolean expensive;
+        private boolean hasSelector;
+        private boolean recordable = true;
+        private final List<Expr> candidates = new ArrayList<>(0);
+
+        private Info add(Info child) {
+            size += child.size;
+            expensive |= child.expensive;
+            hasSelector |= child.hasSelector;
+            recordable &= child.recordable;
+            candidates.addAll(child.candidates);
+            return this;
+        }
+    }
+
+    /**
+     * 自底向上遍历已规范化的表达式，登记候选
+     */
+    private final class Collector implements ExprVisitor<Info> {
+
+        @Override
+        public Info visitVectorSelector(VectorSelector expr) {
+            Info info = new Info();
+            info.hasSelector = true;
+            info.recordable = expr.getAt() == null && !isParam(expr.getOffset());
+            for (LabelMatcher matcher : expr.getMatchers()) {
+                info.recordable &= !isParam(matcher.getValue());
+            }
+            return info;
+        }
+
+        @Override
+        public Info visitMatrixSelector(MatrixSelector expr) {
+            Info info = expr.getSelector().accept(this);
+            info.size++;
+            info.expensive = true;
+            info.recordable &= !isParam(expr.getRange());
+            return info;
+        }
+
+        @Override
+        public Info visitSubquery(SubqueryExpr expr) {
+            Info info = new Info().add(expr.getExpr().accept(this));
+            info.expensive = true;
+            info.recordable &= expr.getAt() == null && !isParam(expr.getRange()) && !isParam(expr.getStep()) && !isParam(expr.getOffset());
+            return info;
+        }
+
+        @Override
+        public Info visitCall(Call expr) {
+            Info info = new Info();
+            for (Expr arg : expr.getArgs()) {
+                info.add(arg.accept(this));
+            }
+            return register(expr, info);
+        }
+
+        @Override
+        public Info visitAggregate(AggregateExpr expr) {
+            Info info = new Info().add(expr.getExpr().accept(this));
+            if (expr.getParam() != null) {
+                info.add(expr.getParam().accept(this));
+            }
+            info.expensive = true;
+            return register(expr, info);
+        }
+
+        @Override
+        public Info visitBinary(BinaryExpr expr) {
+            return new Info().add(expr.getLhs().accept(this)).add(expr.getRhs().accept(this));
+        }
+
+        @Override
+        public Info visitUnary(UnaryExpr expr) {
+            return new Info().add(expr.getExpr().accept(this));
+        }
+
+        @Override
+        public Info visitNumber(NumberLiteral expr) {
+            Info info = new Info();
+            info.recordable = !isParam(expr.getText());
+            return info;
+        }
+
+        @Override
+        public Info visitString(StringLiteral expr) {
+            return new Info();
+        }
+
+        @Override
+        public Info visitRawSuffix(RawSuffixExpr expr) {
+            Info info = new Info().add(expr.getExpr().accept(this));
+            info.recordable = false;
+            return info;
+        }
+
+        private Info register(Expr expr, Info info) {
+            if (info.expensive && info.hasSelector && info.recordable) {
+                Candidate candidate = candidates.computeIfAbsent(expr, k -> new Candidate(k, info.size, new ArrayList<>(info.candidates)));
+                candidate.occurrences++;
+                info.candidates.add(expr);
+            }
+            return info;
+        }
+
+        private boolean isParam(String value) {
+            return PromTemplate.containsParam(value);
+        }
+    }
+
+    /**
+     * 按level:metric:operations约定命名
+     */
+    private static final class RuleNames {
+        private static final Set<String> COUNTER_FUNCTIONS = new HashSet<>(java.util.Arrays.asList("rate", "irate", "increase"));
+
+        private String level;
+        private String metric;
+        private final List<String> operations = new ArrayList<>(4);
+        private boolean counter;
+
+        static String of(Expr expr) {
+            RuleNames names = new RuleNames();
+            names.walk(expr);
+            String metric = names.metric == null ? "series" : names.metric;
+            if (names.counter && metric.endsWith("_total")) {
+                metric = metric.substring(0, metric.length() - "_total".length());
+            }
+            StringBuilder name = new StringBuilder(64);
+            name.append(names.level == null ? "" : names.level).append(':').append(metric);
+            for (String operation : names.operations) {
+                name.append(':').append(operation);
+            }
+            return sanitize(name.toString());
+        }
+
+        /**
+         * 由外向内遍历，操作按由外到内的顺序记录（最后应用的在前）
+         */
+        private void walk(Expr expr) {
+            if (expr instanceof AggregateExpr) {
+                AggregateExpr agg = (AggregateExpr) expr;
+                if (level == null && !agg.getGrouping().isEmpty()) {
+                    level = (agg.isWithout() ? "without_" : "") + String.join("_", agg.getGrouping());
+                }
+                // 约定中sum为默认聚合，不写入名称
+                if (!"sum".equals(agg.getOp())) {
+                    operations.add(agg.getOp());
+                }
+                walk(agg.getExpr());
+            } else if (expr instanceof Call) {
+                Call call = (Call) expr;
+                String range = null;
+                for (Expr arg : call.getArgs()) {
+                    if (arg instanceof MatrixSelector) {
+                        range = ((MatrixSelector) arg).getRange();
+                    } else if (arg instanceof SubqueryExpr) {
+                        range = ((SubqueryExpr) arg).getRange();
+                    }
+                }
+                operations.add(range == null ? call.getFunction() : call.getFunction() + range);
+                counter |= COUNTER_FUNCTIONS.contains(call.getFunction());
+                for (Expr arg : call.getArgs()) {
+                    walk(arg);
+                }
+            } else if (expr instanceof MatrixSelector) {
+                walk(((MatrixSelector) expr).getSelector());
+            } else if (expr instanceof SubqueryExpr) {
+                walk(((SubqueryExpr) expr).getExpr());
+            } else if (expr instanceof BinaryExpr) {
+                walk(((BinaryExpr) expr).getLhs());
+                walk(((BinaryExpr) expr).getRhs());
+            } else if (expr instanceof UnaryExpr) {
+                walk(((UnaryExpr) expr).getExpr());
+            } else if (expr instanceof VectorSelector && metric == null) {
+                metric = metricName((VectorSelector) expr);
+            }
+        }
+
+        private static String metricName(VectorSelector selector) {
+            if (selector.getMetricName() != null) {
+                return selector.getMetricName();
+            }
+            for (LabelMatcher matcher : selector.getMatchers()) {
+                if (LabelMatcher.METRIC_NAME.equals(matcher.getName()) && matcher.getOp() == MatchOp.EQ) {
+                    return matcher.getValue();
+                }
+            }
+            return null;
+        }
+
+        private static String sanitize(String name) {
+            StringBuilder sb = new StringBuilder(name.length());
+            for (int i = 0; i < name.length(); i++) {
+                char c = name.charAt(i);
+                boolean valid = c == '_' || c == ':' || (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9');
+                sb.append(valid ? c : '_');
+            }
+            return sb.toString();
+        }
+    }
+}
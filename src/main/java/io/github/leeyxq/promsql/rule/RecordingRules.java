@@ -0,0 +1,139 @@
+package io.github.leeyxq.promsql.rule;
+
+import io.github.leeyxq.promsql.PromHelper;
+import io.github.leeyxq.promsql.ast.AggregateExpr;
+import io.github.leeyxq.promsql.ast.Call;
+import io.github.leeyxq.promsql.ast.Expr;
+import io.github.leeyxq.promsql.ast.ExprNormalizer;
+import io.github.leeyxq.promsql.ast.ExprRewriter;
+import io.github.leeyxq.promsql.ast.PromPrinter;
+import io.github.leeyxq.promsql.ast.VectorSelector;
+import io.github.leeyxq.promsql.util.Asserts;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 一组预计算规则，可输出为Prometheus规则文件，也可把查询中与规则相同的子表达式改写为预计算序列
+ * <pre>{@code
+ * String promSql = PromHelper.sqlBuilder()
+ *         .metric("http_requests_total").rate("5m").sum("job")
+ *         .useRecordingRules(rules)
+ *         .build();
+ * //job:http_requests:rate5m
+ * }</pre>
+ * 子表达式按规范化后的结构比较，label条件顺序、时间单位等写法差异不影响匹配。实例不可变，线程安全。
+ *
+ * @author lixiangqian
+ * @since 2026/10/18 21:30
+ */
+public final class RecordingRules {
+    public static final RecordingRules EMPTY = new RecordingRules(Collections.emptyList());
+
+    private final List<RecordingRule> rules;
+    private final Map<Expr, String> records;
+    private final Rewriter rewriter = new Rewriter();
+
+    private RecordingRules(List<RecordingRule> rules) {
+        this.rules = Collections.unmodifiableList(new ArrayList<>(rules));
+        this.records = new HashMap<>(rules.size() * 2);
+        for (RecordingRule rule : rules) {
+            String existing = records.putIfAbsent(rule.getExpr(), rule.getRecord());
+            Asserts.isTrue(existing == null, "duplicate recording rule expr: " + rule.getRecord() + ", " + existing);
+        }
+    }
+
+    public static RecordingRules of(Collection<RecordingRule> rules) {
+        Asserts.notNull(rules, "rules must not be null");
+        return new RecordingRules(new ArrayList<>(rules));
+    }
+
+    public List<RecordingRule> getRules() {
+        return rules;
+    }
+
+    public int size() {
+        return rules.size();
+    }
+
+    /**
+     * 把与规则相同的子表达式替换为预计算序列，外层优先
+     *
+     * @return 改写后的表达式，无匹配时返回原表达式
+     */
+    public Expr rewrite(Expr expr) {
+        return records.isEmpty() ? expr : rewriter.rewrite(expr);
+    }
+
+    /**
+     * @see #rewrite(Expr)
+     */
+    public String rewrite(PromHelper.PromSqlBuilder builder) {
+        return PromPrinter.print(rewrite(builder.toExpr()));
+    }
+
+    /**
+     * 输出Prometheus规则文件
+     *
+     * @param groupName 规则组名
+     * @param interval  计算间隔，如1m，为空时使用全局evaluation_interval
+     * @return YAML
+     */
+    public String toYaml(String groupName, String interval) {
+        Asserts.notBlank(groupName, "groupName must not be empty");
+        StringBuilder yaml = new StringBuilder(128 + rules.size() * 128);
+        yaml.append("groups:\n");
+        yaml.append("  - name: ").append(quote(groupName)).append('\n');
+        if (interval != null && !interval.isEmpty()) {
+            yaml.append("    interval: ").append(interval).append('\n');
+        }
+        if (rules.isEmpty()) {
+            return yaml.append("    rules: []\n").toString();
+        }
+        yaml.append("    rules:\n");
+        for (RecordingRule rule : rules) {
+            yaml.append("      - record: ").append(rule.getRecord()).append('\n');
+            yaml.append("        expr: ").append(quote(PromPrinter.print(rule.getExpr()))).append('\n');
+        }
+        return yaml.toString();
+    }
+
+    /**
+     * YAML单引号字符串，单引号写两次；查询中的换行已由打印器转义
+     */
+    private static String quote(String value) {
+        return '\'' + value.replace("'", "''") + '\'';
+    }
+
+    @Override
+    public String toString() {
+        return "RecordingRules" + rules;
+    }
+
+    /**
+     * 预计算的候选只有函数和聚合，其余节点直接向下遍历
+     */
+    private final class Rewriter extends ExprRewriter {
+
+        @Override
+        public Expr visitCall(Call expr) {
+            Expr recorded = lookup(expr);
+            return recorded != null ? recorded : super.visitCall(expr);
+        }
+
+        @Override
+        public Expr visitAggregate(AggregateExpr expr) {
+            Expr recorded = lookup(expr);
+            return recorded != null ? recorded : super.visitAggregate(expr);
+        }
+
+        private Expr lookup(Expr expr) {
+            String record = records.get(ExprNormalizer.normalize(expr));
+            return record == null ? null : new VectorSelector(record, null, null);
+        }
+    }
+}
@@ -0,0 +1,188 @@
+package io.github.leeyxq.promsql.util;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.Predicate;
+
+/**
+ * 不可变的压缩前缀树（radix trie），单分支路径合并为一条边，公共前缀只存一份。
+ * <p>
+ * 适合metric名、label值这类前缀高度重复的字符串集合，如http_request_duration_seconds_bucket与
+ * http_request_duration_seconds_count共享前缀。构建后只读，可在多线程间共享；更新时整体重建。
+ *
+ * @author lixiangqian
+ * @since 2026/10/18 20:00
+ */
+public final class CompactTrie {
+    public static final CompactTrie EMPTY = new CompactTrie(new Node(false, new char[0], new String[0], new Node[0]), 0);
+
+    private final Node root;
+    private final int size;
+
+    private CompactTrie(Node root, int size) {
+        this.root = root;
+        this.size = size;
+    }
+
+    /**
+     * 由字符串集合构建，重复值只保留一个，null忽略
+     */
+    public static CompactTrie of(Collection<String> values) {
+        String[] words = values.stream().filter(v -> v != null).distinct().sorted().toArray(String[]::new);
+        if (words.length == 0) {
+            return EMPTY;
+        }
+        return new CompactTrie(build(words, 0, words.length, 0), words.length);
+    }
+
+    /**
+     * 由已排序、已去重的words[lo, hi)构建节点，depth为已被父路径消费的字符数
+     */
+    private static Node build(String[] words, int lo, int hi, int depth) {
+        boolean terminal = words[lo].length() == depth;
+        if (terminal) {
+            lo++;
+        }
+        List<Character> firsts = new ArrayList<>();
+        List<String> labels = new ArrayList<>();
+        List<Node> children = new ArrayList<>();
+        int from = lo;
+        while (from < hi) {
+            char c = words[from].charAt(depth);
+            int to = from + 1;
+            while (to < hi && words[to].charAt(depth) == c) {
+                to++;
+            }
+            // 已排序，首尾两个字符串的公共前缀即整组的公共前缀
+            int common = commonPrefix(words[from], words[to - 1], depth);
+            firsts.add(c);
+            labels.add(words[from].substring(depth, depth + common));
+            children.add(build(words, from, to, depth + common));
+            from = to;
+        }
+        char[] firstChars = new char[firsts.size()];
+        for (int i = 0; i < firstChars.length; i++) {
+            firstChars[i] = firsts.get(i);
+        }
+        return new Node(terminal, firstChars, labels.toArray(new String[0]), children.toArray(new Node[0]));
+    }
+
+    private static int commonPrefix(String a, String b, int from) {
+        int max = Math.min(a.length(), b.length());
+        int i = from;
+        while (i < max && a.charAt(i) == b.charAt(i)) {
+            i++;
+        }
+        return i - from;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public boolean contains(String value) {
+        Node node = root;
+        int pos = 0;
+        while (pos < value.length()) {
+            int idx = node.indexOf(value.charAt(pos));
+            if (idx < 0) {
+                return false;
+            }
+            String label = node.labels[idx];
+            if (!value.startsWith(label, pos)) {
+                return false;
+            }
+            pos += label.length();
+            node = node.children[idx];
+        }
+        return node.terminal;
+    }
+
+    /**
+     * 按字典序返回以prefix开头的全部字符串
+     */
+    public List<String> withPrefix(String prefix) {
+        return find(prefix, v -> true, Integer.MAX_VALUE);
+    }
+
+    /**
+     * 按字典序返回以prefix开头且满足条件的字符串，最多limit个，只遍历prefix对应的子树
+     */
+    public List<String> find(String prefix, Predicate<String> filter, int limit) {
+        Node node = root;
+        StringBuilder path = new StringBuilder(32);
+        int pos = 0;
+        while (pos < prefix.length()) {
+            int idx = node.indexOf(prefix.charAt(pos));
+            if (idx < 0) {
+                return Collections.emptyList();
+            }
+            String label = node.labels[idx];
+            int n = Math.min(label.length(), prefix.length() - pos);
+            if (!label.regionMatches(0, prefix, pos, n)) {
+                return Collections.emptyList();
+            }
+            path.append(label);
+            pos += label.length();
+            node = node.children[idx];
+        }
+        List<String> result = new ArrayList<>();
+        collect(node, path, filter, limit, result);
+        return result;
+    }
+
+    public List<String> toList() {
+        return withPrefix("");
+    }
+
+    private static void collect(Node node, StringBuilder path, Predicate<String> filter, int limit, List<String> result) {
+        if (result.size() >= limit) {
+            return;
+        }
+        if (node.terminal) {
+            String value = path.toString();
+            if (filter.test(value)) {
+                result.add(value);
+            }
+        }
+        for (int i = 0; i < node.children.length && result.size() < limit; i++) {
+            int length = path.length();
+            path.append(node.labels[i]);
+            collect(node.children[i], path, filter, limit, result);
+            path.setLength(length);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "CompactTrie(size=" + size + ")";
+    }
+
+    private static final class Node {
+        private final boolean terminal;
+        /**
+         * 各条边的首字符，升序，用于二分查找
+         */
+        private final char[] firstChars;
+        private final String[] labels;
+        private final Node[] children;
+
+        private Node(boolean terminal, char[] firstChars, String[] labels, Node[] children) {
+            this.terminal = terminal;
+            this.firstChars = firstChars;
+            this.labels = labels;
+            this.children = children;
+        }
+
+        private int indexOf(char c) {
+            return Arrays.binarySearch(firstChars, c);
+        }
+    }
+}
@@ -0,0 +1,119 @@
+package io.github.leeyxq.promsql.util;
+
+import lombok.experimental.UtilityClass;
+
+/**
+ * Prometheus时间区间工具类，如5m、1h30m、-1w
+ *
+ * @author lixiangqian
+ * @since 2026/10/18 14:00
+ */
+@UtilityClass
+public class DurationUtil {
+    public static final long SECOND = 1000L;
+    public static final long MINUTE = 60 * SECOND;
+    public static final long HOUR = 60 * MINUTE;
+    public static final long DAY = 24 * HOUR;
+    public static final long WEEK = 7 * DAY;
+    public static final long YEAR = 365 * DAY;
+
+    private static final long[] UNIT_MILLIS = {YEAR, WEEK, DAY, HOUR, MINUTE, SECOND, 1};
+    private static final String[] UNIT_NAMES = {"y", "w", "d", "h", "m", "s", "ms"};
+
+    /**
+     * 解析时间区间为毫秒
+     *
+     * @param duration 时间区间，如5m、1h30m、-1w
+     * @return 毫秒数，无法解析（如模板占位符）或超出long范围时返回null
+     */
+    public static Long parseMillis(String duration) {
+        if (StrUtil.isBlank(duration)) {
+            return null;
+        }
+        int i = 0;
+        int length = duration.length();
+        boolean negative = duration.charAt(0) == '-';
+        if (negative) {
+            i++;
+        }
+        long millis = 0;
+        boolean matched = false;
+        while (i < length) {
+            int start = i;
+            while (i < length && duration.charAt(i) >= '0' && duration.charAt(i) <= '9') {
+                i++;
+            }
+            if (start == i || i == length) {
+                return null;
+            }
+            long unit = unitMillis(duration, i);
+            if (unit < 0) {
+                return null;
+            }
+            try {
+                millis = Math.addExact(millis, Math.multiplyExact(Long.parseLong(duration.substring(start, i)), unit));
+            } catch (NumberFormatException | ArithmeticException e) {
+                // 超出long范围
+                return null;
+            }
+            i += unit == 1 ? 2 : 1;
+            matched = true;
+        }
+        return matched ? (negative ? -millis : millis) : null;
+    }
+
+    /**
+     * 以最大单位格式化时间区间，与Prometheus一致，如300000 -> 5m、5400000 -> 1h30m
+     *
+     * @param millis 毫秒数
+     * @return 时间区间
+     */
+    public static String format(long millis) {
+        if (millis == 0) {
+            return "0s";
+        }
+        StringBuilder sb = new StringBuilder(8);
+        if (millis < 0) {
+            sb.append('-');
+            millis = -millis;
+        }
+        for (int i = 0; i < UNIT_MILLIS.length; i++) {
+            long value = millis / UNIT_MILLIS[i];
+            if (value > 0) {
+                sb.append(value).append(UNIT_NAMES[i]);
+                millis -= value * UNIT_MILLIS[i];
+            }
+        }
+        return sb.toString();
+    }
+
+    /**
+     * 规范化时间区间，如300s -> 5m；无法解析时原样返回
+     *
+     * @param duration 时间区间
+     * @return 规范化后的时间区间
+     */
+    public static String canonical(String duration) {
+        Long millis = parseMillis(duration);
+        return millis == null ? duration : format(millis);
+    }
+
+    private static long unitMillis(String duration, int i) {
+        switch (duration.charAt(i)) {
+            case 'y':
+                return YEAR;
+            case 'w':
+                return WEEK;
+            case 'd':
+                return DAY;
+            case 'h':
+                return HOUR;
+            case 'm':
+                return i + 1 < duration.length() && duration.charAt(i + 1) == 's' ? 1 : MINUTE;
+            case 's':
+                return SECOND;
+            default:
+                return -1;
+        }
+    }
+}
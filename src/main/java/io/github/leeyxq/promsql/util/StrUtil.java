@@ -90,4 +90,50 @@ public class StrUtil {
         }
         return strings;
     }
+
+    /**
+     * 按PromQL双引号字符串规则转义后追加，无需转义时直接追加原值，不产生中间对象
+     *
+     * @param out   输出
+     * @param value 原始值
+     * @return out
+     */
+    public static StringBuilder appendEscaped(StringBuilder out, String value) {
+        int i = 0;
+        int length = value.length();
+        while (i < length && !needsEscape(value.charAt(i))) {
+            i++;
+        }
+        if (i == length) {
+            return out.append(value);
+        }
+        out.append(value, 0, i);
+        for (; i < length; i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '"':
+                    out.append("\\\"");
+                    break;
+                case '\\':
+                    out.append("\\\\");
+                    break;
+                case '\n':
+                    out.append("\\n");
+                    break;
+                case '\r':
+                    out.append("\\r");
+                    break;
+                case '\t':
+                    out.append("\\t");
+                    break;
+                default:
+                    out.append(c);
+            }
+        }
+        return out;
+    }
+
+    private static boolean needsEscape(char c) {
+        return c == '"' || c == '\\' || c == '\n' || c == '\r' || c == '\t';
+    }
 }
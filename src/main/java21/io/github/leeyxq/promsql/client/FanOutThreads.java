@@ -0,0 +1,29 @@
+package io.github.leeyxq.promsql.client;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * 扇出查询使用的线程，Java 21及以上版本：每个查询一个虚拟线程，阻塞在网络IO上时不占用平台线程，
+ * 并发度仅受每次调用的maxConcurrency限制
+ *
+ * @author lixiangqian
+ * @since 2026/10/18 23:00
+ */
+final class FanOutThreads {
+
+    private FanOutThreads() {
+    }
+
+    static boolean isVirtual() {
+        return true;
+    }
+
+    /**
+     * @param name            线程名前缀
+     * @param platformThreads 虚拟线程下不使用
+     */
+    static ExecutorService newExecutor(String name, int platformThreads) {
+        return Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name(name + "-", 1).factory());
+    }
+}
@@ -5,6 +5,8 @@ import lombok.extern.slf4j.Slf4j;
 import org.junit.Assert;
 import org.junit.Test;
 
+import java.util.Collections;
+
 /**
  * @author lixiangqian
  * @since 2022/11/22 16:42
@@ -53,6 +55,20 @@ public class PromHelperTest {
         Assert.assertEquals("instance_cpu_time_ns{app=\"lion\", proc=\"web\", rev=\"34d0f99\", env=\"prod\", job!=\"cluster-manager\"}", promSql);
     }
 
+    @Test
+    public void testNullLabelValue() {
+        //condition为false时不校验value，否则null值直接报错，空值需使用empty()/notEmpty()
+        String promSql = PromHelper.sqlBuilder()
+                .metric("instance_cpu_time_ns")
+                .eq(false, "job", null)
+                .build();
+        Assert.assertEquals("instance_cpu_time_ns", promSql);
+        Assert.assertThrows(IllegalArgumentException.class, () -> PromHelper.sqlBuilder().metric("up").eq("job", null));
+        Assert.assertThrows(IllegalArgumentException.class, () -> PromHelper.sqlBuilder().metric("up").notEq("job", null));
+        Assert.assertThrows(IllegalArgumentException.class, () -> PromHelper.sqlBuilder().metric("up").regex("job", null));
+        Assert.assertThrows(IllegalArgumentException.class, () -> PromHelper.sqlBuilder().metric("up").notRegex("job", null));
+    }
+
     @Test
     public void testEmpty() {
         //instance_cpu_time_ns{app!="", proc=""}
@@ -377,4 +393,203 @@ public class PromHelperTest {
         Assert.assertEquals("sum by(app, proc)(instance_memory_usage_bytes) / 1024 / 1024", promSql);
     }
 
-}
\ No newline at end of file
+    @Test
+    public void testNested() {
+        //abs(topk(3, sum by(app)(rate(http_requests_total{job="api"}[5m] offset 1h))))
+        String promSql = PromHelper.sqlBuilder()
+                .metric("http_requests_total")
+                .eq("job", "api")
+                .rate("5m")
+                .offset("1h")
+                .sum("app")
+                .topk(3)
+                .abs()
+                .build();
+        log.info("promSql = {}", promSql);
+        Assert.assertEquals("abs(topk(3, sum by(app)(rate(http_requests_total{job=\"api\"}[5m] offset 1h))))", promSql);
+    }
+
+    @Test
+    public void testBuildTwice() {
+        //多次build结果一致
+        PromHelper.PromSqlBuilder builder = PromHelper.sqlBuilder()
+                .metric("cpu_total", "cpu_used")
+                .eq("user", "24")
+                .sum("__name__");
+        String promSql = builder.build();
+        Assert.assertEquals("sum by(__name__)({__name__=~\"cpu_total|cpu_used\", user=\"24\"})", promSql);
+        Assert.assertEquals(promSql, builder.build());
+    }
+
+    @Test
+    public void testIn() {
+        //http_requests_total{job=~"api|web\\.v2", code!~"500|503", env="prod"}
+        String promSql = PromHelper.sqlBuilder()
+                .metric("http_requests_total")
+                .in("job", "web.v2", "api", "api")
+                .notIn("code", "503", "500")
+                .in("env", "prod")
+                .in(false, "user", "24")
+                .build();
+        log.info("promSql = {}", promSql);
+        Assert.assertEquals("http_requests_total{job=~\"api|web\\\\.v2\", code!~\"500|503\", env=\"prod\"}", promSql);
+    }
+
+    @Test
+    public void testInWithParam() {
+        //单个值时占位符保留为参数，与其他值混用时占位符会被转义，直接报错
+        PromTemplate template = PromHelper.sqlBuilder().metric("up").in("job", PromHelper.param("job")).compile();
+        Assert.assertEquals(Collections.singletonList("job"), template.getParamNames());
+        Assert.assertEquals("up{job=\"web\"}", template.render("web"));
+        Assert.assertThrows(IllegalArgumentException.class, () -> PromHelper.sqlBuilder().metric("up").in("job", PromHelper.param("job"), "web"));
+        Assert.assertThrows(IllegalArgumentException.class, () -> PromHelper.sqlBuilder().metric("up").notIn("job", "web", PromHelper.param("job")));
+    }
+
+    @Test
+    public void testOptimize() {
+        //http_requests_total{job="api", code!~"500|503"}
+        String promSql = PromHelper.sqlBuilder()
+                .metric("http_requests_total")
+                .regex("job", "api")
+                .notEq("code", "500")
+                .notEq("code", "503")
+                .regex("instance", ".*")
+                .optimize()
+                .build();
+        log.info("promSql = {}", promSql);
+        Assert.assertEquals("http_requests_total{job=\"api\", code!~\"500|503\"}", promSql);
+    }
+
+    @Test
+    public void testBinary() {
+        //instance_memory_limit_bytes - instance_memory_usage_bytes
+        String promSql = PromHelper.sqlBuilder()
+                .metric("instance_memory_limit_bytes")
+                .sub(PromHelper.sqlBuilder().metric("instance_memory_usage_bytes"))
+                .build();
+        log.info("promSql = {}", promSql);
+        Assert.assertEquals("instance_memory_limit_bytes - instance_memory_usage_bytes", promSql);
+
+        //之后的聚合包裹整个运算，与标量运算代替last拼接
+        promSql = PromHelper.sqlBuilder()
+                .metric("node_memory_MemFree_bytes")
+                .add(PromHelper.sqlBuilder().metric("node_memory_Cached_bytes"))
+                .sum("instance")
+                .div(1024)
+                .div(1024.0)
+                .build();
+        log.info("promSql = {}", promSql);
+        Assert.assertEquals("sum by(instance)(node_memory_MemFree_bytes + node_memory_Cached_bytes) / 1024 / 1024", promSql);
+
+        //优先级低的左操作数加括号
+        promSql = PromHelper.sqlBuilder().metric("a").add(PromHelper.sqlBuilder().metric("b")).mul(0.5).build();
+        Assert.assertEquals("(a + b) * 0.5", promSql);
+    }
+
+    @Test
+    public void testVectorMatching() {
+        //rate(http_errors_total[5m]) / ignoring(code) group_left() sum without(code)(rate(http_requests_total[5m]))
+        String promSql = PromHelper.sqlBuilder()
+                .metric("http_errors_total").rate("5m")
+                .div(PromHelper.sqlBuilder().metric("http_requests_total").rate("5m").sum(false, "code"))
+                .ignoring("code").groupLeft()
+                .build();
+        log.info("promSql = {}", promSql);
+        Assert.assertEquals("rate(http_errors_total[5m]) / ignoring(code) group_left() sum without(code)(rate(http_requests_total[5m]))", promSql);
+
+        promSql = PromHelper.sqlBuilder()
+                .metric("node_cpu_seconds_total")
+                .mul(PromHelper.sqlBuilder().metric("node_uname_info"))
+                .on("instance").groupLeft("nodename")
+                .build();
+        Assert.assertEquals("node_cpu_seconds_total * on(instance) group_left(nodename) node_uname_info", promSql);
+
+        //group_right未指定on/ignoring时输出ignoring()
+        promSql = PromHelper.sqlBuilder().metric("a").mul(PromHelper.sqlBuilder().metric("b")).groupRight("job").build();
+        Assert.assertEquals("a * ignoring() group_right(job) b", promSql);
+        Assert.assertEquals(promSql, PromHelper.parse(promSql).toString());
+    }
+
+    @Test
+    public void testComparisonAndSet() {
+        String promSql = PromHelper.sqlBuilder().metric("up").eq("job", "api").eql(1).bool().build();
+        Assert.assertEquals("up{job=\"api\"} == bool 1", promSql);
+
+        //up > 0 and on(instance) node_load1 > 2 unless maintenance
+        promSql = PromHelper.sqlBuilder().metric("up").gt(0)
+                .and(PromHelper.sqlBuilder().metric("node_load1").gt(2)).on("instance")
+                .unless(PromHelper.sqlBuilder().metric("maintenance"))
+                .build();
+        log.info("promSql = {}", promSql);
+        Assert.assertEquals("up > 0 and on(instance) node_load1 > 2 unless maintenance", promSql);
+
+        PromHelper.PromSqlBuilder builder = PromHelper.sqlBuilder().metric("up");
+        Assert.assertThrows(IllegalArgumentException.class, () -> builder.bool());
+        Assert.assertThrows(IllegalArgumentException.class, () -> builder.add(1).bool());
+        Assert.assertThrows(IllegalArgumentException.class, () -> builder.add(1).on("job"));
+        Assert.assertThrows(IllegalArgumentException.class, () -> builder.or(PromHelper.sqlBuilder().metric("x")).groupLeft());
+        Assert.assertThrows(IllegalArgumentException.class, () -> builder.binary("or", 1));
+    }
+
+    @Test
+    public void testRangeFunctionAfterBinary() {
+        //rate(a[5m] + b)不是合法的PromQL，运算结果需先转为子查询
+        PromHelper.PromSqlBuilder builder = PromHelper.sqlBuilder().metric("a").add(PromHelper.sqlBuilder().metric("b"));
+        IllegalArgumentException e = Assert.assertThrows(IllegalArgumentException.class, () -> builder.rate("5m"));
+        log.info("expected: {}", e.getMessage());
+        Assert.assertTrue(e.getMessage().contains("subquery"));
+
+        String promSql = PromHelper.sqlBuilder().metric("a").add(PromHelper.sqlBuilder().metric("b"))
+                .subquery("5m").fn("rate").build();
+        Assert.assertEquals("rate((a + b)[5m:])", promSql);
+        Assert.assertEquals(promSql, PromHelper.parse(promSql).toString());
+        //运算之前的时间区间仍作用于指标选择器
+        promSql = PromHelper.sqlBuilder().metric("a").rate("5m").add(PromHelper.sqlBuilder().metric("b")).build();
+        Assert.assertEquals("rate(a[5m]) + b", promSql);
+    }
+
+    @Test
+    public void testSubquery() {
+        //max_over_time(rate(http_requests_total{job="api"}[5m])[1d:5m])
+        String promSql = PromHelper.sqlBuilder()
+                .metric("http_requests_total")
+                .eq("job", "api")
+                .rate("5m")
+                .subquery("1d", "5m")
+                .fn("max_over_time")
+                .build();
+        log.info("promSql = {}", promSql);
+        Assert.assertEquals("max_over_time(rate(http_requests_total{job=\"api\"}[5m])[1d:5m])", promSql);
+
+        //紧跟子查询的offset、@作用于子查询，其余作用于指标选择器
+        promSql = PromHelper.sqlBuilder()
+                .metric("http_requests_total")
+                .rate("5m")
+                .offset("1h")
+                .sum("job")
+                .subquery("1d")
+                .at("end()")
+                .offset("1w")
+                .fn("max_over_time")
+                .build();
+        log.info("promSql = {}", promSql);
+        Assert.assertEquals("max_over_time(sum by(job)(rate(http_requests_total[5m] offset 1h))[1d:] @ end() offset 1w)", promSql);
+        Assert.assertEquals(promSql, PromHelper.parse(promSql).toString());
+    }
+
+    @Test
+    public void testAt() {
+        //sum by(job)(rate(http_requests_total[5m] @ 1609746000 offset 5m))
+        String promSql = PromHelper.sqlBuilder()
+                .metric("http_requests_total")
+                .at(1609746000L)
+                .offset("5m")
+                .rate("5m")
+                .sum("job")
+                .build();
+        log.info("promSql = {}", promSql);
+        Assert.assertEquals("sum by(job)(rate(http_requests_total[5m] @ 1609746000 offset 5m))", promSql);
+        Assert.assertEquals("up @ start()", PromHelper.sqlBuilder().metric("up").at("start()").build());
+    }
+
+}
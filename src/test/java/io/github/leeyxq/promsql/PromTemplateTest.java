@@ -0,0 +1,208 @@
+package io.github.leeyxq.promsql;
+
+
+import lombok.extern.slf4j.Slf4j;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.IntStream;
+
+/**
+ * @author lixiangqian
+ * @since 2026/10/18 10:40
+ */
+@Slf4j
+public class PromTemplateTest {
+    @Test
+    public void testRender() {
+        PromTemplate template = PromHelper.sqlBuilder()
+                .metric("http_requests_total")
+                .eq("tenant", PromHelper.param("tenant"))
+                .regex("host", PromHelper.param("host"))
+                .rate(PromHelper.param("range"))
+                .offset(PromHelper.param("offset"))
+                .sum("job")
+                .topk(PromHelper.param("k"))
+                .compile();
+        log.info("template = {}", template);
+        Assert.assertEquals(Arrays.asList("k", "tenant", "host", "range", "offset"), template.getParamNames());
+        Assert.assertEquals("topk(${:k}, sum by(job)(rate(http_requests_total{tenant=\"${:tenant}\", host=~\"${:host}\"}[${:range}] offset ${:offset})))", template.toString());
+
+        String promSql = template.render(5, "t1", "web-.*", "5m", "1h");
+        Assert.assertEquals("topk(5, sum by(job)(rate(http_requests_total{tenant=\"t1\", host=~\"web-.*\"}[5m] offset 1h)))", promSql);
+
+        Map<String, Object> params = new HashMap<>();
+        params.put("k", 5);
+        params.put("tenant", "t1");
+        params.put("host", "web-.*");
+        params.put("range", "5m");
+        params.put("offset", "1h");
+        Assert.assertEquals(promSql, template.render(params));
+    }
+
+    @Test
+    public void testRepeatedParam() {
+        PromTemplate template = PromHelper.sqlBuilder()
+                .metric("cpu_total", "cpu_used")
+                .eq("user", PromHelper.param("user"))
+                .notEq("owner", PromHelper.param("user"))
+                .compile();
+        Assert.assertEquals(1, template.getParamNames().size());
+        Assert.assertEquals("{__name__=~\"cpu_total|cpu_used\", user=\"24\", owner!=\"24\"}", template.render("24"));
+    }
+
+    @Test
+    public void testNoParam() {
+        PromTemplate template = PromHelper.sqlBuilder()
+                .metric("http_requests_total")
+                .regex("job", ".*server")
+                .compile();
+        Assert.assertTrue(template.getParamNames().isEmpty());
+        Assert.assertEquals("http_requests_total{job=~\".*server\"}", template.render());
+    }
+
+    @Test
+    public void testLiteralPlaceholder() {
+        //仅${:name}为模板参数，DURATION及label值中的${name}原样保留
+        PromTemplate template = PromHelper.sqlBuilder()
+                .metric("http_requests_total")
+                .eq("dashboard", "${tenant}")
+                .rate(PromHelper.DURATION)
+                .compile();
+        Assert.assertTrue(template.getParamNames().isEmpty());
+        Assert.assertEquals("rate(http_requests_total{dashboard=\"${tenant}\"}[${duration}])", template.render());
+        Assert.assertFalse(PromTemplate.containsParam(PromHelper.DURATION));
+        Assert.assertTrue(PromTemplate.containsParam(PromHelper.param("tenant")));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testMissingParam() {
+        PromHelper.sqlBuilder()
+                .metric("http_requests_total")
+                .eq("tenant", PromHelper.param("tenant"))
+                .compile()
+                .render(new HashMap<>());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidParamName() {
+        PromHelper.param("1st");
+    }
+
+    @Test
+    public void testEscapeQuotedParam() {
+        PromTemplate template = PromHelper.sqlBuilder()
+                .metric("http_requests_total")
+                .eq("path", PromHelper.param("path"))
+                .rate(PromHelper.param("range"))
+                .compile();
+        //label值内的参数按字符串转义，时间区间原样
+        Assert.assertEquals("rate(http_requests_total{path=\"/a\\\"b\\\\\"}[5m])", template.render("/a\"b\\", "5m"));
+    }
+
+    @Test
+    public void testRenderAllMatrix() {
+        PromTemplate template = PromHelper.sqlBuilder()
+                .metric("http_requests_total")
+                .eq("cluster", PromHelper.param("cluster"))
+                .eq("tenant", PromHelper.param("tenant"))
+                .rate(PromHelper.param("range"))
+                .sum("job")
+                .compile();
+        List<String> clusters = Arrays.asList("c1", "c2", "c3");
+        List<String> tenants = new ArrayList<>();
+        for (int i = 0; i < 500; i++) {
+            tenants.add("t\"" + i);
+        }
+        BindingMatrix matrix = BindingMatrix.builder()
+                .dimension("cluster", clusters)
+                .dimension("tenant", tenants)
+                .fixed("range", "5m")
+                .build();
+        log.info("matrix = {}", matrix);
+        Assert.assertEquals(1500, matrix.size());
+
+        Map<String, String> rendered = new ConcurrentHashMap<>();
+        template.renderAll(matrix, (values, promSql) -> {
+            Assert.assertNull(rendered.put(values[0] + "/" + values[1], promSql.toString()));
+        }, new ForkJoinPool(4));
+        Assert.assertEquals(1500, rendered.size());
+        for (String cluster : clusters) {
+            for (String tenant : tenants) {
+                Assert.assertEquals(template.render(cluster, tenant, "5m"), rendered.get(cluster + "/" + tenant));
+            }
+        }
+    }
+
+    @Test
+    public void testRenderAllMatrixDimensionOrder() {
+        PromTemplate template = PromHelper.sqlBuilder()
+                .metric("up")
+                .eq("a", PromHelper.param("a"))
+                .eq("b", PromHelper.param("b"))
+                .compile();
+        //维度顺序与参数顺序不同，且变化最快的维度位于查询前部
+        BindingMatrix matrix = BindingMatrix.builder()
+                .dimension("b", Arrays.asList(1, 2))
+                .dimension("a", Arrays.asList("x", "y", "z"))
+                .build();
+        List<String> rendered = new ArrayList<>();
+        template.renderAll(matrix, (values, promSql) -> rendered.add(promSql.toString()));
+        Assert.assertEquals(Arrays.asList(
+                "up{a=\"x\", b=\"1\"}", "up{a=\"y\", b=\"1\"}", "up{a=\"z\", b=\"1\"}",
+                "up{a=\"x\", b=\"2\"}", "up{a=\"y\", b=\"2\"}", "up{a=\"z\", b=\"2\"}"), rendered);
+    }
+
+    @Test
+    public void testRenderAllMatrixMismatch() {
+        PromTemplate template = PromHelper.sqlBuilder()
+                .metric("up")
+                .eq("a", PromHelper.param("a"))
+                .eq("b", PromHelper.param("b"))
+                .compile();
+        try {
+            template.renderAll(BindingMatrix.builder().dimension("a", Arrays.asList(1, 2)).build(), (values, promSql) -> {
+            });
+            Assert.fail("missing dimension");
+        } catch (IllegalArgumentException e) {
+            log.info("expected: {}", e.getMessage());
+        }
+        try {
+            template.renderAll(BindingMatrix.builder().fixed("a", 1).fixed("b", 2).fixed("c", 3).build(), (values, promSql) -> {
+            });
+            Assert.fail("unknown dimension");
+        } catch (IllegalArgumentException e) {
+            log.info("expected: {}", e.getMessage());
+        }
+    }
+
+    @Test
+    public void testRenderAllStream() {
+        PromTemplate template = PromHelper.sqlBuilder()
+                .metric("http_requests_total")
+                .eq("tenant", PromHelper.param("tenant"))
+                .rate(PromHelper.param("range"))
+                .compile();
+        LongAdder total = new LongAdder();
+        Map<String, String> rendered = new ConcurrentHashMap<>();
+        template.renderAll(IntStream.range(0, 1000).parallel().mapToObj(i -> {
+            Map<String, Object> params = new HashMap<>();
+            params.put("tenant", "t" + i);
+            params.put("range", "5m");
+            return params;
+        }), (values, promSql) -> {
+            total.increment();
+            rendered.put(values[0], promSql.toString());
+        });
+        Assert.assertEquals(1000, total.sum());
+        Assert.assertEquals("rate(http_requests_total{tenant=\"t42\"}[5m])", rendered.get("t42"));
+    }
+}
@@ -0,0 +1,94 @@
+package io.github.leeyxq.promsql.ast;
+
+
+import io.github.leeyxq.promsql.PromHelper;
+import io.github.leeyxq.promsql.util.DurationUtil;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * @author lixiangqian
+ * @since 2026/10/18 14:00
+ */
+@Slf4j
+public class ExprNormalizerTest {
+    @Test
+    public void testNormalize() {
+        String promSql = PromHelper.sqlBuilder()
+                .metric("cpu_used", "cpu_total", "cpu_used")
+                .eq("user", "24")
+                .eq("cluster", "Test01")
+                .eq("user", "24")
+                .fn("avg_over_time", "300s")
+                .offset("90m")
+                .sum("user", "cluster")
+                .normalize()
+                .build();
+        log.info("promSql = {}", promSql);
+        Assert.assertEquals("sum by(cluster, user)(avg_over_time({__name__=~\"cpu_total|cpu_used\", cluster=\"Test01\", user=\"24\"}[5m] offset 1h30m))", promSql);
+    }
+
+    @Test
+    public void testKeepRegexSemantics() {
+        Expr expr = ExprNormalizer.normalize(PromHelper.parse("{__name__=~\"b.*|a\", job=~\"z|a\"}"));
+        //含元字符的正则保持原样，纯字面量多选排序
+        Assert.assertEquals("{__name__=~\"b.*|a\", job=~\"a|z\"}", expr.toString());
+    }
+
+    @Test
+    public void testUnchangedSubtreeReused() {
+        Expr expr = PromHelper.parse("sum by(a, b)(rate(x{a=\"1\"}[5m])) / on(a) group_left(c) y");
+        Assert.assertSame(expr, ExprNormalizer.normalize(expr));
+    }
+
+    @Test
+    public void testFingerprint() {
+        long fingerprint = PromHelper.sqlBuilder()
+                .metric("cpu_total", "cpu_used")
+                .eq("user", "24")
+                .regex("cluster", "Test.*")
+                .rate("5m")
+                .sum("user", "cluster")
+                .fingerprint();
+        long reordered = PromHelper.sqlBuilder()
+                .metric("cpu_used", "cpu_total")
+                .regex("cluster", "Test.*")
+                .eq("user", "24")
+                .rate("300s")
+                .sum("cluster", "user")
+                .fingerprint();
+        Assert.assertEquals(fingerprint, reordered);
+
+        Assert.assertNotEquals(fingerprint, PromHelper.sqlBuilder()
+                .metric("cpu_total", "cpu_used")
+                .eq("user", "25")
+                .regex("cluster", "Test.*")
+                .rate("5m")
+                .sum("user", "cluster")
+                .fingerprint());
+        Assert.assertNotEquals(ExprFingerprint.of(PromHelper.parse("sum by(a)(x)")), ExprFingerprint.of(PromHelper.parse("sum without(a)(x)")));
+        Assert.assertNotEquals(ExprFingerprint.of(PromHelper.parse("a - b")), ExprFingerprint.of(PromHelper.parse("b - a")));
+        //固定值，保证跨进程、跨版本稳定
+        Assert.assertEquals(4226287975653462391L, ExprFingerprint.of(new VectorSelector("up", null, null)));
+    }
+
+    @Test
+    public void testDuration() {
+        Assert.assertEquals(Long.valueOf(300000), DurationUtil.parseMillis("300s"));
+        Assert.assertEquals(Long.valueOf(5400500), DurationUtil.parseMillis("1h30m500ms"));
+        Assert.assertEquals(Long.valueOf(-DurationUtil.WEEK), DurationUtil.parseMillis("-1w"));
+        Assert.assertNull(DurationUtil.parseMillis("${range}"));
+        Assert.assertNull(DurationUtil.parseMillis("5"));
+        Assert.assertEquals("5m", DurationUtil.canonical("300s"));
+        Assert.assertEquals("1w", DurationUtil.canonical("7d"));
+        Assert.assertEquals("1h30m500ms", DurationUtil.canonical("5400500ms"));
+        Assert.assertEquals("-1d", DurationUtil.canonical("-24h"));
+        Assert.assertEquals("${range}", DurationUtil.canonical("${range}"));
+        //超出long范围时与其他无法解析的写法一致，返回null，规范化时原样保留
+        Assert.assertNull(DurationUtil.parseMillis("999999999999y"));
+        Assert.assertNull(DurationUtil.parseMillis("99999999999999999999ms"));
+        Assert.assertNull(DurationUtil.parseMillis("292471208y292471208y"));
+        Assert.assertEquals("999999999999y", DurationUtil.canonical("999999999999y"));
+    }
+}
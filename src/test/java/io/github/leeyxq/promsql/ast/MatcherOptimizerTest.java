@@ -0,0 +1,68 @@
+package io.github.leeyxq.promsql.ast;
+
+
+import io.github.leeyxq.promsql.PromHelper;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Arrays;
+
+/**
+ * @author lixiangqian
+ * @since 2026/10/18 19:00
+ */
+@Slf4j
+public class MatcherOptimizerTest {
+
+    private static String optimize(String promSql) {
+        return MatcherOptimizer.optimize(PromHelper.parse(promSql)).toString();
+    }
+
+    @Test
+    public void testDemoteLiteralRegex() {
+        Assert.assertEquals("up{job=\"api\", env!=\"dev\"}", optimize("up{job=~\"api\", env!~\"dev\"}"));
+        Assert.assertEquals("up{path=\"/a.b\"}", optimize("up{path=~\"/a\\\\.b\"}"));
+        Assert.assertEquals("up{job=\"api\"}", optimize("up{job=~\"(?:api|api)\"}"));
+        Assert.assertEquals("up{job!=\"\", env=\"\"}", optimize("up{job=~\".+\", env!~\".+\"}"));
+    }
+
+    @Test
+    public void testKeepRealRegex() {
+        String promSql = "up{job=~\"api.*\", code=~\"5\\\\d\\\\d\", env=~\"(a|b)c\"}";
+        Expr expr = PromHelper.parse(promSql);
+        Assert.assertSame(expr, MatcherOptimizer.optimize(expr));
+        Assert.assertEquals(promSql, expr.toString());
+    }
+
+    @Test
+    public void testLiteralSet() {
+        Assert.assertEquals("up{job=~\"a|b|c\"}", optimize("up{job=~\"c|a|b|a\"}"));
+        //同一label的多个否定条件合并为一个集合
+        Assert.assertEquals("up{job!~\"a|b|c\", env=\"prod\"}", optimize("up{job!=\"b\", env=\"prod\", job!~\"c|a\"}"));
+        Assert.assertEquals("up{job!=\"\", job!=\"a\"}", optimize("up{job!=\"\", job!=\"a\"}"));
+        Assert.assertEquals("a\\.b|c\\|d", MatcherOptimizer.literalSet(Arrays.asList("c|d", "a.b")));
+    }
+
+    @Test
+    public void testDropMatchAll() {
+        Assert.assertEquals("up{job=\"api\"}", optimize("up{job=\"api\", instance=~\".*\"}"));
+        Assert.assertEquals("{job=\"api\"}", optimize("{instance=~\".*\", job=\"api\"}"));
+        //没有其他限定条件时保留，否则选择器会匹配所有序列
+        Assert.assertEquals("{instance=~\".*\", job!=\"api\"}", optimize("{instance=~\".*\", job!=\"api\"}"));
+    }
+
+    @Test
+    public void testEscapeRoundTrip() {
+        String promSql = PromHelper.sqlBuilder()
+                .metric("http_requests_total")
+                .eq("path", "C:\\tmp\\\"x\"")
+                .regex("ua", "curl/\\d+")
+                .build();
+        log.info("promSql = {}", promSql);
+        Assert.assertEquals("http_requests_total{path=\"C:\\\\tmp\\\\\\\"x\\\"\", ua=~\"curl/\\\\d+\"}", promSql);
+        Assert.assertEquals(promSql, PromHelper.parse(promSql).toString());
+        VectorSelector selector = (VectorSelector) PromHelper.parse(promSql);
+        Assert.assertEquals("C:\\tmp\\\"x\"", selector.getMatchers().get(0).getValue());
+    }
+}
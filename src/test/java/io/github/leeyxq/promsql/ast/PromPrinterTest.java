@@ -0,0 +1,83 @@
+package io.github.leeyxq.promsql.ast;
+
+
+import io.github.leeyxq.promsql.PromHelper;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+/**
+ * @author lixiangqian
+ * @since 2026/10/18 11:00
+ */
+@Slf4j
+public class PromPrinterTest {
+    @Test
+    public void testBuilderToExpr() {
+        Expr expr = PromHelper.sqlBuilder()
+                .metric("http_requests_total")
+                .eq("job", "api")
+                .rate("5m")
+                .offset("1w")
+                .sum("app")
+                .toExpr();
+        VectorSelector selector = new VectorSelector("http_requests_total",
+                Collections.singletonList(new LabelMatcher("job", MatchOp.EQ, "api")), "1w");
+        Expr expected = new AggregateExpr("sum", new Call("rate", new MatrixSelector(selector, "5m")), null,
+                Collections.singletonList("app"), false);
+        Assert.assertEquals(expected, expr);
+        Assert.assertEquals(expected.hashCode(), expr.hashCode());
+        Assert.assertEquals("sum by(app)(rate(http_requests_total{job=\"api\"}[5m] offset 1w))", expr.toString());
+    }
+
+    @Test
+    public void testParamAggregate() {
+        VectorSelector selector = new VectorSelector("build_version", null, null);
+        Assert.assertEquals("count_values(\"version\", build_version)",
+                new AggregateExpr("count_values", selector, new StringLiteral("version"), null, false).toString());
+        Assert.assertEquals("quantile without(instance)(0.9, build_version)",
+                new AggregateExpr("quantile", selector, new NumberLiteral("0.9"), Collections.singletonList("instance"), true).toString());
+    }
+
+    @Test
+    public void testBinary() {
+        Expr a = new VectorSelector("a", null, null);
+        Expr b = new VectorSelector("b", null, null);
+        Expr c = new VectorSelector("c", null, null);
+
+        //(a + b) * c
+        Assert.assertEquals("(a + b) * c", new BinaryExpr(BinaryOp.MUL, new BinaryExpr(BinaryOp.ADD, a, b), c).toString());
+        //a - (b - c)
+        Assert.assertEquals("a - (b - c)", new BinaryExpr(BinaryOp.SUB, a, new BinaryExpr(BinaryOp.SUB, b, c)).toString());
+        //a - b - c
+        Assert.assertEquals("a - b - c", new BinaryExpr(BinaryOp.SUB, new BinaryExpr(BinaryOp.SUB, a, b), c).toString());
+        //a ^ b ^ c 右结合
+        Assert.assertEquals("a ^ b ^ c", new BinaryExpr(BinaryOp.POW, a, new BinaryExpr(BinaryOp.POW, b, c)).toString());
+        Assert.assertEquals("(a ^ b) ^ c", new BinaryExpr(BinaryOp.POW, new BinaryExpr(BinaryOp.POW, a, b), c).toString());
+
+        VectorMatching matching = new VectorMatching(true, Arrays.asList("instance", "job"),
+                VectorMatching.Cardinality.MANY_TO_ONE, Collections.singletonList("version"));
+        Assert.assertEquals("a / on(instance, job) group_left(version) b",
+                new BinaryExpr(BinaryOp.DIV, a, b, false, matching).toString());
+        Assert.assertEquals("a > bool 0", new BinaryExpr(BinaryOp.GTR, a, new NumberLiteral(0), true, null).toString());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testBoolOnArithmetic() {
+        new BinaryExpr(BinaryOp.ADD, new NumberLiteral(1), new NumberLiteral(2), true, null);
+    }
+
+    @Test
+    public void testSharedSubtree() {
+        //不可变子树可以被多个表达式共享
+        Expr rate = PromHelper.sqlBuilder().metric("http_requests_total").rate("5m").toExpr();
+        Expr byJob = new AggregateExpr("sum", rate, null, Collections.singletonList("job"), false);
+        Expr total = new AggregateExpr("sum", rate, null, null, false);
+        Assert.assertEquals("sum by(job)(rate(http_requests_total[5m])) / ignoring(job) group_left() sum(rate(http_requests_total[5m]))",
+                new BinaryExpr(BinaryOp.DIV, byJob, total, false,
+                        new VectorMatching(false, Collections.singletonList("job"), VectorMatching.Cardinality.MANY_TO_ONE, null)).toString());
+    }
+}
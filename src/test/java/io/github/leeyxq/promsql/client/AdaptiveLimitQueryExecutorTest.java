@@ -0,0 +1,140 @@
+package io.github.leeyxq.promsql.client;
+
+import io.github.leeyxq.promsql.metrics.PromSqlMetrics;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * @author lixiangqian
+ * @since 2026/10/19 01:30
+ */
+@Slf4j
+public class AdaptiveLimitQueryExecutorTest {
+    private static final String EMPTY_VECTOR = "{\"status\":\"success\",\"data\":{\"resultType\":\"vector\",\"result\":[]}}";
+
+    private StubPromServer server;
+    private final AtomicInteger running = new AtomicInteger();
+    private final AtomicInteger maxRunning = new AtomicInteger();
+    private QueryExecutor backend;
+
+    @Before
+    public void setUp() throws IOException {
+        server = new StubPromServer();
+        PromClient client = PromClient.builder(server.getBaseUrl()).build();
+        //统计实际同时发往Prometheus的查询数
+        backend = request -> {
+            maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+            try {
+                return client.execute(request);
+            } finally {
+                running.decrementAndGet();
+            }
+        };
+    }
+
+    @After
+    public void tearDown() {
+        server.close();
+        PromSqlMetrics.disable();
+    }
+
+    private static void runConcurrently(int threads, int queriesPerThread, QueryExecutor executor) throws InterruptedException {
+        List<Thread> workers = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            int id = t;
+            Thread worker = new Thread(() -> {
+                for (int i = 0; i < queriesPerThread; i++) {
+                    executor.execute(QueryRequest.instant("up{t=\"" + id + "\",i=\"" + i + "\"}", 1000L));
+                }
+            });
+            worker.start();
+            workers.add(worker);
+        }
+        for (Thread worker : workers) {
+            worker.join();
+        }
+    }
+
+    @Test
+    public void testBackoffWhenSlow() throws InterruptedException {
+        server.handler(request -> new StubPromServer.Response(200, EMPTY_VECTOR, 150));
+        AdaptiveLimitQueryExecutor limiter = AdaptiveLimitQueryExecutor.builder(backend)
+                .initialLimit(10)
+                .slowQueryMillis(50)
+                .maxQueueWaitMillis(10_000)
+                .build();
+        runConcurrently(10, 3, limiter);
+        log.info("limit = {}, maxRunning = {}", limiter.getLimit(), maxRunning.get());
+        //每轮慢查询只下调一次，30个查询不会把上限压到最低
+        Assert.assertTrue("limit " + limiter.getLimit(), limiter.getLimit() < 10 && limiter.getLimit() > 1);
+        Assert.assertTrue("max running " + maxRunning.get(), maxRunning.get() <= 10);
+        Assert.assertEquals(0, limiter.getInFlight());
+        Assert.assertEquals(0, limiter.getShed());
+    }
+
+    @Test
+    public void testIncreaseWhenHealthy() throws InterruptedException {
+        AdaptiveLimitQueryExecutor limiter = AdaptiveLimitQueryExecutor.builder(backend)
+                .initialLimit(2)
+                .maxLimit(4)
+                .build();
+        runConcurrently(8, 20, limiter);
+        Assert.assertEquals(4, limiter.getLimit());
+        Assert.assertTrue("max running " + maxRunning.get(), maxRunning.get() <= 4);
+    }
+
+    @Test
+    public void testErrorStatus() {
+        server.handler(request -> new StubPromServer.Response(400, "{\"status\":\"error\",\"errorType\":\"bad_data\",\"error\":\"parse error\"}", 0));
+        AdaptiveLimitQueryExecutor limiter = AdaptiveLimitQueryExecutor.builder(backend).initialLimit(10).build();
+        //查询本身有误不视为拥塞
+        Assert.assertThrows(PromQueryException.class, () -> limiter.execute(QueryRequest.instant("up{", 1000L)));
+        Assert.assertEquals(10, limiter.getLimit());
+
+        server.handler(request -> new StubPromServer.Response(503, "{\"status\":\"error\",\"errorType\":\"unavailable\",\"error\":\"overloaded\"}", 0));
+        Assert.assertThrows(PromQueryException.class, () -> limiter.execute(QueryRequest.instant("up", 1000L)));
+        Assert.assertEquals(9, limiter.getLimit());
+        Assert.assertEquals(0, limiter.getInFlight());
+    }
+
+    @Test
+    public void testShedAfterQueueDeadline() throws InterruptedException {
+        server.handler(request -> new StubPromServer.Response(200, EMPTY_VECTOR, 300));
+        AdaptiveLimitQueryExecutor limiter = AdaptiveLimitQueryExecutor.builder(backend)
+                .initialLimit(1)
+                .maxLimit(1)
+                .slowQueryMillis(10_000)
+                .maxQueueWaitMillis(50)
+                .build();
+        PromSqlMetrics metrics = PromSqlMetrics.enable().registerLimiter("prometheus", limiter);
+        Thread slow = new Thread(() -> limiter.execute(QueryRequest.instant("up", 1000L)));
+        slow.start();
+        while (limiter.getInFlight() == 0) {
+            Thread.sleep(1);
+        }
+        long start = System.currentTimeMillis();
+        try {
+            limiter.execute(QueryRequest.instant("up", 2000L));
+            Assert.fail("should be shed");
+        } catch (QueryShedException e) {
+            log.info("expected: {}", e.getMessage());
+        }
+        Assert.assertTrue(System.currentTimeMillis() - start < 250);
+        slow.join();
+        Assert.assertEquals(1, limiter.getShed());
+        Assert.assertEquals(1, server.getRequests().size());
+
+        String text = metrics.scrape();
+        log.info("metrics:\n{}", text);
+        Assert.assertTrue(text.contains("promsql_concurrency_limit{limiter=\"prometheus\"} 1\n"));
+        Assert.assertTrue(text.contains("promsql_concurrency_shed_total{limiter=\"prometheus\"} 1\n"));
+    }
+}
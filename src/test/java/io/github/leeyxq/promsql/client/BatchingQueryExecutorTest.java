@@ -0,0 +1,125 @@
+package io.github.leeyxq.promsql.client;
+
+
+import io.github.leeyxq.promsql.PromHelper;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Function;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * @author lixiangqian
+ * @since 2026/10/18 18:30
+ */
+@Slf4j
+public class BatchingQueryExecutorTest {
+    private static final Pattern NAMES = Pattern.compile("__name__=~\"([^\"]+)\"");
+    private static final String[] METRICS = {"cpu_total", "cpu_used", "mem_total", "mem_used", "disk_total", "disk_used"};
+
+    private final List<String> queries = Collections.synchronizedList(new ArrayList<>());
+
+    /**
+     * 为查询中的每个metric返回一条job=api的序列，值为metric名长度
+     */
+    private QueryResult backend(QueryRequest request) {
+        String query = request.getQuery();
+        queries.add(query);
+        if (query.contains("fail")) {
+            throw new PromQueryException("execution: query timed out", 503);
+        }
+        Matcher m = NAMES.matcher(query);
+        String[] names = m.find() ? m.group(1).split("\\|") : new String[]{query.substring(0, query.indexOf('{'))};
+        List<Series> series = new ArrayList<>(names.length);
+        for (String name : names) {
+            Map<String, String> labels = new LinkedHashMap<>();
+            labels.put("__name__", name);
+            labels.put("job", "api");
+            series.add(new Series(Labels.of(labels), new long[]{1000}, new double[]{name.length()}));
+        }
+        return new QueryResult(ResultType.VECTOR, series, null);
+    }
+
+    @Test
+    public void testBatchSelectors() throws Exception {
+        BatchingQueryExecutor executor = BatchingQueryExecutor.builder(this::backend).windowMillis(200).build();
+        List<Future<QueryResult>> futures = submitAll(executor, metric -> PromHelper.sqlBuilder()
+                .metric(metric).eq("env", "prod").offset("5m").build());
+        for (int i = 0; i < METRICS.length; i++) {
+            QueryResult result = futures.get(i).get();
+            Assert.assertEquals(1, result.getSeries().size());
+            Assert.assertEquals(METRICS[i], result.getSeries().get(0).getLabels().get("__name__"));
+            Assert.assertEquals(METRICS[i].length(), result.getSeries().get(0).getValue(0), 0);
+        }
+        log.info("queries = {}", queries);
+        Assert.assertEquals(1, queries.size());
+        Assert.assertTrue(queries.get(0).endsWith("\", env=\"prod\"} offset 5m"));
+        Assert.assertEquals(1, executor.getExecuted());
+    }
+
+    @Test
+    public void testBatchAggregation() throws Exception {
+        BatchingQueryExecutor executor = BatchingQueryExecutor.builder(this::backend).windowMillis(200).build();
+        List<Future<QueryResult>> futures = submitAll(executor, metric -> PromHelper.sqlBuilder()
+                .metric(metric).eq("env", "prod").sum("job").build());
+        for (int i = 0; i < METRICS.length; i++) {
+            Series series = futures.get(i).get().getSeries().get(0);
+            //拆分后去掉合并时加入的__name__
+            Assert.assertEquals("{job=\"api\"}", series.getLabels().toString());
+            Assert.assertEquals(METRICS[i].length(), series.getValue(0), 0);
+        }
+        Assert.assertEquals(1, queries.size());
+        Assert.assertTrue(queries.get(0).startsWith("sum by(__name__, job)({__name__=~\""));
+    }
+
+    @Test
+    public void testNotBatchable() {
+        BatchingQueryExecutor executor = BatchingQueryExecutor.builder(request -> {
+            queries.add(request.getQuery());
+            return new QueryResult(ResultType.VECTOR, Collections.emptyList(), null);
+        }).windowMillis(0).build();
+        executor.execute(QueryRequest.instant("rate(cpu_total[5m])", 1000));
+        executor.execute(QueryRequest.instant("sum without(instance)(cpu_total)", 1000));
+        executor.execute(QueryRequest.instant("cpu_total{env=\"prod\"}", 1000));
+        //不可合并或批次中只有一个metric时原样执行
+        Assert.assertEquals("[rate(cpu_total[5m]), sum without(instance)(cpu_total), cpu_total{env=\"prod\"}]", queries.toString());
+        Assert.assertEquals(1, executor.getSubmitted());
+    }
+
+    @Test
+    public void testFailure() throws Exception {
+        BatchingQueryExecutor executor = BatchingQueryExecutor.builder(this::backend).windowMillis(200).build();
+        List<Future<QueryResult>> futures = submitAll(executor, metric -> metric + "{job=\"fail\"}");
+        for (Future<QueryResult> future : futures) {
+            try {
+                future.get();
+                Assert.fail();
+            } catch (ExecutionException e) {
+                Assert.assertEquals(503, ((PromQueryException) e.getCause()).getStatusCode());
+            }
+        }
+        Assert.assertEquals(1, queries.size());
+    }
+
+    private static List<Future<QueryResult>> submitAll(QueryExecutor executor, Function<String, String> query) {
+        ExecutorService pool = Executors.newFixedThreadPool(METRICS.length);
+        List<Future<QueryResult>> futures = new ArrayList<>(METRICS.length);
+        for (String metric : METRICS) {
+            String q = query.apply(metric);
+            futures.add(pool.submit(() -> executor.execute(QueryRequest.instant(q, 1000))));
+        }
+        pool.shutdown();
+        return futures;
+    }
+}
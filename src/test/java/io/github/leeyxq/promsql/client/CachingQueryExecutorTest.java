@@ -0,0 +1,164 @@
+package io.github.leeyxq.promsql.client;
+
+import io.github.leeyxq.promsql.PromHelper;
+import io.github.leeyxq.promsql.rule.RecordingRule;
+import io.github.leeyxq.promsql.rule.RecordingRules;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * @author lixiangqian
+ * @since 2026/10/18 17:00
+ */
+@Slf4j
+public class CachingQueryExecutorTest {
+    private static final long HOUR = 3600_000L;
+    private static final long STEP = 60_000L;
+
+    private final AtomicLong now = new AtomicLong(1000 * HOUR + 30 * 60_000L);
+    private final List<QueryRequest> requests = Collections.synchronizedList(new ArrayList<>());
+    private final QueryExecutor backend = request -> {
+        requests.add(request);
+        return matrix(request);
+    };
+
+    @Test
+    public void testNormalizedAndAlignedKey() {
+        CachingQueryExecutor executor = CachingQueryExecutor.builder(backend).clock(now::get).build();
+        long start = now.get() - 48 * HOUR;
+        QueryResult first = executor.execute(QueryRequest.range("up{b=\"1\",a=\"2\"}", start + 1500, start + HOUR + 1500, STEP));
+        //label顺序不同、时间在同一step内，命中同一缓存
+        QueryResult second = executor.execute(QueryRequest.range("up{a=\"2\", b=\"1\"}", start + 30_000, start + HOUR + 30_000, STEP));
+        Assert.assertEquals(1, requests.size());
+        Assert.assertEquals(start, requests.get(0).getStart());
+        Assert.assertSame(first, second);
+        Assert.assertEquals(1, executor.getCache().getHits());
+        Assert.assertEquals(1, executor.getCache().getMisses());
+        log.info("cache = {}", executor.getCache());
+    }
+
+    @Test
+    public void testHistoricalAndRecentTail() {
+        CachingQueryExecutor executor = CachingQueryExecutor.builder(backend).clock(now::get)
+                .recentTtlMillis(10_000).historicalTtlMillis(24 * HOUR).build();
+        long end = now.get();
+        long start = end - 3 * HOUR;
+        QueryResult result = executor.execute(QueryRequest.range("rate(http_requests_total[5m])", start, end, STEP));
+        //边界为 now-5m 向下取整到整点，之前的历史段与之后的尾部分开查询
+        Assert.assertEquals(2, requests.size());
+        long boundary = 1000 * HOUR;
+        Assert.assertEquals(boundary - STEP, requests.get(0).getEnd());
+        Assert.assertEquals(boundary, requests.get(1).getStart());
+        assertContinuous(result, start, end);
+
+        //尾部过期后只重查尾部
+        now.addAndGet(20_000);
+        result = executor.execute(QueryRequest.range("rate(http_requests_total[5m])", start, end, STEP));
+        Assert.assertEquals(3, requests.size());
+        Assert.assertEquals(boundary, requests.get(2).getStart());
+        Assert.assertEquals(1, executor.getCache().getExpirations());
+        assertContinuous(result, start, end);
+    }
+
+    @Test
+    public void testInstant() {
+        CachingQueryExecutor executor = CachingQueryExecutor.builder(backend).clock(now::get).build();
+        executor.execute(QueryRequest.instant("up"));
+        executor.execute(QueryRequest.instant("up"));
+        Assert.assertEquals(2, requests.size());
+        executor.execute(QueryRequest.instant("up", now.get() - HOUR));
+        executor.execute(QueryRequest.instant("up", now.get() - HOUR));
+        Assert.assertEquals(3, requests.size());
+    }
+
+    @Test
+    public void testRecordingRuleVariants() {
+        CachingQueryExecutor executor = CachingQueryExecutor.builder(backend).clock(now::get).build();
+        RecordingRules rules = RecordingRules.of(Collections.singletonList(
+                RecordingRule.of("job:http_requests:rate5m", "sum by(job)(rate(http_requests_total[5m]))")));
+        PromHelper.PromSqlBuilder raw = PromHelper.sqlBuilder().metric("http_requests_total").rate("5m").sum("job");
+        PromHelper.PromSqlBuilder recorded = PromHelper.sqlBuilder().metric("http_requests_total").rate("5m").sum("job")
+                .useRecordingRules(rules);
+        Assert.assertNotEquals(raw.fingerprint(), recorded.fingerprint());
+        Assert.assertEquals(PromHelper.parse(recorded.build()), PromHelper.parse("job:http_requests:rate5m"));
+
+        //原查询与改写后的查询结果不同（__name__、规则创建前无数据），不能共用缓存
+        long time = now.get() - HOUR;
+        executor.execute(QueryRequest.instant(raw, time));
+        executor.execute(QueryRequest.instant(recorded, time));
+        Assert.assertEquals(2, requests.size());
+        Assert.assertEquals("job:http_requests:rate5m", requests.get(1).getQuery());
+        //各自命中自己的缓存
+        executor.execute(QueryRequest.instant(raw, time));
+        executor.execute(QueryRequest.instant(recorded, time));
+        Assert.assertEquals(2, requests.size());
+        Assert.assertEquals(QueryRequest.instant("job:http_requests:rate5m", time).fingerprint(),
+                QueryRequest.instant(recorded, time).fingerprint());
+    }
+
+    @Test
+    public void testLruEviction() {
+        ResultCache cache = new ResultCache(2, 100, now::get);
+        ResultCache.Key k1 = ResultCache.Key.of(QueryRequest.instant("a", 0));
+        ResultCache.Key k2 = ResultCache.Key.of(QueryRequest.instant("b", 0));
+        ResultCache.Key k3 = ResultCache.Key.of(QueryRequest.instant("c", 0));
+        cache.put(k1, samples(10), HOUR);
+        cache.put(k2, samples(10), HOUR);
+        Assert.assertNotNull(cache.get(k1));
+        cache.put(k3, samples(10), HOUR);
+        //k1刚被访问过，淘汰k2
+        Assert.assertNull(cache.get(k2));
+        Assert.assertNotNull(cache.get(k1));
+        Assert.assertEquals(1, cache.getEvictions());
+
+        //超出样本上限时淘汰到容量以内
+        cache.put(k2, samples(90), HOUR);
+        Assert.assertNull(cache.get(k3));
+        Assert.assertEquals(2, cache.size());
+        Assert.assertEquals(100, cache.sampleCount());
+        //单个结果超出上限不缓存
+        cache.put(k3, samples(101), HOUR);
+        Assert.assertNull(cache.get(k3));
+
+        now.addAndGet(HOUR);
+        Assert.assertNull(cache.get(k1));
+        Assert.assertNull(cache.get(k2));
+        Assert.assertEquals(0, cache.sampleCount());
+        Assert.assertEquals(2, cache.getExpirations());
+    }
+
+    private static void assertContinuous(QueryResult result, long start, long end) {
+        Assert.assertEquals(1, result.getSeries().size());
+        Series series = result.getSeries().get(0);
+        Assert.assertEquals((end - start) / STEP + 1, series.size());
+        for (int i = 0; i < series.size(); i++) {
+            Assert.assertEquals(start + i * STEP, series.getTimestamp(i));
+        }
+    }
+
+    private static QueryResult matrix(QueryRequest request) {
+        if (!request.isRange()) {
+            return samples(1);
+        }
+        int n = (int) ((request.getEnd() - request.getStart()) / request.getStep()) + 1;
+        long[] timestamps = new long[n];
+        double[] values = new double[n];
+        for (int i = 0; i < n; i++) {
+            timestamps[i] = request.getStart() + i * request.getStep();
+            values[i] = i;
+        }
+        return new QueryResult(ResultType.MATRIX,
+                Collections.singletonList(new Series(Labels.of(Collections.singletonMap("job", "api")), timestamps, values)), null);
+    }
+
+    private static QueryResult samples(int n) {
+        return new QueryResult(ResultType.MATRIX,
+                Collections.singletonList(new Series(Labels.EMPTY, new long[n], new double[n])), null);
+    }
+}
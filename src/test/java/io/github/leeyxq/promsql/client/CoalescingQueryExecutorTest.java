@@ -0,0 +1,164 @@
+package io.github.leeyxq.promsql.client;
+
+
+import lombok.extern.slf4j.Slf4j;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * @author lixiangqian
+ * @since 2026/10/18 18:00
+ */
+@Slf4j
+public class CoalescingQueryExecutorTest {
+    private static final int THREADS = 16;
+
+    private final CountDownLatch release = new CountDownLatch(1);
+    private final AtomicInteger calls = new AtomicInteger();
+
+    private QueryResult blockingQuery(QueryRequest request) {
+        calls.incrementAndGet();
+        try {
+            release.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (request.getQuery().contains("bad")) {
+            throw new PromQueryException("bad_data: parse error", 400);
+        }
+        if (request.getQuery().contains("costly")) {
+            throw new QueryRejectedException("query rejected: too many series", new QueryCost(1_000_000, 0, 0, false));
+        }
+        if (request.getQuery().contains("shed")) {
+            throw new QueryShedException("query shed");
+        }
+        return new QueryResult(ResultType.VECTOR, Collections.emptyList(), null);
+    }
+
+    @Test
+    public void testCoalesce() throws Exception {
+        CoalescingQueryExecutor executor = new CoalescingQueryExecutor(this::blockingQuery);
+        List<Future<QueryResult>> futures = submitAll(executor, "sum by(job)(up{b=\"1\",a=\"2\"})", "sum by(job)(up{a=\"2\",b=\"1\"})");
+        awaitWaiters(executor);
+        release.countDown();
+        QueryResult first = futures.get(0).get();
+        for (Future<QueryResult> future : futures) {
+            Assert.assertSame(first, future.get());
+        }
+        Assert.assertEquals(1, calls.get());
+        Assert.assertEquals(1, executor.getExecuted());
+        Assert.assertEquals(0, executor.inflightCount());
+
+        //结束后再到达的请求重新执行
+        executor.execute(QueryRequest.instant("sum by(job)(up{a=\"2\",b=\"1\"})", 1000));
+        Assert.assertEquals(2, calls.get());
+    }
+
+    @Test
+    public void testFailurePropagation() throws Exception {
+        CoalescingQueryExecutor executor = new CoalescingQueryExecutor(this::blockingQuery);
+        List<Future<QueryResult>> futures = submitAll(executor, "bad(", "bad(");
+        awaitWaiters(executor);
+        release.countDown();
+        for (Future<QueryResult> future : futures) {
+            try {
+                future.get();
+                Assert.fail();
+            } catch (ExecutionException e) {
+                PromQueryException cause = (PromQueryException) e.getCause();
+                Assert.assertEquals(400, cause.getStatusCode());
+                Assert.assertTrue(cause.getMessage().contains("parse error"));
+            }
+        }
+        Assert.assertEquals(1, calls.get());
+        Assert.assertEquals(0, executor.inflightCount());
+    }
+
+    @Test
+    public void testFailureSubtypePropagation() throws Exception {
+        CoalescingQueryExecutor executor = new CoalescingQueryExecutor(this::blockingQuery);
+        CoalescingQueryExecutor shedding = new CoalescingQueryExecutor(this::blockingQuery);
+        List<Future<QueryResult>> rejected = submitAll(executor, "costly", "costly");
+        List<Future<QueryResult>> shed = submitAll(shedding, "shed", "shed");
+        awaitWaiters(executor);
+        awaitWaiters(shedding);
+        release.countDown();
+        //等待者拿到同类型的异常实例，上层据此区分拒绝、丢弃与拥塞
+        for (Future<QueryResult> future : rejected) {
+            try {
+                future.get();
+                Assert.fail();
+            } catch (ExecutionException e) {
+                QueryRejectedException cause = (QueryRejectedException) e.getCause();
+                Assert.assertEquals(1_000_000, cause.getCost().getSeries());
+            }
+        }
+
+        int wrapped = 0;
+        for (Future<QueryResult> future : shed) {
+            try {
+                future.get();
+                Assert.fail();
+            } catch (ExecutionException e) {
+                Assert.assertTrue(e.getCause() instanceof QueryShedException);
+                if (e.getCause().getCause() instanceof QueryShedException) {
+                    wrapped++;
+                }
+            }
+        }
+        Assert.assertEquals(THREADS - 1, wrapped);
+    }
+
+    @Test
+    public void testWaitTimeout() throws Exception {
+        CoalescingQueryExecutor executor = new CoalescingQueryExecutor(this::blockingQuery, 50);
+        ExecutorService pool = Executors.newSingleThreadExecutor();
+        try {
+            Future<QueryResult> leader = pool.submit(() -> executor.execute(QueryRequest.instant("up", 1000)));
+            while (calls.get() == 0) {
+                Thread.sleep(1);
+            }
+            try {
+                executor.execute(QueryRequest.instant("up", 1000));
+                Assert.fail();
+            } catch (PromQueryException e) {
+                log.info("{}", e.getMessage());
+                Assert.assertTrue(e.getMessage().startsWith("timed out"));
+            }
+            release.countDown();
+            Assert.assertNotNull(leader.get());
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    private static List<Future<QueryResult>> submitAll(QueryExecutor executor, String query, String sameQuery) {
+        ExecutorService pool = Executors.newFixedThreadPool(THREADS);
+        List<Future<QueryResult>> futures = new ArrayList<>(THREADS);
+        for (int i = 0; i < THREADS; i++) {
+            String q = i % 2 == 0 ? query : sameQuery;
+            futures.add(pool.submit(() -> executor.execute(QueryRequest.instant(q, 1000))));
+        }
+        pool.shutdown();
+        return futures;
+    }
+
+    private static void awaitWaiters(CoalescingQueryExecutor executor) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (executor.getCoalesced() < THREADS - 1 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(1);
+        }
+        Assert.assertEquals(THREADS - 1, executor.getCoalesced());
+    }
+}
@@ -0,0 +1,123 @@
+package io.github.leeyxq.promsql.client;
+
+
+import io.github.leeyxq.promsql.PromHelper;
+import io.github.leeyxq.promsql.rule.RecordingRule;
+import io.github.leeyxq.promsql.rule.RecordingRules;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * @author lixiangqian
+ * @since 2026/10/18 19:30
+ */
+@Slf4j
+public class CostGuardQueryExecutorTest {
+    private static final long HOUR = 3600_000L;
+
+    private final AtomicInteger calls = new AtomicInteger();
+    private final QueryExecutor backend = request -> {
+        calls.incrementAndGet();
+        return new QueryResult(ResultType.MATRIX, Collections.emptyList(), null);
+    };
+    private final CostEstimator estimator = CostEstimator.builder().snapshot(snapshot()).build();
+
+    private static SeriesCountSnapshot snapshot() {
+        Map<String, Long> counts = new HashMap<>();
+        counts.put("http_requests_total", 5000L);
+        counts.put("cpu_total", 200L);
+        counts.put("cpu_used", 300L);
+        return SeriesCountSnapshot.of(counts);
+    }
+
+    @Test
+    public void testEstimate() {
+        QueryCost cost = estimator.estimate(PromHelper.sqlBuilder()
+                .metric("http_requests_total").eq("job", "api").rate("5m").sum("job").toExpr(), 0, HOUR, 60_000);
+        log.info("cost = {}", cost);
+        //5000 * 0.1 = 500条序列，每次求值5m/15s = 20个样本，求值61次
+        Assert.assertEquals(500, cost.getSeries());
+        Assert.assertEquals(500 * 20 * 61, cost.getSamples());
+        Assert.assertEquals(HOUR + 5 * 60_000, cost.getLookbackMillis());
+
+        //多个metric按__name__多选累加，未知metric按默认值
+        cost = estimator.estimate(PromHelper.parse("{__name__=~\"cpu_total|cpu_used|mem_used\"} offset 1d"));
+        Assert.assertEquals(1500, cost.getSeries());
+        Assert.assertEquals(24 * HOUR + 5 * 60_000, cost.getLookbackMillis());
+        Assert.assertFalse(cost.isUnbounded());
+
+        Assert.assertTrue(estimator.estimate(PromHelper.parse("count({__name__=~\".*\"})")).isUnbounded());
+
+        //子查询内层按 区间/求值间隔 = 60次求值，回溯再加上子查询区间
+        cost = estimator.estimate(PromHelper.parse("max_over_time(rate(cpu_total[5m])[1h:1m] offset 1h)"));
+        Assert.assertEquals(200 * 20 * 60, cost.getSamples());
+        Assert.assertEquals(2 * HOUR + 5 * 60_000, cost.getLookbackMillis());
+    }
+
+    @Test
+    public void testReject() {
+        CostGuardQueryExecutor guard = CostGuardQueryExecutor.builder(backend).estimator(estimator).build();
+        try {
+            guard.execute(QueryRequest.range("sum(rate(http_requests_total[30d]))", 0, 7 * 24 * HOUR, 60_000));
+            Assert.fail();
+        } catch (QueryRejectedException e) {
+            log.info("{}", e.getMessage());
+            Assert.assertTrue(e.getMessage().contains("samples"));
+            Assert.assertTrue(e.getCost().getSamples() > 50_000_000);
+        }
+        try {
+            guard.execute(QueryRequest.instant("{__name__=~\".*\"}"));
+            Assert.fail();
+        } catch (QueryRejectedException e) {
+            Assert.assertTrue(e.getMessage().contains("without metric name"));
+        }
+        Assert.assertEquals(0, calls.get());
+        Assert.assertEquals(2, guard.getRejected());
+
+        guard.execute(QueryRequest.range("sum by(job)(rate(http_requests_total{job=\"api\"}[5m]))", 0, HOUR, 60_000));
+        Assert.assertEquals(1, calls.get());
+    }
+
+    @Test
+    public void testBuilderCheck() {
+        CostGuardQueryExecutor guard = CostGuardQueryExecutor.builder(backend).estimator(estimator)
+                .maxLookbackMillis(7 * 24 * HOUR).build();
+        PromHelper.PromSqlBuilder builder = PromHelper.sqlBuilder().metric("cpu_used").rate("5m").offset("30d");
+        try {
+            guard.check(builder, 0, HOUR, 60_000);
+            Assert.fail();
+        } catch (QueryRejectedException e) {
+            Assert.assertTrue(e.getMessage().contains("lookback"));
+        }
+    }
+
+    @Test
+    public void testBuilderCheckWithRecordingRules() {
+        CostGuardQueryExecutor guard = CostGuardQueryExecutor.builder(backend).estimator(estimator)
+                .maxLookbackMillis(7 * 24 * HOUR).build();
+        RecordingRules rules = RecordingRules.of(Collections.singletonList(
+                RecordingRule.of("job:cpu_used:rate30d", "sum by(job)(rate(cpu_used[30d]))")));
+        PromHelper.PromSqlBuilder builder = PromHelper.sqlBuilder().metric("cpu_used").rate("30d").sum("job");
+        Assert.assertThrows(QueryRejectedException.class, () -> guard.check(builder, 0, HOUR, 60_000));
+        //按改写后实际发送的预计算序列估算，回看区间为查询跨度加5m的lookback delta
+        QueryCost cost = guard.check(builder.useRecordingRules(rules), 0, HOUR, 60_000);
+        Assert.assertEquals(HOUR + 5 * 60_000, cost.getLookbackMillis());
+    }
+
+    @Test
+    public void testWarnOnly() {
+        CostGuardQueryExecutor guard = CostGuardQueryExecutor.builder(backend).estimator(estimator).warnOnly(true).build();
+        guard.execute(QueryRequest.instant("{__name__=~\".+\"}"));
+        Assert.assertEquals(1, calls.get());
+        Assert.assertEquals(1, guard.getWarned());
+        //无法解析的查询不做检查
+        guard.execute(QueryRequest.instant("sum("));
+        Assert.assertEquals(2, calls.get());
+    }
+}
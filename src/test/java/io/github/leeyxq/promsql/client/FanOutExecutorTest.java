@@ -0,0 +1,140 @@
+package io.github.leeyxq.promsql.client;
+
+import io.github.leeyxq.promsql.PromHelper;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * @author lixiangqian
+ * @since 2026/10/18 23:00
+ */
+@Slf4j
+public class FanOutExecutorTest {
+    private final AtomicInteger running = new AtomicInteger();
+    private final AtomicInteger maxRunning = new AtomicInteger();
+    private final AtomicInteger executed = new AtomicInteger();
+    private FanOutExecutor fanOut;
+
+    @After
+    public void tearDown() {
+        fanOut.close();
+    }
+
+    /**
+     * 桩执行器：按查询中的sleep_N休眠N毫秒，结果的warnings中带回查询文本
+     */
+    private QueryResult execute(QueryRequest request) {
+        maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+        executed.incrementAndGet();
+        try {
+            String query = request.getQuery();
+            if (query.contains("fail")) {
+                throw new PromQueryException("bad_data: " + query, 400);
+            }
+            int sleep = query.indexOf("sleep_");
+            if (sleep >= 0) {
+                Thread.sleep(Long.parseLong(query.substring(sleep + 6).replaceAll("\\D.*", "")));
+            }
+            return new QueryResult(ResultType.VECTOR, Collections.emptyList(), Collections.singletonList(query));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new PromQueryException("interrupted", e);
+        } finally {
+            running.decrementAndGet();
+        }
+    }
+
+    private static List<QueryRequest> requests(String... queries) {
+        List<QueryRequest> requests = new ArrayList<>();
+        for (String query : queries) {
+            requests.add(QueryRequest.instant(query, 1000L));
+        }
+        return requests;
+    }
+
+    @Test
+    public void testOrderedResults() {
+        fanOut = FanOutExecutor.builder(this::execute).platformThreads(4).build();
+        log.info("virtual threads = {}", fanOut.isVirtualThreads());
+        List<QueryRequest> requests = new ArrayList<>();
+        for (int i = 0; i < 50; i++) {
+            requests.add(QueryRequest.instant("sleep_" + (50 - i) % 7 + "{i=\"" + i + "\"}", 1000L));
+        }
+        List<QueryResult> results = fanOut.executeAll(requests, 8, 0);
+        Assert.assertEquals(50, results.size());
+        for (int i = 0; i < 50; i++) {
+            Assert.assertEquals(requests.get(i).getQuery(), results.get(i).getWarnings().get(0));
+        }
+        Assert.assertTrue("max running " + maxRunning.get(), maxRunning.get() <= 8);
+        Assert.assertTrue(fanOut.executeAll(new ArrayList<>()).isEmpty());
+    }
+
+    @Test
+    public void testConcurrencyLimit() {
+        fanOut = FanOutExecutor.builder(this::execute).platformThreads(16).build();
+        List<QueryRequest> requests = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            requests.add(QueryRequest.instant("sleep_20{i=\"" + i + "\"}", 1000L));
+        }
+        fanOut.executeAll(requests, 3, 0);
+        Assert.assertEquals(3, maxRunning.get());
+        Assert.assertEquals(20, executed.get());
+    }
+
+    @Test
+    public void testBuilders() {
+        fanOut = FanOutExecutor.builder(this::execute).build();
+        List<CompletableFuture<QueryResult>> futures = fanOut.submitInstant(Arrays.asList(
+                PromHelper.sqlBuilder().metric("up"),
+                PromHelper.sqlBuilder().metric("http_requests_total").rate("5m").sum("job")), 1000L);
+        Assert.assertEquals("[up]", futures.get(0).join().getWarnings().toString());
+        Assert.assertEquals("[sum by(job)(rate(http_requests_total[5m]))]", futures.get(1).join().getWarnings().toString());
+    }
+
+    @Test
+    public void testFailure() {
+        fanOut = FanOutExecutor.builder(this::execute).build();
+        List<CompletableFuture<QueryResult>> futures = fanOut.submit(requests("up", "fail", "sleep_10"));
+        Assert.assertNotNull(futures.get(0).join());
+        Assert.assertNotNull(futures.get(2).join());
+        try {
+            futures.get(1).get();
+            Assert.fail();
+        } catch (ExecutionException | InterruptedException e) {
+            Assert.assertEquals("bad_data: fail", e.getCause().getMessage());
+        }
+        PromQueryException e = Assert.assertThrows(PromQueryException.class, () -> fanOut.executeAll(requests("up", "fail")));
+        Assert.assertEquals(400, e.getStatusCode());
+    }
+
+    @Test
+    public void testDeadline() {
+        fanOut = FanOutExecutor.builder(this::execute).platformThreads(2).build();
+        long start = System.currentTimeMillis();
+        List<CompletableFuture<QueryResult>> futures = fanOut.submit(
+                requests("up", "sleep_5000", "sleep_5000{a=\"1\"}", "sleep_5000{a=\"2\"}"), 2, 200);
+        Assert.assertNotNull(futures.get(0).join());
+        for (int i = 1; i < futures.size(); i++) {
+            try {
+                futures.get(i).get();
+                Assert.fail();
+            } catch (ExecutionException | InterruptedException e) {
+                Assert.assertTrue(e.getCause().getMessage(), e.getCause().getMessage().startsWith("deadline of 200ms exceeded"));
+            }
+        }
+        long elapsed = System.currentTimeMillis() - start;
+        Assert.assertTrue("elapsed " + elapsed, elapsed < 2000);
+        //执行中的查询被中断，未开始的不再执行
+        Assert.assertTrue("executed " + executed.get(), executed.get() <= 3);
+    }
+}
@@ -0,0 +1,190 @@
+package io.github.leeyxq.promsql.client;
+
+
+import io.github.leeyxq.promsql.PromHelper;
+import io.github.leeyxq.promsql.ast.PromPrinter;
+import io.github.leeyxq.promsql.util.CompactTrie;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * @author lixiangqian
+ * @since 2026/10/18 20:00
+ */
+@Slf4j
+public class MetadataCacheTest {
+    private static final long HOUR = 3600_000L;
+
+    private final AtomicLong now = new AtomicLong(100 * HOUR);
+    /**
+     * 桩服务当前返回的序列，每项为__name__,job,instance，job为null时序列不带job
+     */
+    private volatile List<String[]> series = new ArrayList<>();
+    private StubPromServer server;
+    private MetadataCache cache;
+
+    @Before
+    public void setUp() throws IOException {
+        series.add(new String[]{"http_requests_total", "api-a", "host1"});
+        series.add(new String[]{"http_requests_total", "api-b", "host2"});
+        series.add(new String[]{"http_requests_total", "web", "host1"});
+        series.add(new String[]{"http_request_duration_seconds_bucket", "api-a", "host1"});
+        server = new StubPromServer().handler(request -> StubPromServer.Response.ok(respond(request.getPath())));
+        cache = MetadataCache.builder(PromClient.builder(server.getBaseUrl()).build())
+                .clock(now::get).overlapMillis(60_000).fullRefreshEvery(2).build();
+    }
+
+    @After
+    public void tearDown() {
+        cache.close();
+        server.close();
+    }
+
+    private String respond(String path) {
+        StringBuilder data = new StringBuilder("[");
+        if (MetadataCache.SERIES_PATH.equals(path)) {
+            for (String[] s : series) {
+                data.append(data.length() > 1 ? "," : "").append("{\"__name__\":\"").append(s[0]);
+                if (s[1] != null) {
+                    data.append("\",\"job\":\"").append(s[1]);
+                }
+                data.append("\",\"instance\":\"").append(s[2]).append("\"}");
+            }
+        } else {
+            List<String> values = new ArrayList<>();
+            for (String[] s : series) {
+                values.add(s[0]);
+            }
+            if (MetadataCache.LABEL_NAMES_PATH.equals(path)) {
+                values = Arrays.asList("__name__", "instance", "job");
+            }
+            for (String value : values) {
+                data.append(data.length() > 1 ? "," : "").append('"').append(value).append('"');
+            }
+        }
+        return "{\"status\":\"success\",\"data\":" + data.append(']') + "}";
+    }
+
+    @Test
+    public void testTrie() {
+        CompactTrie trie = CompactTrie.of(Arrays.asList("http_requests_total", "http_request_duration_seconds_count",
+                "http_request_duration_seconds_bucket", "http", "up", "up"));
+        Assert.assertEquals(5, trie.size());
+        Assert.assertTrue(trie.contains("http"));
+        Assert.assertTrue(trie.contains("http_request_duration_seconds_bucket"));
+        Assert.assertFalse(trie.contains("http_request"));
+        Assert.assertFalse(trie.contains("upx"));
+        Assert.assertEquals("[http_request_duration_seconds_bucket, http_request_duration_seconds_count]",
+                trie.withPrefix("http_request_d").toString());
+        Assert.assertEquals("[http, http_request_duration_seconds_bucket, http_request_duration_seconds_count, http_requests_total]",
+                trie.withPrefix("htt").toString());
+        Assert.assertEquals("[http_requests_total, up]", trie.find("", v -> !v.contains("duration") && v.length() > 4 || v.equals("up"), 10).toString());
+        Assert.assertTrue(trie.withPrefix("x").isEmpty());
+        Assert.assertTrue(CompactTrie.of(new ArrayList<>()).isEmpty());
+        Assert.assertTrue(CompactTrie.of(Arrays.asList("", "a")).contains(""));
+    }
+
+    @Test
+    public void testLookup() {
+        Assert.assertFalse(cache.isLoaded());
+        cache.refresh();
+        Assert.assertTrue(cache.hasMetric("http_requests_total"));
+        Assert.assertFalse(cache.hasMetric("http_requests"));
+        Assert.assertEquals("[http_request_duration_seconds_bucket, http_requests_total]", cache.metricNames("http_").toString());
+        Assert.assertTrue(cache.hasLabelName("job"));
+        //label值首次访问时懒加载
+        Assert.assertEquals("[api-a, api-b, web]", cache.labelValues("http_requests_total", "job").toString());
+        Assert.assertEquals("[instance, job]", cache.labelNames("http_requests_total").toString());
+        Assert.assertTrue(cache.hasLabelValue("http_requests_total", "instance", "host2"));
+        Assert.assertTrue(cache.labelValues("no_such_metric", "job").isEmpty());
+        Assert.assertEquals(String.valueOf((now.get() - 24 * HOUR) / 1000), server.getRequests().get(0).getParams().get("start"));
+    }
+
+    @Test
+    public void testValidate() {
+        cache.refresh();
+        List<String> problems = cache.validate(PromHelper.sqlBuilder().metric("http_requests_totl").rate("5m"));
+        Assert.assertEquals("[unknown metric: http_requests_totl]", problems.toString());
+        problems = cache.validate(PromHelper.parse("sum(http_requests_total{job=\"api-c\", env=\"prod\", instance!=\"x\"}) / sum(up{jbo=\"a\"})"));
+        log.info("problems = {}", problems);
+        Assert.assertEquals("[unknown value job=\"api-c\" for metric http_requests_total, "
+                + "unknown label env for metric http_requests_total, unknown metric: up]", problems.toString());
+        Assert.assertEquals("[unknown label: jbo]", cache.validate(PromHelper.parse("{jbo=\"a\"}")).toString());
+        Assert.assertTrue(cache.validate(PromHelper.parse("http_requests_total{job=\"web\"}")).isEmpty());
+    }
+
+    @Test
+    public void testExpandRegex() {
+        cache.refresh();
+        Assert.assertEquals("http_requests_total{job=~\"api-a|api-b\"}",
+                PromPrinter.print(cache.expandRegex(PromHelper.parse("http_requests_total{job=~\"api-.*\"}"))));
+        Assert.assertEquals("http_requests_total{job=\"web\", instance=\"host1\"}",
+                PromPrinter.print(cache.expandRegex(PromHelper.parse("http_requests_total{job=~\"w.+\", instance=~\"host[1]\"}"))));
+        Assert.assertEquals("count({__name__=~\"http_request_duration_seconds_bucket|http_requests_total\"})",
+                PromPrinter.print(cache.expandRegex(PromHelper.parse("count({__name__=~\"http_.*\"})"))));
+        //无匹配、超过上限或没有metric名时保持原样
+        String query = "http_requests_total{job=~\"x.*\"} + on(job) {job=~\"api.*\"}";
+        Assert.assertEquals(query, PromPrinter.print(cache.expandRegex(PromHelper.parse(query))));
+        Assert.assertEquals("", MetadataCache.literalPrefix("a|b"));
+        Assert.assertEquals("api-", MetadataCache.literalPrefix("api-x?"));
+        Assert.assertEquals("api-x", MetadataCache.literalPrefix("api-x+"));
+    }
+
+    @Test
+    public void testRegexMatchingEmptyNotExpanded() {
+        series.add(new String[]{"up", "a", "host1"});
+        series.add(new String[]{"up", "b", "host1"});
+        series.add(new String[]{"up", null, "host2"});
+        cache.refresh();
+        Assert.assertEquals("[a, b]", cache.labelValues("up", "job").toString());
+        //能匹配空串的正则也匹配不带job的序列，展开为已知值会漏掉该序列
+        for (String query : Arrays.asList("up{job=~\".*\"}", "up{job=~\"a?\"}", "up{job=~\"|b\"}")) {
+            Assert.assertEquals(query, PromPrinter.print(cache.expandRegex(PromHelper.parse(query))));
+        }
+        Assert.assertEquals("up{job=\"a\"}", PromPrinter.print(cache.expandRegex(PromHelper.parse("up{job=~\"a.*\"}"))));
+    }
+
+    @Test
+    public void testIncrementalRefresh() {
+        cache.refresh();
+        Assert.assertEquals(3, cache.labelValues("http_requests_total", "job").size());
+        long firstRefresh = now.get();
+
+        //增量刷新只查询上次刷新之后的数据，已有的值保留
+        now.addAndGet(60_000);
+        series = new ArrayList<>();
+        series.add(new String[]{"http_requests_total", "worker", "host3"});
+        series.add(new String[]{"jvm_memory_bytes", "worker", "host3"});
+        server.getRequests().clear();
+        cache.refresh();
+        Assert.assertEquals(String.valueOf((firstRefresh - 60_000) / 1000), server.getRequests().get(0).getParams().get("start"));
+        Assert.assertEquals("[api-a, api-b, web, worker]", cache.labelValues("http_requests_total", "job").toString());
+        Assert.assertTrue(cache.hasMetric("http_request_duration_seconds_bucket"));
+        Assert.assertTrue(cache.hasMetric("jvm_memory_bytes"));
+        Assert.assertEquals(now.get(), cache.getRefreshedAt());
+
+        //每2次刷新全量重建一次，淘汰已消失的值
+        now.addAndGet(60_000);
+        cache.refresh();
+        Assert.assertEquals("[worker]", cache.labelValues("http_requests_total", "job").toString());
+        Assert.assertFalse(cache.hasMetric("http_request_duration_seconds_bucket"));
+    }
+
+    @Test
+    public void testBackgroundRefresh() throws InterruptedException {
+        cache.start();
+        for (int i = 0; i < 100 && !cache.isLoaded(); i++) {
+            Thread.sleep(20);
+        }
+        Assert.assertTrue(cache.hasMetric("http_requests_total"));
+    }
+}
@@ -0,0 +1,180 @@
+package io.github.leeyxq.promsql.client;
+
+import lombok.extern.slf4j.Slf4j;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * @author lixiangqian
+ * @since 2026/10/19 02:00
+ */
+@Slf4j
+public class PriorityQuerySchedulerTest {
+    private final List<String> executed = Collections.synchronizedList(new ArrayList<>());
+    private final Map<String, AtomicInteger> running = new ConcurrentHashMap<>();
+    private final Map<String, AtomicInteger> maxRunning = new ConcurrentHashMap<>();
+    private final CountDownLatch gate = new CountDownLatch(1);
+
+    /**
+     * 桩执行器：查询名为类别前缀，gate查询阻塞至放开，sleep_N休眠N毫秒
+     */
+    private QueryResult execute(QueryRequest request) {
+        String query = request.getQuery();
+        String clazz = query.substring(0, query.indexOf('_'));
+        int now = running.computeIfAbsent(clazz, k -> new AtomicInteger()).incrementAndGet();
+        maxRunning.computeIfAbsent(clazz, k -> new AtomicInteger()).accumulateAndGet(now, Math::max);
+        executed.add(query);
+        try {
+            if (query.startsWith("gate_")) {
+                gate.await();
+            }
+            int sleep = query.indexOf("sleep_");
+            if (sleep >= 0) {
+                Thread.sleep(Long.parseLong(query.substring(sleep + 6).replaceAll("\\D.*", "")));
+            }
+            return new QueryResult(ResultType.VECTOR, Collections.emptyList(), Collections.emptyList());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new PromQueryException("interrupted", e);
+        } finally {
+            running.get(clazz).decrementAndGet();
+        }
+    }
+
+    private static Thread start(Runnable runnable) {
+        Thread thread = new Thread(runnable);
+        thread.start();
+        return thread;
+    }
+
+    private static void awaitQueued(PriorityQueryScheduler scheduler, String clazz, int queued) throws InterruptedException {
+        while (scheduler.getQueued(clazz) < queued) {
+            Thread.sleep(1);
+        }
+    }
+
+    @Test
+    public void testBuildTwice() throws InterruptedException {
+        PriorityQueryScheduler.Builder builder = PriorityQueryScheduler.builder(this::execute)
+                .maxConcurrency(1)
+                .priorityClass("gate", 1, 1, 0);
+        PriorityQueryScheduler first = builder.build();
+        PriorityQueryScheduler second = builder.build();
+        Thread blocked = start(() -> first.execute("gate", QueryRequest.instant("gate_1")));
+        while (first.getInFlight("gate") == 0) {
+            Thread.sleep(1);
+        }
+        //两个调度器的队列与计数互不共享
+        Assert.assertEquals(0, second.getInFlight("gate"));
+        gate.countDown();
+        second.execute("gate", QueryRequest.instant("gate_2"));
+        blocked.join();
+        Assert.assertEquals(0, first.getInFlight("gate"));
+        Assert.assertEquals(0, second.getInFlight("gate"));
+    }
+
+    @Test
+    public void testWeightedFairQueuing() throws InterruptedException {
+        PriorityQueryScheduler scheduler = PriorityQueryScheduler.builder(this::execute)
+                .maxConcurrency(1)
+                .priorityClass("gate", 1, 1, 0)
+                .priorityClass("interactive", 4, 1, 0)
+                .priorityClass("batch", 1, 1, 0)
+                .build();
+        Thread gateThread = start(() -> scheduler.execute("gate", QueryRequest.instant("gate_0")));
+        while (scheduler.getInFlight("gate") == 0) {
+            Thread.sleep(1);
+        }
+        List<Thread> threads = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            String batch = "batch_" + i;
+            threads.add(start(() -> scheduler.execute("batch", QueryRequest.instant(batch))));
+        }
+        awaitQueued(scheduler, "batch", 10);
+        for (int i = 0; i < 10; i++) {
+            String interactive = "interactive_" + i;
+            threads.add(start(() -> scheduler.execute("interactive", QueryRequest.instant(interactive))));
+        }
+        awaitQueued(scheduler, "interactive", 10);
+        gate.countDown();
+        gateThread.join();
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        log.info("executed = {}", executed);
+        Assert.assertEquals(21, executed.size());
+        //先排队的批量查询不会挡住交互式查询，两类都在排队时按4:1分配
+        long batchInFirstTen = executed.subList(1, 11).stream().filter(q -> q.startsWith("batch")).count();
+        Assert.assertTrue("batch in first ten: " + batchInFirstTen, batchInFirstTen >= 1 && batchInFirstTen <= 3);
+    }
+
+    @Test
+    public void testClassConcurrencyCap() throws InterruptedException {
+        PriorityQueryScheduler scheduler = PriorityQueryScheduler.builder(this::execute)
+                .maxConcurrency(8)
+                .priorityClass("interactive", 8, 8, 0)
+                .priorityClass("batch", 1, 2, 0)
+                .build();
+        QueryExecutor batch = scheduler.executor("batch");
+        List<Thread> threads = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            String query = "batch_sleep_100{i=\"" + i + "\"}";
+            threads.add(start(() -> batch.execute(QueryRequest.instant(query))));
+        }
+        awaitQueued(scheduler, "batch", 8);
+        //批量查询排满时交互式查询仍立即执行
+        long start = System.currentTimeMillis();
+        scheduler.execute("interactive", QueryRequest.instant("interactive_0"));
+        long elapsed = System.currentTimeMillis() - start;
+        Assert.assertTrue("interactive took " + elapsed + "ms", elapsed < 80);
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        Assert.assertEquals(2, maxRunning.get("batch").get());
+        Assert.assertEquals(0, scheduler.getInFlight("batch"));
+    }
+
+    @Test
+    public void testDeadlineDropsExpiredWork() throws InterruptedException {
+        PriorityQueryScheduler scheduler = PriorityQueryScheduler.builder(this::execute)
+                .maxConcurrency(1)
+                .priorityClass("interactive", 4, 1, 50)
+                .priorityClass("batch", 1, 1, 0)
+                .build();
+        Thread gateThread = start(() -> scheduler.execute("batch", QueryRequest.instant("gate_0")));
+        while (scheduler.getInFlight("batch") == 0) {
+            Thread.sleep(1);
+        }
+        try {
+            scheduler.execute("interactive", QueryRequest.instant("interactive_late"));
+            Assert.fail("should be shed");
+        } catch (QueryShedException e) {
+            log.info("expected: {}", e.getMessage());
+        }
+        //单次调用可指定deadline
+        Assert.assertThrows(QueryShedException.class, () -> scheduler.execute("batch", QueryRequest.instant("batch_late"), 20));
+        gate.countDown();
+        gateThread.join();
+        Assert.assertEquals(Collections.singletonList("gate_0"), executed);
+        Assert.assertEquals(1, scheduler.getShed("interactive"));
+        Assert.assertEquals(1, scheduler.getShed("batch"));
+        Assert.assertEquals(0, scheduler.getQueued("interactive"));
+
+        scheduler.execute("interactive", QueryRequest.instant("interactive_0"));
+        Assert.assertEquals(2, executed.size());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testUnknownClass() {
+        PriorityQueryScheduler.builder(this::execute).priorityClass("interactive", 1, 1, 0).build()
+                .execute("batch", QueryRequest.instant("batch_0"));
+    }
+}
@@ -0,0 +1,105 @@
+package io.github.leeyxq.promsql.client;
+
+
+import io.github.leeyxq.promsql.PromHelper;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+
+/**
+ * @author lixiangqian
+ * @since 2026/10/18 15:00
+ */
+@Slf4j
+public class PromClientTest {
+    private StubPromServer server;
+
+    @Before
+    public void setUp() throws IOException {
+        server = new StubPromServer();
+    }
+
+    @After
+    public void tearDown() {
+        server.close();
+    }
+
+    @Test
+    public void testInstantQuery() {
+        PromClient client = PromClient.builder(server.getBaseUrl()).queryTimeout("10s").build();
+        String body = client.queryRaw(QueryRequest.instant(PromHelper.sqlBuilder().metric("up").eq("job", "api"), 1690000000500L));
+        Assert.assertTrue(body.contains("\"status\":\"success\""));
+
+        StubPromServer.Request request = server.getRequests().get(0);
+        Assert.assertEquals("GET", request.getMethod());
+        Assert.assertEquals(PromClient.QUERY_PATH, request.getPath());
+        Assert.assertEquals("up{job=\"api\"}", request.getParams().get("query"));
+        Assert.assertEquals("1690000000.5", request.getParams().get("time"));
+        Assert.assertEquals("10s", request.getParams().get("timeout"));
+        Assert.assertEquals("gzip", request.getAcceptEncoding());
+    }
+
+    @Test
+    public void testLongQueryUsesPost() {
+        PromClient client = PromClient.builder(server.getBaseUrl()).maxGetUrlLength(256).build();
+        String[] metrics = new String[50];
+        for (int i = 0; i < metrics.length; i++) {
+            metrics[i] = "metric_name_" + i;
+        }
+        String query = PromHelper.sqlBuilder().metric(metrics).eq("job", "api").build();
+        client.queryRaw(QueryRequest.range(query, 1690000000000L, 1690003600000L, 15000));
+
+        StubPromServer.Request request = server.getRequests().get(0);
+        Assert.assertEquals("POST", request.getMethod());
+        Assert.assertEquals(PromClient.QUERY_RANGE_PATH, request.getPath());
+        Assert.assertEquals(query, request.getParams().get("query"));
+        Assert.assertEquals("1690000000", request.getParams().get("start"));
+        Assert.assertEquals("1690003600", request.getParams().get("end"));
+        Assert.assertEquals("15", request.getParams().get("step"));
+    }
+
+    @Test
+    public void testConnectionReuse() {
+        PromClient client = PromClient.builder(server.getBaseUrl()).build();
+        for (int i = 0; i < 5; i++) {
+            client.queryRaw(QueryRequest.instant("up"));
+        }
+        int port = server.getRequests().get(0).getRemotePort();
+        for (StubPromServer.Request request : server.getRequests()) {
+            Assert.assertEquals(port, request.getRemotePort());
+        }
+    }
+
+    @Test
+    public void testWithoutGzip() {
+        PromClient client = PromClient.builder(server.getBaseUrl()).gzip(false).build();
+        Assert.assertTrue(client.queryRaw(QueryRequest.instant("up")).startsWith("{"));
+        Assert.assertNull(server.getRequests().get(0).getAcceptEncoding());
+    }
+
+    @Test
+    public void testError() {
+        server.handler(request -> new StubPromServer.Response(400, "{\"status\":\"error\",\"errorType\":\"bad_data\",\"error\":\"parse error\"}", 0));
+        PromClient client = PromClient.builder(server.getBaseUrl()).build();
+        try {
+            client.queryRaw(QueryRequest.instant("up{"));
+            Assert.fail();
+        } catch (PromQueryException e) {
+            log.info("{}", e.getMessage());
+            Assert.assertEquals(400, e.getStatusCode());
+            Assert.assertTrue(e.getMessage().contains("parse error"));
+        }
+    }
+
+    @Test
+    public void testFormatSeconds() {
+        Assert.assertEquals("1690000000", QueryRequest.formatSeconds(1690000000000L));
+        Assert.assertEquals("1690000000.05", QueryRequest.formatSeconds(1690000000050L));
+        Assert.assertEquals("0.001", QueryRequest.formatSeconds(1));
+        Assert.assertEquals("-0.5", QueryRequest.formatSeconds(-500));
+    }
+}
@@ -0,0 +1,97 @@
+package io.github.leeyxq.promsql.client;
+
+
+import lombok.extern.slf4j.Slf4j;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * @author lixiangqian
+ * @since 2026/10/18 16:00
+ */
+@Slf4j
+public class PromResponseDecoderTest {
+    private final PromResponseDecoder decoder = new PromResponseDecoder();
+
+    @Test
+    public void testMatrix() throws IOException {
+        String json = "{\"status\":\"success\",\"data\":{\"resultType\":\"matrix\",\"result\":["
+                + "{\"metric\":{\"__name__\":\"up\",\"job\":\"api\",\"instance\":\"a:9090\"},\"values\":[[1690000000,\"1\"],[1690000015.5,\"0.25\"],[1690000030.123,\"NaN\"]]},"
+                + "{\"metric\":{\"job\":\"db\"},\"values\":[[1690000000,\"+Inf\"],[1690000015,\"-1.5e3\"]]}"
+                + "]},\"warnings\":[\"partial\"]}";
+        QueryResult result = decoder.decode(stream(json), 2);
+        log.info("result = {}", result);
+        Assert.assertEquals(ResultType.MATRIX, result.getResultType());
+        Assert.assertEquals(2, result.getSeries().size());
+        Assert.assertEquals(5, result.sampleCount());
+        Assert.assertEquals("partial", result.getWarnings().get(0));
+
+        Series up = result.getSeries().get(0);
+        Assert.assertEquals("a:9090", up.getLabels().get("instance"));
+        Assert.assertEquals("{__name__=\"up\", instance=\"a:9090\", job=\"api\"}", up.getLabels().toString());
+        Assert.assertArrayEquals(new long[]{1690000000000L, 1690000015500L, 1690000030123L}, up.timestamps());
+        Assert.assertEquals(1, up.getValue(0), 0);
+        Assert.assertEquals(0.25, up.getValue(1), 0);
+        Assert.assertTrue(Double.isNaN(up.getValue(2)));
+
+        Series db = result.getSeries().get(1);
+        Assert.assertEquals(Double.POSITIVE_INFINITY, db.getValue(0), 0);
+        Assert.assertEquals(-1500, db.getValue(1), 0);
+    }
+
+    @Test
+    public void testVectorAndInterning() throws IOException {
+        String json = "{\"status\":\"success\",\"data\":{\"resultType\":\"vector\",\"result\":["
+                + "{\"metric\":{\"job\":\"api\",\"code\":\"200\"},\"value\":[1690000000.5,\"12.75\"]}]}}";
+        QueryResult first = decoder.decode(stream(json), 1);
+        QueryResult second = decoder.decode(stream(json), 1);
+        Series series = first.getSeries().get(0);
+        Assert.assertEquals(ResultType.VECTOR, first.getResultType());
+        Assert.assertEquals(1690000000500L, series.getTimestamp(0));
+        Assert.assertEquals(12.75, series.getValue(0), 0);
+        //label未排序时按名称排序
+        Assert.assertEquals("code", series.getLabels().getName(0));
+        Assert.assertSame(series.getLabels(), second.getSeries().get(0).getLabels());
+    }
+
+    @Test
+    public void testScalar() throws IOException {
+        QueryResult result = decoder.decode(stream("{\"status\":\"success\",\"data\":{\"resultType\":\"scalar\",\"result\":[1690000000,\"3\"]}}"), 1);
+        Assert.assertEquals(ResultType.SCALAR, result.getResultType());
+        Assert.assertEquals(3, result.getSeries().get(0).getValue(0), 0);
+    }
+
+    @Test(expected = PromQueryException.class)
+    public void testError() throws IOException {
+        decoder.decode(stream("{\"status\":\"error\",\"errorType\":\"bad_data\",\"error\":\"parse error\"}"), 1);
+    }
+
+    @Test
+    public void testParseDouble() {
+        String[] values = {"0", "-0", "1", "0.1", "123.456", "0.000123", "99999999999999.9", "12345678901234567890", "1e-7", "3.14159265358979"};
+        for (String value : values) {
+            char[] chars = value.toCharArray();
+            Assert.assertEquals(value, Double.parseDouble(value), JsonReader.parseDouble(chars, chars.length), 0);
+        }
+    }
+
+    @Test
+    public void testClient() throws IOException {
+        try (StubPromServer server = new StubPromServer()) {
+            server.handler(request -> StubPromServer.Response.ok("{\"status\":\"success\",\"data\":{\"resultType\":\"matrix\",\"result\":["
+                    + "{\"metric\":{\"job\":\"api\"},\"values\":[[1690000000,\"1\"],[1690000015,\"2\"]]}]}}"));
+            QueryResult result = PromClient.builder(server.getBaseUrl()).build()
+                    .execute(QueryRequest.range("sum by(job)(rate(http_requests_total[5m]))", 1690000000000L, 1690000015000L, 15000));
+            Assert.assertEquals(2, result.getSeries().get(0).size());
+        }
+    }
+
+    private static InputStream stream(String json) {
+        return new ByteArrayInputStream(json.getBytes(StandardCharsets.UTF_8));
+    }
+}
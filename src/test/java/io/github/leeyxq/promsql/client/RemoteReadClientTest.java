@@ -0,0 +1,350 @@
+package io.github.leeyxq.promsql.client;
+
+import io.github.leeyxq.promsql.PromHelper;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * @author lixiangqian
+ * @since 2026/10/18 23:30
+ */
+@Slf4j
+public class RemoteReadClientTest {
+    private StubPromServer server;
+    private PromClient client;
+
+    @Before
+    public void setUp() throws IOException {
+        server = new StubPromServer();
+        client = PromClient.builder(server.getBaseUrl()).build();
+    }
+
+    @After
+    public void tearDown() {
+        server.close();
+    }
+
+    @Test
+    public void testSnappy() throws IOException {
+        byte[] text = "up{job=\"api\"} up{job=\"api\"} up{job=\"api\"} up{job=\"web\"}".getBytes(StandardCharsets.UTF_8);
+        byte[] compressed = Snappy.compress(text);
+        Assert.assertTrue(compressed.length < text.length);
+        Assert.assertArrayEquals(text, Snappy.decompress(compressed));
+        Assert.assertArrayEquals(new byte[0], Snappy.decompress(Snappy.compress(new byte[0])));
+        //字面量"ab" + 重叠复制(offset 2, length 6)
+        Assert.assertEquals("abababab", new String(Snappy.decompress(new byte[]{8, 4, 'a', 'b', 5 << 2 | 2, 2, 0}), StandardCharsets.UTF_8));
+        byte[] random = new byte[100_000];
+        new Random(7).nextBytes(random);
+        Assert.assertArrayEquals(random, Snappy.decompress(Snappy.compress(random)));
+        Assert.assertThrows(IOException.class, () -> Snappy.decompress(new byte[]{8, 4, 'a', 'b', 5 << 2 | 2, 9, 0}));
+    }
+
+    @Test
+    public void testCrc32c() {
+        Assert.assertEquals(0xE3069283, RemoteReadClient.crc32c("123456789".getBytes(StandardCharsets.US_ASCII), 9));
+    }
+
+    @Test
+    public void testXorChunk() throws IOException {
+        long[] timestamps = new long[200];
+        double[] values = new double[200];
+        long t = -5_000;
+        Random random = new Random(3);
+        for (int i = 0; i < timestamps.length; i++) {
+            //覆盖各档时间差：不变、抖动、14/17/20位、64位
+            t += i % 50 == 49 ? 86_400_000L * 30 : i % 10 == 9 ? 100_000 + random.nextInt(900_000) : 15_000 + random.nextInt(3) - 1;
+            timestamps[i] = t;
+            values[i] = i % 7 == 0 ? values[Math.max(0, i - 1)] : i % 11 == 0 ? Double.NaN : i * 1.5 - random.nextInt(1000);
+        }
+        byte[] chunk = XorChunkWriter.encode(timestamps, values);
+        XorChunk.SampleBuffer samples = new XorChunk.SampleBuffer();
+        Assert.assertEquals(200, XorChunk.decode(chunk, 0, chunk.length, Long.MIN_VALUE, Long.MAX_VALUE, samples));
+        Assert.assertArrayEquals(timestamps, samples.timestamps());
+        Assert.assertArrayEquals(values, samples.values(), 0);
+
+        samples.clear();
+        XorChunk.decode(chunk, 0, chunk.length, timestamps[10], timestamps[19], samples);
+        Assert.assertArrayEquals(Arrays.copyOfRange(timestamps, 10, 20), samples.timestamps());
+    }
+
+    @Test
+    public void testStreamedRead() {
+        long start = 1_700_000_000_000L;
+        server.handler(request -> {
+            assertRequest(request, start, new int[]{RemoteReadClient.STREAMED_XOR_CHUNKS, RemoteReadClient.SAMPLES});
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            //同一序列拆在相邻两帧中
+            frame(out, 0, series("http_requests_total", "api", chunk(start, 0, 3)));
+            frame(out, 0, series("http_requests_total", "api", chunk(start + 45_000, 3, 2)));
+            frame(out, 0, series("http_requests_total", "web", chunk(start - 60_000, 0, 10)),
+                    series("http_requests_total", "web", new Protobuf.Writer().varint(3, 2).bytes(4, new byte[]{1, 2, 3})));
+            frame(out, 1, series("up", "api", chunk(start, 100, 1)));
+            return StubPromServer.Response.binary("application/x-streamed-protobuf; proto=prometheus.ChunkedReadResponse", out.toByteArray());
+        });
+        RemoteReadClient reader = RemoteReadClient.builder(client).build();
+        QueryResult result = reader.read(PromHelper.sqlBuilder().metric("http_requests_total").regex("job", "api|web")
+                .rate("5m").div(PromHelper.sqlBuilder().metric("up")), start, start + 120_000);
+        log.info("result = {}", result);
+        Assert.assertEquals(3, result.getSeries().size());
+        Series api = result.getSeries().get(0);
+        Assert.assertEquals("api", api.getLabels().get("job"));
+        Assert.assertArrayEquals(new long[]{start, start + 15_000, start + 30_000, start + 45_000, start + 60_000}, api.timestamps());
+        Assert.assertArrayEquals(new double[]{0, 1, 2, 3, 4}, api.values(), 0);
+        //区间外的样本丢弃，原生直方图chunk跳过
+        Series web = result.getSeries().get(1);
+        Assert.assertEquals(6, web.size());
+        Assert.assertEquals(start, web.getTimestamp(0));
+        Assert.assertEquals("up", result.getSeries().get(2).getLabels().get("__name__"));
+        Assert.assertEquals(100, result.getSeries().get(2).getValue(0), 0);
+    }
+
+    @Test
+    public void testSamplesRead() {
+        long start = 1_700_000_000_000L;
+        server.handler(request -> {
+            assertRequest(request, start, new int[]{RemoteReadClient.SAMPLES});
+            Protobuf.Writer timeSeries = new Protobuf.Writer()
+                    .message(1, label("__name__", "http_requests_total"))
+                    .message(1, label("job", "api"))
+                    .message(2, new Protobuf.Writer().fixed64(1, 1.5).varint(2, start))
+                    .message(2, new Protobuf.Writer().fixed64(1, 2.5).varint(2, start + 15_000));
+            byte[] response = new Protobuf.Writer().message(1, new Protobuf.Writer().message(1, timeSeries)).toByteArray();
+            return StubPromServer.Response.binary("application/x-protobuf", Snappy.compress(response));
+        });
+        RemoteReadClient reader = RemoteReadClient.builder(client).streamed(false).build();
+        List<Series> series = new ArrayList<>();
+        reader.read(PromHelper.sqlBuilder().metric("http_requests_total").regex("job", "api|web")
+                .rate("5m").div(PromHelper.sqlBuilder().metric("up")), start, start + 120_000, series::add);
+        Assert.assertEquals(1, series.size());
+        Assert.assertEquals("{__name__=\"http_requests_total\", job=\"api\"}", series.get(0).getLabels().toString());
+        Assert.assertArrayEquals(new double[]{1.5, 2.5}, series.get(0).values(), 0);
+    }
+
+    @Test
+    public void testRejectUnsupported() {
+        RemoteReadClient reader = RemoteReadClient.builder(client).build();
+        Assert.assertThrows(IllegalArgumentException.class, () -> reader.read(PromHelper.sqlBuilder().metric("up").offset("5m"), 0, 1));
+        Assert.assertThrows(IllegalArgumentException.class, () -> reader.read(PromHelper.parse("vector(1)"), 0, 1));
+        Assert.assertThrows(IllegalArgumentException.class, () -> reader.read(PromHelper.sqlBuilder().metric("up")
+                .eq("job", PromHelper.param("job")), 0, 1));
+
+        server.handler(request -> StubPromServer.Response.binary("application/x-streamed-protobuf; proto=prometheus.ChunkedReadResponse",
+                new byte[]{5, 0, 0, 0, 0, 1, 2, 3, 4, 5}));
+        PromQueryException e = Assert.assertThrows(PromQueryException.class, () -> reader.read(PromHelper.sqlBuilder().metric("up"), 0, 1));
+        Assert.assertTrue(e.getMessage(), e.getMessage().contains("checksum mismatch"));
+    }
+
+    /**
+     * 校验请求：snappy压缩的ReadRequest，第一个查询为http_requests_total{job=~"api|web"}，第二个为up
+     */
+    private static void assertRequest(StubPromServer.Request request, long start, int[] acceptedTypes) {
+        Assert.assertEquals(RemoteReadClient.READ_PATH, request.getPath());
+        Assert.assertEquals("application/x-protobuf", request.getContentType());
+        Assert.assertEquals("snappy", request.getContentEncoding());
+        try {
+            byte[] body = Snappy.decompress(request.getBody());
+            Protobuf.Reader reader = new Protobuf.Reader(body, 0, body.length);
+            List<String> queries = new ArrayList<>();
+            List<Long> types = new ArrayList<>();
+            for (int field; (field = reader.next()) != 0; ) {
+                if (field == 1) {
+                    queries.add(decodeQuery(reader.message()));
+                } else {
+                    Protobuf.Reader packed = reader.message();
+                    while (packed.remaining() > 0) {
+                        types.add(packed.varint());
+                    }
+                }
+            }
+            Assert.assertEquals(Arrays.asList(
+                    start + "-" + (start + 120_000) + " __name__=http_requests_total job=~api|web",
+                    start + "-" + (start + 120_000) + " __name__=up"), queries);
+            Assert.assertEquals(acceptedTypes.length, types.size());
+            for (int i = 0; i < acceptedTypes.length; i++) {
+                Assert.assertEquals(acceptedTypes[i], types.get(i).intValue());
+            }
+        } catch (IOException e) {
+            throw new AssertionError(e);
+        }
+    }
+
+    private static String decodeQuery(Protobuf.Reader query) throws IOException {
+        StringBuilder sb = new StringBuilder();
+        long start = 0;
+        long end = 0;
+        for (int field; (field = query.next()) != 0; ) {
+            if (field == 1) {
+                start = query.varint();
+            } else if (field == 2) {
+                end = query.varint();
+            } else {
+                Protobuf.Reader matcher = query.message();
+                long type = 0;
+                String name = null;
+                String value = null;
+                for (int f; (f = matcher.next()) != 0; ) {
+                    if (f == 1) {
+                        type = matcher.varint();
+                    } else if (f == 2) {
+                        name = matcher.string();
+                    } else {
+                        value = matcher.string();
+                    }
+                }
+                sb.append(' ').append(name).append(new String[]{"=", "!=", "=~", "!~"}[(int) type]).append(value);
+            }
+        }
+        return start + "-" + end + sb;
+    }
+
+    private static Protobuf.Writer label(String name, String value) {
+        return new Protobuf.Writer().string(1, name).string(2, value);
+    }
+
+    private static Protobuf.Writer series(String metric, String job, Protobuf.Writer... chunks) {
+        Protobuf.Writer series = new Protobuf.Writer().message(1, label("__name__", metric)).message(1, label("job", job));
+        for (Protobuf.Writer chunk : chunks) {
+            series.message(2, chunk);
+        }
+        return series;
+    }
+
+    /**
+     * 从first开始每15秒一个样本，值从firstValue递增
+     */
+    private static Protobuf.Writer chunk(long first, int firstValue, int count) {
+        long[] timestamps = new long[count];
+        double[] values = new double[count];
+        for (int i = 0; i < count; i++) {
+            timestamps[i] = first + i * 15_000L;
+            values[i] = firstValue + i;
+        }
+        return new Protobuf.Writer().varint(1, timestamps[0]).varint(2, timestamps[count - 1])
+                .varint(3, 1).bytes(4, XorChunkWriter.encode(timestamps, values));
+    }
+
+    private static void frame(ByteArrayOutputStream out, int queryIndex, Protobuf.Writer... series) {
+        Protobuf.Writer response = new Protobuf.Writer();
+        for (Protobuf.Writer s : series) {
+            response.message(1, s);
+        }
+        byte[] data = response.varint(2, queryIndex).toByteArray();
+        byte[] header = new byte[10];
+        int n = Snappy.writeUvarint(header, 0, data.length);
+        out.write(header, 0, n);
+        int crc = RemoteReadClient.crc32c(data, data.length);
+        out.write(crc >>> 24);
+        out.write(crc >>> 16);
+        out.write(crc >>> 8);
+        out.write(crc);
+        out.write(data, 0, data.length);
+    }
+
+    /**
+     * 按Prometheus tsdb/chunkenc/xor.go的算法编码XOR chunk
+     */
+    private static final class XorChunkWriter {
+        private final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        private int current;
+        private int bitCount;
+
+        static byte[] encode(long[] timestamps, double[] values) {
+            XorChunkWriter w = new XorChunkWriter();
+            w.writeBits(timestamps.length, 16);
+            long delta = 0;
+            long bits = 0;
+            int leading = 0xFF;
+            int trailing = 0;
+            for (int i = 0; i < timestamps.length; i++) {
+                long v = Double.doubleToRawLongBits(values[i]);
+                if (i == 0) {
+                    w.uvarint(timestamps[0] << 1 ^ timestamps[0] >> 63);
+                    w.writeBits(v, 64);
+                    bits = v;
+                    continue;
+                }
+                long newDelta = timestamps[i] - timestamps[i - 1];
+                if (i == 1) {
+                    w.uvarint(newDelta);
+                } else {
+                    long dod = newDelta - delta;
+                    if (dod == 0) {
+                        w.writeBits(0, 1);
+                    } else if (bitRange(dod, 14)) {
+                        w.writeBits(0b10, 2);
+                        w.writeBits(dod, 14);
+                    } else if (bitRange(dod, 17)) {
+                        w.writeBits(0b110, 3);
+                        w.writeBits(dod, 17);
+                    } else if (bitRange(dod, 20)) {
+                        w.writeBits(0b1110, 4);
+                        w.writeBits(dod, 20);
+                    } else {
+                        w.writeBits(0b1111, 4);
+                        w.writeBits(dod, 64);
+                    }
+                }
+                delta = newDelta;
+                long xor = v ^ bits;
+                bits = v;
+                if (xor == 0) {
+                    w.writeBits(0, 1);
+                    continue;
+                }
+                w.writeBits(1, 1);
+                int newLeading = Math.min(Long.numberOfLeadingZeros(xor), 31);
+                int newTrailing = Long.numberOfTrailingZeros(xor);
+                if (leading != 0xFF && newLeading >= leading && newTrailing >= trailing) {
+                    w.writeBits(0, 1);
+                    w.writeBits(xor >>> trailing, 64 - leading - trailing);
+                } else {
+                    leading = newLeading;
+                    trailing = newTrailing;
+                    w.writeBits(1, 1);
+                    w.writeBits(leading, 5);
+                    int significant = 64 - leading - trailing;
+                    w.writeBits(significant, 6);
+                    w.writeBits(xor >>> trailing, significant);
+                }
+            }
+            if (w.bitCount > 0) {
+                w.out.write(w.current << (8 - w.bitCount));
+            }
+            return w.out.toByteArray();
+        }
+
+        private static boolean bitRange(long x, int bits) {
+            return -((1L << (bits - 1)) - 1) <= x && x <= 1L << (bits - 1);
+        }
+
+        private void uvarint(long value) {
+            while ((value & ~0x7FL) != 0) {
+                writeBits((value & 0x7F) | 0x80, 8);
+                value >>>= 7;
+            }
+            writeBits(value, 8);
+        }
+
+        private void writeBits(long value, int n) {
+            for (int i = n - 1; i >= 0; i--) {
+                current = current << 1 | (int) (value >>> i & 1);
+                if (++bitCount == 8) {
+                    out.write(current);
+                    current = 0;
+                    bitCount = 0;
+                }
+            }
+        }
+    }
+}
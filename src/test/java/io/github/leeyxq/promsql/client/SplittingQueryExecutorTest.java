@@ -0,0 +1,145 @@
+package io.github.leeyxq.promsql.client;
+
+
+import io.github.leeyxq.promsql.PromHelper;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * @author lixiangqian
+ * @since 2026/10/18 17:30
+ */
+@Slf4j
+public class SplittingQueryExecutorTest {
+    private static final long DAY = 24 * 3600_000L;
+    private static final long STEP = 300_000L;
+
+    private final List<QueryRequest> requests = Collections.synchronizedList(new ArrayList<>());
+    private final AtomicInteger running = new AtomicInteger();
+    private final AtomicInteger maxRunning = new AtomicInteger();
+    private final QueryExecutor backend = request -> {
+        requests.add(request);
+        maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+        try {
+            Thread.sleep(20);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        running.decrementAndGet();
+        if (request.getQuery().contains("fail") && request.getStart() % DAY == 0) {
+            throw new PromQueryException("sample limit exceeded", 422);
+        }
+        return matrix(request);
+    };
+
+    @Test
+    public void testSplit() {
+        long start = 100 * DAY + 3 * 3600_000L + 1234;
+        List<QueryRequest> parts = SplittingQueryExecutor.split(QueryRequest.range("up", start, start + 2 * DAY, STEP).stepAligned(), DAY);
+        Assert.assertEquals(3, parts.size());
+        Assert.assertEquals(101 * DAY - STEP, parts.get(0).getEnd());
+        Assert.assertEquals(101 * DAY, parts.get(1).getStart());
+        Assert.assertEquals(102 * DAY - STEP, parts.get(1).getEnd());
+        Assert.assertEquals(start - 1234, parts.get(2).getEnd() - 2 * DAY);
+
+        //区间不是step的整数倍时向上取整，切点仍落在求值时刻上
+        parts = SplittingQueryExecutor.split(QueryRequest.range("up", 0, 10 * 7000, 7000), 20_000);
+        Assert.assertEquals(4, parts.size());
+        for (QueryRequest part : parts) {
+            Assert.assertEquals(0, part.getStart() % 7000);
+        }
+    }
+
+    @Test
+    public void testParallelAndOrdered() {
+        try (SplittingQueryExecutor executor = SplittingQueryExecutor.builder(backend).parallelism(3).build()) {
+            long start = 100 * DAY;
+            long end = start + 30 * DAY;
+            QueryResult result = executor.execute(QueryRequest.range("sum by(job)(rate(http_requests_total[5m]))", start, end, STEP));
+            log.info("parts = {}, max concurrency = {}", requests.size(), maxRunning.get());
+            Assert.assertEquals(31, requests.size());
+            Assert.assertTrue(maxRunning.get() <= 3);
+            Assert.assertTrue(maxRunning.get() > 1);
+
+            Series series = result.getSeries().get(0);
+            Assert.assertEquals((end - start) / STEP + 1, series.size());
+            for (int i = 0; i < series.size(); i++) {
+                Assert.assertEquals(start + i * STEP, series.getTimestamp(i));
+            }
+        }
+    }
+
+    @Test
+    public void testRangeDependentNotSplit() {
+        try (SplittingQueryExecutor executor = SplittingQueryExecutor.builder(backend).build()) {
+            //@ end()取整个区间的结束时刻，拆分后各段的end()不同
+            executor.execute(QueryRequest.range("topk(5, rate(http_requests_total[5m] @ end()))", 100 * DAY, 110 * DAY, STEP));
+            Assert.assertEquals(1, requests.size());
+        }
+    }
+
+    @Test
+    public void testDependsOnRangeFromBuilder() {
+        //构建器生成的请求按表达式树判断，label值中的end()不影响拆分
+        PromHelper.PromSqlBuilder labelOnly = PromHelper.sqlBuilder().metric("http_requests_total").eq("handler", "/api/end()");
+        Assert.assertFalse(QueryRequest.range(labelOnly, 100 * DAY, 110 * DAY, STEP).dependsOnRange());
+        Assert.assertFalse(QueryRequest.range(labelOnly, 100 * DAY, 110 * DAY, STEP).withRange(100 * DAY, 105 * DAY).dependsOnRange());
+        PromHelper.PromSqlBuilder atEnd = PromHelper.sqlBuilder().metric("http_requests_total").at("end()").rate("5m");
+        Assert.assertTrue(QueryRequest.range(atEnd, 100 * DAY, 110 * DAY, STEP).dependsOnRange());
+        PromHelper.PromSqlBuilder subqueryAtStart = PromHelper.sqlBuilder().metric("up").subquery("1h", "1m").at("start()").fn("max_over_time");
+        Assert.assertTrue(QueryRequest.range(subqueryAtStart, 100 * DAY, 110 * DAY, STEP).dependsOnRange());
+        //原始文本只能按文本判断
+        Assert.assertTrue(QueryRequest.range("http_requests_total{handler=\"/api/end()\"}", 100 * DAY, 110 * DAY, STEP).dependsOnRange());
+
+        try (SplittingQueryExecutor executor = SplittingQueryExecutor.builder(backend).build()) {
+            executor.execute(QueryRequest.range(labelOnly, 100 * DAY + STEP, 110 * DAY, STEP));
+            Assert.assertTrue(requests.size() > 1);
+        }
+    }
+
+    @Test
+    public void testFailure() {
+        try (SplittingQueryExecutor executor = SplittingQueryExecutor.builder(backend).parallelism(2).build()) {
+            executor.execute(QueryRequest.range("fail", 100 * DAY + STEP, 110 * DAY, STEP));
+            Assert.fail();
+        } catch (PromQueryException e) {
+            Assert.assertEquals(422, e.getStatusCode());
+            //失败后不再执行剩余的段
+            Assert.assertTrue(requests.size() < 10);
+        }
+    }
+
+    @Test
+    public void testCachedPastIntervals() {
+        AtomicLong now = new AtomicLong(130 * DAY + 3600_000L);
+        CachingQueryExecutor caching = CachingQueryExecutor.builder(backend).clock(now::get).build();
+        try (SplittingQueryExecutor executor = SplittingQueryExecutor.builder(caching).build()) {
+            QueryRequest request = QueryRequest.range("up", now.get() - 7 * DAY, now.get(), STEP);
+            executor.execute(request);
+            int first = requests.size();
+            now.addAndGet(60_000);
+            executor.execute(request);
+            //只有包含当前时间的最后一天重新查询
+            Assert.assertEquals(first + 1, requests.size());
+            Assert.assertEquals(130 * DAY, requests.get(first).getStart());
+        }
+    }
+
+    private static QueryResult matrix(QueryRequest request) {
+        int n = (int) ((request.getEnd() - request.getStart()) / request.getStep()) + 1;
+        long[] timestamps = new long[n];
+        double[] values = new double[n];
+        for (int i = 0; i < n; i++) {
+            timestamps[i] = request.getStart() + i * request.getStep();
+        }
+        return new QueryResult(ResultType.MATRIX,
+                Collections.singletonList(new Series(Labels.of(Collections.singletonMap("job", "api")), timestamps, values)), null);
+    }
+}
@@ -0,0 +1,92 @@
+package io.github.leeyxq.promsql.client;
+
+
+import io.github.leeyxq.promsql.PromHelper;
+import io.github.leeyxq.promsql.PromTemplate;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Collections;
+
+/**
+ * @author lixiangqian
+ * @since 2026/10/19 01:00
+ */
+@Slf4j
+public class StepPolicyTest {
+    private static final long HOUR = 3600_000L;
+    private static final long DAY = 24 * HOUR;
+
+    @Test
+    public void testStep() {
+        StepPolicy policy = StepPolicy.builder().maxPoints(1000).build();
+        log.info("policy = {}", policy);
+        //1小时/999 ≈ 3.6s，不小于采集间隔15s
+        Assert.assertEquals(15_000, policy.step(HOUR));
+        //1天/999 ≈ 86.5s，取整到2m
+        Assert.assertEquals(120_000, policy.step(DAY));
+        //30天/999 ≈ 43m，取整到1h
+        Assert.assertEquals(HOUR, policy.step(30 * DAY));
+        //超过最后一档时取整到天
+        Assert.assertEquals(2 * DAY, StepPolicy.builder().maxPoints(100).build().step(150 * DAY));
+        Assert.assertEquals(60_000, StepPolicy.builder().minStepMillis(60_000).build().step(HOUR));
+
+        //点数不超过maxPoints
+        for (long range = 0; range < 7 * DAY; range += 987_654) {
+            long step = policy.step(range);
+            Assert.assertTrue(range / step + 1 <= 1000);
+        }
+    }
+
+    @Test
+    public void testResolveAligned() {
+        StepPolicy policy = StepPolicy.builder().maxPoints(1000).build();
+        long now = 1_700_000_123_456L;
+        QueryRange range = policy.resolve(now - DAY, now);
+        log.info("range = {}", range);
+        Assert.assertEquals(120_000, range.getStep());
+        Assert.assertEquals(0, range.getStart() % range.getStep());
+        Assert.assertEquals(0, range.getEnd() % range.getStep());
+        Assert.assertTrue(range.getEnd() <= now && now - range.getEnd() < range.getStep());
+        //同一step内稍后发起的请求对齐到同一区间，可命中缓存
+        Assert.assertEquals(range, policy.resolve(now - DAY + 1000, now + 1000));
+        Assert.assertEquals("2m", range.interval());
+        Assert.assertEquals("2m15s", range.rateInterval());
+        //step较小时窗口至少4个采集间隔
+        Assert.assertEquals("1m", policy.resolve(now - HOUR, now).rateInterval());
+    }
+
+    @Test
+    public void testRequestPlaceholders() {
+        QueryRange range = StepPolicy.builder().maxPoints(1000).build().resolve(0, DAY);
+        QueryRequest request = range.request(PromHelper.sqlBuilder()
+                .metric("http_requests_total")
+                .rate(PromHelper.RATE_INTERVAL)
+                .sum("job"));
+        Assert.assertEquals("sum by(job)(rate(http_requests_total[2m15s]))", request.getQuery());
+        Assert.assertEquals(0, request.getStart());
+        Assert.assertEquals(DAY, request.getEnd());
+        Assert.assertEquals(120_000, request.getStep());
+
+        //不含占位符时原样
+        request = range.request(PromHelper.sqlBuilder().metric("up"));
+        Assert.assertEquals("up", request.getQuery());
+
+        PromTemplate template = PromHelper.sqlBuilder()
+                .metric("http_requests_total")
+                .eq("tenant", PromHelper.param("tenant"))
+                .fn("increase", PromHelper.RANGE)
+                .compile();
+        request = range.request(template, Collections.singletonMap("tenant", "t1"));
+        Assert.assertEquals("increase(http_requests_total{tenant=\"t1\"}[1d])", request.getQuery());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testUnboundParam() {
+        StepPolicy.builder().build().resolve(0, DAY).request(PromHelper.sqlBuilder()
+                .metric("up")
+                .eq("tenant", PromHelper.param("tenant"))
+                .rate(PromHelper.RATE_INTERVAL));
+    }
+}
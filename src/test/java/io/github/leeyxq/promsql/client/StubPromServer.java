@@ -0,0 +1,148 @@
+package io.github.leeyxq.promsql.client;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.function.Function;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * 测试用本地Prometheus桩服务，记录收到的请求并按handler返回响应
+ *
+ * @author lixiangqian
+ * @since 2026/10/18 15:00
+ */
+public class StubPromServer implements AutoCloseable {
+    private final HttpServer server;
+    @Getter
+    private final List<Request> requests = new CopyOnWriteArrayList<>();
+    private volatile Function<Request, Response> handler = request -> Response.ok("{\"status\":\"success\",\"data\":{\"resultType\":\"vector\",\"result\":[]}}");
+
+    public StubPromServer() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/", this::handle);
+        server.setExecutor(Executors.newCachedThreadPool());
+        server.start();
+    }
+
+    public String getBaseUrl() {
+        return "http://127.0.0.1:" + server.getAddress().getPort();
+    }
+
+    public StubPromServer handler(Function<Request, Response> handler) {
+        this.handler = handler;
+        return this;
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        byte[] body = read(exchange.getRequestBody());
+        String contentType = exchange.getRequestHeaders().getFirst("Content-Type");
+        boolean form = "POST".equals(exchange.getRequestMethod()) && "application/x-www-form-urlencoded".equals(contentType);
+        String rawQuery = form ? new String(body, StandardCharsets.UTF_8) : exchange.getRequestURI().getRawQuery();
+        Request request = new Request(exchange.getRequestMethod(), exchange.getRequestURI().getPath(), parse(rawQuery),
+                exchange.getRequestHeaders().getFirst("Accept-Encoding"), exchange.getRemoteAddress().getPort(),
+                contentType, exchange.getRequestHeaders().getFirst("Content-Encoding"), body);
+        requests.add(request);
+        Response response = handler.apply(request);
+        if (response.delayMillis > 0) {
+            try {
+                Thread.sleep(response.delayMillis);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        byte[] bytes = response.bytes != null ? response.bytes : response.body.getBytes(StandardCharsets.UTF_8);
+        if (request.acceptEncoding != null && request.acceptEncoding.contains("gzip")) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            try (GZIPOutputStream gzip = new GZIPOutputStream(out)) {
+                gzip.write(bytes);
+            }
+            bytes = out.toByteArray();
+            exchange.getResponseHeaders().set("Content-Encoding", "gzip");
+        }
+        exchange.getResponseHeaders().set("Content-Type", response.contentType);
+        exchange.sendResponseHeaders(response.status, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+    private static byte[] read(InputStream in) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[4096];
+        int n;
+        while ((n = in.read(buffer)) >= 0) {
+            out.write(buffer, 0, n);
+        }
+        return out.toByteArray();
+    }
+
+    private static Map<String, String> parse(String rawQuery) throws UnsupportedEncodingException {
+        Map<String, String> params = new LinkedHashMap<>();
+        if (rawQuery == null || rawQuery.isEmpty()) {
+            return params;
+        }
+        for (String pair : rawQuery.split("&")) {
+            int idx = pair.indexOf('=');
+            params.put(URLDecoder.decode(pair.substring(0, idx), "UTF-8"), URLDecoder.decode(pair.substring(idx + 1), "UTF-8"));
+        }
+        return params;
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+    }
+
+    @Getter
+    @AllArgsConstructor
+    public static class Request {
+        private final String method;
+        private final String path;
+        private final Map<String, String> params;
+        private final String acceptEncoding;
+        private final int remotePort;
+        private final String contentType;
+        private final String contentEncoding;
+        private final byte[] body;
+    }
+
+    @AllArgsConstructor
+    public static class Response {
+        private final int status;
+        private final String body;
+        private final long delayMillis;
+        private final String contentType;
+        private final byte[] bytes;
+
+        public Response(int status, String body, long delayMillis) {
+            this(status, body, delayMillis, "application/json", null);
+        }
+
+        public static Response ok(String body) {
+            return new Response(200, body, 0);
+        }
+
+        /**
+         * 二进制响应，如remote-read的protobuf
+         */
+        public static Response binary(String contentType, byte[] bytes) {
+            return new Response(200, null, 0, contentType, bytes);
+        }
+    }
+}
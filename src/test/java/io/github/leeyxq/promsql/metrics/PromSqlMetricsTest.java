@@ -0,0 +1,121 @@
+package io.github.leeyxq.promsql.metrics;
+
+import io.github.leeyxq.promsql.PromHelper;
+import io.github.leeyxq.promsql.client.InstrumentedQueryExecutor;
+import io.github.leeyxq.promsql.client.PromQueryException;
+import io.github.leeyxq.promsql.client.QueryExecutor;
+import io.github.leeyxq.promsql.client.QueryRequest;
+import io.github.leeyxq.promsql.client.QueryResult;
+import io.github.leeyxq.promsql.client.ResultCache;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * @author lixiangqian
+ * @since 2026/10/18 22:30
+ */
+@Slf4j
+public class PromSqlMetricsTest {
+
+    @After
+    public void tearDown() {
+        PromSqlMetrics.disable();
+    }
+
+    @Test
+    public void testHistogram() {
+        LatencyHistogram histogram = new LatencyHistogram(0.001, 0.01, 0.1);
+        Assert.assertTrue(Double.isNaN(histogram.quantile(0.5)));
+        for (int i = 0; i < 50; i++) {
+            histogram.observeNanos(500_000);
+        }
+        for (int i = 0; i < 50; i++) {
+            histogram.observeNanos(5_000_000);
+        }
+        histogram.observeNanos(1_000_000_000);
+        Assert.assertArrayEquals(new long[]{50, 100, 100, 101}, histogram.cumulativeCounts());
+        Assert.assertEquals(101, histogram.count());
+        Assert.assertEquals(1.275, histogram.sumSeconds(), 1e-9);
+        Assert.assertEquals(0.001, histogram.quantile(50.0 / 101), 1e-9);
+        Assert.assertEquals(0.1, histogram.quantile(1), 1e-9);
+        Assert.assertThrows(IllegalArgumentException.class, () -> new LatencyHistogram(0.1, 0.01));
+    }
+
+    @Test
+    public void testConcurrentObserve() throws InterruptedException {
+        LatencyHistogram histogram = new LatencyHistogram(LatencyHistogram.QUERY_BUCKETS);
+        int threads = 8;
+        CountDownLatch done = new CountDownLatch(threads);
+        for (int t = 0; t < threads; t++) {
+            new Thread(() -> {
+                for (int i = 0; i < 10_000; i++) {
+                    histogram.observeNanos(i * 1000L);
+                }
+                done.countDown();
+            }).start();
+        }
+        Assert.assertTrue(done.await(10, TimeUnit.SECONDS));
+        Assert.assertEquals(threads * 10_000L, histogram.count());
+    }
+
+    @Test
+    public void testDisabled() {
+        Assert.assertNull(PromSqlMetrics.current());
+        AtomicLong calls = new AtomicLong();
+        QueryExecutor executor = new InstrumentedQueryExecutor(request -> {
+            calls.incrementAndGet();
+            return null;
+        }, "prometheus");
+        executor.execute(QueryRequest.instant("up"));
+        PromHelper.sqlBuilder().metric("up").build();
+        Assert.assertEquals(1, calls.get());
+        Assert.assertEquals(0, PromSqlMetrics.enable().getBuildDuration().count());
+    }
+
+    @Test
+    public void testScrape() {
+        PromSqlMetrics metrics = PromSqlMetrics.enable();
+        Assert.assertSame(metrics, PromSqlMetrics.enable());
+        for (int i = 0; i < 3; i++) {
+            PromHelper.sqlBuilder().metric("http_requests_total").rate("5m").sum("job").build();
+        }
+        Assert.assertEquals(3, metrics.getBuildDuration().count());
+
+        QueryExecutor executor = new InstrumentedQueryExecutor(request -> {
+            if (request.getQuery().contains("bad")) {
+                throw new PromQueryException("bad query", 400);
+            }
+            return (QueryResult) null;
+        }, "prom\"1");
+        executor.execute(QueryRequest.instant("up"));
+        Assert.assertThrows(PromQueryException.class, () -> executor.execute(QueryRequest.instant("bad")));
+        PromSqlMetrics.QueryStats stats = metrics.query("prom\"1");
+        Assert.assertEquals(2, stats.getDuration().count());
+        Assert.assertEquals(1, stats.getErrors());
+        Assert.assertEquals(0, stats.getInFlight());
+
+        ResultCache cache = new ResultCache(10, 1000);
+        cache.get(ResultCache.Key.of(QueryRequest.instant("up", 1000L)));
+        metrics.registerCache("panel", cache);
+
+        String text = metrics.scrape();
+        log.info("scrape = \n{}", text);
+        Assert.assertTrue(text.contains("# TYPE promsql_build_duration_seconds histogram\n"));
+        Assert.assertTrue(text.contains("promsql_build_duration_seconds_bucket{le=\"+Inf\"} 3\n"));
+        Assert.assertTrue(text.contains("promsql_build_duration_seconds_count 3\n"));
+        Assert.assertTrue(text.contains("promsql_build_errors_total 0\n"));
+        Assert.assertTrue(text.contains("promsql_query_duration_seconds_bucket{executor=\"prom\\\"1\",le=\"0.005\"} 2\n"));
+        Assert.assertTrue(text.contains("promsql_query_errors_total{executor=\"prom\\\"1\"} 1\n"));
+        Assert.assertTrue(text.contains("promsql_queries_in_flight{executor=\"prom\\\"1\"} 0\n"));
+        Assert.assertTrue(text.contains("promsql_cache_requests_total{cache=\"panel\",result=\"miss\"} 1\n"));
+        Assert.assertTrue(text.contains("promsql_cache_hit_ratio{cache=\"panel\"} 0\n"));
+
+        Slf4jMetricsReporter.builder(metrics).build().report();
+    }
+}
@@ -0,0 +1,144 @@
+package io.github.leeyxq.promsql.parser;
+
+
+import io.github.leeyxq.promsql.PromHelper;
+import io.github.leeyxq.promsql.ast.AggregateExpr;
+import io.github.leeyxq.promsql.ast.BinaryExpr;
+import io.github.leeyxq.promsql.ast.BinaryOp;
+import io.github.leeyxq.promsql.ast.Call;
+import io.github.leeyxq.promsql.ast.Expr;
+import io.github.leeyxq.promsql.ast.LabelMatcher;
+import io.github.leeyxq.promsql.ast.MatchOp;
+import io.github.leeyxq.promsql.ast.StringLiteral;
+import io.github.leeyxq.promsql.ast.SubqueryExpr;
+import io.github.leeyxq.promsql.ast.VectorSelector;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * @author lixiangqian
+ * @since 2026/10/18 13:00
+ */
+@Slf4j
+public class PromParserTest {
+    @Test
+    public void testRoundTripBuilder() {
+        List<PromHelper.PromSqlBuilder> builders = Arrays.asList(
+                PromHelper.sqlBuilder().metric("http_requests_total").regex("job", ".*server"),
+                PromHelper.sqlBuilder().metric("cpu_total", "cpu_allocated", "cpu_used").eq("user", "24").eq("cluster", "Test01").sum("__name__"),
+                PromHelper.sqlBuilder().metric("instance_cpu_time_ns").notEmpty("app").empty("proc").notRegex("job", ".*"),
+                PromHelper.sqlBuilder().metric("cpu_used").eq("user", "001").fn("avg_over_time", "300s").offset("5m").min("type"),
+                PromHelper.sqlBuilder().metric("http_requests_total").rate("5m").offset("-1w").sum(false, "instance"),
+                PromHelper.sqlBuilder().metric("http_requests_total").countValues("job"),
+                PromHelper.sqlBuilder().metric("http_requests_total").eq("job", "api").rate("5m").sum("app").topk(3).abs());
+        for (PromHelper.PromSqlBuilder builder : builders) {
+            String promSql = builder.build();
+            Expr expr = PromHelper.parse(promSql);
+            log.info("promSql = {}", promSql);
+            Assert.assertEquals(builder.toExpr(), expr);
+            Assert.assertEquals(promSql, expr.toString());
+        }
+
+        //last()拼接的文本解析为二元操作
+        String promSql = PromHelper.sqlBuilder().metric("instance_memory_usage_bytes").sum("app", "proc").last(" / 1024 / 1024").build();
+        Assert.assertEquals(promSql, PromHelper.parse(promSql).toString());
+    }
+
+    @Test
+    public void testNormalizeLayout() {
+        Assert.assertEquals("sum by(job)(rate(http_requests_total{code=~\"5..\"}[5m]))",
+                PromHelper.parse("sum(\n  rate(http_requests_total{code=~'5..',}[5m])\n) by (job) # 5xx").toString());
+        Assert.assertEquals("histogram_quantile(0.9, sum by(le)(rate(http_request_duration_seconds_bucket[10m])))",
+                PromHelper.parse("histogram_quantile(0.9, sum by (le) (rate(http_request_duration_seconds_bucket[10m])))").toString());
+        Assert.assertEquals("job:http_requests:rate5m{job=\"api\"}", PromHelper.parse("job:http_requests:rate5m{job=`api`}").toString());
+    }
+
+    @Test
+    public void testBinary() {
+        Expr expr = PromHelper.parse("a + b * c");
+        Assert.assertEquals(BinaryOp.ADD, ((BinaryExpr) expr).getOp());
+        Assert.assertEquals("(a + b) * c", PromHelper.parse("(a + b) * c").toString());
+        Assert.assertEquals("a ^ b ^ c", PromHelper.parse("a ^ (b ^ c)").toString());
+        Assert.assertEquals("(a ^ b) ^ c", PromHelper.parse("(a ^ b) ^ c").toString());
+        Assert.assertEquals("-(a ^ b)", PromHelper.parse("-a ^ b").toString());
+        Assert.assertEquals("a - -1", PromHelper.parse("a - -1").toString());
+        Assert.assertEquals("a > bool 0.5", PromHelper.parse("a >bool 0.5").toString());
+        Assert.assertEquals("a or b and c unless d", PromHelper.parse("a or b and c unless d").toString());
+        Assert.assertEquals("instance_memory_limit_bytes - on(instance) group_left(job) instance_memory_usage_bytes",
+                PromHelper.parse("instance_memory_limit_bytes - on (instance) group_left (job) instance_memory_usage_bytes").toString());
+        Assert.assertEquals("a / ignoring(code) group_right() b", PromHelper.parse("a / ignoring(code) group_right b").toString());
+    }
+
+    @Test
+    public void testSelector() {
+        Expr expr = PromHelper.parse("{__name__=~\"a|b\", job!=\"x\\\"y\"} offset 1h");
+        VectorSelector selector = (VectorSelector) expr;
+        Assert.assertNull(selector.getMetricName());
+        Assert.assertEquals(new LabelMatcher("job", MatchOp.NEQ, "x\"y"), selector.getMatchers().get(1));
+        Assert.assertEquals("1h", selector.getOffset());
+        Assert.assertEquals("rate(x[1h30m] offset 5m)", PromHelper.parse("rate(x[1h30m] offset 5m)").toString());
+        Assert.assertEquals("topk(5, x)", PromHelper.parse("topk(5,x)").toString());
+        Assert.assertEquals("quantile without(instance)(0.95, x)", ((AggregateExpr) PromHelper.parse("quantile without(instance) (0.95, x)")).toString());
+    }
+
+    @Test
+    public void testSubqueryAndAt() {
+        String[] queries = {
+                "max_over_time(rate(http_requests_total[5m])[1d:5m])",
+                "max_over_time(rate(http_requests_total[5m])[1d:] offset 1w)",
+                "min_over_time((a + b)[1h:1m] @ end())",
+                "avg_over_time((x offset 5m)[30m:1m])",
+                "rate(x[5m] @ 1609746000 offset 1h)",
+                "sum(x @ start())",
+                "max_over_time(deriv(rate(x[1m])[5m:1m])[1h:])"};
+        for (String promSql : queries) {
+            Assert.assertEquals(promSql, PromHelper.parse(promSql).toString());
+        }
+        //offset与@顺序任意，统一输出为先@后offset
+        Assert.assertEquals("x @ 100 offset 5m", PromHelper.parse("x offset 5m @ 100").toString());
+        SubqueryExpr subquery = (SubqueryExpr) ((Call) PromHelper.parse("max_over_time(x[1h:5m] @ 1609746000.5)")).getArgs().get(0);
+        Assert.assertEquals("1h", subquery.getRange());
+        Assert.assertEquals("5m", subquery.getStep());
+        Assert.assertEquals("1609746000.5", subquery.getAt());
+    }
+
+    @Test
+    public void testStringEscapes() {
+        //x转义与八进制转义为字节，连续的字节按UTF-8解码；u、U转义为码点
+        Assert.assertEquals("A\u00e9\u4e2d\ud83d\ude00\n\"",
+                ((StringLiteral) PromHelper.parse("\"\\x41\\xc3\\xa9\\u4e2d\\U0001F600\\n\\\"\"")).getValue());
+        Assert.assertEquals("A\u00e9", ((StringLiteral) PromHelper.parse("'\\101\\303\\251'")).getValue());
+        VectorSelector selector = (VectorSelector) PromHelper.parse("x{path=\"/a\\x2fb\"}");
+        Assert.assertEquals("/a/b", selector.getMatchers().get(0).getValue());
+
+        String[] invalid = {"\"\\x4\"", "\"\\xzz\"", "\"\\u12\"", "\"\\u12g4\"", "\"\\U0011FFFF\"", "\"\\uD800\"",
+                "\"\\12\"", "\"\\400\"", "\"\\q\"", "x{a=\"\\U0001\"}"};
+        for (String promSql : invalid) {
+            try {
+                PromHelper.parse(promSql);
+                Assert.fail("should fail: " + promSql);
+            } catch (PromParseException e) {
+                log.info("{}", e.getMessage());
+                Assert.assertEquals(promSql.indexOf('\\'), e.getPosition());
+            }
+        }
+    }
+
+    @Test
+    public void testError() {
+        String[] invalid = {"sum(", "x{job=\"a\"", "x{job~\"a\"}", "rate(x[5m]", "x[5m][5m]", "sum(x) + ", "a + bool b", "x{}", "x offset", "\"abc",
+                "x[5m][1h:]", "x @", "x @ 1 @ 2", "sum(x) @ 1", "x[1h:5m"};
+        for (String promSql : invalid) {
+            try {
+                PromHelper.parse(promSql);
+                Assert.fail("should fail: " + promSql);
+            } catch (PromParseException e) {
+                log.info("{}", e.getMessage());
+            }
+        }
+    }
+}
@@ -0,0 +1,120 @@
+package io.github.leeyxq.promsql.rule;
+
+import io.github.leeyxq.promsql.PromHelper;
+import io.github.leeyxq.promsql.ast.PromPrinter;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+/**
+ * @author lixiangqian
+ * @since 2026/10/18 21:30
+ */
+@Slf4j
+public class RecordingRuleGeneratorTest {
+
+    @Test
+    public void testGenerate() {
+        RecordingRuleGenerator generator = new RecordingRuleGenerator(2);
+        //写法不同但规范化后相同
+        generator.add("sum by(job)(rate(http_requests_total[5m]))");
+        generator.add("sum by (job) (rate(http_requests_total[300s])) / 2");
+        generator.add(PromHelper.sqlBuilder().metric("http_requests_total").rate("5m").sum("job"));
+        //内层在外层之外只出现一次，不单独生成
+        generator.add("rate(http_requests_total[5m])");
+        generator.add("max(rate(node_cpu_seconds_total{mode!=\"idle\"}[1m])) > 0.8");
+        generator.add("max(rate(node_cpu_seconds_total{mode!=\"idle\"}[1m]))");
+        //无区间选择器的函数、只出现一次的表达式不生成
+        generator.add("abs(up)");
+        generator.add("abs(up)");
+        generator.add("histogram_quantile(0.9, sum by(le)(rate(latency_bucket[5m])))");
+        Assert.assertEquals(9, generator.getQueries());
+
+        RecordingRules rules = generator.generate();
+        log.info("rules = {}", rules);
+        Assert.assertEquals(2, rules.size());
+        RecordingRule first = rules.getRules().get(0);
+        Assert.assertEquals("job:http_requests:rate5m", first.getRecord());
+        Assert.assertEquals("sum by(job)(rate(http_requests_total[5m]))", PromPrinter.print(first.getExpr()));
+        Assert.assertEquals(3, first.getOccurrences());
+        Assert.assertEquals(":node_cpu_seconds:max:rate1m", rules.getRules().get(1).getRecord());
+    }
+
+    @Test
+    public void testSkipUnrecordable() {
+        RecordingRuleGenerator generator = new RecordingRuleGenerator(2);
+        for (int i = 0; i < 3; i++) {
+            generator.add(PromHelper.sqlBuilder().metric("http_requests_total")
+                    .eq("tenant", PromHelper.param("tenant")).rate("5m").sum());
+            generator.add("sum(rate(http_requests_total[5m] @ 1700000000))");
+        }
+        Assert.assertEquals(0, generator.generate().size());
+    }
+
+    @Test
+    public void testRewrite() {
+        RecordingRules rules = RecordingRules.of(Arrays.asList(
+                RecordingRule.of("job:http_requests:rate5m", "sum by (job) (rate(http_requests_total[5m]))"),
+                RecordingRule.of(":http_requests:rate5m", "rate(http_requests_total[300s])")));
+        String promSql = PromHelper.sqlBuilder().metric("http_requests_total").rate("5m").sum("job")
+                .useRecordingRules(rules).build();
+        Assert.assertEquals("job:http_requests:rate5m", promSql);
+        //外层未命中时改写内层
+        Assert.assertEquals("max by(job)(:http_requests:rate5m) > 10",
+                PromPrinter.print(rules.rewrite(PromHelper.parse("max by (job)(rate(http_requests_total[5m])) > 10"))));
+        Assert.assertEquals("job:http_requests:rate5m / 2",
+                rules.rewrite(PromHelper.sqlBuilder().metric("http_requests_total").rate("5m").sum("job").div(2)));
+        //作为二元运算右操作数时保留其预计算规则
+        Assert.assertEquals("sum by(job)(rate(http_errors_total[5m])) / job:http_requests:rate5m",
+                PromHelper.sqlBuilder().metric("http_errors_total").rate("5m").sum("job")
+                        .div(PromHelper.sqlBuilder().metric("http_requests_total").rate("5m").sum("job").useRecordingRules(rules))
+                        .build());
+        //无匹配时保持原样
+        Assert.assertEquals("rate(http_requests_total[1m])",
+                PromHelper.sqlBuilder().metric("http_requests_total").rate("1m").useRecordingRules(rules).build());
+        Assert.assertThrows(IllegalArgumentException.class, () -> RecordingRule.of("job-rate", "up"));
+        Assert.assertThrows(IllegalArgumentException.class, () -> RecordingRules.of(Arrays.asList(
+                RecordingRule.of("a", "rate(x[5m])"), RecordingRule.of("b", "rate(x[300s])"))));
+    }
+
+    @Test
+    public void testYaml() {
+        RecordingRules rules = RecordingRules.of(Arrays.asList(
+                RecordingRule.of("job:http_requests:rate5m", "sum by (job) (rate(http_requests_total{code=~'5..'}[5m]))")));
+        String yaml = rules.toYaml("api", "1m");
+        log.info("yaml = \n{}", yaml);
+        Assert.assertEquals("groups:\n"
+                + "  - name: 'api'\n"
+                + "    interval: 1m\n"
+                + "    rules:\n"
+                + "      - record: job:http_requests:rate5m\n"
+                + "        expr: 'sum by(job)(rate(http_requests_total{code=~\"5..\"}[5m]))'\n", yaml);
+        Assert.assertEquals("groups:\n  - name: 'it''s'\n    rules: []\n", RecordingRules.EMPTY.toYaml("it's", null));
+    }
+
+    @Test
+    public void testAddFile() throws IOException {
+        Path file = Files.createTempFile("queries", ".promql");
+        try {
+            Files.write(file, Arrays.asList(
+                    "# dashboard queries",
+                    "sum(rate(http_requests_total[5m]))",
+                    "",
+                    "sum(rate(http_requests_total[5m])) by (job",
+                    "sum(rate(http_requests_total[5m]))",
+                    "sum(rate(http_requests_total[5m])) * 100"), StandardCharsets.UTF_8);
+            RecordingRuleGenerator generator = new RecordingRuleGenerator();
+            Assert.assertEquals(3, generator.addFile(file));
+            RecordingRules rules = generator.generate();
+            Assert.assertEquals("RecordingRules[:http_requests:rate5m = sum(rate(http_requests_total[5m]))]", rules.toString());
+        } finally {
+            Files.delete(file);
+        }
+    }
+}